@@ -0,0 +1,42 @@
+package shubham.akshit.tldraw;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * {@link ColorRmPdfRenderer.ImageDecoder} on {@link BitmapFactory}: images with
+ * transparency or a lossless export keep their pixels (deflated, alpha as a
+ * soft mask); everything else is re-encoded as JPEG.
+ */
+final class AndroidPdfImageDecoder implements ColorRmPdfRenderer.ImageDecoder {
+
+    static final AndroidPdfImageDecoder INSTANCE = new AndroidPdfImageDecoder();
+    private static final int JPEG_QUALITY = 90;
+
+    private AndroidPdfImageDecoder() {
+    }
+
+    @Override
+    public PdfPage.Image decode(byte[] data, boolean lossless) throws IOException {
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length);
+        if (bitmap == null) throw new IOException("Unreadable image");
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            if (lossless || bitmap.hasAlpha()) {
+                int[] pixels = new int[width * height];
+                bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+                return PdfPage.Image.pixels(width, height, pixels, bitmap.hasAlpha());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            PdfPage.Image image = PdfPage.Image.jpeg(out.toByteArray());
+            if (image == null) throw new IOException("JPEG encoding failed");
+            return image;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package shubham.akshit.tldraw;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.pdf.PdfRenderer;
+import android.os.ParcelFileDescriptor;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link PdfTileRenderer} backed by the platform {@link PdfRenderer}.
+ * Page sizes are read once up front since only one page may be open at a time.
+ */
+final class AndroidPdfTileRenderer implements PdfTileRenderer {
+
+    static final Factory FACTORY = AndroidPdfTileRenderer::new;
+
+    private final ParcelFileDescriptor fd;
+    private final PdfRenderer renderer;
+    private final float[] sizes;
+
+    private AndroidPdfTileRenderer(File pdf) throws IOException {
+        fd = ParcelFileDescriptor.open(pdf, ParcelFileDescriptor.MODE_READ_ONLY);
+        try {
+            renderer = new PdfRenderer(fd);
+        } catch (IOException | RuntimeException e) {
+            fd.close();
+            throw e;
+        }
+        int count = renderer.getPageCount();
+        sizes = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            try (PdfRenderer.Page page = renderer.openPage(i)) {
+                sizes[i * 2] = page.getWidth();
+                sizes[i * 2 + 1] = page.getHeight();
+            }
+        }
+    }
+
+    @Override
+    public int pageCount() {
+        return sizes.length / 2;
+    }
+
+    @Override
+    public float pageWidth(int page) {
+        return sizes[page * 2];
+    }
+
+    @Override
+    public float pageHeight(int page) {
+        return sizes[page * 2 + 1];
+    }
+
+    @Override
+    public Bitmap render(int page, float scale, int left, int top, int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        // PdfRenderer leaves unpainted areas transparent
+        bitmap.eraseColor(Color.WHITE);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        matrix.postTranslate(-left, -top);
+        try (PdfRenderer.Page p = renderer.openPage(page)) {
+            p.render(bitmap, null, matrix, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+        }
+        return bitmap;
+    }
+
+    @Override
+    public void close() throws IOException {
+        renderer.close();
+        fd.close();
+    }
+}
@@ -0,0 +1,27 @@
+package shubham.akshit.tldraw;
+
+import android.os.Trace;
+
+/**
+ * {@link StartupTimeline.Tracer} on {@link Trace}: every startup phase becomes a
+ * section in a Perfetto / systrace capture. Names are cut to the 127 characters
+ * Trace accepts.
+ */
+final class AndroidStartupTracer implements StartupTimeline.Tracer {
+
+    static final AndroidStartupTracer INSTANCE = new AndroidStartupTracer();
+    private static final int MAX_SECTION_NAME = 127;
+
+    private AndroidStartupTracer() {
+    }
+
+    @Override
+    public void begin(String name) {
+        Trace.beginSection(name.length() > MAX_SECTION_NAME ? name.substring(0, MAX_SECTION_NAME) : name);
+    }
+
+    @Override
+    public void end() {
+        Trace.endSection();
+    }
+}
@@ -0,0 +1,399 @@
+package shubham.akshit.tldraw;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed, resumable upload of shared files to the worker's
+ * {@code /api/uploads/sha256/} routes (worker/assetUploads.ts).
+ *
+ * The source is read twice: once through SHA-256 to name it, once in parts to
+ * send it. Content the server already holds is not sent at all. Each part the
+ * server acknowledges is recorded in a small state file under {@code stateDir},
+ * so a later upload of the same content (after a dropped connection or a
+ * process restart) continues with the first missing part. Every request is
+ * retried with exponential backoff and jitter on network errors, 5xx, 408 and 429.
+ *
+ * <pre>
+ * POST {endpoint}{hash}                      → {exists:true} | {exists:false, uploadId, partSize}
+ * PUT  {endpoint}{hash}/parts/{uploadId}/{n} → {partNumber, etag}
+ * POST {endpoint}{hash}/complete/{uploadId}  ← {parts:[{partNumber, etag}]}; 422 if the bytes don't hash to {hash}
+ * </pre>
+ *
+ * A 404 on a part or on completion means the server dropped the session; the
+ * upload then starts over once. Plain Java ({@link HttpURLConnection}) so it
+ * can be exercised on the JVM against a local stand-in.
+ */
+final class AssetUploader {
+
+    static final int MAX_ATTEMPTS = 6;
+    static final long BACKOFF_BASE_MS = 500;
+    static final long BACKOFF_MAX_MS = 30_000;
+
+    interface Source {
+        InputStream open() throws IOException;
+    }
+
+    interface Sleeper {
+        void sleep(long ms) throws InterruptedException;
+    }
+
+    interface Listener {
+        // Called on the upload thread after every acknowledged part, resumed ones included
+        void onProgress(long sentBytes, long totalBytes);
+    }
+
+    static final class Result {
+        final String sha256;
+        final long size;
+        // The server already had this content; nothing was sent
+        final boolean deduplicated;
+        final long bytesSent;
+
+        Result(String sha256, long size, boolean deduplicated, long bytesSent) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.deduplicated = deduplicated;
+            this.bytesSent = bytesSent;
+        }
+    }
+
+    private static final class HttpResult {
+        final int code;
+        final String body;
+
+        HttpResult(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+
+    private final File stateDir;
+    private final Executor executor;
+    private final Sleeper sleeper;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesSkipped = new AtomicLong();
+    private final AtomicLong resumedParts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    AssetUploader(File stateDir, Executor executor, Sleeper sleeper, int connectTimeoutMs, int readTimeoutMs) {
+        this.stateDir = stateDir;
+        this.executor = executor;
+        this.sleeper = sleeper;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    /** Queues an upload on the executor. {@code endpoint} ends with a slash, e.g. {@code https://host/api/uploads/sha256/}. */
+    CompletableFuture<Result> upload(String endpoint, Source source, String mimeType, Listener listener) {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(uploadNow(endpoint, source, mimeType, listener));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.incrementAndGet();
+                future.completeExceptionally(e);
+            } catch (IOException | RuntimeException e) {
+                failures.incrementAndGet();
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /** Blocking form of {@link #upload}; runs on the calling thread. */
+    Result uploadNow(String endpoint, Source source, String mimeType, Listener listener)
+            throws IOException, InterruptedException {
+        long[] counted = new long[1];
+        String hash;
+        try (InputStream in = source.open()) {
+            hash = sha256Hex(in, counted);
+        }
+        long total = counted[0];
+        if (total == 0) throw new IOException("Nothing to upload: empty file");
+        uploads.incrementAndGet();
+
+        File stateFile = new File(stateDir, hash + ".upload");
+        String type = mimeType != null && !mimeType.isEmpty() ? mimeType : "application/octet-stream";
+        // A second round only when the server lost the session part-way
+        for (int round = 0; round < 2; round++) {
+            Properties state = loadState(stateFile);
+            String resumeId = state.getProperty("uploadId");
+            HttpResult begun = call("POST", endpoint + hash, null, 0, type, resumeId, total);
+            if (begun.code / 100 != 2) throw httpError("begin", begun);
+            Map<String, Object> session = jsonObject(begun.body);
+            if (Boolean.TRUE.equals(session.get("exists"))) {
+                stateFile.delete();
+                deduplicated.incrementAndGet();
+                bytesSkipped.addAndGet(total);
+                if (listener != null) listener.onProgress(total, total);
+                return new Result(hash, total, true, 0);
+            }
+            Object id = session.get("uploadId");
+            Object size = session.get("partSize");
+            String uploadId = id instanceof String ? (String) id : null;
+            long partSize = size instanceof Number ? ((Number) size).longValue() : 0;
+            if (uploadId == null || partSize <= 0) throw new IOException("Bad upload session: " + begun.body);
+            if (!uploadId.equals(resumeId) || !String.valueOf(partSize).equals(state.getProperty("partSize"))) {
+                state.clear();
+                state.setProperty("uploadId", uploadId);
+                state.setProperty("partSize", String.valueOf(partSize));
+                saveState(stateFile, state);
+            }
+
+            long sent = sendParts(endpoint + hash + "/parts/" + uploadId + "/", source, total, partSize,
+                    state, stateFile, listener);
+            if (sent < 0) {
+                stateFile.delete();
+                continue;
+            }
+            int parts = partCount(total, partSize);
+            HttpResult done = call("POST", endpoint + hash + "/complete/" + uploadId,
+                    completionBody(state, parts), -1, "application/json", null, -1);
+            if (done.code == HttpURLConnection.HTTP_NOT_FOUND) {
+                stateFile.delete();
+                continue;
+            }
+            stateFile.delete();
+            if (done.code / 100 != 2) throw httpError("complete", done);
+            return new Result(hash, total, false, sent);
+        }
+        throw new IOException("Upload session lost twice for " + hash);
+    }
+
+    // Bytes sent this time, or -1 when the server no longer knows the session
+    private long sendParts(String partsUrl, Source source, long total, long partSize, Properties state,
+                           File stateFile, Listener listener) throws IOException, InterruptedException {
+        int parts = partCount(total, partSize);
+        byte[] buffer = new byte[(int) Math.min(partSize, total)];
+        long sent = 0;
+        long acknowledged = 0;
+        try (InputStream in = source.open()) {
+            for (int n = 1; n <= parts; n++) {
+                int length = (int) Math.min(partSize, total - (n - 1) * partSize);
+                if (state.getProperty("part." + n) != null) {
+                    skipFully(in, length);
+                    resumedParts.incrementAndGet();
+                    bytesSkipped.addAndGet(length);
+                } else {
+                    readFully(in, buffer, length);
+                    HttpResult result = call("PUT", partsUrl + n, buffer, length, "application/octet-stream", null, -1);
+                    if (result.code == HttpURLConnection.HTTP_NOT_FOUND) return -1;
+                    if (result.code / 100 != 2) throw httpError("part " + n, result);
+                    Object etag = jsonObject(result.body).get("etag");
+                    if (!(etag instanceof String)) throw new IOException("Part " + n + " not acknowledged: " + result.body);
+                    state.setProperty("part." + n, (String) etag);
+                    saveState(stateFile, state);
+                    sent += length;
+                    bytesSent.addAndGet(length);
+                }
+                acknowledged += length;
+                if (listener != null) listener.onProgress(acknowledged, total);
+            }
+        }
+        return sent;
+    }
+
+    private static byte[] completionBody(Properties state, int parts) {
+        StringBuilder sb = new StringBuilder("{\"parts\":[");
+        for (int n = 1; n <= parts; n++) {
+            if (n > 1) sb.append(',');
+            sb.append("{\"partNumber\":").append(n).append(",\"etag\":");
+            JsStrings.appendJsonString(sb, state.getProperty("part." + n));
+            sb.append('}');
+        }
+        return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int partCount(long total, long partSize) {
+        return (int) ((total + partSize - 1) / partSize);
+    }
+
+    // length -1: the whole body
+    private HttpResult call(String method, String url, byte[] body, int length, String contentType,
+                            String resumeId, long contentLength) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            IOException failure;
+            try {
+                HttpResult result = send(method, url, body, length < 0 && body != null ? body.length : length,
+                        contentType, resumeId, contentLength);
+                if (!isRetryable(result.code)) return result;
+                failure = httpError(method + " " + url, result);
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (attempt + 1 >= MAX_ATTEMPTS) throw failure;
+            retries.incrementAndGet();
+            sleeper.sleep(backoffMs(attempt));
+        }
+    }
+
+    static boolean isRetryable(int code) {
+        return code >= 500 || code == 408 || code == 429;
+    }
+
+    /** Full jitter over an exponential cap: attempt 0 waits up to {@link #BACKOFF_BASE_MS}. */
+    static long backoffMs(int attempt) {
+        long cap = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempt, 16));
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+    }
+
+    private HttpResult send(String method, String url, byte[] body, int length, String contentType,
+                            String resumeId, long contentLength) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(connectTimeoutMs);
+            connection.setReadTimeout(readTimeoutMs);
+            connection.setUseCaches(false);
+            connection.setRequestMethod(method);
+            connection.setRequestProperty("Content-Type", contentType);
+            if (resumeId != null) connection.setRequestProperty("X-Resume-Upload-Id", resumeId);
+            if (contentLength >= 0) connection.setRequestProperty("X-Content-Length", String.valueOf(contentLength));
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body, 0, length);
+                }
+            } else {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(0);
+                connection.getOutputStream().close();
+            }
+            int code = connection.getResponseCode();
+            InputStream in = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            return new HttpResult(code, in != null ? readUtf8(in) : "");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static IOException httpError(String what, HttpResult result) {
+        String body = result.body.length() > 200 ? result.body.substring(0, 200) : result.body;
+        return new IOException("Upload " + what + " failed: HTTP " + result.code + " " + body);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> jsonObject(String json) throws IOException {
+        try {
+            Object value = ColorRmJson.parse(json);
+            if (value instanceof Map) return (Map<String, Object>) value;
+        } catch (IllegalArgumentException e) {
+            // Fall through: reported below
+        }
+        throw new IOException("Unexpected response: " + json);
+    }
+
+    /** Lower-case hex SHA-256 of everything left in {@code in}; the byte count goes to {@code size[0]}. */
+    static String sha256Hex(InputStream in, long[] size) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            digest.update(buffer, 0, n);
+            total += n;
+        }
+        size[0] = total;
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = in.read(buffer, read, length - read);
+            if (n < 0) throw new EOFException("Source shrank while uploading");
+            read += n;
+        }
+    }
+
+    private static void skipFully(InputStream in, long length) throws IOException {
+        byte[] scratch = null;
+        while (length > 0) {
+            long n = in.skip(length);
+            if (n <= 0) {
+                // Some content streams don't skip; read through instead
+                if (scratch == null) scratch = new byte[8192];
+                n = in.read(scratch, 0, (int) Math.min(scratch.length, length));
+                if (n < 0) throw new EOFException("Source shrank while uploading");
+            }
+            length -= n;
+        }
+    }
+
+    private static Properties loadState(File file) {
+        Properties state = new Properties();
+        if (!file.isFile()) return state;
+        try (InputStream in = new FileInputStream(file)) {
+            state.load(in);
+        } catch (IOException e) {
+            // Unreadable: start the upload over
+            state.clear();
+        }
+        return state;
+    }
+
+    private static void saveState(File file, Properties state) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            state.store(out, null);
+        }
+        if (!tmp.renameTo(file)) throw new IOException("Cannot write " + file);
+    }
+
+    private static String readUtf8(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = body.read(buffer)) > 0) out.write(buffer, 0, n);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Counters for the page's diagnostics. */
+    String statsJson() {
+        return "{\"uploads\":" + uploads.get()
+                + ",\"deduplicated\":" + deduplicated.get()
+                + ",\"bytesSent\":" + bytesSent.get()
+                + ",\"bytesSkipped\":" + bytesSkipped.get()
+                + ",\"resumedParts\":" + resumedParts.get()
+                + ",\"retries\":" + retries.get()
+                + ",\"failures\":" + failures.get() + "}";
+    }
+}
@@ -0,0 +1,180 @@
+package shubham.akshit.tldraw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Standard-alphabet Base64 for the bridge's string transfers.
+ *
+ * Encoding streams straight from an {@link InputStream} into a presized
+ * Latin-1 byte array that becomes the String without a compaction pass, so
+ * reading a shared file no longer buffers the bytes, copies them with
+ * {@code toByteArray()} and then encodes the copy. Decoding writes into a
+ * caller-supplied array, letting chunked uploads reuse one buffer. Accepts the
+ * line breaks and optional padding that {@code android.util.Base64.DEFAULT}
+ * accepts. Plain Java.
+ */
+final class Base64Codec {
+
+    private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 48 * 1024;
+    private static final int WHITESPACE = -2;
+    private static final int INVALID = -1;
+    private static final int[] DECODE = new int[128];
+
+    static {
+        Arrays.fill(DECODE, INVALID);
+        for (int i = 0; i < ALPHABET.length; i++) DECODE[ALPHABET[i]] = i;
+        DECODE[' '] = WHITESPACE;
+        DECODE['\t'] = WHITESPACE;
+        DECODE['\n'] = WHITESPACE;
+        DECODE['\r'] = WHITESPACE;
+    }
+
+    private Base64Codec() {
+    }
+
+    static int encodedLength(long byteCount) {
+        long chars = (byteCount + 2) / 3 * 4;
+        if (chars > Integer.MAX_VALUE) throw new IllegalArgumentException("Too large to encode: " + byteCount);
+        return (int) chars;
+    }
+
+    static String encode(byte[] src, int offset, int length) {
+        byte[] out = new byte[encodedLength(length)];
+        int n = encodeBlock(src, offset, length, out, 0);
+        return new String(out, 0, n, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Encodes the whole stream. {@code sizeHint} (e.g. {@code available()} or a
+     * known file size, or -1) only presizes the output; any length is handled.
+     */
+    static String encode(InputStream in, long sizeHint) throws IOException {
+        byte[] out = new byte[encodedLength(Math.max(sizeHint, 0))];
+        int outLen = 0;
+        // Multiple of 3, so only the final block can need padding; small files get a small buffer
+        int bufferSize = sizeHint > 0 && sizeHint < BUFFER_SIZE ? (int) (sizeHint / 3 + 2) * 3 : BUFFER_SIZE;
+        byte[] buffer = new byte[bufferSize];
+        int filled = 0;
+        int n;
+        while ((n = in.read(buffer, filled, buffer.length - filled)) != -1) {
+            filled += n;
+            int whole = filled - filled % 3;
+            if (whole == 0) continue;
+            out = ensureCapacity(out, outLen + whole / 3 * 4);
+            outLen += encodeBlock(buffer, 0, whole, out, outLen);
+            int rest = filled - whole;
+            if (rest > 0) System.arraycopy(buffer, whole, buffer, 0, rest);
+            filled = rest;
+        }
+        if (filled > 0) {
+            out = ensureCapacity(out, outLen + 4);
+            outLen += encodeBlock(buffer, 0, filled, out, outLen);
+        }
+        return new String(out, 0, outLen, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] ensureCapacity(byte[] out, int needed) {
+        if (needed <= out.length) return out;
+        return Arrays.copyOf(out, Math.max(needed, out.length + (out.length >> 1)));
+    }
+
+    private static int encodeBlock(byte[] src, int offset, int length, byte[] out, int outOffset) {
+        int o = outOffset;
+        int end = offset + length - length % 3;
+        for (int i = offset; i < end; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+            out[o++] = ALPHABET[bits & 0x3f];
+        }
+        int rest = offset + length - end;
+        if (rest == 1) {
+            int bits = (src[end] & 0xff) << 16;
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = '=';
+            out[o++] = '=';
+        } else if (rest == 2) {
+            int bits = (src[end] & 0xff) << 16 | (src[end + 1] & 0xff) << 8;
+            out[o++] = ALPHABET[bits >>> 18];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+            out[o++] = '=';
+        }
+        return o - outOffset;
+    }
+
+    /** Upper bound on the decoded size of {@code charCount} Base64 characters. */
+    static int maxDecodedLength(int charCount) {
+        return (int) ((charCount + 3L) / 4 * 3);
+    }
+
+    static byte[] decode(CharSequence src) {
+        byte[] out = new byte[maxDecodedLength(src.length())];
+        int n = decode(src, out, 0);
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Decodes into {@code dst} starting at {@code offset}, which must have room
+     * for {@link #maxDecodedLength}. Returns the number of bytes written.
+     *
+     * @throws IllegalArgumentException on characters outside the alphabet or a
+     *         truncated final group
+     */
+    static int decode(CharSequence src, byte[] dst, int offset) {
+        int o = offset;
+        int bits = 0;
+        int count = 0;
+        int length = src.length();
+        int i = 0;
+        while (i < length) {
+            if (count == 0 && i + 4 <= length) {
+                // Whole group of alphabet characters: the common case, one branch for all four
+                int a = lookup(src.charAt(i));
+                int b = lookup(src.charAt(i + 1));
+                int c = lookup(src.charAt(i + 2));
+                int d = lookup(src.charAt(i + 3));
+                if ((a | b | c | d) >= 0) {
+                    int group = a << 18 | b << 12 | c << 6 | d;
+                    dst[o++] = (byte) (group >>> 16);
+                    dst[o++] = (byte) (group >>> 8);
+                    dst[o++] = (byte) group;
+                    i += 4;
+                    continue;
+                }
+            }
+            char c = src.charAt(i++);
+            if (c == '=') break;
+            int v = lookup(c);
+            if (v == WHITESPACE) continue;
+            if (v == INVALID) throw new IllegalArgumentException("Bad Base64 character at " + (i - 1));
+            bits = bits << 6 | v;
+            if (++count == 4) {
+                dst[o++] = (byte) (bits >>> 16);
+                dst[o++] = (byte) (bits >>> 8);
+                dst[o++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 1) throw new IllegalArgumentException("Truncated Base64 input");
+        if (count == 2) {
+            dst[o++] = (byte) (bits >>> 4);
+        } else if (count == 3) {
+            dst[o++] = (byte) (bits >>> 10);
+            dst[o++] = (byte) (bits >>> 2);
+        }
+        return o - offset;
+    }
+
+    private static int lookup(char c) {
+        return c < 128 ? DECODE[c] : INVALID;
+    }
+}
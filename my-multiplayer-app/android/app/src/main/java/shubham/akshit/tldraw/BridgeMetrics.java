@@ -0,0 +1,125 @@
+package shubham.akshit.tldraw;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters and latency histograms for the native side of the
+ * bridge: every {@code AndroidNative} call, native jobs, touch dispatch and
+ * script evaluation. Timers and counters are created on first use and never
+ * removed, so the hot path is one map lookup plus lock-free updates.
+ *
+ * <pre>
+ * long t0 = System.nanoTime();
+ * try { ... } finally { metrics.timer("bridge.saveBlob").record(t0, bytesIn, 0); }
+ * </pre>
+ *
+ * {@link #toJson()} reports durations in microseconds; rates are left to the
+ * reader, which diffs two snapshots over {@code uptimeMs}. Plain Java.
+ */
+final class BridgeMetrics {
+
+    static final class Timer {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+
+        /** Records the time since {@code startNanos} (from {@link System#nanoTime()}). */
+        void record(long startNanos) {
+            latency.record(System.nanoTime() - startNanos);
+        }
+
+        void record(long startNanos, long in, long out) {
+            latency.record(System.nanoTime() - startNanos);
+            if (in > 0) bytesIn.add(in);
+            if (out > 0) bytesOut.add(out);
+        }
+
+        void error() {
+            errors.increment();
+        }
+    }
+
+    private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final long startedNanos = System.nanoTime();
+
+    Timer timer(String name) {
+        Timer timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, k -> new Timer());
+    }
+
+    LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    void add(String counter, long delta) {
+        counter(counter).add(delta);
+    }
+
+    /** Sum of all timer samples; lets a periodic dump skip idle intervals. */
+    long totalSamples() {
+        long n = 0;
+        for (Timer timer : timers.values()) n += timer.latency.count();
+        return n;
+    }
+
+    void reset() {
+        for (Timer timer : timers.values()) {
+            timer.latency.reset();
+            timer.errors.reset();
+            timer.bytesIn.reset();
+            timer.bytesOut.reset();
+        }
+        for (LongAdder counter : counters.values()) counter.reset();
+    }
+
+    /**
+     * <pre>
+     * {uptimeMs, timers:{name:{count, errors, bytesIn, bytesOut, meanUs, p50Us, p90Us, p99Us, maxUs}},
+     *  counters:{name:value}}
+     * </pre>
+     */
+    String toJson() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"uptimeMs\":").append((System.nanoTime() - startedNanos) / 1_000_000);
+        sb.append(",\"timers\":{");
+        boolean first = true;
+        // Sorted so successive dumps line up when read side by side
+        for (Map.Entry<String, Timer> e : new TreeMap<>(timers).entrySet()) {
+            Timer t = e.getValue();
+            LatencyHistogram h = t.latency;
+            if (!first) sb.append(',');
+            first = false;
+            appendName(sb, e.getKey());
+            sb.append(":{\"count\":").append(h.count())
+                    .append(",\"errors\":").append(t.errors.sum())
+                    .append(",\"bytesIn\":").append(t.bytesIn.sum())
+                    .append(",\"bytesOut\":").append(t.bytesOut.sum())
+                    .append(",\"meanUs\":").append(Math.round(h.mean() / 1000))
+                    .append(",\"p50Us\":").append(h.percentile(0.50) / 1000)
+                    .append(",\"p90Us\":").append(h.percentile(0.90) / 1000)
+                    .append(",\"p99Us\":").append(h.percentile(0.99) / 1000)
+                    .append(",\"maxUs\":").append(h.max() / 1000)
+                    .append('}');
+        }
+        sb.append("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            appendName(sb, e.getKey());
+            sb.append(':').append(e.getValue().sum());
+        }
+        return sb.append("}}").toString();
+    }
+
+    // Metric names are code constants; quoting is enough
+    private static void appendName(StringBuilder sb, String name) {
+        sb.append('"').append(name.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+    }
+}
@@ -0,0 +1,485 @@
+package shubham.akshit.tldraw;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of a ColorRM v2 {@code history} array (docs/COLORRM_DATA_FORMAT_V2.md),
+ * the reference for public/scripts/modules/ColorRmBinary.js.
+ *
+ * <pre>
+ * "CRB2" u8:version varint:scale varint:elementCount
+ * varint:dictionarySize (varint:utf8Length bytes)*      tools and style strings, first use order
+ * 22 columns, each varint:byteLength bytes:
+ *   masks       varint per element, see the bit constants
+ *   ids         string (or number as text, ID_NUMBER) per element with ID
+ *   tools       dictionary index per element with TOOL
+ *   lastMods    zigzag delta from the previous element's lastMod
+ *   8 string columns, one per STRING_FIELDS entry: dictionary index
+ *   6 number columns, one per NUMBER_FIELDS entry: zigzag(value * 1000)
+ *   boxes       zigzag quantized x, y, w, h
+ *   pointCounts varint per element with PTS
+ *   points      zigzag quantized deltas; the first point of a stroke is relative to the last point of the previous one
+ *   extras      JSON object of every other field, per element with EXTRAS
+ * </pre>
+ *
+ * Geometry (pen points and x/y/w/h boxes) is quantized to {@code 1/scale} px.
+ * Everything else round-trips exactly: a value that does not fit its column
+ * (a lastMod with a fraction, an opacity finer than 1/1000, a non-string color,
+ * a point with more than x and y, a shape's normalized polygon points) stays in
+ * the element's extras JSON instead. Decoded elements are plain maps and lists
+ * as produced by {@link ColorRmJson}. Plain Java.
+ */
+final class ColorRmBinary {
+
+    static final int DEFAULT_SCALE = 100;
+    static final int FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = {'C', 'R', 'B', '2'};
+
+    static final String[] STRING_FIELDS = {
+            "color", "lineCap", "lineJoin", "shapeType", "borderType", "fillColor", "borderColor", "fontFamily"};
+    static final String[] NUMBER_FIELDS = {"size", "opacity", "rotation", "fillOpacity", "borderOpacity", "borderSize"};
+    private static final int NUMBER_SCALE = 1000;
+    private static final String[] BOX_FIELDS = {"x", "y", "w", "h"};
+
+    static final int ID = 1;
+    static final int ID_NUMBER = 1 << 1;
+    static final int TOOL = 1 << 2;
+    static final int LAST_MOD = 1 << 3;
+    static final int HAS_DELETED = 1 << 4;
+    static final int DELETED = 1 << 5;
+    static final int PTS = 1 << 6;
+    static final int BOX = 1 << 7;
+    static final int EXTRAS = 1 << 8;
+    private static final int STRING_BIT = 9;
+    private static final int NUMBER_BIT = STRING_BIT + STRING_FIELDS.length;
+    private static final int MASK_BITS = NUMBER_BIT + NUMBER_FIELDS.length;
+
+    private static final int COLUMN_COUNT = 4 + STRING_FIELDS.length + NUMBER_FIELDS.length + 4;
+    // Column values stay below 2^50 so deltas and their zigzag form are exact in a JS number
+    private static final double MAX_COLUMN_VALUE = 0x1p50;
+
+    private ColorRmBinary() {
+    }
+
+    static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= MAGIC.length + 1
+                && Arrays.equals(Arrays.copyOf(data, MAGIC.length), MAGIC);
+    }
+
+    /** What a geometry value decodes to at the given scale. */
+    static double quantize(double value, int scale) {
+        return Math.round(value * scale) / (double) scale;
+    }
+
+    // --- Encoding ---
+
+    /**
+     * @param history list of element maps, e.g. from {@link ColorRmJson#parse}
+     * @param scale   quantization steps per pixel, at least 1
+     */
+    static byte[] encode(List<?> history, int scale) {
+        if (scale < 1) throw new IllegalArgumentException("scale must be >= 1");
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        ByteSink masks = new ByteSink(history.size() * 2);
+        ByteSink ids = new ByteSink(history.size() * 16);
+        ByteSink tools = new ByteSink(history.size());
+        ByteSink lastMods = new ByteSink(history.size() * 2);
+        ByteSink[] strings = sinks(STRING_FIELDS.length, history.size());
+        ByteSink[] numbers = sinks(NUMBER_FIELDS.length, history.size());
+        ByteSink boxes = new ByteSink(64);
+        ByteSink pointCounts = new ByteSink(history.size());
+        ByteSink points = new ByteSink(history.size() * 64);
+        ByteSink extras = new ByteSink(64);
+
+        long prevLastMod = 0;
+        long cursorX = 0;
+        long cursorY = 0;
+        for (Object o : history) {
+            if (!(o instanceof Map)) throw new IllegalArgumentException("History element is not an object");
+            Map<?, ?> element = (Map<?, ?>) o;
+            Map<String, Object> rest = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : element.entrySet()) rest.put(String.valueOf(e.getKey()), e.getValue());
+            int mask = 0;
+
+            Object id = rest.get("id");
+            if (id instanceof String) {
+                mask |= ID;
+                ids.writeString((String) id);
+                rest.remove("id");
+            } else if (id instanceof Number && isFinite(((Number) id).doubleValue())) {
+                mask |= ID | ID_NUMBER;
+                StringBuilder sb = new StringBuilder();
+                ColorRmJson.appendNumber(sb, ((Number) id).doubleValue());
+                ids.writeString(sb.toString());
+                rest.remove("id");
+            }
+
+            Object tool = rest.get("tool");
+            if (tool instanceof String) {
+                mask |= TOOL;
+                tools.writeVarint(intern(dictionary, (String) tool));
+                rest.remove("tool");
+            }
+
+            Object lastMod = rest.get("lastMod");
+            if (lastMod instanceof Number) {
+                double v = ((Number) lastMod).doubleValue();
+                if (v == Math.rint(v) && Math.abs(v) <= MAX_COLUMN_VALUE) {
+                    mask |= LAST_MOD;
+                    lastMods.writeZigzag((long) v - prevLastMod);
+                    prevLastMod = (long) v;
+                    rest.remove("lastMod");
+                }
+            }
+
+            Object deleted = rest.get("deleted");
+            if (deleted instanceof Boolean) {
+                mask |= HAS_DELETED | ((Boolean) deleted ? DELETED : 0);
+                rest.remove("deleted");
+            }
+
+            // Shapes keep normalized 0..1 polygon points, which the pixel grid would flatten
+            long[] quantizedPoints = "shape".equals(tool) ? null : quantizePoints(rest.get("pts"), scale);
+            if (quantizedPoints != null) {
+                mask |= PTS;
+                int count = quantizedPoints.length / 2;
+                pointCounts.writeVarint(count);
+                for (int i = 0; i < count; i++) {
+                    long x = quantizedPoints[2 * i];
+                    long y = quantizedPoints[2 * i + 1];
+                    points.writeZigzag(x - cursorX);
+                    points.writeZigzag(y - cursorY);
+                    cursorX = x;
+                    cursorY = y;
+                }
+                rest.remove("pts");
+            }
+
+            long[] box = quantizeBox(rest, scale);
+            if (box != null) {
+                mask |= BOX;
+                for (long v : box) boxes.writeZigzag(v);
+                for (String f : BOX_FIELDS) rest.remove(f);
+            }
+
+            for (int i = 0; i < STRING_FIELDS.length; i++) {
+                Object v = rest.get(STRING_FIELDS[i]);
+                if (v instanceof String) {
+                    mask |= 1 << (STRING_BIT + i);
+                    strings[i].writeVarint(intern(dictionary, (String) v));
+                    rest.remove(STRING_FIELDS[i]);
+                }
+            }
+
+            for (int i = 0; i < NUMBER_FIELDS.length; i++) {
+                Object v = rest.get(NUMBER_FIELDS[i]);
+                if (!(v instanceof Number)) continue;
+                double d = ((Number) v).doubleValue();
+                long milli = Math.round(d * NUMBER_SCALE);
+                if (isFinite(d) && Math.abs(milli) <= MAX_COLUMN_VALUE && milli / (double) NUMBER_SCALE == d) {
+                    mask |= 1 << (NUMBER_BIT + i);
+                    numbers[i].writeZigzag(milli);
+                    rest.remove(NUMBER_FIELDS[i]);
+                }
+            }
+
+            if (!rest.isEmpty()) {
+                mask |= EXTRAS;
+                extras.writeString(ColorRmJson.write(rest));
+            }
+            masks.writeVarint(mask);
+        }
+
+        ByteSink out = new ByteSink(64 + masks.size + ids.size + points.size);
+        out.writeBytes(MAGIC, MAGIC.length);
+        out.writeByte(FORMAT_VERSION);
+        out.writeVarint(scale);
+        out.writeVarint(history.size());
+        out.writeVarint(dictionary.size());
+        for (String s : dictionary.keySet()) out.writeString(s);
+        out.writeColumn(masks);
+        out.writeColumn(ids);
+        out.writeColumn(tools);
+        out.writeColumn(lastMods);
+        for (ByteSink s : strings) out.writeColumn(s);
+        for (ByteSink s : numbers) out.writeColumn(s);
+        out.writeColumn(boxes);
+        out.writeColumn(pointCounts);
+        out.writeColumn(points);
+        out.writeColumn(extras);
+        return out.toByteArray();
+    }
+
+    private static ByteSink[] sinks(int n, int elements) {
+        ByteSink[] sinks = new ByteSink[n];
+        for (int i = 0; i < n; i++) sinks[i] = new ByteSink(Math.max(16, elements / 2));
+        return sinks;
+    }
+
+    private static int intern(Map<String, Integer> dictionary, String s) {
+        Integer index = dictionary.get(s);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.put(s, index);
+        }
+        return index;
+    }
+
+    private static boolean isFinite(double d) {
+        return !Double.isNaN(d) && !Double.isInfinite(d);
+    }
+
+    private static long quantizeOne(Object v, int scale) {
+        if (!(v instanceof Number)) return Long.MIN_VALUE;
+        double d = ((Number) v).doubleValue();
+        if (!isFinite(d)) return Long.MIN_VALUE;
+        long q = Math.round(d * scale);
+        return Math.abs(q) <= MAX_COLUMN_VALUE ? q : Long.MIN_VALUE;
+    }
+
+    /** x0, y0, x1, y1, ... or null when the value is not a list of plain {x, y} points. */
+    private static long[] quantizePoints(Object value, int scale) {
+        if (!(value instanceof List)) return null;
+        List<?> list = (List<?>) value;
+        long[] out = new long[list.size() * 2];
+        for (int i = 0; i < list.size(); i++) {
+            Object p = list.get(i);
+            if (!(p instanceof Map) || ((Map<?, ?>) p).size() != 2) return null;
+            long x = quantizeOne(((Map<?, ?>) p).get("x"), scale);
+            long y = quantizeOne(((Map<?, ?>) p).get("y"), scale);
+            if (x == Long.MIN_VALUE || y == Long.MIN_VALUE) return null;
+            out[2 * i] = x;
+            out[2 * i + 1] = y;
+        }
+        return out;
+    }
+
+    private static long[] quantizeBox(Map<String, Object> element, int scale) {
+        long[] box = new long[BOX_FIELDS.length];
+        for (int i = 0; i < box.length; i++) {
+            box[i] = quantizeOne(element.get(BOX_FIELDS[i]), scale);
+            if (box[i] == Long.MIN_VALUE) return null;
+        }
+        return box;
+    }
+
+    // --- Decoding ---
+
+    /** @throws IllegalArgumentException if the data is not a valid encoding */
+    static List<Object> decode(byte[] data) {
+        if (!isEncoded(data)) throw new IllegalArgumentException("Not a ColorRM binary history");
+        ByteSource in = new ByteSource(data, MAGIC.length, data.length);
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) throw new IllegalArgumentException("Unsupported version " + version);
+        long scaleValue = in.readVarint();
+        if (scaleValue < 1 || scaleValue > Integer.MAX_VALUE) throw new IllegalArgumentException("Bad scale");
+        double scale = scaleValue;
+        int count = in.readCount();
+        int dictionarySize = in.readCount();
+        String[] dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) dictionary[i] = in.readString();
+
+        ByteSource[] columns = new ByteSource[COLUMN_COUNT];
+        for (int i = 0; i < COLUMN_COUNT; i++) columns[i] = in.readColumn();
+        int c = 0;
+        ByteSource masks = columns[c++];
+        ByteSource ids = columns[c++];
+        ByteSource tools = columns[c++];
+        ByteSource lastMods = columns[c++];
+        ByteSource[] strings = Arrays.copyOfRange(columns, c, c += STRING_FIELDS.length);
+        ByteSource[] numbers = Arrays.copyOfRange(columns, c, c += NUMBER_FIELDS.length);
+        ByteSource boxes = columns[c++];
+        ByteSource pointCounts = columns[c++];
+        ByteSource points = columns[c++];
+        ByteSource extras = columns[c];
+
+        // Every element has at least a one-byte mask, so this bounds bogus counts
+        if (count > masks.remaining()) throw new IllegalArgumentException("Element count exceeds data");
+        List<Object> history = new ArrayList<>(count);
+        long prevLastMod = 0;
+        long cursorX = 0;
+        long cursorY = 0;
+        for (int n = 0; n < count; n++) {
+            long mask = masks.readVarint();
+            if ((mask >>> MASK_BITS) != 0) throw new IllegalArgumentException("Unknown element flags");
+            Map<String, Object> element = new LinkedHashMap<>();
+            if ((mask & ID) != 0) {
+                String id = ids.readString();
+                if ((mask & ID_NUMBER) != 0) {
+                    try {
+                        element.put("id", Double.valueOf(id));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Bad numeric id");
+                    }
+                } else {
+                    element.put("id", id);
+                }
+            }
+            if ((mask & TOOL) != 0) element.put("tool", lookup(dictionary, tools.readVarint()));
+            if ((mask & LAST_MOD) != 0) {
+                prevLastMod += lastMods.readZigzag();
+                element.put("lastMod", (double) prevLastMod);
+            }
+            if ((mask & PTS) != 0) {
+                long pointValue = pointCounts.readVarint();
+                // Two varints of at least a byte each per point
+                if (pointValue < 0 || pointValue > points.remaining() / 2) {
+                    throw new IllegalArgumentException("Point count exceeds data");
+                }
+                int pointCount = (int) pointValue;
+                List<Object> pts = new ArrayList<>(pointCount);
+                for (int i = 0; i < pointCount; i++) {
+                    cursorX += points.readZigzag();
+                    cursorY += points.readZigzag();
+                    Map<String, Object> p = new LinkedHashMap<>(4);
+                    p.put("x", cursorX / scale);
+                    p.put("y", cursorY / scale);
+                    pts.add(p);
+                }
+                element.put("pts", pts);
+            }
+            if ((mask & BOX) != 0) {
+                for (String f : BOX_FIELDS) element.put(f, boxes.readZigzag() / scale);
+            }
+            for (int i = 0; i < STRING_FIELDS.length; i++) {
+                if ((mask & (1L << (STRING_BIT + i))) != 0) {
+                    element.put(STRING_FIELDS[i], lookup(dictionary, strings[i].readVarint()));
+                }
+            }
+            for (int i = 0; i < NUMBER_FIELDS.length; i++) {
+                if ((mask & (1L << (NUMBER_BIT + i))) != 0) {
+                    element.put(NUMBER_FIELDS[i], numbers[i].readZigzag() / (double) NUMBER_SCALE);
+                }
+            }
+            if ((mask & HAS_DELETED) != 0) element.put("deleted", (mask & DELETED) != 0);
+            if ((mask & EXTRAS) != 0) {
+                Object rest = ColorRmJson.parse(extras.readString());
+                if (!(rest instanceof Map)) throw new IllegalArgumentException("Extras are not an object");
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) rest).entrySet()) element.put((String) e.getKey(), e.getValue());
+            }
+            history.add(element);
+        }
+        return history;
+    }
+
+    private static String lookup(String[] dictionary, long index) {
+        if (index < 0 || index >= dictionary.length) throw new IllegalArgumentException("Bad dictionary index");
+        return dictionary[(int) index];
+    }
+
+    /** Growable byte buffer with LEB128 varints. */
+    private static final class ByteSink {
+        byte[] buf;
+        int size;
+
+        ByteSink(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes, int length) {
+            ensure(length);
+            System.arraycopy(bytes, 0, buf, size, length);
+            size += length;
+        }
+
+        void writeVarint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void writeZigzag(long v) {
+            writeVarint((v << 1) ^ (v >> 63));
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes, bytes.length);
+        }
+
+        void writeColumn(ByteSink column) {
+            writeVarint(column.size);
+            writeBytes(column.buf, column.size);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+
+    /** Bounds-checked reader over one slice of the input. */
+    private static final class ByteSource {
+        final byte[] buf;
+        int pos;
+        final int end;
+
+        ByteSource(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        int remaining() {
+            return end - pos;
+        }
+
+        int readByte() {
+            if (pos >= end) throw new IllegalArgumentException("Truncated data");
+            return buf[pos++] & 0xFF;
+        }
+
+        long readVarint() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+
+        long readZigzag() {
+            long v = readVarint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        /** A length or count, which can never exceed what is left to read. */
+        int readCount() {
+            long v = readVarint();
+            if (v < 0 || v > remaining()) throw new IllegalArgumentException("Count exceeds data");
+            return (int) v;
+        }
+
+        String readString() {
+            int length = readCount();
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        ByteSource readColumn() {
+            int length = readCount();
+            ByteSource column = new ByteSource(buf, pos, pos + length);
+            pos += length;
+            return column;
+        }
+    }
+}
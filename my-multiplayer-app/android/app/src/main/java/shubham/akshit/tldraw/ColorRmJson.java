@@ -0,0 +1,231 @@
+package shubham.akshit.tldraw;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer for ColorRM history data, on plain
+ * collections: objects become {@code LinkedHashMap<String, Object>} (key order
+ * kept), arrays {@code ArrayList<Object>}, numbers {@code Double}. Numbers are
+ * written the way {@code JSON.stringify} parses back to the same double. Used by
+ * {@link ColorRmBinary} and as its JSON baseline. Plain Java.
+ */
+final class ColorRmJson {
+
+    private final String src;
+    private int pos;
+
+    private ColorRmJson(String src) {
+        this.src = src;
+    }
+
+    /** @throws IllegalArgumentException on malformed input */
+    static Object parse(String json) {
+        ColorRmJson p = new ColorRmJson(json);
+        p.skipWhitespace();
+        Object value = p.readValue();
+        p.skipWhitespace();
+        if (p.pos != json.length()) throw p.error("Trailing characters");
+        return value;
+    }
+
+    static String write(Object value) {
+        StringBuilder sb = new StringBuilder();
+        write(sb, value);
+        return sb.toString();
+    }
+
+    static void write(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String) {
+            JsStrings.appendJsonString(sb, (String) value);
+        } else if (value instanceof Number) {
+            appendNumber(sb, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            sb.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                JsStrings.appendJsonString(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                write(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof List) {
+            sb.append('[');
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) sb.append(',');
+                write(sb, list.get(i));
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Not a JSON value: " + value.getClass().getName());
+        }
+    }
+
+    static void appendNumber(StringBuilder sb, double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            // Same as JSON.stringify
+            sb.append("null");
+        } else if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+            // Integral values without the ".0" Double.toString would add
+            sb.append((long) d);
+        } else {
+            sb.append(d);
+        }
+    }
+
+    private Object readValue() {
+        if (pos >= src.length()) throw error("Unexpected end");
+        char c = src.charAt(pos);
+        switch (c) {
+            case '{': return readObject();
+            case '[': return readArray();
+            case '"': return readString();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return readNumber();
+                throw error("Unexpected character");
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') throw error("Expected key");
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            map.put(key, readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == '}') return map;
+            if (c != ',') throw error("Expected , or }");
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        while (true) {
+            skipWhitespace();
+            list.add(readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == ']') return list;
+            if (c != ',') throw error("Expected , or ]");
+        }
+    }
+
+    private String readString() {
+        pos++;
+        int start = pos;
+        // Fast path: no escapes
+        while (pos < src.length()) {
+            char c = src.charAt(pos);
+            if (c == '"') return src.substring(start, pos++);
+            if (c == '\\') break;
+            pos++;
+        }
+        StringBuilder sb = new StringBuilder(src.substring(start, pos));
+        while (true) {
+            char c = next();
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = next();
+            switch (e) {
+                case '"': case '\\': case '/': sb.append(e); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > src.length()) throw error("Bad \\u escape");
+                    try {
+                        sb.append((char) Integer.parseInt(src.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Bad \\u escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    throw error("Bad escape");
+            }
+        }
+    }
+
+    private Double readNumber() {
+        int start = pos;
+        if (peek() == '-') pos++;
+        while (pos < src.length()) {
+            char c = src.charAt(pos);
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        try {
+            return Double.valueOf(src.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("Bad number");
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!src.startsWith(word, pos)) throw error("Unexpected literal");
+        pos += word.length();
+        return value;
+    }
+
+    private void skipWhitespace() {
+        while (pos < src.length()) {
+            char c = src.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            pos++;
+        }
+    }
+
+    private char peek() {
+        return pos < src.length() ? src.charAt(pos) : '\0';
+    }
+
+    private char next() {
+        if (pos >= src.length()) throw error("Unexpected end");
+        return src.charAt(pos++);
+    }
+
+    private void expect(char c) {
+        if (next() != c) throw error("Expected " + c);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + pos);
+    }
+}
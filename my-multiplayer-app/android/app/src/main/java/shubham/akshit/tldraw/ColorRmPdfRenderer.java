@@ -0,0 +1,405 @@
+package shubham.akshit.tldraw;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws one ColorRM page (docs/COLORRM_DATA_FORMAT_V2.md) as vector PDF content
+ * on an A4 {@link PdfPage}. The layout and header/footer placement match the
+ * page's jsPDF export; elements are drawn the way ColorRmRenderer.js draws them
+ * on canvas, including real transparency for highlighters and opacities.
+ *
+ * <pre>
+ * spec: {source:[x, y, w, h], header?:{text, align, size, color}, footer?:{...},
+ *        grid?:{bgStyle, customBgColor, gridStyle, gridColor, gridOpacity, gridSize}, lossless?}
+ * </pre>
+ *
+ * {@code source} is the canvas area scaled to fit the printable area; a
+ * background image fills it. Plain Java.
+ */
+final class ColorRmPdfRenderer {
+
+    /** Turns image bytes the PDF cannot embed directly (PNG, WebP, CMYK JPEG) into pixels. */
+    interface ImageDecoder {
+        PdfPage.Image decode(byte[] data, boolean lossless) throws IOException;
+    }
+
+    static final double MM = 72 / 25.4;
+    static final double PAGE_WIDTH = 210 * MM;
+    static final double PAGE_HEIGHT = 297 * MM;
+    private static final double MARGIN = 10 * MM;
+    private static final double TAG_MARGIN = 15 * MM;
+    // Helvetica ascender and descender, in em
+    private static final double ASCENT = 0.718;
+    private static final double DESCENT = 0.207;
+    private static final int NO_COLOR = 0;
+
+    private final ImageDecoder decoder;
+
+    ColorRmPdfRenderer(ImageDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    /**
+     * @param history    elements in z order, or null
+     * @param background image bytes for the source area, or null
+     */
+    PdfPage render(Map<?, ?> spec, List<?> history, byte[] background) throws IOException {
+        PdfPage page = new PdfPage(PAGE_WIDTH, PAGE_HEIGHT);
+        Map<?, ?> header = map(spec.get("header"));
+        Map<?, ?> footer = map(spec.get("footer"));
+        List<?> source = spec.get("source") instanceof List ? (List<?>) spec.get("source") : null;
+        double sx = source != null && source.size() == 4 ? num(source.get(0), 0) : 0;
+        double sy = source != null && source.size() == 4 ? num(source.get(1), 0) : 0;
+        double sw = source != null && source.size() == 4 ? num(source.get(2), 0) : 0;
+        double sh = source != null && source.size() == 4 ? num(source.get(3), 0) : 0;
+        if (!(sw > 0 && sh > 0)) throw new IllegalArgumentException("Page has no source area");
+
+        double top = header != null ? TAG_MARGIN : MARGIN;
+        double bottom = footer != null ? TAG_MARGIN : MARGIN;
+        double printableW = PAGE_WIDTH - 2 * MARGIN;
+        double printableH = PAGE_HEIGHT - top - bottom;
+        double scale = Math.min(printableW / sw, printableH / sh);
+        double w = sw * scale;
+        double h = sh * scale;
+        double x = MARGIN + (printableW - w) / 2;
+        double y = top + (printableH - h) / 2;
+
+        // Top-down coordinates from here on, as on the canvas
+        page.transform(1, 0, 0, -1, 0, PAGE_HEIGHT);
+
+        Map<?, ?> grid = map(spec.get("grid"));
+        if (grid != null) drawGrid(page, grid, x, y, w, h);
+
+        page.save();
+        page.rect(x, y, w, h).clip();
+        page.transform(scale, 0, 0, scale, x - sx * scale, y - sy * scale);
+        if (background != null) page.image(image(background, Boolean.TRUE.equals(spec.get("lossless"))), sx, sy, sw, sh);
+        if (history != null) {
+            for (Object element : history) drawElement(page, map(element), 1);
+        }
+        page.restore();
+
+        if (header != null) drawTag(page, header, TAG_MARGIN - 5 * MM, true);
+        if (footer != null) drawTag(page, footer, PAGE_HEIGHT - TAG_MARGIN + 5 * MM, false);
+        return page.finish();
+    }
+
+    PdfPage.Image image(byte[] data, boolean lossless) throws IOException {
+        PdfPage.Image image = PdfPage.Image.jpeg(data);
+        if (image != null) return image;
+        if (decoder == null) throw new IOException("Unsupported image format");
+        return decoder.decode(data, lossless);
+    }
+
+    // --- Page furniture ---
+
+    // jsPDF places the header by its bottom edge and the footer by its top edge
+    private static void drawTag(PdfPage page, Map<?, ?> tag, double edge, boolean above) {
+        String text = tag.get("text") instanceof String ? (String) tag.get("text") : "";
+        if (text.isEmpty()) return;
+        double size = num(tag.get("size"), 10);
+        double width = PdfPage.textWidth(text, size);
+        Object align = tag.get("align");
+        double x = "right".equals(align) ? PAGE_WIDTH - MARGIN - width
+                : "left".equals(align) ? MARGIN : (PAGE_WIDTH - width) / 2;
+        double baseline = above ? edge - DESCENT * size : edge + ASCENT * size;
+        page.save().fillColor(color(tag.get("color"), 0xFF000000)).text(text, size, x, baseline, true).restore();
+    }
+
+    // Same look as ColorRmExport._renderVectorBackgroundToPDF
+    private static void drawGrid(PdfPage page, Map<?, ?> grid, double x, double y, double w, double h) {
+        Object bgStyle = grid.get("bgStyle");
+        int bg = "dark".equals(bgStyle) ? 0x1a1a2e : "light".equals(bgStyle) ? 0xf8fafc
+                : color(grid.get("customBgColor"), 0xFF1a1a2e) & 0xFFFFFF;
+        page.save().fillColor(bg).rect(x, y, w, h).fill();
+        Object style = grid.get("gridStyle");
+        boolean lines = "subtle".equals(style) || "lines".equals(style);
+        if (lines || "dots".equals(style)) {
+            double opacity = num(grid.get("gridOpacity"), 0);
+            int lineColor = blend(bg, color(grid.get("gridColor"), 0xFFFFFFFF), opacity > 0 ? opacity : 0.05);
+            if (lines) {
+                double step = num(grid.get("gridSize"), 100) / 100 * w * 0.1;
+                if (step > 0.5) {
+                    page.strokeColor(lineColor).lineWidth(0.1 * MM);
+                    for (double gx = x; gx <= x + w; gx += step) page.moveTo(gx, y).lineTo(gx, y + h);
+                    for (double gy = y; gy <= y + h; gy += step) page.moveTo(x, gy).lineTo(x + w, gy);
+                    page.stroke();
+                }
+            } else {
+                double step = 0.05 * w;
+                if (step > 0.5) {
+                    page.fillColor(lineColor);
+                    for (double gx = x + step; gx < x + w; gx += step) {
+                        for (double gy = y + step; gy < y + h; gy += step) page.ellipse(gx, gy, 0.3 * MM, 0.3 * MM);
+                    }
+                    page.fill();
+                }
+            }
+        }
+        page.restore();
+    }
+
+    // --- Elements ---
+
+    private void drawElement(PdfPage page, Map<?, ?> e, double alpha) throws IOException {
+        if (e == null || Boolean.TRUE.equals(e.get("deleted"))) return;
+        Object tool = e.get("tool");
+        double opacity = num(e.get("opacity"), 1);
+        if (opacity < 1) alpha *= Math.max(0, opacity);
+        page.save();
+        double rotation = num(e.get("rotation"), 0);
+        if (rotation != 0 && !"pen".equals(tool) && !"highlighter".equals(tool)) {
+            double cx = num(e.get("x"), 0) + num(e.get("w"), 0) / 2;
+            double cy = num(e.get("y"), 0) + num(e.get("h"), 0) / 2;
+            double cos = Math.cos(rotation);
+            double sin = Math.sin(rotation);
+            page.transform(cos, sin, -sin, cos, cx - cos * cx + sin * cy, cy - sin * cx - cos * cy);
+        }
+        if ("group".equals(tool)) {
+            if (e.get("children") instanceof List) {
+                for (Object child : (List<?>) e.get("children")) drawElement(page, map(child), alpha);
+            }
+        } else if ("image".equals(tool)) {
+            drawImage(page, e, alpha);
+        } else if ("text".equals(tool)) {
+            drawText(page, e, alpha);
+        } else if ("shape".equals(tool)) {
+            drawShape(page, e, alpha);
+        } else if ("highlighter".equals(tool)) {
+            // Highlighters without their own opacity are drawn at 40%
+            drawStroke(page, e, e.get("opacity") instanceof Number ? alpha : alpha * 0.4, 20, 0xFFFFFF00);
+        } else if (!"eraser".equals(tool)) {
+            // Erasing needs compositing a PDF page cannot do; the page's raster export keeps it
+            drawStroke(page, e, alpha, 2, 0xFF000000);
+        }
+        page.restore();
+    }
+
+    private static void drawStroke(PdfPage page, Map<?, ?> e, double alpha, double defaultSize, int defaultColor) {
+        if (!(e.get("pts") instanceof List) || ((List<?>) e.get("pts")).size() < 2) return;
+        List<?> pts = (List<?>) e.get("pts");
+        int color = color(e.get("color"), defaultColor);
+        if (!applyStroke(page, color, alpha)) return;
+        page.lineWidth(num(e.get("size"), defaultSize))
+                .lineCap(cap(e.get("lineCap")))
+                .lineJoin(join(e.get("lineJoin")));
+        boolean first = true;
+        for (Object o : pts) {
+            Map<?, ?> p = map(o);
+            if (p == null) continue;
+            double px = num(p.get("x"), Double.NaN);
+            double py = num(p.get("y"), Double.NaN);
+            if (Double.isNaN(px) || Double.isNaN(py)) continue;
+            if (first) {
+                page.moveTo(px, py);
+                first = false;
+            } else {
+                page.lineTo(px, py);
+            }
+        }
+        page.stroke();
+    }
+
+    private static void drawText(PdfPage page, Map<?, ?> e, double alpha) {
+        if (!(e.get("text") instanceof String)) return;
+        int color = color(e.get("color"), 0xFF000000);
+        double a = alpha * (color >>> 24) / 255.0;
+        if (a <= 0) return;
+        if (a < 1) page.alpha(a, a);
+        double size = num(e.get("size"), 16);
+        // Canvas draws with textBaseline 'top'
+        page.fillColor(color).text((String) e.get("text"), size, num(e.get("x"), 0), num(e.get("y"), 0) + 0.8 * size, true);
+    }
+
+    private void drawImage(PdfPage page, Map<?, ?> e, double alpha) {
+        Object src = e.get("src");
+        if (!(src instanceof String) || !((String) src).startsWith("data:")) return;
+        String url = (String) src;
+        int comma = url.indexOf(',');
+        if (comma < 0 || !url.substring(0, comma).endsWith(";base64")) return;
+        PdfPage.Image image;
+        try {
+            image = image(Base64Codec.decode(url.substring(comma + 1)), false);
+        } catch (IOException | IllegalArgumentException ex) {
+            // Same as an image that fails to load on the canvas
+            return;
+        }
+        if (alpha < 1) page.alpha(alpha, alpha);
+        page.image(image, num(e.get("x"), 0), num(e.get("y"), 0), num(e.get("w"), 100), num(e.get("h"), 100));
+    }
+
+    // Mirrors the shape branch of ColorRmRenderer.renderObject
+    private static void drawShape(PdfPage page, Map<?, ?> e, double alpha) {
+        double x = num(e.get("x"), 0);
+        double y = num(e.get("y"), 0);
+        double w = num(e.get("w"), 100);
+        double h = num(e.get("h"), 100);
+        double cx = x + w / 2;
+        double cy = y + h / 2;
+        double rx = Math.abs(w / 2);
+        double ry = Math.abs(h / 2);
+        Object type = e.get("shapeType");
+
+        if ("rectangle".equals(type)) {
+            page.rect(x, y, w, h);
+        } else if ("circle".equals(type) || "ellipse".equals(type)) {
+            page.ellipse(cx, cy, rx, ry);
+        } else if ("line".equals(type)) {
+            page.moveTo(x, y).lineTo(x + w, y + h);
+        } else if ("arrow".equals(type)) {
+            double head = 15;
+            double angle = Math.atan2(h, w);
+            page.moveTo(x, y).lineTo(x + w, y + h)
+                    .lineTo(x + w - head * Math.cos(angle - 0.5), y + h - head * Math.sin(angle - 0.5))
+                    .moveTo(x + w, y + h)
+                    .lineTo(x + w - head * Math.cos(angle + 0.5), y + h - head * Math.sin(angle + 0.5));
+        } else if ("triangle".equals(type)) {
+            page.moveTo(cx, y).lineTo(x + w, y + h).lineTo(x, y + h).closePath();
+        } else if ("diamond".equals(type)) {
+            page.moveTo(cx, y).lineTo(x + w, cy).lineTo(cx, y + h).lineTo(x, cy).closePath();
+        } else if ("star".equals(type)) {
+            double outer = Math.min(rx, ry);
+            double angle = -Math.PI / 2;
+            page.moveTo(cx + outer * Math.cos(angle), cy + outer * Math.sin(angle));
+            for (int i = 0; i < 5; i++) {
+                angle += Math.PI / 5;
+                page.lineTo(cx + outer * 0.5 * Math.cos(angle), cy + outer * 0.5 * Math.sin(angle));
+                angle += Math.PI / 5;
+                page.lineTo(cx + outer * Math.cos(angle), cy + outer * Math.sin(angle));
+            }
+            page.closePath();
+        } else if ("pentagon".equals(type) || "hexagon".equals(type) || "octagon".equals(type)) {
+            int sides = "pentagon".equals(type) ? 5 : "hexagon".equals(type) ? 6 : 8;
+            double r = Math.min(rx, ry);
+            for (int i = 0; i < sides; i++) {
+                double angle = -Math.PI / 2 + 2 * Math.PI * i / sides;
+                if (i == 0) {
+                    page.moveTo(cx + r * Math.cos(angle), cy + r * Math.sin(angle));
+                } else {
+                    page.lineTo(cx + r * Math.cos(angle), cy + r * Math.sin(angle));
+                }
+            }
+            page.closePath();
+        } else if ("polygon".equals(type) && e.get("pts") instanceof List && ((List<?>) e.get("pts")).size() >= 3) {
+            boolean first = true;
+            for (Object o : (List<?>) e.get("pts")) {
+                Map<?, ?> p = map(o);
+                if (p == null) continue;
+                double px = x + num(p.get("x"), 0) * w;
+                double py = y + num(p.get("y"), 0) * h;
+                if (first) {
+                    page.moveTo(px, py);
+                    first = false;
+                } else {
+                    page.lineTo(px, py);
+                }
+            }
+            page.closePath();
+        } else {
+            return;
+        }
+
+        // The app writes border/fill/width; imported v2 data may use the documented names
+        Object fillValue = e.containsKey("fill") ? e.get("fill") : e.get("fillColor");
+        int fill = fillValue == null ? NO_COLOR : color(fillValue, 0xFF000000);
+        int border = color(e.containsKey("border") ? e.get("border") : e.get("borderColor"), 0xFF000000);
+        double lineWidth = num(e.containsKey("width") ? e.get("width") : e.get("borderSize"), 2);
+        double fillAlpha = alpha * num(e.get("fillOpacity"), 1) * (fill >>> 24) / 255.0;
+        double strokeAlpha = alpha * num(e.get("borderOpacity"), 1) * (border >>> 24) / 255.0;
+        boolean filled = fillAlpha > 0 && !"line".equals(type) && !"arrow".equals(type);
+        boolean stroked = strokeAlpha > 0 && lineWidth > 0;
+        if (!filled && !stroked) {
+            page.endPath();
+            return;
+        }
+        if (fillAlpha < 1 || strokeAlpha < 1) page.alpha(Math.min(1, strokeAlpha), Math.min(1, fillAlpha));
+        if (filled) page.fillColor(fill);
+        if (stroked) {
+            page.strokeColor(border).lineWidth(lineWidth);
+            Object borderType = e.get("borderType");
+            if ("dashed".equals(borderType)) page.dash(lineWidth * 4, lineWidth * 2);
+            else if ("dotted".equals(borderType)) page.dash(lineWidth, lineWidth * 2);
+        }
+        if (filled && stroked) page.fillAndStroke();
+        else if (filled) page.fill();
+        else page.stroke();
+    }
+
+    private static boolean applyStroke(PdfPage page, int color, double alpha) {
+        double a = alpha * (color >>> 24) / 255.0;
+        if (a <= 0) return false;
+        if (a < 1) page.alpha(a, a);
+        page.strokeColor(color);
+        return true;
+    }
+
+    // --- Values ---
+
+    private static Map<?, ?> map(Object o) {
+        return o instanceof Map ? (Map<?, ?>) o : null;
+    }
+
+    private static double num(Object o, double fallback) {
+        if (!(o instanceof Number)) return fallback;
+        double d = ((Number) o).doubleValue();
+        return Double.isNaN(d) || Double.isInfinite(d) ? fallback : d;
+    }
+
+    private static int cap(Object v) {
+        return "butt".equals(v) ? 0 : "square".equals(v) ? 2 : 1;
+    }
+
+    private static int join(Object v) {
+        return "miter".equals(v) ? 0 : "bevel".equals(v) ? 2 : 1;
+    }
+
+    private static int blend(int under, int over, double opacity) {
+        int out = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            double c = ((under >> shift) & 0xFF) * (1 - opacity) + ((over >> shift) & 0xFF) * opacity;
+            out |= (int) Math.round(c) << shift;
+        }
+        return out;
+    }
+
+    /**
+     * ARGB for the CSS colors the app writes: #rgb, #rrggbb, #rrggbbaa, rgb(), rgba()
+     * and "transparent". Anything else is {@code fallback}.
+     */
+    static int color(Object value, int fallback) {
+        if (!(value instanceof String)) return fallback;
+        String s = ((String) value).trim();
+        try {
+            if (s.startsWith("#")) {
+                String hex = s.substring(1);
+                if (hex.length() == 3) {
+                    int v = Integer.parseInt(hex, 16);
+                    return 0xFF000000 | ((v >> 8) & 0xF) * 0x110000 | ((v >> 4) & 0xF) * 0x1100 | (v & 0xF) * 0x11;
+                }
+                if (hex.length() == 6) return 0xFF000000 | Integer.parseInt(hex, 16);
+                if (hex.length() == 8) {
+                    long v = Long.parseLong(hex, 16);
+                    return (int) ((v & 0xFF) << 24 | v >>> 8);
+                }
+                return fallback;
+            }
+            if (s.equalsIgnoreCase("transparent")) return 0;
+            if (s.startsWith("rgb") && s.endsWith(")") && s.indexOf('(') > 0) {
+                String[] parts = s.substring(s.indexOf('(') + 1, s.length() - 1).split(",");
+                if (parts.length < 3) return fallback;
+                int rgb = 0;
+                for (int i = 0; i < 3; i++) {
+                    int c = (int) Math.round(Double.parseDouble(parts[i].trim()));
+                    rgb = rgb << 8 | Math.max(0, Math.min(255, c));
+                }
+                double a = parts.length > 3 ? Double.parseDouble(parts[3].trim()) : 1;
+                return (int) Math.round(Math.max(0, Math.min(1, a)) * 255) << 24 | rgb;
+            }
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,61 @@
+package shubham.akshit.tldraw;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.webkit.MimeTypeMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * {@link ShareInbox.Source} over the app's ContentResolver: display name and
+ * size from a single {@link OpenableColumns} query, MIME type from the provider
+ * or, failing that, the file extension.
+ */
+class ContentShareSource implements ShareInbox.Source {
+
+    private static final String[] COLUMNS = {OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+
+    private final ContentResolver resolver;
+
+    ContentShareSource(ContentResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    @Override
+    public ShareInbox.Metadata describe(String uriString) throws IOException {
+        Uri uri = Uri.parse(uriString);
+        String name = null;
+        long size = -1;
+        if ("content".equals(uri.getScheme())) {
+            try (Cursor cursor = resolver.query(uri, COLUMNS, null, null, null)) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                    int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                    if (nameIndex >= 0) name = cursor.getString(nameIndex);
+                    if (sizeIndex >= 0 && !cursor.isNull(sizeIndex)) size = cursor.getLong(sizeIndex);
+                }
+            } catch (RuntimeException e) {
+                // Some providers reject the projection; the name falls back to the path below
+            }
+        }
+        if (name == null && uri.getPath() != null) {
+            String path = uri.getPath();
+            name = path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        String mime = resolver.getType(uri);
+        if (mime == null) {
+            String ext = MimeTypeMap.getFileExtensionFromUrl(name != null ? name : uriString);
+            if (ext != null) mime = MimeTypeMap.getSingleton().getMimeTypeFromExtension(ext.toLowerCase(Locale.ROOT));
+        }
+        return new ShareInbox.Metadata(name, size, mime);
+    }
+
+    @Override
+    public InputStream open(String uriString) throws IOException {
+        return resolver.openInputStream(Uri.parse(uriString));
+    }
+}
@@ -0,0 +1,207 @@
+package shubham.akshit.tldraw;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams shared content:// URIs to the WebView at {@code /_native/content?uri=...}.
+ *
+ * The WebView pulls from the returned InputStream on its own network thread as the
+ * page consumes the body, so a fetch() ReadableStream only ever holds what the
+ * reader has not drained yet. Single byte ranges are honoured so PDF.js and media
+ * elements can seek without reading the whole file. Shares already staged by the
+ * {@link ShareInbox} are served from their local copy.
+ */
+class ContentStreamRoute implements NativeWebViewClient.NativeRoute {
+
+    static final String ROUTE = "content";
+
+    private final ContentResolver resolver;
+    // Only URIs that arrived through a share/view intent are readable from the page
+    private final Set<String> granted = ConcurrentHashMap.newKeySet();
+    // Waiting out a copy in progress beats reading the provider a second time in parallel
+    private static final long LOCAL_COPY_WAIT_MS = 5000;
+    private volatile ShareInbox inbox;
+
+    ContentStreamRoute(ContentResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    void setInbox(ShareInbox inbox) {
+        this.inbox = inbox;
+    }
+
+    void grant(Uri uri) {
+        if (uri != null) granted.add(uri.toString());
+    }
+
+    boolean isGranted(String uriString) {
+        return uriString != null && granted.contains(uriString);
+    }
+
+    static String urlFor(String uriString) {
+        return NativeWebViewClient.PATH_PREFIX + ROUTE + "?uri=" + Uri.encode(uriString);
+    }
+
+    @Override
+    public WebResourceResponse handle(WebResourceRequest request, Uri url) throws IOException {
+        String uriString = url.getQueryParameter("uri");
+        if (!isGranted(uriString)) {
+            throw new SecurityException("URI was not shared with the app: " + uriString);
+        }
+        Uri uri = Uri.parse(uriString);
+
+        ShareInbox staged = inbox;
+        File local = staged != null ? staged.localCopy(uriString, LOCAL_COPY_WAIT_MS) : null;
+        ShareInbox.Metadata meta = staged != null ? staged.metadata(uriString, 0) : null;
+        AssetFileDescriptor afd = local != null
+                ? new AssetFileDescriptor(ParcelFileDescriptor.open(local, ParcelFileDescriptor.MODE_READ_ONLY), 0, local.length())
+                : resolver.openAssetFileDescriptor(uri, "r");
+        if (afd == null) return null;
+
+        long total = afd.getLength();
+        if (total < 0) total = meta != null && meta.size >= 0 ? meta.size : querySize(uri);
+
+        String mimeType = meta != null && meta.mime != null ? meta.mime : resolver.getType(uri);
+        if (mimeType == null) mimeType = "application/octet-stream";
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "no-store");
+        if (total >= 0) headers.put("Accept-Ranges", "bytes");
+
+        long[] range = parseRange(request.getRequestHeaders().get("Range"), total);
+        if (range == INVALID_RANGE) {
+            afd.close();
+            headers.put("Content-Range", "bytes */" + total);
+            return new WebResourceResponse(mimeType, null, 416, "Range Not Satisfiable", headers, null);
+        }
+
+        InputStream in = afd.createInputStream();
+        if (range == null) {
+            if (total >= 0) headers.put("Content-Length", String.valueOf(total));
+            return new WebResourceResponse(mimeType, null, 200, "OK", headers,
+                    total >= 0 ? new BoundedInputStream(in, total) : in);
+        }
+
+        long start = range[0];
+        long length = range[1] - range[0] + 1;
+        seek(in, afd.getStartOffset(), start);
+        headers.put("Content-Length", String.valueOf(length));
+        headers.put("Content-Range", "bytes " + start + "-" + range[1] + "/" + total);
+        return new WebResourceResponse(mimeType, null, 206, "Partial Content", headers,
+                new BoundedInputStream(in, length));
+    }
+
+    private long querySize(Uri uri) {
+        try (Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception ignored) {
+        }
+        return -1;
+    }
+
+    private static void seek(InputStream in, long fdOffset, long start) throws IOException {
+        if (start == 0) return;
+        if (in instanceof FileInputStream) {
+            try {
+                // Regular files: jump straight there instead of reading the prefix
+                ((FileInputStream) in).getChannel().position(fdOffset + start);
+                return;
+            } catch (IOException ignored) {
+                // Pipes and sockets are not seekable, fall back to skipping
+            }
+        }
+        long remaining = start;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new IOException("Range start beyond end of stream");
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    static final long[] INVALID_RANGE = new long[0];
+
+    /**
+     * Parses a single {@code bytes=} range against a known length.
+     * Returns null for "whole body", INVALID_RANGE for an unsatisfiable range.
+     */
+    static long[] parseRange(String header, long total) {
+        if (header == null || total < 0) return null;
+        header = header.trim();
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) return null;
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (from.isEmpty()) {
+                // Suffix range: last N bytes
+                long suffix = Long.parseLong(to);
+                if (suffix <= 0) return INVALID_RANGE;
+                start = Math.max(0, total - suffix);
+                end = total - 1;
+            } else {
+                start = Long.parseLong(from);
+                end = to.isEmpty() ? total - 1 : Math.min(Long.parseLong(to), total - 1);
+            }
+            if (start >= total || start > end) return INVALID_RANGE;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Stops after {@code limit} bytes so a range never reads past its end. */
+    static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
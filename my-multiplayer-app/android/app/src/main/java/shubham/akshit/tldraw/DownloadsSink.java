@@ -0,0 +1,224 @@
+package shubham.akshit.tldraw;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.util.Log;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Where exported files end up: the public Downloads folder.
+ *
+ * On Android 10+ files go through {@code MediaStore.Downloads} and stay
+ * {@code IS_PENDING} until committed, so half-written exports never show up.
+ * Older releases write to the legacy directory. Either way, free names come from
+ * a {@link NameIndex} seeded once, and every {@link Target} is independent, so
+ * any number of exports can be written at the same time.
+ */
+class DownloadsSink {
+
+    private static final String TAG = "ColorRM_Native";
+
+    interface Target {
+        FileChannel channel();
+
+        String displayName();
+
+        // Makes the file visible under its final name; channel is closed afterwards
+        void commit() throws IOException;
+
+        // Closes and removes whatever was written so far
+        void abort();
+    }
+
+    private final Context context;
+    private final NameIndex names = new NameIndex();
+
+    DownloadsSink(Context context) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+    }
+
+    Target open(String filename, String mimeType) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return openMediaStore(filename, mimeType);
+        }
+        return openLegacy(filename);
+    }
+
+    private Target openMediaStore(String filename, String mimeType) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        ensureSeeded();
+        String name = names.claim(filename);
+
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, name);
+        values.put(MediaStore.MediaColumns.MIME_TYPE, mimeType != null ? mimeType : "application/octet-stream");
+        values.put(MediaStore.MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_DOWNLOADS);
+        values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+
+        Uri uri = resolver.insert(MediaStore.Downloads.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) {
+            names.release(name);
+            throw new IOException("MediaStore refused " + name);
+        }
+        ParcelFileDescriptor pfd;
+        try {
+            pfd = resolver.openFileDescriptor(uri, "w");
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            names.release(name);
+            throw e;
+        }
+        if (pfd == null) {
+            resolver.delete(uri, null, null);
+            names.release(name);
+            throw new IOException("No descriptor for " + uri);
+        }
+
+        // MediaStore may still rename on a clash with a file we could not see
+        String finalName = queryDisplayName(resolver, uri, name);
+        if (!finalName.equals(name)) names.markTaken(finalName);
+
+        FileOutputStream fos = new ParcelFileDescriptor.AutoCloseOutputStream(pfd);
+        FileChannel channel = fos.getChannel();
+
+        return new Target() {
+            @Override
+            public FileChannel channel() {
+                return channel;
+            }
+
+            @Override
+            public String displayName() {
+                return finalName;
+            }
+
+            @Override
+            public void commit() throws IOException {
+                channel.force(false);
+                fos.close();
+                ContentValues done = new ContentValues();
+                done.put(MediaStore.MediaColumns.IS_PENDING, 0);
+                resolver.update(uri, done, null, null);
+            }
+
+            @Override
+            public void abort() {
+                try {
+                    fos.close();
+                } catch (IOException ignored) {
+                }
+                resolver.delete(uri, null, null);
+                names.release(name);
+                names.release(finalName);
+            }
+        };
+    }
+
+    private Target openLegacy(String filename) throws IOException {
+        File path = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        if (!path.exists()) path.mkdirs();
+        if (!names.isSeeded()) {
+            String[] existing = path.list();
+            names.seed(existing != null ? Arrays.asList(existing) : new ArrayList<>());
+        }
+        File file = createFree(path, filename);
+        String name = file.getName();
+        FileOutputStream fos;
+        try {
+            fos = new FileOutputStream(file);
+        } catch (IOException e) {
+            file.delete();
+            names.release(name);
+            throw e;
+        }
+        FileChannel channel = fos.getChannel();
+
+        return new Target() {
+            @Override
+            public FileChannel channel() {
+                return channel;
+            }
+
+            @Override
+            public String displayName() {
+                return name;
+            }
+
+            @Override
+            public void commit() throws IOException {
+                channel.force(false);
+                fos.close();
+            }
+
+            @Override
+            public void abort() {
+                try {
+                    fos.close();
+                } catch (IOException ignored) {
+                }
+                file.delete();
+                names.release(name);
+            }
+        };
+    }
+
+    // The index only knows the listing it was seeded from; createNewFile is the real claim
+    private File createFree(File dir, String filename) throws IOException {
+        while (true) {
+            String name = names.claim(filename);
+            File file = new File(dir, name);
+            try {
+                if (file.createNewFile()) return file;
+            } catch (IOException e) {
+                names.release(name);
+                throw e;
+            }
+            // Created by someone else since the listing: it stays taken, try the next name
+        }
+    }
+
+    // One query per process instead of a stat per candidate name
+    private void ensureSeeded() {
+        if (names.isSeeded()) return;
+        synchronized (names) {
+            if (names.isSeeded()) return;
+            List<String> existing = new ArrayList<>();
+            String[] projection = {MediaStore.MediaColumns.DISPLAY_NAME};
+            String selection = MediaStore.MediaColumns.RELATIVE_PATH + "=?";
+            String[] args = {Environment.DIRECTORY_DOWNLOADS + "/"};
+            try (Cursor cursor = context.getContentResolver().query(
+                    MediaStore.Downloads.EXTERNAL_CONTENT_URI, projection, selection, args, null)) {
+                if (cursor != null) {
+                    while (cursor.moveToNext()) existing.add(cursor.getString(0));
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Could not list Downloads, relying on MediaStore renames", e);
+            }
+            names.seed(existing);
+        }
+    }
+
+    private static String queryDisplayName(ContentResolver resolver, Uri uri, String fallback) {
+        try (Cursor cursor = resolver.query(uri, new String[]{MediaStore.MediaColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                String name = cursor.getString(0);
+                if (name != null) return name;
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return fallback;
+    }
+}
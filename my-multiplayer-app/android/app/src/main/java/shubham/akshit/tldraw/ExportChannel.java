@@ -0,0 +1,149 @@
+package shubham.akshit.tldraw;
+
+import android.util.Log;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * "export" topic on the {@link NativeMessageChannel}.
+ *
+ * <pre>
+ * page → {op:"open", req, name, mime, dest?} native → {op:"opened", req, stream, name, window}
+ * page → [stream id][bytes]  (binary)     native → {op:"progress", stream, written}
+ * page → {op:"close", stream}              native → {op:"done", stream, name, written}
+ * page → {op:"cancel", stream}             native → {op:"cancelled", stream} | {op:"error", ...}
+ * </pre>
+ *
+ * {@code dest} picks where the bytes go; it defaults to the public Downloads folder.
+ */
+class ExportChannel implements NativeMessageChannel.TopicHandler {
+
+    static final String TOPIC = "export";
+    // Frames the page may have in flight before waiting for a progress ack
+    static final int WINDOW_FRAMES = 8;
+    static final String DEST_DOWNLOADS = "downloads";
+    private static final String TAG = "ColorRM_Native";
+
+    interface Destination {
+        DownloadsSink.Target open(String name, String mimeType) throws IOException;
+    }
+
+    private final NativeMessageChannel channel;
+    private final ExecutorService executor;
+    private final Map<String, Destination> destinations = new ConcurrentHashMap<>();
+    private final Map<Integer, ExportWriter> writers = new ConcurrentHashMap<>();
+
+    ExportChannel(NativeMessageChannel channel, DownloadsSink sink, ExecutorService executor) {
+        this.channel = channel;
+        this.executor = executor;
+        destinations.put(DEST_DOWNLOADS, sink::open);
+    }
+
+    void addDestination(String name, Destination destination) {
+        destinations.put(name, destination);
+    }
+
+    @Override
+    public void onMessage(JSONObject message) throws JSONException {
+        String op = message.getString("op");
+        switch (op) {
+            case "open":
+                open(message.optInt("req"), message.optString("dest", DEST_DOWNLOADS),
+                        message.getString("name"), message.optString("mime", "application/octet-stream"));
+                break;
+            case "close": {
+                ExportWriter writer = writers.get(message.getInt("stream"));
+                if (writer != null) writer.close();
+                break;
+            }
+            case "cancel": {
+                ExportWriter writer = writers.get(message.getInt("stream"));
+                if (writer != null) writer.cancel();
+                break;
+            }
+            default:
+                Log.w(TAG, "Unknown export op " + op);
+        }
+    }
+
+    private void open(int req, String dest, String filename, String mimeType) {
+        executor.execute(() -> {
+            DownloadsSink.Target target;
+            try {
+                Destination destination = destinations.get(dest);
+                if (destination == null) throw new IllegalArgumentException("Unknown export destination " + dest);
+                target = destination.open(filename, mimeType);
+            } catch (Exception e) {
+                Log.e(TAG, "Export open failed", e);
+                post(reply("error").put("req", req).put("message", String.valueOf(e.getMessage())));
+                return;
+            }
+
+            int[] streamId = new int[1];
+            ExportWriter writer = new ExportWriter(target, WINDOW_FRAMES, new ExportWriter.Listener() {
+                @Override
+                public void onProgress(long written) {
+                    post(reply("progress").put("stream", streamId[0]).put("written", written));
+                }
+
+                @Override
+                public void onDone(String displayName, long written) {
+                    finish(streamId[0]);
+                    post(reply("done").put("stream", streamId[0]).put("name", displayName).put("written", written));
+                }
+
+                @Override
+                public void onError(String message) {
+                    finish(streamId[0]);
+                    post(reply("error").put("stream", streamId[0]).put("message", message));
+                }
+
+                @Override
+                public void onCancelled() {
+                    finish(streamId[0]);
+                    post(reply("cancelled").put("stream", streamId[0]));
+                }
+            });
+            streamId[0] = channel.openStream(writer::offer);
+            writers.put(streamId[0], writer);
+
+            post(reply("opened").put("req", req).put("stream", streamId[0])
+                    .put("name", target.displayName()).put("window", WINDOW_FRAMES));
+            writer.run();
+        });
+    }
+
+    private void finish(int streamId) {
+        channel.closeStream(streamId);
+        writers.remove(streamId);
+    }
+
+    void cancelAll() {
+        for (ExportWriter writer : writers.values()) writer.cancel();
+    }
+
+    private void post(Reply reply) {
+        channel.post(TOPIC, reply.json);
+    }
+
+    private static Reply reply(String op) {
+        return new Reply().put("op", op);
+    }
+
+    // JSONObject.put throws checked exceptions; keep the listener code readable
+    private static class Reply {
+        final JSONObject json = new JSONObject();
+
+        Reply put(String key, Object value) {
+            try {
+                json.put(key, value);
+            } catch (JSONException ignored) {
+            }
+            return this;
+        }
+    }
+}
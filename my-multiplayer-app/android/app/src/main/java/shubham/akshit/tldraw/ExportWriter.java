@@ -0,0 +1,99 @@
+package shubham.akshit.tldraw;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Drains binary export frames into a {@link DownloadsSink.Target} on a background thread.
+ *
+ * The queue is bounded: the page keeps only a few frames in flight and waits for
+ * progress acks before sending more, so a full queue means the sender misbehaved.
+ */
+class ExportWriter implements Runnable {
+
+    interface Listener {
+        void onProgress(long written);
+
+        void onDone(String displayName, long written);
+
+        void onError(String message);
+
+        void onCancelled();
+    }
+
+    private static final byte[] CLOSE = new byte[0];
+    private static final byte[] CANCEL = new byte[0];
+
+    private final DownloadsSink.Target target;
+    private final Listener listener;
+    private final BlockingQueue<byte[]> queue;
+    private volatile boolean cancelled = false;
+    private volatile boolean overflowed = false;
+
+    ExportWriter(DownloadsSink.Target target, int capacity, Listener listener) {
+        this.target = target;
+        this.listener = listener;
+        // +1 so the close/cancel marker always fits
+        this.queue = new ArrayBlockingQueue<>(capacity + 1);
+    }
+
+    // UI thread: never blocks
+    void offer(byte[] frame) {
+        if (cancelled || overflowed) return;
+        if (queue.remainingCapacity() <= 1 || !queue.offer(frame)) {
+            overflowed = true;
+            queue.offer(CANCEL);
+        }
+    }
+
+    void close() {
+        queue.offer(CLOSE);
+    }
+
+    void cancel() {
+        cancelled = true;
+        queue.clear();
+        queue.offer(CANCEL);
+    }
+
+    @Override
+    public void run() {
+        FileChannel channel = target.channel();
+        long written = 0;
+        try {
+            while (true) {
+                byte[] frame = queue.take();
+                if (frame == CANCEL || cancelled) {
+                    target.abort();
+                    if (overflowed) {
+                        listener.onError("Export queue overflow");
+                    } else {
+                        listener.onCancelled();
+                    }
+                    return;
+                }
+                if (frame == CLOSE) {
+                    target.commit();
+                    listener.onDone(target.displayName(), written);
+                    return;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(frame, NativeMessageChannel.FRAME_HEADER_BYTES,
+                        frame.length - NativeMessageChannel.FRAME_HEADER_BYTES);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+                listener.onProgress(written);
+            }
+        } catch (IOException e) {
+            target.abort();
+            listener.onError(String.valueOf(e.getMessage()));
+        } catch (InterruptedException e) {
+            target.abort();
+            listener.onCancelled();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
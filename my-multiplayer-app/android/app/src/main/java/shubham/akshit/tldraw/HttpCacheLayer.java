@@ -0,0 +1,508 @@
+package shubham.akshit.tldraw;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Read-through HTTP cache in front of the WebView's subresource requests.
+ *
+ * Fresh entries are served without touching the network; stale ones are
+ * revalidated with If-None-Match / If-Modified-Since; when the network is
+ * unreachable (or the server errors) a cached copy is served regardless of age.
+ * A miss streams to the page and to disk at once; bodies past
+ * {@code maxEntryBytes} simply stop being cached.
+ *
+ * Entries are keyed by URL alone, so anything that depends on who is asking is
+ * left to the WebView: requests carrying credentials, responses setting cookies,
+ * and redirects the connection did not follow.
+ * Plain Java ({@link HttpURLConnection}) so it can be exercised on the JVM.
+ */
+final class HttpCacheLayer {
+
+    static final class Response {
+        final int status;
+        final String reason;
+        final String mimeType;
+        final String encoding;
+        final Map<String, String> headers;
+        final InputStream body;
+        // Set-Cookie values of a passed-through response, for the WebView's cookie jar
+        final List<String> setCookies;
+
+        Response(int status, String reason, String mimeType, String encoding, Map<String, String> headers,
+                 InputStream body, List<String> setCookies) {
+            this.status = status;
+            this.reason = reason;
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.headers = headers;
+            this.body = body;
+            this.setCookies = setCookies;
+        }
+    }
+
+    // Response headers worth replaying from the cache
+    private static final String[] REPLAYED_HEADERS = {
+            "Access-Control-Allow-Origin", "Access-Control-Allow-Credentials",
+            "Access-Control-Expose-Headers", "Timing-Allow-Origin", "Content-Language"
+    };
+    // Request headers we manage ourselves
+    private static final Set<String> DROPPED_REQUEST_HEADERS = new HashSet<>(Arrays.asList(
+            "range", "if-none-match", "if-modified-since", "accept-encoding"));
+    // Requests with these are answered per user; the WebView sends them itself
+    private static final Set<String> CREDENTIAL_HEADERS = new HashSet<>(Arrays.asList("cookie", "authorization"));
+    // Versioned URLs never change: /npm/pkg@1.2.3/..., /ajax/libs/pkg/1.2.3/..., Vite's name-[hash].js
+    private static final Pattern VERSIONED_URL = Pattern.compile(
+            ".*(@\\d+(\\.\\d+)*[/?].*|/ajax/libs/[^/]+/\\d+(\\.\\d+)*/.*|[-.][A-Za-z0-9_-]{8,}\\.(js|css|woff2?|wasm)(\\?.*)?)$");
+    // Only the first part of a cold start is worth prefetching next time
+    private static final long STARTUP_WINDOW_MS = 20_000;
+    private static final int MAX_STARTUP_URLS = 200;
+
+    private final HttpDiskCache cache;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    // Bodies larger than this stream straight through instead of being cached
+    private final long maxEntryBytes;
+    private final File startupFile;
+    private final long createdAt = System.currentTimeMillis();
+    private final Set<String> startupUrls = new LinkedHashSet<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicLong networkErrors = new AtomicLong();
+    private final AtomicLong prefetched = new AtomicLong();
+    private final AtomicLong preconnected = new AtomicLong();
+    private final AtomicLong bytesFromCache = new AtomicLong();
+    private final AtomicLong bytesFromNetwork = new AtomicLong();
+
+    HttpCacheLayer(HttpDiskCache cache, File startupFile, int connectTimeoutMs, int readTimeoutMs) {
+        this.cache = cache;
+        this.startupFile = startupFile;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.maxEntryBytes = Math.max(1, cache.maxBytes() / 8);
+    }
+
+    /**
+     * GET {@code url} through the cache. Null when the WebView should load it
+     * itself (credentials, an unfollowed redirect). Throws only when offline with
+     * nothing cached.
+     */
+    Response fetch(String url, Map<String, String> requestHeaders) throws IOException {
+        if (hasCredentials(requestHeaders)) {
+            bypassed.incrementAndGet();
+            return null;
+        }
+        recordStartup(url);
+        long now = System.currentTimeMillis();
+        HttpDiskCache.Entry entry = cache.get(url);
+        if (entry != null && isFresh(entry, now)) {
+            hits.incrementAndGet();
+            return fromCache(entry);
+        }
+
+        HttpURLConnection connection;
+        int code;
+        try {
+            connection = open(url, requestHeaders);
+            if (entry != null) {
+                if (entry.etag != null) connection.setRequestProperty("If-None-Match", entry.etag);
+                if (entry.lastModified != null) connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+            }
+            code = connection.getResponseCode();
+        } catch (IOException e) {
+            if (entry != null) {
+                staleServed.incrementAndGet();
+                return fromCache(entry);
+            }
+            networkErrors.incrementAndGet();
+            throw e;
+        }
+
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+            CacheControl cc = CacheControl.parse(connection.getHeaderField("Cache-Control"));
+            connection.disconnect();
+            cache.refresh(entry, now, cc.maxAgeMs, cc.immutable);
+            revalidated.incrementAndGet();
+            return fromCache(entry);
+        }
+        if (code >= 500 && entry != null) {
+            connection.disconnect();
+            staleServed.incrementAndGet();
+            return fromCache(entry);
+        }
+        if (code >= 300 && code < 400) {
+            // Not followed (scheme change, or a 304 we did not ask for); WebResourceResponse refuses 3xx
+            connection.disconnect();
+            bypassed.incrementAndGet();
+            return null;
+        }
+
+        CacheControl cc = CacheControl.parse(connection.getHeaderField("Cache-Control"));
+        long length = connection.getContentLengthLong();
+        boolean cacheable = code == HttpURLConnection.HTTP_OK && !cc.noStore
+                && !"*".equals(connection.getHeaderField("Vary"))
+                && connection.getHeaderField("Set-Cookie") == null
+                && length <= maxEntryBytes;
+        if (!cacheable) {
+            bypassed.incrementAndGet();
+            return passThrough(connection, code);
+        }
+
+        HttpDiskCache.Entry meta = new HttpDiskCache.Entry();
+        meta.url = url;
+        meta.status = code;
+        String[] type = splitContentType(connection.getContentType());
+        meta.mimeType = type[0];
+        meta.encoding = type[1];
+        meta.etag = connection.getHeaderField("ETag");
+        meta.lastModified = connection.getHeaderField("Last-Modified");
+        meta.storedAt = now;
+        meta.maxAgeMs = cc.maxAgeMs;
+        meta.immutable = cc.immutable;
+        copyReplayedHeaders(connection, meta.headers);
+        HttpDiskCache.Writer writer;
+        InputStream in;
+        try {
+            writer = cache.begin(meta);
+            in = connection.getInputStream();
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+        misses.incrementAndGet();
+        Map<String, String> headers = new HashMap<>(meta.headers);
+        if (length >= 0) headers.put("Content-Length", String.valueOf(length));
+        return new Response(code, "OK", meta.mimeType, meta.encoding, headers,
+                new TeeBody(in, connection, writer), null);
+    }
+
+    /** Whatever is cached for {@code url}, however old; null if nothing is. */
+    Response cachedCopy(String url) throws IOException {
+        HttpDiskCache.Entry entry = cache.get(url);
+        if (entry == null) return null;
+        staleServed.incrementAndGet();
+        return fromCache(entry);
+    }
+
+    /** Warms the cache for {@code urls} in parallel; failures are ignored. */
+    void prefetch(Collection<String> urls, ExecutorService executor) {
+        for (String url : urls) {
+            executor.execute(() -> {
+                try {
+                    Response response = fetch(url, new HashMap<>());
+                    if (response == null) return;
+                    // Reading to the end is what stores a miss
+                    try (InputStream body = response.body) {
+                        byte[] skip = new byte[16 * 1024];
+                        while (body.read(skip) != -1) {
+                            // Discard
+                        }
+                    }
+                    prefetched.incrementAndGet();
+                } catch (IOException ignored) {
+                }
+            });
+        }
+    }
+
+    /**
+     * Opens a connection to {@code url}'s origin ahead of the first real request:
+     * DNS, TCP and TLS are done and the socket goes back to the keep-alive pool
+     * that {@link #fetch} draws from. False when the origin is unreachable.
+     */
+    boolean preconnect(String url) {
+        HttpURLConnection connection = null;
+        try {
+            URL target = new URL(url);
+            connection = open(new URL(target, "/").toString(), new HashMap<>());
+            connection.setRequestMethod("HEAD");
+            int code = connection.getResponseCode();
+            // Drain (HEAD has no body) so the connection is reusable rather than closed
+            InputStream in = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (in != null) in.close();
+            preconnected.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            if (connection != null) connection.disconnect();
+            return false;
+        }
+    }
+
+    static boolean isFresh(HttpDiskCache.Entry entry, long now) {
+        if (entry.immutable) return true;
+        if (entry.maxAgeMs >= 0) return now - entry.storedAt < entry.maxAgeMs;
+        return VERSIONED_URL.matcher(entry.url).matches();
+    }
+
+    private HttpURLConnection open(String url, Map<String, String> requestHeaders) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(connectTimeoutMs);
+        connection.setReadTimeout(readTimeoutMs);
+        connection.setInstanceFollowRedirects(true);
+        // Revalidation is ours; keep the platform's own cache out of the way
+        connection.setUseCaches(false);
+        for (Map.Entry<String, String> h : requestHeaders.entrySet()) {
+            if (!DROPPED_REQUEST_HEADERS.contains(h.getKey().toLowerCase(Locale.ROOT))) {
+                connection.setRequestProperty(h.getKey(), h.getValue());
+            }
+        }
+        return connection;
+    }
+
+    private Response fromCache(HttpDiskCache.Entry entry) throws IOException {
+        InputStream body = cache.openBody(entry);
+        bytesFromCache.addAndGet(entry.size);
+        return new Response(entry.status, "OK", entry.mimeType, entry.encoding, replayHeaders(entry), body, null);
+    }
+
+    private static boolean hasCredentials(Map<String, String> requestHeaders) {
+        for (String name : requestHeaders.keySet()) {
+            if (CREDENTIAL_HEADERS.contains(name.toLowerCase(Locale.ROOT))) return true;
+        }
+        return false;
+    }
+
+    private static Map<String, String> replayHeaders(HttpDiskCache.Entry entry) {
+        Map<String, String> headers = new HashMap<>(entry.headers);
+        headers.put("Content-Length", String.valueOf(entry.size));
+        return headers;
+    }
+
+    private Response passThrough(HttpURLConnection connection, int code) throws IOException {
+        String[] type = splitContentType(connection.getContentType());
+        Map<String, String> headers = new HashMap<>();
+        copyReplayedHeaders(connection, headers);
+        InputStream in = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        String reason = connection.getResponseMessage();
+        InputStream body = new FilterInputStream(in != null ? in : new ByteArrayInputStream(new byte[0])) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) bytesFromNetwork.addAndGet(n);
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                connection.disconnect();
+            }
+        };
+        List<String> setCookies = null;
+        for (Map.Entry<String, List<String>> h : connection.getHeaderFields().entrySet()) {
+            if ("Set-Cookie".equalsIgnoreCase(h.getKey())) setCookies = h.getValue();
+        }
+        return new Response(code, reason != null && !reason.isEmpty() ? reason : "OK", type[0], type[1], headers, body,
+                setCookies);
+    }
+
+    /**
+     * A miss on its way to the page, copied to the cache as it is read. Stored
+     * once read to the end; abandoned if it grows past {@code maxEntryBytes},
+     * fails, or is closed early.
+     */
+    private final class TeeBody extends FilterInputStream {
+        private final HttpURLConnection connection;
+        private HttpDiskCache.Writer writer;
+
+        TeeBody(InputStream in, HttpURLConnection connection, HttpDiskCache.Writer writer) {
+            super(in);
+            this.connection = connection;
+            this.writer = writer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == 1 ? one[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            try {
+                n = super.read(b, off, len);
+            } catch (IOException e) {
+                abandon();
+                throw e;
+            }
+            if (n > 0) {
+                bytesFromNetwork.addAndGet(n);
+                if (writer != null) {
+                    try {
+                        if (writer.size() + n > maxEntryBytes) {
+                            abandon();
+                        } else {
+                            writer.write(b, off, n);
+                        }
+                    } catch (IOException e) {
+                        // Disk trouble is the cache's problem, not the page's
+                        abandon();
+                    }
+                }
+            } else if (n < 0 && writer != null) {
+                try {
+                    writer.commit();
+                } catch (IOException ignored) {
+                }
+                writer = null;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes would leave a hole in the stored copy
+            abandon();
+            return super.skip(n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            abandon();
+            try {
+                super.close();
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        private void abandon() {
+            if (writer == null) return;
+            writer.abort();
+            writer = null;
+        }
+    }
+
+    private static void copyReplayedHeaders(HttpURLConnection connection, Map<String, String> out) {
+        for (String name : REPLAYED_HEADERS) {
+            String value = connection.getHeaderField(name);
+            if (value != null) out.put(name, value);
+        }
+    }
+
+    // "text/css; charset=utf-8" -> {"text/css", "utf-8"}
+    static String[] splitContentType(String contentType) {
+        if (contentType == null) return new String[]{"application/octet-stream", null};
+        String mime = contentType;
+        String charset = null;
+        int semi = contentType.indexOf(';');
+        if (semi >= 0) {
+            mime = contentType.substring(0, semi);
+            for (String param : contentType.substring(semi + 1).split(";")) {
+                String p = param.trim();
+                if (p.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                    charset = p.substring(8).replace("\"", "");
+                }
+            }
+        }
+        return new String[]{mime.trim(), charset};
+    }
+
+    private void recordStartup(String url) {
+        if (System.currentTimeMillis() - createdAt > STARTUP_WINDOW_MS) return;
+        synchronized (startupUrls) {
+            if (startupUrls.size() < MAX_STARTUP_URLS) startupUrls.add(url);
+        }
+    }
+
+    /** URLs requested early in the previous cold start. */
+    List<String> loadStartupUrls() {
+        List<String> urls = new ArrayList<>();
+        if (startupFile == null || !startupFile.isFile()) return urls;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(startupFile), StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (!line.isEmpty()) urls.add(line);
+            }
+        } catch (IOException ignored) {
+        }
+        return urls;
+    }
+
+    /** Persists this run's startup URLs for the next cold start's prefetch. */
+    void saveStartupUrls() {
+        if (startupFile == null) return;
+        StringBuilder joined = new StringBuilder();
+        synchronized (startupUrls) {
+            if (startupUrls.isEmpty()) return;
+            for (String url : startupUrls) joined.append(url).append('\n');
+        }
+        try (FileOutputStream out = new FileOutputStream(startupFile)) {
+            out.write(joined.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ignored) {
+        }
+    }
+
+    String statsJson() {
+        long served = hits.get() + revalidated.get() + staleServed.get();
+        long total = served + misses.get() + bypassed.get();
+        return "{\"hits\":" + hits.get()
+                + ",\"revalidated\":" + revalidated.get()
+                + ",\"misses\":" + misses.get()
+                + ",\"staleServed\":" + staleServed.get()
+                + ",\"bypassed\":" + bypassed.get()
+                + ",\"networkErrors\":" + networkErrors.get()
+                + ",\"prefetched\":" + prefetched.get()
+                + ",\"preconnected\":" + preconnected.get()
+                + ",\"hitRatio\":" + (total == 0 ? 0 : (double) served / total)
+                + ",\"bytesFromCache\":" + bytesFromCache.get()
+                + ",\"bytesFromNetwork\":" + bytesFromNetwork.get()
+                + ",\"entries\":" + cache.entryCount()
+                + ",\"sizeBytes\":" + cache.totalBytes()
+                + ",\"maxBytes\":" + cache.maxBytes()
+                + ",\"evictions\":" + cache.evictions() + "}";
+    }
+
+    static final class CacheControl {
+        boolean noStore;
+        boolean immutable;
+        long maxAgeMs = -1;
+
+        static CacheControl parse(String header) {
+            CacheControl cc = new CacheControl();
+            if (header == null) return cc;
+            for (String part : header.split(",")) {
+                String d = part.trim().toLowerCase(Locale.ROOT);
+                if (d.equals("no-store")) cc.noStore = true;
+                else if (d.equals("immutable")) cc.immutable = true;
+                else if (d.equals("no-cache")) cc.maxAgeMs = 0;
+                else if (d.startsWith("max-age=") && cc.maxAgeMs != 0) {
+                    try {
+                        cc.maxAgeMs = Long.parseLong(d.substring(8)) * 1000;
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+            return cc;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package shubham.akshit.tldraw;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Bounded on-disk LRU of HTTP responses.
+ *
+ * Entries are keyed by URL; bodies are stored once per SHA-256 of their content,
+ * so a file served under several URLs (or unchanged across a revalidation) takes
+ * space once. Metadata is a small properties file per URL; the file's mtime is
+ * the last access time, so LRU order survives restarts. Plain Java.
+ */
+final class HttpDiskCache {
+
+    static final class Entry {
+        String url;
+        int status = 200;
+        String mimeType;
+        String encoding;
+        String etag;
+        String lastModified;
+        String contentHash;
+        long size;
+        // When the body was last confirmed by the server
+        long storedAt;
+        // From Cache-Control max-age; -1 when the server did not say
+        long maxAgeMs = -1;
+        boolean immutable;
+        // Response headers replayed to the page (CORS and friends)
+        final Map<String, String> headers = new HashMap<>();
+    }
+
+    private final File metaDir;
+    private final File blobDir;
+    private final long maxBytes;
+
+    // Access-ordered: iteration starts at the least recently used URL
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    private long totalBytes;
+    private long evictions;
+
+    HttpDiskCache(File dir, long maxBytes) {
+        this.metaDir = new File(dir, "meta");
+        this.blobDir = new File(dir, "blobs");
+        this.maxBytes = maxBytes;
+        metaDir.mkdirs();
+        blobDir.mkdirs();
+        load();
+    }
+
+    synchronized Entry get(String url) {
+        Entry entry = entries.get(url);
+        if (entry == null) return null;
+        if (!blobFile(entry.contentHash).isFile()) {
+            // Blob vanished (cleared by the system); forget the entry
+            removeLocked(url);
+            return null;
+        }
+        metaFile(url).setLastModified(System.currentTimeMillis());
+        return entry;
+    }
+
+    InputStream openBody(Entry entry) throws IOException {
+        return new FileInputStream(blobFile(entry.contentHash));
+    }
+
+    /**
+     * Starts a body for {@code meta.url}. Bytes go to a temp file as the caller
+     * reads them from the network; nothing is recorded until {@link Writer#commit()}.
+     */
+    Writer begin(Entry meta) throws IOException {
+        return new Writer(meta);
+    }
+
+    /** One body being written; {@link #abort()} or {@link #commit()} exactly once. */
+    final class Writer {
+        private final Entry meta;
+        private final File tmp;
+        private final OutputStream out;
+        private final MessageDigest digest = sha256();
+        private long size;
+        private boolean finished;
+
+        private Writer(Entry meta) throws IOException {
+            this.meta = meta;
+            this.tmp = File.createTempFile("body", ".tmp", blobDir);
+            this.out = new FileOutputStream(tmp);
+        }
+
+        long size() {
+            return size;
+        }
+
+        void write(byte[] b, int off, int len) throws IOException {
+            digest.update(b, off, len);
+            out.write(b, off, len);
+            size += len;
+        }
+
+        void abort() {
+            if (finished) return;
+            finished = true;
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            tmp.delete();
+        }
+
+        /** Records the body under {@code meta.url} and returns the stored entry. */
+        Entry commit() throws IOException {
+            if (finished) throw new IllegalStateException("Already finished");
+            finished = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                tmp.delete();
+                throw e;
+            }
+            meta.contentHash = hex(digest.digest());
+            meta.size = size;
+            synchronized (HttpDiskCache.this) {
+                File blob = blobFile(meta.contentHash);
+                boolean newBlob = !blob.isFile();
+                if (newBlob) {
+                    if (!tmp.renameTo(blob)) {
+                        tmp.delete();
+                        throw new IOException("Could not store cache body");
+                    }
+                } else {
+                    tmp.delete();
+                }
+                Entry old = entries.remove(meta.url);
+                if (old != null) release(old);
+                entries.put(meta.url, meta);
+                int refs = blobRefs.getOrDefault(meta.contentHash, 0);
+                blobRefs.put(meta.contentHash, refs + 1);
+                if (refs == 0) totalBytes += size;
+                writeMeta(meta);
+                trimLocked(meta.url);
+            }
+            return meta;
+        }
+    }
+
+    /** A 304 confirmed the cached body; restart its freshness clock. */
+    synchronized void refresh(Entry entry, long now, long maxAgeMs, boolean immutable) {
+        entry.storedAt = now;
+        if (maxAgeMs >= 0) entry.maxAgeMs = maxAgeMs;
+        entry.immutable |= immutable;
+        if (entries.containsKey(entry.url)) writeMeta(entry);
+    }
+
+    synchronized void remove(String url) {
+        removeLocked(url);
+    }
+
+    synchronized int entryCount() {
+        return entries.size();
+    }
+
+    synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    private void removeLocked(String url) {
+        Entry entry = entries.remove(url);
+        if (entry == null) return;
+        release(entry);
+        metaFile(url).delete();
+    }
+
+    private void release(Entry entry) {
+        Integer refs = blobRefs.get(entry.contentHash);
+        if (refs == null) return;
+        if (refs <= 1) {
+            blobRefs.remove(entry.contentHash);
+            totalBytes -= entry.size;
+            blobFile(entry.contentHash).delete();
+        } else {
+            blobRefs.put(entry.contentHash, refs - 1);
+        }
+    }
+
+    // Evicts least recently used entries, never {@code keep} (the one just stored)
+    private void trimLocked(String keep) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry victim = it.next().getValue();
+            if (victim.url.equals(keep)) continue;
+            it.remove();
+            release(victim);
+            metaFile(victim.url).delete();
+            evictions++;
+        }
+    }
+
+    private void load() {
+        File[] files = metaDir.listFiles();
+        if (files == null) return;
+        List<File> metas = new ArrayList<>();
+        for (File f : files) {
+            if (f.getName().endsWith(".properties")) metas.add(f);
+        }
+        // Oldest access first, so the access-ordered map starts in LRU order
+        metas.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : metas) {
+            Entry entry = readMeta(f);
+            if (entry == null || !blobFile(entry.contentHash).isFile()) {
+                f.delete();
+                continue;
+            }
+            entries.put(entry.url, entry);
+            int refs = blobRefs.getOrDefault(entry.contentHash, 0);
+            blobRefs.put(entry.contentHash, refs + 1);
+            if (refs == 0) totalBytes += entry.size;
+        }
+        // Bodies nobody points at (crash between writes)
+        File[] blobs = blobDir.listFiles();
+        if (blobs != null) {
+            for (File blob : blobs) {
+                if (!blobRefs.containsKey(blob.getName())) blob.delete();
+            }
+        }
+        trimLocked(null);
+    }
+
+    private void writeMeta(Entry e) {
+        Properties p = new Properties();
+        p.setProperty("url", e.url);
+        p.setProperty("status", String.valueOf(e.status));
+        if (e.mimeType != null) p.setProperty("mime", e.mimeType);
+        if (e.encoding != null) p.setProperty("encoding", e.encoding);
+        if (e.etag != null) p.setProperty("etag", e.etag);
+        if (e.lastModified != null) p.setProperty("lastModified", e.lastModified);
+        p.setProperty("hash", e.contentHash);
+        p.setProperty("size", String.valueOf(e.size));
+        p.setProperty("storedAt", String.valueOf(e.storedAt));
+        p.setProperty("maxAge", String.valueOf(e.maxAgeMs));
+        p.setProperty("immutable", String.valueOf(e.immutable));
+        for (Map.Entry<String, String> h : e.headers.entrySet()) p.setProperty("h." + h.getKey(), h.getValue());
+        File file = metaFile(e.url);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            p.store(out, null);
+        } catch (IOException ex) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+
+    private static Entry readMeta(File file) {
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            p.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        Entry e = new Entry();
+        e.url = p.getProperty("url");
+        e.contentHash = p.getProperty("hash");
+        if (e.url == null || e.contentHash == null) return null;
+        try {
+            e.status = Integer.parseInt(p.getProperty("status", "200"));
+            e.size = Long.parseLong(p.getProperty("size", "0"));
+            e.storedAt = Long.parseLong(p.getProperty("storedAt", "0"));
+            e.maxAgeMs = Long.parseLong(p.getProperty("maxAge", "-1"));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        e.mimeType = p.getProperty("mime");
+        e.encoding = p.getProperty("encoding");
+        e.etag = p.getProperty("etag");
+        e.lastModified = p.getProperty("lastModified");
+        e.immutable = Boolean.parseBoolean(p.getProperty("immutable"));
+        for (String key : p.stringPropertyNames()) {
+            if (key.startsWith("h.")) e.headers.put(key.substring(2), p.getProperty(key));
+        }
+        return e;
+    }
+
+    private File metaFile(String url) {
+        return new File(metaDir, hex(sha256().digest(url.getBytes(StandardCharsets.UTF_8))) + ".properties");
+    }
+
+    private File blobFile(String hash) {
+        return new File(blobDir, hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,215 @@
+package shubham.akshit.tldraw;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Turns shared camera images into board-sized assets before the page sees them.
+ *
+ * Each image is decoded with bounds first and an {@code inSampleSize} chosen so
+ * the full-resolution bitmap is never allocated, rotated per its EXIF
+ * orientation, scaled to fit the maximum dimension and re-encoded. Images are
+ * processed in parallel across cores; results are served from
+ * {@code /_native/image?id=...} so no pixels cross the bridge as Base64.
+ */
+class ImageImporter implements NativeWebViewClient.NativeRoute {
+
+    static final String ROUTE = "image";
+    static final int DEFAULT_MAX_DIMENSION = 2560;
+    private static final String TAG = "ColorRM_Native";
+
+    private final ContentResolver resolver;
+    private final File outDir;
+    private final Predicate<String> isReadable;
+    private final ExecutorService decodePool;
+    // Emptying outDir; imports write there only after it
+    private final CompletableFuture<Void> prepared;
+
+    /**
+     * @param isReadable which URIs the page may import (the ones shared with the app)
+     * @param setup      runs the directory cleanup, off the caller's thread
+     */
+    ImageImporter(ContentResolver resolver, File outDir, Predicate<String> isReadable, int threads, Executor setup) {
+        this.resolver = resolver;
+        this.outDir = outDir;
+        this.isReadable = isReadable;
+        this.decodePool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "image-import");
+            t.setDaemon(true);
+            return t;
+        });
+        // Results only live for one share; start each process with an empty directory
+        this.prepared = CompletableFuture.runAsync(() -> {
+            File[] stale = outDir.listFiles();
+            if (stale != null) for (File f : stale) f.delete();
+            if (!outDir.exists()) outDir.mkdirs();
+        }, setup);
+    }
+
+    /**
+     * Imports every URI in parallel and returns a JSON array in input order:
+     * {uri, url, width, height, mime, size} or {uri, error} / {uri, skipped:true}
+     * for entries that are not images.
+     */
+    String importAll(JSONArray uris, int maxDimension, String format, int quality) throws Exception {
+        int maxDim = maxDimension > 0 ? maxDimension : DEFAULT_MAX_DIMENSION;
+        boolean webp = !"jpeg".equalsIgnoreCase(format);
+        int q = quality > 0 && quality <= 100 ? quality : 85;
+
+        List<Future<JSONObject>> futures = new ArrayList<>();
+        for (int i = 0; i < uris.length(); i++) {
+            String uri = uris.getString(i);
+            futures.add(decodePool.submit(() -> importOne(uri, maxDim, webp, q)));
+        }
+        JSONArray results = new JSONArray();
+        try {
+            for (Future<JSONObject> future : futures) results.put(future.get());
+        } catch (InterruptedException e) {
+            // Job cancelled or timed out: stop the decodes that have not started
+            for (Future<JSONObject> future : futures) future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+        return results.toString();
+    }
+
+    private JSONObject importOne(String uriString, int maxDim, boolean webp, int quality) throws JSONException {
+        JSONObject result = new JSONObject().put("uri", uriString);
+        try {
+            prepared.join();
+            if (!isReadable.test(uriString)) throw new SecurityException("URI was not shared with the app");
+            Uri uri = Uri.parse(uriString);
+            String type = resolver.getType(uri);
+            if (type != null && !type.startsWith("image/")) return result.put("skipped", true);
+
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                BitmapFactory.decodeStream(in, null, bounds);
+            }
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return result.put("skipped", true);
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight, maxDim);
+            Bitmap decoded;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                decoded = BitmapFactory.decodeStream(in, null, options);
+            }
+            if (decoded == null) throw new IOException("Could not decode image");
+
+            int orientation = ExifInterface.ORIENTATION_NORMAL;
+            try (InputStream in = resolver.openInputStream(uri)) {
+                if (in != null) {
+                    orientation = new ExifInterface(in).getAttributeInt(
+                            ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+                }
+            } catch (IOException ignored) {
+                // No EXIF (PNG, WebP without metadata): keep as decoded
+            }
+
+            Bitmap output = orientAndFit(decoded, orientation, maxDim);
+            String id = UUID.randomUUID().toString();
+            String ext = webp ? "webp" : "jpg";
+            File file = new File(outDir, id + "." + ext);
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                output.compress(webp ? webpFormat() : Bitmap.CompressFormat.JPEG, quality, out);
+            }
+            result.put("url", NativeWebViewClient.PATH_PREFIX + ROUTE + "?id=" + id + "." + ext)
+                    .put("width", output.getWidth())
+                    .put("height", output.getHeight())
+                    .put("mime", webp ? "image/webp" : "image/jpeg")
+                    .put("size", file.length())
+                    .put("sourceWidth", bounds.outWidth)
+                    .put("sourceHeight", bounds.outHeight);
+            output.recycle();
+        } catch (Exception | OutOfMemoryError e) {
+            Log.w(TAG, "Image import failed for " + uriString, e);
+            result.put("error", String.valueOf(e.getMessage()));
+        }
+        return result;
+    }
+
+    // Largest power of two that still leaves the longer side at or above maxDim
+    static int sampleSizeFor(int width, int height, int maxDim) {
+        int longest = Math.max(width, height);
+        int sample = 1;
+        while (longest / (sample * 2) >= maxDim) sample *= 2;
+        return sample;
+    }
+
+    private static Bitmap orientAndFit(Bitmap src, int orientation, int maxDim) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL: matrix.setScale(-1, 1); break;
+            case ExifInterface.ORIENTATION_ROTATE_180: matrix.setRotate(180); break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL: matrix.setScale(1, -1); break;
+            case ExifInterface.ORIENTATION_TRANSPOSE: matrix.setRotate(90); matrix.postScale(-1, 1); break;
+            case ExifInterface.ORIENTATION_ROTATE_90: matrix.setRotate(90); break;
+            case ExifInterface.ORIENTATION_TRANSVERSE: matrix.setRotate(-90); matrix.postScale(-1, 1); break;
+            case ExifInterface.ORIENTATION_ROTATE_270: matrix.setRotate(-90); break;
+            default: break;
+        }
+        int longest = Math.max(src.getWidth(), src.getHeight());
+        if (longest > maxDim) {
+            float scale = (float) maxDim / longest;
+            matrix.postScale(scale, scale);
+        }
+        if (matrix.isIdentity()) return src;
+        Bitmap out = Bitmap.createBitmap(src, 0, 0, src.getWidth(), src.getHeight(), matrix, true);
+        if (out != src) src.recycle();
+        return out;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+
+    @Override
+    public WebResourceResponse handle(WebResourceRequest request, Uri url) throws IOException {
+        String id = url.getQueryParameter("id");
+        // Only plain file names we generated ourselves
+        if (id == null || !id.matches("[0-9a-f-]{36}\\.(webp|jpg)")) return null;
+        File file = new File(outDir, id);
+        if (!file.isFile()) return null;
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "no-store");
+        headers.put("Content-Length", String.valueOf(file.length()));
+        String mime = id.endsWith(".webp") ? "image/webp" : "image/jpeg";
+        return new WebResourceResponse(mime, null, 200, "OK", headers, new FileInputStream(file));
+    }
+
+    void shutdown() {
+        decodePool.shutdownNow();
+    }
+}
@@ -0,0 +1,84 @@
+package shubham.akshit.tldraw;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Flat float buffer of pen samples, packed {@link #STRIDE} floats per sample so a
+ * whole frame's worth can be posted to JS as one ArrayBuffer and read there with a
+ * single Float32Array. Adding a sample never allocates once the buffer has grown
+ * to its working size.
+ */
+final class InkSampleBuffer {
+
+    // Field offsets within one sample
+    static final int POINTER_ID = 0;
+    static final int TOOL_TYPE = 1;
+    static final int X = 2;
+    static final int Y = 3;
+    static final int PRESSURE = 4;
+    static final int TILT = 5;
+    static final int ORIENTATION = 6;
+    static final int TIME_MS = 7;
+    static final int FLAGS = 8;
+    static final int STRIDE = 9;
+
+    // Sample flags
+    static final int FLAG_HISTORICAL = 1;
+    static final int FLAG_PREDICTED = 2;
+    static final int FLAG_DOWN = 4;
+    static final int FLAG_UP = 8;
+    static final int FLAG_CANCEL = 16;
+
+    private float[] data;
+    private int count;
+
+    InkSampleBuffer(int initialSamples) {
+        data = new float[Math.max(1, initialSamples) * STRIDE];
+    }
+
+    void add(int pointerId, int toolType, float x, float y, float pressure,
+             float tilt, float orientation, float timeMs, int flags) {
+        int base = count * STRIDE;
+        if (base + STRIDE > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        float[] d = data;
+        d[base + POINTER_ID] = pointerId;
+        d[base + TOOL_TYPE] = toolType;
+        d[base + X] = x;
+        d[base + Y] = y;
+        d[base + PRESSURE] = pressure;
+        d[base + TILT] = tilt;
+        d[base + ORIENTATION] = orientation;
+        d[base + TIME_MS] = timeMs;
+        d[base + FLAGS] = flags;
+        count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    float get(int sample, int field) {
+        return data[sample * STRIDE + field];
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * Packs the buffer behind a 4-byte big-endian stream id, the same frame header
+     * NativeMessageChannel uses. Floats are little-endian so JS can view them with
+     * Float32Array directly.
+     */
+    byte[] toFrame(int streamId) {
+        byte[] frame = new byte[4 + count * STRIDE * 4];
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.putInt(streamId);
+        buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(data, 0, count * STRIDE);
+        return frame;
+    }
+}
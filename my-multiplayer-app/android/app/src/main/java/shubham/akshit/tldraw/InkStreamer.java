@@ -0,0 +1,207 @@
+package shubham.akshit.tldraw;
+
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Opt-in "ink" topic: every digitizer sample, including the historical ones the
+ * browser coalesces into a single pointermove, batched once per vsync and posted
+ * as one binary frame on stream {@link #STREAM_ID}.
+ *
+ * <pre>
+ * page → {op:"subscribe", stylusOnly, predictMs, predictPoints}
+ *                                        native → {op:"subscribed", stream, stride}
+ * page → {op:"config", predictMs, predictPoints}
+ * page → {op:"metrics"}                  native → {op:"metrics", evaluated, meanError, maxError}
+ * page → {op:"unsubscribe"}
+ * </pre>
+ *
+ * When prediction is on, each frame also carries points extrapolated ahead of the
+ * first streamed pointer, flagged {@link InkSampleBuffer#FLAG_PREDICTED}. They are
+ * provisional: the next frame's real samples supersede them.
+ *
+ * Everything runs on the UI thread: touch dispatch fills the buffer, the frame
+ * callback drains it.
+ */
+class InkStreamer implements NativeMessageChannel.TopicHandler, Choreographer.FrameCallback {
+
+    static final String TOPIC = "ink";
+    // Native-originated stream; ids handed out by NativeMessageChannel.openStream are positive
+    static final int STREAM_ID = -1;
+
+    private final NativeMessageChannel channel;
+    private final InkSampleBuffer buffer = new InkSampleBuffer(256);
+    private boolean enabled = false;
+    private boolean stylusOnly = true;
+    private boolean frameScheduled = false;
+    // Down time of the gesture being streamed; 0 between gestures
+    private long strokeStartTime = 0;
+
+    private final StrokePredictor predictor = new StrokePredictor(0, 2, 0.5f);
+    private float[] predicted = new float[4];
+    private boolean strokeActive = false;
+    private float lastSampleTime;
+    private int primaryPointerId;
+    private int primaryToolType;
+    private float primaryPressure;
+    private float primaryTilt;
+    private float primaryOrientation;
+
+    InkStreamer(NativeMessageChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void onMessage(JSONObject message) throws JSONException {
+        String op = message.getString("op");
+        if ("subscribe".equals(op)) {
+            stylusOnly = message.optBoolean("stylusOnly", true);
+            configurePrediction(message);
+            enabled = true;
+            strokeStartTime = 0;
+            strokeActive = false;
+            JSONObject reply = new JSONObject();
+            reply.put("op", "subscribed");
+            reply.put("stream", STREAM_ID);
+            reply.put("stride", InkSampleBuffer.STRIDE);
+            channel.post(TOPIC, reply);
+        } else if ("config".equals(op)) {
+            configurePrediction(message);
+        } else if ("metrics".equals(op)) {
+            JSONObject reply = new JSONObject();
+            reply.put("op", "metrics");
+            reply.put("evaluated", predictor.evaluatedPredictions());
+            reply.put("meanError", predictor.meanError());
+            reply.put("maxError", predictor.maxError());
+            channel.post(TOPIC, reply);
+        } else if ("unsubscribe".equals(op)) {
+            enabled = false;
+            strokeActive = false;
+            buffer.clear();
+        }
+    }
+
+    private void configurePrediction(JSONObject message) {
+        float horizon = (float) message.optDouble("predictMs", predictor.horizonMs());
+        int points = message.optInt("predictPoints", predictor.pointsPerPrediction());
+        predictor.setHorizon(horizon, points);
+        if (predicted.length < predictor.pointsPerPrediction() * 2) {
+            predicted = new float[predictor.pointsPerPrediction() * 2];
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    // Called from dispatchTouchEvent with the unsanitized event, once palm rejection passed it
+    void onTouchEvent(MotionEvent event) {
+        onTouchEvent(event, null);
+    }
+
+    /**
+     * Same, for a {@link PalmRejector#REWRITE} verdict: only the pointers
+     * {@code kept} names, with its rewritten action. The event keeps its history,
+     * which the rewritten copy the WebView gets does not.
+     */
+    void onTouchEvent(MotionEvent event, PalmRejector kept) {
+        if (!enabled) return;
+        int pointerCount = kept != null ? kept.keptCount() : event.getPointerCount();
+        if (pointerCount == 0) return;
+        int firstToolType = event.getToolType(kept != null ? kept.keptIndex(0) : 0);
+        if (stylusOnly && firstToolType != MotionEvent.TOOL_TYPE_STYLUS
+                && firstToolType != MotionEvent.TOOL_TYPE_ERASER) {
+            return;
+        }
+
+        int fullAction = kept != null ? kept.rewrittenAction() : event.getAction();
+        int action = fullAction & MotionEvent.ACTION_MASK;
+        // Also when the page subscribed mid-gesture and never saw its ACTION_DOWN
+        if (action == MotionEvent.ACTION_DOWN || strokeStartTime == 0) {
+            // A rewritten down (pen kept after a palm cancel) starts its stroke with this event
+            strokeStartTime = event.getActionMasked() == MotionEvent.ACTION_DOWN || action != MotionEvent.ACTION_DOWN
+                    ? event.getDownTime() : event.getEventTime();
+            predictor.reset();
+        }
+
+        int eventFlags = 0;
+        if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN) eventFlags = InkSampleBuffer.FLAG_DOWN;
+        else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_POINTER_UP) eventFlags = InkSampleBuffer.FLAG_UP;
+        else if (action == MotionEvent.ACTION_CANCEL) eventFlags = InkSampleBuffer.FLAG_CANCEL;
+        // Index among the pointers passed on
+        int actionIndex = (fullAction & MotionEvent.ACTION_POINTER_INDEX_MASK) >> MotionEvent.ACTION_POINTER_INDEX_SHIFT;
+
+        int historySize = event.getHistorySize();
+        for (int k = 0; k < pointerCount; k++) {
+            int p = kept != null ? kept.keptIndex(k) : k;
+            int pointerId = event.getPointerId(p);
+            int toolType = event.getToolType(p);
+            for (int h = 0; h < historySize; h++) {
+                buffer.add(pointerId, toolType,
+                        event.getHistoricalX(p, h),
+                        event.getHistoricalY(p, h),
+                        event.getHistoricalPressure(p, h),
+                        event.getHistoricalAxisValue(MotionEvent.AXIS_TILT, p, h),
+                        event.getHistoricalOrientation(p, h),
+                        event.getHistoricalEventTime(h) - strokeStartTime,
+                        InkSampleBuffer.FLAG_HISTORICAL);
+            }
+            // Down/up flags only belong to the pointer the action is about
+            boolean isActionPointer = action == MotionEvent.ACTION_MOVE || k == actionIndex
+                    || action == MotionEvent.ACTION_CANCEL;
+            buffer.add(pointerId, toolType,
+                    event.getX(p),
+                    event.getY(p),
+                    event.getPressure(p),
+                    event.getAxisValue(MotionEvent.AXIS_TILT, p),
+                    event.getOrientation(p),
+                    event.getEventTime() - strokeStartTime,
+                    isActionPointer ? eventFlags : 0);
+        }
+
+        // Prediction follows the first pointer passed on only
+        int primary = kept != null ? kept.keptIndex(0) : 0;
+        // Another pointer became the first one: its motion has nothing to do with the last one's
+        if (strokeActive && event.getPointerId(primary) != primaryPointerId) predictor.reset();
+        for (int h = 0; h < historySize; h++) {
+            predictor.addSample(event.getHistoricalX(primary, h), event.getHistoricalY(primary, h),
+                    event.getHistoricalEventTime(h) - strokeStartTime);
+        }
+        lastSampleTime = event.getEventTime() - strokeStartTime;
+        predictor.addSample(event.getX(primary), event.getY(primary), lastSampleTime);
+        strokeActive = action != MotionEvent.ACTION_UP && action != MotionEvent.ACTION_CANCEL;
+        primaryPointerId = event.getPointerId(primary);
+        primaryToolType = event.getToolType(primary);
+        primaryPressure = event.getPressure(primary);
+        primaryTilt = event.getAxisValue(MotionEvent.AXIS_TILT, primary);
+        primaryOrientation = event.getOrientation(primary);
+
+        if (!strokeActive) strokeStartTime = 0;
+
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (buffer.size() == 0) return;
+
+        // One prediction per frame, from the newest real sample
+        if (strokeActive) {
+            int n = predictor.predict(predicted);
+            float step = predictor.horizonMs() / Math.max(1, n);
+            for (int i = 0; i < n; i++) {
+                buffer.add(primaryPointerId, primaryToolType, predicted[i * 2], predicted[i * 2 + 1],
+                        primaryPressure, primaryTilt, primaryOrientation,
+                        lastSampleTime + step * (i + 1), InkSampleBuffer.FLAG_PREDICTED);
+            }
+        }
+        channel.postBinary(buffer.toFrame(STREAM_ID));
+        buffer.clear();
+    }
+}
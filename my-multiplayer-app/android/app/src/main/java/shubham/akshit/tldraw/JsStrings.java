@@ -0,0 +1,86 @@
+package shubham.akshit.tldraw;
+
+import java.util.List;
+
+/**
+ * Escaping for text spliced into {@code evaluateJavascript} snippets and the
+ * JSON handed to the page. Single pass, and no copy at all when the input
+ * has nothing to escape (the usual case for content:// URIs). Plain Java.
+ */
+final class JsStrings {
+
+    private JsStrings() {
+    }
+
+    /**
+     * Escapes backslash, both quote kinds, CR and LF for use inside a quoted JS
+     * string literal. Same output as chaining {@code String.replace} per character.
+     */
+    static String escape(String text) {
+        if (text == null) return "";
+        int n = text.length();
+        int i = 0;
+        while (i < n && !needsEscape(text.charAt(i))) i++;
+        if (i == n) return text;
+
+        StringBuilder sb = new StringBuilder(n + 16);
+        sb.append(text, 0, i);
+        for (; i < n; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\'': sb.append("\\'"); break;
+                case '"': sb.append("\\\""); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '\\' || c == '\'' || c == '"' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * {@code ["a","b"]}: valid both for JSON.parse and as a JS expression, so the
+     * same string can be evaluated directly and kept for the page to read later.
+     */
+    static String jsonArray(List<String> values) {
+        int estimate = 2;
+        for (String v : values) estimate += v.length() + 3;
+        StringBuilder sb = new StringBuilder(estimate);
+        sb.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) sb.append(',');
+            appendJsonString(sb, values.get(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    static void appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        // Copy unescaped runs in bulk; per-char appends cost more than the escaping
+        int start = 0;
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            String escaped;
+            switch (c) {
+                case '"': escaped = "\\\""; break;
+                case '\\': escaped = "\\\\"; break;
+                case '\n': escaped = "\\n"; break;
+                case '\r': escaped = "\\r"; break;
+                case '\t': escaped = "\\t"; break;
+                default:
+                    // Control characters, plus the two separators that end a JS line
+                    if (c >= 0x20 && c != '\u2028' && c != '\u2029') continue;
+                    escaped = String.format("\\u%04x", (int) c);
+            }
+            sb.append(value, start, i).append(escaped);
+            start = i + 1;
+        }
+        sb.append(value, start, n).append('"');
+    }
+}
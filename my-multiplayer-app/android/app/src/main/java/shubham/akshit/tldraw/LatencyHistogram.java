@@ -0,0 +1,102 @@
+package shubham.akshit.tldraw;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of nanosecond durations, in the style of
+ * HdrHistogram: each power of two is split into {@link #SUB_BUCKETS} linear
+ * buckets, so any recorded value is reported within 1/16 of its true size
+ * while the whole range (1 ns to hours) fits in a fixed array. Recording is
+ * one atomic increment plus two adders; safe from any thread. Plain Java.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Linear range plus one row per shift; Long.MAX_VALUE lands in the last bucket
+    private static final int BUCKET_COUNT = (63 - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(indexFor(nanos));
+        total.increment();
+        sum.add(nanos);
+        long seen = max.get();
+        while (nanos > seen && !max.compareAndSet(seen, nanos)) seen = max.get();
+    }
+
+    long count() {
+        return total.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Value at the given quantile (0..1), as the midpoint of its bucket capped at
+     * the largest recorded value. Concurrent records may or may not be included.
+     */
+    long percentile(double quantile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long n = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long mid = lowerBound(i) + (upperBound(i) - lowerBound(i)) / 2;
+                return Math.min(mid, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0);
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    // Values below SUB_BUCKETS map to themselves; above that, the top SUB_BITS+1
+    // significant bits pick the bucket within the value's power of two
+    static int indexFor(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index - (long) shift * SUB_BUCKETS;
+        return mantissa << shift;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index - (long) shift * SUB_BUCKETS;
+        long next = (mantissa + 1) << shift;
+        // The last bucket's bound would overflow
+        return next > 0 ? next - 1 : Long.MAX_VALUE;
+    }
+}
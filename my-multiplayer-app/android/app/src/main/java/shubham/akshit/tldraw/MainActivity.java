@@ -2,6 +2,8 @@ package shubham.akshit.tldraw;
 
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.MotionEvent.PointerCoords;
 import android.view.MotionEvent.PointerProperties;
@@ -10,7 +12,6 @@ import android.view.WindowInsets;
 import android.view.WindowInsetsController;
 import android.view.WindowManager;
 import android.webkit.JavascriptInterface;
-import android.util.Base64;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -20,7 +21,6 @@ import android.net.Uri;
 import androidx.core.content.FileProvider;
 import android.webkit.WebView;
 import android.webkit.WebSettings;
-import android.os.Looper;
 
 import androidx.core.view.WindowCompat;
 import androidx.core.view.WindowInsetsCompat;
@@ -42,11 +42,17 @@ import com.getcapacitor.BridgeActivity;
 import android.view.KeyEvent;
 import android.provider.OpenableColumns;
 import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 public class MainActivity extends BridgeActivity {
 
-    private boolean wasButtonPressed = false;
-    private boolean isTouchActive = false;
+    private final StylusButtonState stylusButton = new StylusButtonState();
+    // Palm and stray-finger filter ahead of the WebView; tuned by the page via AndroidNative.configurePalmRejection
+    private PalmRejector palmRejector;
+    private final MotionEventPointers touchPointers = new MotionEventPointers();
 
     // Cached arrays to avoid GC in dispatchTouchEvent
     private final PointerProperties[] cachedPointerProperties = new PointerProperties[10];
@@ -62,42 +68,240 @@ public class MainActivity extends BridgeActivity {
     private boolean isVolUpPressed = false;
     private boolean isVolDownPressed = false;
     
-    // Pending Intent Data (Native Buffer)
-    private String pendingSharedFileUri = null;
-    private String pendingSharedFileUris = null;
-    private String pendingSharedText = null;
+    // Shares waiting for the page, metadata resolved and bytes staged locally on arrival
+    private static final long SHARE_STAGING_BYTES = 512L * 1024 * 1024;
+    private static final long SHARE_METADATA_WAIT_MS = 1000;
+    private static final long SHARE_COPY_WAIT_MS = 5000;
+    private ShareInbox shareInbox;
 
-    // State for chunked file uploads
-    private final java.util.Map<String, FileOutputStream> pendingFiles = new java.util.HashMap<>();
-    private final java.util.Map<String, File> pendingFilePaths = new java.util.HashMap<>();
+    // State for chunked file uploads; sessions are independent and may run concurrently
+    private static final ThreadLocal<byte[]> DECODE_SCRATCH = new ThreadLocal<>();
+    private static final int MAX_RETAINED_SCRATCH = 1024 * 1024;
+    private final java.util.Map<String, DownloadsSink.Target> pendingFiles = new java.util.concurrent.ConcurrentHashMap<>();
+
+    // Streams shared content:// URIs to the page via /_native/content
+    private ContentStreamRoute contentStreamRoute;
+
+    // Binary export pipeline over window.AndroidNativePort
+    private DownloadsSink downloadsSink;
+    private final ExecutorService exportExecutor = Executors.newCachedThreadPool();
+    private NativeMessageChannel messageChannel;
+    // "server_url" from CapacitorPrefs, or null; its origin is allowed to use the message channel
+    private String customServerUrl;
+    private ExportChannel exportChannel;
+    // ColorRM PDF export: pages rendered in parallel, streamed to Downloads one at a time
+    private PdfExportChannel pdfExportChannel;
+    private InkStreamer inkStreamer;
+    private StrokeSimplifyChannel strokeSimplifyChannel;
+    // ColorRM page histories as per-element SQLite rows; lives in files/, not cache/
+    private ProjectStoreChannel projectStoreChannel;
+    // LiveSync sockets held natively, so a paused WebView gets one merged batch on resume instead of a reload
+    private SyncChannel syncChannel;
+    // S Pen button and share notifications, one delivery per frame
+    private NativeEventDispatcher eventDispatcher;
+
+    // Native PDF rasterization: documents in app storage, rendered pages cached in memory and on disk
+    private static final long PDF_TILE_DISK_BYTES = 256L * 1024 * 1024;
+    // Imported PDFs kept for re-rendering; least recently opened go first
+    private static final long PDF_DOCS_BYTES = 512L * 1024 * 1024;
+    private PdfRenderService pdfRenderService;
+
+    // Multi-image shares: parallel downsampled decode, results served from /_native/image
+    private ImageImporter imageImporter;
+
+    // Shared files uploaded by content hash, one at a time, resumable across connections and restarts
+    private AssetUploader assetUploader;
+    private final ExecutorService uploadExecutor = Executors.newSingleThreadExecutor();
+    private final java.util.concurrent.atomic.AtomicLong uploadIds = new java.util.concurrent.atomic.AtomicLong();
+
+    // Disk cache for remote subresources (server bundle, CDN scripts, fonts), warmed at startup
+    private volatile HttpCacheLayer httpCache;
+    private final java.util.concurrent.CompletableFuture<HttpCacheLayer> httpCacheReady =
+            new java.util.concurrent.CompletableFuture<>();
+    private final ExecutorService prefetchExecutor = Executors.newFixedThreadPool(4);
+
+    // Cold-start phases and milestones; exposed as AndroidNative.getStartupTimeline() and logged once interactive
+    private static boolean processStarted;
+    private StartupTimeline startup;
+
+    // On-device log files fed by the page's loggers
+    private NativeLogSink logSink;
+    private static final ThreadLocal<java.text.SimpleDateFormat> LOG_TIME = new ThreadLocal<java.text.SimpleDateFormat>() {
+        @Override
+        protected java.text.SimpleDateFormat initialValue() {
+            return new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", java.util.Locale.US);
+        }
+    };
+
+    // One cache budget for page and native caches, shrunk by onTrimMemory; exposed as AndroidNative.getMemoryBudget()
+    private static final long MEMORY_TICK_MS = 15_000;
+    private MemoryGovernor memoryGovernor;
+
+    // Bridge, job and touch-path timings; exposed as AndroidNative.getBridgeMetrics() and dumped to the log
+    private final BridgeMetrics metrics = new BridgeMetrics();
+    private static final long METRICS_DUMP_INTERVAL_MS = 60_000;
+    private final java.util.concurrent.ScheduledExecutorService metricsDumper =
+            Executors.newSingleThreadScheduledExecutor();
+    private long lastDumpedSamples;
+
+    // Async AndroidNative calls: bounded pool sized to the device, capped queue, per-job timeouts
+    private final NativeJobRunner jobRunner = new NativeJobRunner(
+            NativeJobRunner.defaultThreadCount(), 32, 60_000, this::completeJob);
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
-        // Enable WebView debugging for chrome://inspect
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            WebView.setWebContentsDebuggingEnabled(true);
-        }
+        boolean cold = !processStarted;
+        processStarted = true;
+        startup = new StartupTimeline(AndroidStartupTracer.INSTANCE, SystemClock::elapsedRealtimeNanos,
+                android.os.Process.getStartElapsedRealtime() * 1_000_000, cold);
+        startup.mark("activityCreate");
+
+        // Load the WebView provider now, in parallel, rather than inside super.onCreate
+        prefetchExecutor.execute(this::warmWebViewProvider);
 
-        // 1. DYNAMIC SERVER URL OVERRIDE
-        SharedPreferences prefs = getSharedPreferences("CapacitorPrefs", Context.MODE_PRIVATE);
-        String customUrl = prefs.getString("server_url", null);
+        // 1. DYNAMIC SERVER URL OVERRIDE: the one setting Capacitor needs before it builds the WebView
+        SharedPreferences prefs;
+        String customUrl;
+        try (StartupTimeline.Section ignored = startup.section("startup.prefs")) {
+            prefs = getSharedPreferences("CapacitorPrefs", Context.MODE_PRIVATE);
+            customUrl = prefs.getString("server_url", null);
+        }
 
+        customServerUrl = customUrl;
         if (customUrl != null && !customUrl.isEmpty()) {
             // Tell Capacitor to use this URL instead of the one in config
             getIntent().putExtra("url", customUrl);
         }
 
-        super.onCreate(savedInstanceState);
-        setupNativeInterface();
+        // Disk cache, preconnect and critical bundle prefetch overlap the WebView's construction
+        startNetworkWarmup(prefs, customUrl);
 
-        // Welcome Toast with active URL
-        String urlUsed = (customUrl != null && !customUrl.isEmpty()) ? customUrl : "Default Config";
-        Toast.makeText(this, "Collaborative Suite Pro • " + urlUsed, Toast.LENGTH_LONG).show();
+        try (StartupTimeline.Section ignored = startup.section("startup.bridge")) {
+            super.onCreate(savedInstanceState);
+        }
+        try (StartupTimeline.Section ignored = startup.section("startup.services")) {
+            setupLogSink();
+            setupMemoryGovernor();
+            palmRejector = new PalmRejector(getResources().getDisplayMetrics().xdpi / 25.4f);
+            downloadsSink = new DownloadsSink(this);
+            TileCache pdfTiles = new TileCache(new File(getCacheDir(), "pdf-tiles"),
+                    Runtime.getRuntime().maxMemory() / 16, PDF_TILE_DISK_BYTES);
+            memoryGovernor.register("pdf-tiles", pdfTiles, 1.0);
+            pdfRenderService = new PdfRenderService(new File(getFilesDir(), "pdf-docs"), PDF_DOCS_BYTES, pdfTiles,
+                    AndroidPdfTileRenderer.FACTORY);
+            imageImporter = new ImageImporter(getContentResolver(), new File(getCacheDir(), "image-import"),
+                    uri -> contentStreamRoute != null && contentStreamRoute.isGranted(uri),
+                    Runtime.getRuntime().availableProcessors(), prefetchExecutor);
+            assetUploader = new AssetUploader(new File(getFilesDir(), "asset-uploads"), uploadExecutor,
+                    Thread::sleep, 15_000, 60_000);
+            shareInbox = new ShareInbox(new ContentShareSource(getContentResolver()),
+                    new File(getCacheDir(), "share-import"), SHARE_STAGING_BYTES, prefetchExecutor);
+        }
+        try (StartupTimeline.Section ignored = startup.section("startup.nativeInterface")) {
+            setupNativeInterface();
+        }
+        metricsDumper.scheduleWithFixedDelay(this::dumpMetrics,
+                METRICS_DUMP_INTERVAL_MS, METRICS_DUMP_INTERVAL_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+        metricsDumper.scheduleWithFixedDelay(memoryGovernor::tick,
+                MEMORY_TICK_MS, MEMORY_TICK_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
 
         // Enable edge-to-edge display
         hideSystemUI();
 
         handleIntent(getIntent());
+        startup.mark("activityCreated");
+
+        // Anything the user doesn't need before the first frame waits for it
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> onFirstFrame(prefs, customUrl));
+    }
+
+    private void onFirstFrame(SharedPreferences prefs, String customUrl) {
+        startup.mark("firstFrame");
+
+        // Capacitor already enables chrome://inspect on debuggable builds; this opts a release build in
+        if (prefs.getBoolean("webview_debugging", false)) {
+            WebView.setWebContentsDebuggingEnabled(true);
+        }
+
+        // Welcome Toast with active URL
+        String urlUsed = (customUrl != null && !customUrl.isEmpty()) ? customUrl : "Default Config";
+        Toast.makeText(this, "Collaborative Suite Pro • " + urlUsed, Toast.LENGTH_LONG).show();
+    }
+
+    @Override
+    public void onDestroy() {
+        if (exportChannel != null) exportChannel.cancelAll();
+        if (pdfExportChannel != null) pdfExportChannel.shutdown();
+        exportExecutor.shutdown();
+        jobRunner.shutdown();
+        if (strokeSimplifyChannel != null) strokeSimplifyChannel.shutdown();
+        if (projectStoreChannel != null) projectStoreChannel.shutdown();
+        if (syncChannel != null) syncChannel.shutdown();
+        if (pdfRenderService != null) pdfRenderService.shutdown();
+        if (imageImporter != null) imageImporter.shutdown();
+        if (shareInbox != null) shareInbox.shutdown();
+        prefetchExecutor.shutdownNow();
+        // Acknowledged parts are on disk; the next upload of the same file picks up from there
+        uploadExecutor.shutdownNow();
+        metricsDumper.shutdownNow();
+        dumpMetrics();
+        if (logSink != null) {
+            try {
+                logSink.close();
+            } catch (IOException ignored) {
+            }
+        }
+        // Unfinished chunked saves would otherwise stay pending in Downloads
+        for (DownloadsSink.Target target : pendingFiles.values()) target.abort();
+        pendingFiles.clear();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (memoryGovernor != null) memoryGovernor.onStart();
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        if (syncChannel != null) syncChannel.setPaused(false);
+    }
+
+    @Override
+    public void onPause() {
+        // The page stops running; its sync messages wait natively from here
+        if (syncChannel != null) syncChannel.setPaused(true);
+        super.onPause();
+    }
+
+    @Override
+    public void onStop() {
+        if (httpCache != null) httpCache.saveStartupUrls();
+        if (memoryGovernor != null) memoryGovernor.onStop();
+        super.onStop();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        onMemoryPressure(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        onMemoryPressure(MemoryGovernor.LOW_MEMORY);
+    }
+
+    private void onMemoryPressure(int level) {
+        if (memoryGovernor == null) return;
+        memoryGovernor.onTrim(level);
+        if (logSink != null) {
+            logSink.append(LOG_TIME.get().format(new java.util.Date()) + " [MEMORY] trim " + level + " "
+                    + memoryGovernor.toJson() + "\n");
+        }
     }
 
     @Override
@@ -115,75 +319,310 @@ public class MainActivity extends BridgeActivity {
             
             // ... (settings) ...
 
+            // Serve /_native/* URLs (shared file streams) alongside Capacitor's own routing
+            NativeWebViewClient nativeClient = new NativeWebViewClient(getBridge());
+            contentStreamRoute = new ContentStreamRoute(getContentResolver());
+            contentStreamRoute.setInbox(shareInbox);
+            nativeClient.addRoute(ContentStreamRoute.ROUTE, contentStreamRoute);
+            nativeClient.addRoute(PdfRoute.ROUTE, new PdfRoute(pdfRenderService));
+            nativeClient.addRoute(ImageImporter.ROUTE, imageImporter);
+            nativeClient.setHttpCache(httpCacheReady);
+            nativeClient.addPageStartListener(() -> startup.mark("pageStarted"));
+            nativeClient.addPageFinishListener(() -> startup.mark("pageFinished"));
+            getBridge().setWebViewClient(nativeClient);
+
+            // ArrayBuffer channel for bulk transfers (needs a WebView with message listener support)
+            if (NativeMessageChannel.isSupported()) {
+                messageChannel = new NativeMessageChannel();
+                exportChannel = new ExportChannel(messageChannel, downloadsSink, exportExecutor);
+                exportChannel.addDestination(PdfChannel.TOPIC, (name, mime) -> pdfRenderService.uploadTarget(name));
+                messageChannel.registerTopic(ExportChannel.TOPIC, exportChannel);
+                messageChannel.registerTopic(PdfChannel.TOPIC, new PdfChannel(messageChannel, pdfRenderService, exportExecutor));
+                pdfExportChannel = new PdfExportChannel(messageChannel, downloadsSink, exportExecutor,
+                        new ColorRmPdfRenderer(AndroidPdfImageDecoder.INSTANCE), metrics);
+                messageChannel.registerTopic(PdfExportChannel.TOPIC, pdfExportChannel);
+                inkStreamer = new InkStreamer(messageChannel);
+                messageChannel.registerTopic(InkStreamer.TOPIC, inkStreamer);
+                strokeSimplifyChannel = new StrokeSimplifyChannel(messageChannel);
+                messageChannel.registerTopic(StrokeSimplifyChannel.TOPIC, strokeSimplifyChannel);
+                messageChannel.registerStream(StrokeSimplifyChannel.STREAM_ID, strokeSimplifyChannel);
+                projectStoreChannel = new ProjectStoreChannel(messageChannel,
+                        new File(getFilesDir(), "colorrm/projects.db"), metrics);
+                messageChannel.registerTopic(ProjectStoreChannel.TOPIC, projectStoreChannel);
+                messageChannel.registerStream(ProjectStoreChannel.STREAM_ID, projectStoreChannel);
+                syncChannel = new SyncChannel(messageChannel, Executors.newCachedThreadPool(),
+                        Executors.newSingleThreadExecutor(), metrics);
+                messageChannel.registerTopic(SyncChannel.TOPIC, syncChannel);
+                nativeClient.addPageStartListener(syncChannel::closeAll);
+            }
+            eventDispatcher = new NativeEventDispatcher(messageChannel, this::evaluateJavascript, metrics);
+            nativeClient.addPageStartListener(eventDispatcher::onPageStarted);
+            if (messageChannel != null) {
+                messageChannel.registerTopic(NativeEventDispatcher.TOPIC, eventDispatcher);
+                // The bundled app and the server it talks to; not whatever else gets loaded
+                messageChannel.attach(webView, java.util.Arrays.asList(
+                        getBridge().getLocalUrl(), getBridge().getServerUrl(), customServerUrl));
+            }
+
             getBridge().getWebView().addJavascriptInterface(new Object() {
+                // Every queued share in arrival order (see ShareInbox.toJson), or null when there are none
+                @JavascriptInterface
+                public String drainPendingShares() {
+                    long t0 = System.nanoTime();
+                    String json = shareInbox.isEmpty() ? null : shareInbox.toJson(shareInbox.drain());
+                    metrics.timer("bridge.drainPendingShares").record(t0, 0, json != null ? json.length() : 0);
+                    return json;
+                }
+
+                // Single-kind getters for older page builds; each takes the oldest share of its kind
                 @JavascriptInterface
                 public String getPendingFileUri() {
-                    String uri = pendingSharedFileUri;
-                    pendingSharedFileUri = null; // Clear after read
-                    return uri;
+                    long t0 = System.nanoTime();
+                    ShareInbox.Share share = shareInbox.poll(ShareInbox.Kind.FILE);
+                    metrics.timer("bridge.getPendingFileUri").record(t0);
+                    return share != null ? share.values.get(0) : null;
                 }
 
                 @JavascriptInterface
                 public String getPendingFileUris() {
-                    String uris = pendingSharedFileUris;
-                    pendingSharedFileUris = null; // Clear after read
-                    return uris;
+                    long t0 = System.nanoTime();
+                    ShareInbox.Share share = shareInbox.poll(ShareInbox.Kind.FILES);
+                    metrics.timer("bridge.getPendingFileUris").record(t0);
+                    return share != null ? JsStrings.jsonArray(share.values) : null;
                 }
 
                 @JavascriptInterface
                 public String getPendingSharedText() {
-                    String text = pendingSharedText;
-                    pendingSharedText = null; // Clear after read
-                    return text;
+                    long t0 = System.nanoTime();
+                    ShareInbox.Share share = shareInbox.poll(ShareInbox.Kind.TEXT);
+                    metrics.timer("bridge.getPendingSharedText").record(t0);
+                    return share != null ? share.values.get(0) : null;
                 }
 
                 @JavascriptInterface
                 public String getFileName(String uriString) {
-                    if (uriString == null) return null;
+                    long t0 = System.nanoTime();
                     try {
-                        Uri uri = Uri.parse(uriString);
-                        String result = null;
-                        if (uri.getScheme().equals("content")) {
-                            try (Cursor cursor = getContentResolver().query(uri, null, null, null, null)) {
-                                if (cursor != null && cursor.moveToFirst()) {
-                                    int index = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
-                                    if (index >= 0) {
-                                        result = cursor.getString(index);
-                                    }
-                                }
-                            }
-                        }
-                        if (result == null) {
-                            result = uri.getPath();
-                            int cut = result.lastIndexOf('/');
-                            if (cut != -1) {
-                                result = result.substring(cut + 1);
-                            }
+                        return queryFileName(uriString);
+                    } finally {
+                        metrics.timer("bridge.getFileName").record(t0);
+                    }
+                }
+
+                @JavascriptInterface
+                public String getMimeType(String uriString) {
+                    long t0 = System.nanoTime();
+                    try {
+                        return queryMimeType(uriString);
+                    } finally {
+                        metrics.timer("bridge.getMimeType").record(t0);
+                    }
+                }
+
+                // Single line from the page's logger; the timestamp is added here
+                @JavascriptInterface
+                public void writeLog(String level, String message) {
+                    if (logSink == null) return;
+                    long t0 = System.nanoTime();
+                    logSink.append(LOG_TIME.get().format(new java.util.Date()) + " [" + level + "] " + message + "\n");
+                    metrics.timer("bridge.writeLog").record(t0, message != null ? message.length() : 0, 0);
+                }
+
+                // Many pre-formatted lines in one bridge call
+                @JavascriptInterface
+                public void writeLogBatch(String lines) {
+                    if (logSink == null || lines == null || lines.isEmpty()) return;
+                    long t0 = System.nanoTime();
+                    logSink.append(lines.endsWith("\n") ? lines : lines + "\n");
+                    metrics.timer("bridge.writeLogBatch").record(t0, lines.length(), 0);
+                }
+
+                @JavascriptInterface
+                public String getLogFilePath() {
+                    long t0 = System.nanoTime();
+                    String path = logSink != null ? logSink.currentFile().getAbsolutePath() : null;
+                    metrics.timer("bridge.getLogFilePath").record(t0);
+                    return path;
+                }
+
+                @JavascriptInterface
+                public String getHttpCacheStats() {
+                    long t0 = System.nanoTime();
+                    String json = httpCache != null ? httpCache.statsJson() : null;
+                    metrics.timer("bridge.getHttpCacheStats").record(t0, 0, json != null ? json.length() : 0);
+                    return json;
+                }
+
+                // Native-side timings for the page's performance tools; this and resetBridgeMetrics are not measured
+                @JavascriptInterface
+                public String getBridgeMetrics() {
+                    return metrics.toJson();
+                }
+
+                @JavascriptInterface
+                public void resetBridgeMetrics() {
+                    metrics.reset();
+                }
+
+                // Cold-start timeline (see StartupTimeline.toJson); times are ms since process start
+                @JavascriptInterface
+                public String getStartupTimeline() {
+                    long t0 = System.nanoTime();
+                    String json = startup.toJson();
+                    metrics.timer("bridge.getStartupTimeline").record(t0, 0, json.length());
+                    return json;
+                }
+
+                // Page-side milestones ("appReady", "interactive", ...); only the first of each name counts
+                @JavascriptInterface
+                public void markStartup(String name) {
+                    long t0 = System.nanoTime();
+                    try {
+                        if (name == null || !startup.mark(name)) return;
+                        if ("interactive".equals(name) && logSink != null) {
+                            logSink.append(LOG_TIME.get().format(new java.util.Date()) + " [STARTUP] " + startup.toJson() + "\n");
                         }
-                        return result;
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        return "unknown_file";
+                    } finally {
+                        metrics.timer("bridge.markStartup").record(t0);
+                    }
+                }
+
+                // Budget, footprint, evictions and trims (see MemoryGovernor.toJson); jsBudgetNowBytes is the page's share now
+                @JavascriptInterface
+                public String getMemoryBudget() {
+                    long t0 = System.nanoTime();
+                    String json = memoryGovernor.toJson();
+                    metrics.timer("bridge.getMemoryBudget").record(t0, 0, json.length());
+                    return json;
+                }
+
+                // What one page cache holds after applying a budget, and how many entries it dropped
+                @JavascriptInterface
+                public void reportMemoryUsage(String cache, long bytes, long evicted) {
+                    long t0 = System.nanoTime();
+                    if (cache != null) memoryGovernor.reportJs(cache, bytes, evicted);
+                    metrics.timer("bridge.reportMemoryUsage").record(t0);
+                }
+
+                // Partial config ({enabled, whileHovering, graceMs, palmSizeMm, cancelWindowMs}) merged
+                // over the current one; returns the result. null or "" just reads it.
+                @JavascriptInterface
+                public String configurePalmRejection(String json) {
+                    long t0 = System.nanoTime();
+                    PalmRejector.Config current = palmRejector.config();
+                    try {
+                        if (json == null || json.isEmpty()) return current.toJson();
+                        JSONObject o = new JSONObject(json);
+                        PalmRejector.Config next = new PalmRejector.Config(
+                                o.optBoolean("enabled", current.enabled),
+                                o.optBoolean("whileHovering", current.whileHovering),
+                                o.optLong("graceMs", current.graceMs),
+                                (float) o.optDouble("palmSizeMm", current.palmSizeMm),
+                                o.optLong("cancelWindowMs", current.cancelWindowMs));
+                        palmRejector.setConfig(next);
+                        return next.toJson();
+                    } catch (org.json.JSONException e) {
+                        return current.toJson();
+                    } finally {
+                        metrics.timer("bridge.configurePalmRejection").record(t0, json != null ? json.length() : 0, 0);
+                    }
+                }
+
+                // Uploads a shared file by content hash to endpoint (the page's .../api/uploads/sha256/).
+                // Returns an id at once; progress and the result arrive as "asset-upload" events.
+                @JavascriptInterface
+                public String uploadAsset(String uriString, String mimeType, String endpoint) {
+                    long t0 = System.nanoTime();
+                    try {
+                        return startAssetUpload(uriString, mimeType, endpoint);
+                    } finally {
+                        metrics.timer("bridge.uploadAsset").record(t0);
+                    }
+                }
+
+                private String startAssetUpload(String uriString, String mimeType, String endpoint) {
+                    if (contentStreamRoute == null || !contentStreamRoute.isGranted(uriString)) return null;
+                    String scheme = endpoint != null ? Uri.parse(endpoint).getScheme() : null;
+                    if (!"https".equals(scheme) && !"http".equals(scheme)) return null;
+                    String id = "upload-" + uploadIds.incrementAndGet();
+                    Uri uri = Uri.parse(uriString);
+                    String mime = mimeType != null && !mimeType.isEmpty() ? mimeType : queryMimeType(uriString);
+                    long t0 = System.nanoTime();
+                    assetUploader.upload(endpoint.endsWith("/") ? endpoint : endpoint + "/",
+                            () -> {
+                                InputStream in = getContentResolver().openInputStream(uri);
+                                if (in == null) throw new FileNotFoundException(uriString);
+                                return in;
+                            },
+                            mime,
+                            (sent, total) -> {
+                                java.util.Map<String, Object> progress = uploadStatus(id, "progress");
+                                progress.put("sent", sent);
+                                progress.put("total", total);
+                                postUploadStatus(progress);
+                            })
+                            .whenComplete((result, failure) -> {
+                                BridgeMetrics.Timer timer = metrics.timer("upload.asset");
+                                if (failure != null) {
+                                    timer.error();
+                                    timer.record(t0);
+                                    java.util.Map<String, Object> error = uploadStatus(id, "error");
+                                    Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+                                    error.put("message", String.valueOf(cause.getMessage()));
+                                    postUploadStatus(error);
+                                    return;
+                                }
+                                timer.record(t0, result.bytesSent, 0);
+                                java.util.Map<String, Object> done = uploadStatus(id, "done");
+                                done.put("sha256", result.sha256);
+                                done.put("size", result.size);
+                                done.put("deduplicated", result.deduplicated);
+                                done.put("bytesSent", result.bytesSent);
+                                postUploadStatus(done);
+                            });
+                    return id;
+                }
+
+                @JavascriptInterface
+                public String getAssetUploadStats() {
+                    long t0 = System.nanoTime();
+                    String json = assetUploader.statsJson();
+                    metrics.timer("bridge.getAssetUploadStats").record(t0, 0, json.length());
+                    return json;
+                }
+
+                // Null when the WebView has no port support: the page then keeps its own sockets
+                @JavascriptInterface
+                public String getSyncStats() {
+                    long t0 = System.nanoTime();
+                    String json = syncChannel != null ? syncChannel.statsJson() : null;
+                    metrics.timer("bridge.getSyncStats").record(t0, 0, json != null ? json.length() : 0);
+                    return json;
+                }
+
+                @JavascriptInterface
+                public String getContentStreamUrl(String uriString) {
+                    long t0 = System.nanoTime();
+                    try {
+                        // Same-origin URL the page can fetch() as a stream; null if the URI wasn't shared with us
+                        if (contentStreamRoute == null || !contentStreamRoute.isGranted(uriString)) return null;
+                        return ContentStreamRoute.urlFor(uriString);
+                    } finally {
+                        metrics.timer("bridge.getContentStreamUrl").record(t0);
                     }
                 }
 
                 @JavascriptInterface
                 public String readContentUri(String uriString) {
-                    if (uriString == null) return null;
+                    long t0 = System.nanoTime();
+                    BridgeMetrics.Timer timer = metrics.timer("bridge.readContentUri");
                     try {
-                        Uri uri = Uri.parse(uriString);
-                        try (InputStream iStream = getContentResolver().openInputStream(uri);
-                             ByteArrayOutputStream byteBuffer = new ByteArrayOutputStream()) {
-                            if (iStream == null) return null;
-                            int bufferSize = 1024;
-                            byte[] buffer = new byte[bufferSize];
-                            int len = 0;
-                            while ((len = iStream.read(buffer)) != -1) {
-                                byteBuffer.write(buffer, 0, len);
-                            }
-                            return Base64.encodeToString(byteBuffer.toByteArray(), Base64.NO_WRAP);
-                        }
+                        String base64 = readContentUriBase64(uriString);
+                        timer.record(t0, 0, base64 != null ? base64.length() : 0);
+                        return base64;
                     } catch (Exception e) {
+                        timer.error();
+                        timer.record(t0);
                         e.printStackTrace();
                         return null;
                     }
@@ -191,95 +630,445 @@ public class MainActivity extends BridgeActivity {
 
                 @JavascriptInterface
                 public void saveBlob(String base64Data, String filename, String mimeType) {
+                    long t0 = System.nanoTime();
+                    BridgeMetrics.Timer timer = metrics.timer("bridge.saveBlob");
                     try {
-                        File path = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-                        if (!path.exists()) path.mkdirs();
-                        File file = new File(path, filename);
-                        
-                        // Handle duplicates
-                        int k = 1;
-                        String name = filename;
-                        String ext = "";
-                        int dot = filename.lastIndexOf('.');
-                        if (dot > 0) {
-                            name = filename.substring(0, dot);
-                            ext = filename.substring(dot);
-                        }
-                        while (file.exists()) {
-                            file = new File(path, name + "(" + k++ + ")" + ext);
-                        }
-
-                        byte[] bytes = Base64.decode(base64Data, Base64.DEFAULT);
-                        try (FileOutputStream os = new FileOutputStream(file)) {
-                            os.write(bytes);
-                            os.flush();
-                        }
+                        saveBase64ToDownloads(base64Data, filename, mimeType);
                     } catch (Exception e) {
+                        timer.error();
                         e.printStackTrace();
+                    } finally {
+                        timer.record(t0, base64Data != null ? base64Data.length() : 0, 0);
                     }
                 }
 
+                // Async surface: returns a job id now, result arrives via window.__androidNativeJobDone
+                @JavascriptInterface
+                public long startJob(String method, String argsJson, int timeoutMs) {
+                    long t0 = System.nanoTime();
+                    try {
+                        return jobRunner.submit(() -> timedJob(method, new JSONArray(argsJson != null ? argsJson : "[]")), timeoutMs);
+                    } finally {
+                        metrics.timer("bridge.startJob").record(t0, argsJson != null ? argsJson.length() : 0, 0);
+                    }
+                }
+
+                @JavascriptInterface
+                public boolean cancelJob(long jobId) {
+                    long t0 = System.nanoTime();
+                    boolean cancelled = jobRunner.cancel(jobId);
+                    metrics.timer("bridge.cancelJob").record(t0);
+                    return cancelled;
+                }
+
                 @JavascriptInterface
                 public String startFile(String filename, String sessionId) {
+                    long t0 = System.nanoTime();
+                    BridgeMetrics.Timer timer = metrics.timer("bridge.startFile");
                     try {
-                        File path = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-                        if (!path.exists()) path.mkdirs();
-                        File file = new File(path, filename);
-                        
-                        int k = 1;
-                        String name = filename;
-                        String ext = "";
-                        int dot = filename.lastIndexOf('.');
-                        if (dot > 0) {
-                            name = filename.substring(0, dot);
-                            ext = filename.substring(dot);
-                        }
-                        while (file.exists()) {
-                            file = new File(path, name + "(" + k++ + ")" + ext);
-                        }
-                        
-                        FileOutputStream fos = new FileOutputStream(file);
-                        pendingFiles.put(sessionId, fos);
-                        pendingFilePaths.put(sessionId, file);
-                        
-                        return file.getName();
+                        DownloadsSink.Target target = downloadsSink.open(filename, mimeTypeForName(filename));
+                        DownloadsSink.Target previous = pendingFiles.put(sessionId, target);
+                        if (previous != null) previous.abort();
+                        return target.displayName();
                     } catch (IOException e) {
+                        timer.error();
                         e.printStackTrace();
                         return null;
+                    } finally {
+                        timer.record(t0);
                     }
                 }
 
                 @JavascriptInterface
                 public void appendFile(String base64Chunk, String sessionId) {
+                    long t0 = System.nanoTime();
+                    BridgeMetrics.Timer timer = metrics.timer("bridge.appendFile");
                     try {
-                        FileOutputStream fos = pendingFiles.get(sessionId);
-                        if (fos != null) {
-                            byte[] bytes = Base64.decode(base64Chunk, Base64.DEFAULT);
-                            fos.write(bytes);
+                        DownloadsSink.Target target = pendingFiles.get(sessionId);
+                        if (target != null) {
+                            // Bridge calls arrive on one thread, so the scratch buffer is reused across chunks
+                            byte[] scratch = decodeScratch(base64Chunk.length());
+                            int length = Base64Codec.decode(base64Chunk, scratch, 0);
+                            metrics.add("base64.decodedBytes", length);
+                            // Chunks of one session arrive in order; other sessions use their own channel
+                            java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(scratch, 0, length);
+                            while (buffer.hasRemaining()) target.channel().write(buffer);
                         }
-                    } catch (IOException e) {
+                    } catch (IOException | IllegalArgumentException e) {
+                        timer.error();
                         e.printStackTrace();
+                    } finally {
+                        timer.record(t0, base64Chunk != null ? base64Chunk.length() : 0, 0);
                     }
                 }
 
                 @JavascriptInterface
                 public void finishFile(String sessionId, String mimeType) {
+                    long t0 = System.nanoTime();
+                    BridgeMetrics.Timer timer = metrics.timer("bridge.finishFile");
                     try {
-                        FileOutputStream fos = pendingFiles.remove(sessionId);
-                        File file = pendingFilePaths.remove(sessionId);
-                        if (fos != null) {
-                            fos.flush();
-                            fos.close();
-                        }
+                        DownloadsSink.Target target = pendingFiles.remove(sessionId);
+                        if (target != null) target.commit();
                     } catch (IOException e) {
+                        timer.error();
                         e.printStackTrace();
+                    } finally {
+                        timer.record(t0);
                     }
                 }
+
+                @JavascriptInterface
+                public void abortFile(String sessionId) {
+                    long t0 = System.nanoTime();
+                    DownloadsSink.Target target = pendingFiles.remove(sessionId);
+                    if (target != null) target.abort();
+                    metrics.timer("bridge.abortFile").record(t0);
+                }
             }, "AndroidNative");
         }
     }
 
-    // ... (rest of the file until handleIntent) ...
+    private static java.util.Map<String, Object> uploadStatus(String id, String state) {
+        java.util.Map<String, Object> status = new java.util.LinkedHashMap<>();
+        status.put("id", id);
+        status.put("state", state);
+        return status;
+    }
+
+    private void postUploadStatus(java.util.Map<String, Object> status) {
+        if (eventDispatcher != null) eventDispatcher.assetUpload(status);
+    }
+
+    // Background half of startup: open the disk cache, preconnect to the server, prefetch the bundle
+    private void startNetworkWarmup(SharedPreferences prefs, String customUrl) {
+        prefetchExecutor.execute(() -> {
+            HttpCacheLayer cache;
+            try (StartupTimeline.Section ignored = startup.section("startup.httpCacheOpen")) {
+                cache = openHttpCache(prefs);
+            } catch (RuntimeException e) {
+                // Requests then go straight to the network instead of waiting on the cache
+                httpCacheReady.completeExceptionally(e);
+                android.util.Log.e("ColorRM_Native", "HTTP cache unavailable", e);
+                return;
+            }
+            httpCache = cache;
+            httpCacheReady.complete(cache);
+
+            String origin = customUrl != null && !customUrl.isEmpty() ? customUrl : configuredServerUrl();
+            startup.put("server", customUrl != null && !customUrl.isEmpty() ? "custom" : origin != null ? "config" : "bundled");
+            if (isRemote(origin)) {
+                prefetchExecutor.execute(() -> {
+                    try (StartupTimeline.Section ignored = startup.section("startup.preconnect")) {
+                        startup.put("preconnect", cache.preconnect(origin) ? "ok" : "failed");
+                    }
+                });
+            }
+            try (StartupTimeline.Section ignored = startup.section("startup.prefetchPlan")) {
+                java.util.Set<String> urls = new java.util.LinkedHashSet<>(cache.loadStartupUrls());
+                if (isRemote(origin)) urls.add(origin);
+                urls.addAll(readCacheManifest(cache, isRemote(origin) ? origin : null));
+                startup.put("prefetchUrls", String.valueOf(urls.size()));
+                cache.prefetch(urls, prefetchExecutor);
+            }
+            try {
+                startup.put("appVersion", getPackageManager().getPackageInfo(getPackageName(), 0).versionName);
+            } catch (android.content.pm.PackageManager.NameNotFoundException ignored) {
+            }
+        });
+    }
+
+    private HttpCacheLayer openHttpCache(SharedPreferences prefs) {
+        // Size per device class; "http_cache_mb" overrides for tuning
+        android.app.ActivityManager am = (android.app.ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        long defaultMb = am != null && am.isLowRamDevice() ? 64 : 256;
+        long maxBytes = prefs.getLong("http_cache_mb", defaultMb) * 1024 * 1024;
+        File dir = new File(getCacheDir(), "http");
+        return new HttpCacheLayer(new HttpDiskCache(dir, maxBytes), new File(dir, "startup.txt"), 5_000, 15_000);
+    }
+
+    // server.url from the bundled capacitor.config.json; null when the page itself is bundled
+    private String configuredServerUrl() {
+        try (InputStream in = getAssets().open("capacitor.config.json")) {
+            JSONObject server = new JSONObject(readUtf8(in)).optJSONObject("server");
+            String url = server != null ? server.optString("url", null) : null;
+            return url != null && !url.isEmpty() ? url : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Bundled pages are served by Capacitor on localhost; there is nothing to warm
+    private static boolean isRemote(String url) {
+        if (url == null) return false;
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        return ("https".equals(scheme) || "http".equals(scheme))
+                && uri.getHost() != null && !"localhost".equals(uri.getHost());
+    }
+
+    private void warmWebViewProvider() {
+        try (StartupTimeline.Section ignored = startup.section("startup.webViewWarmup")) {
+            // First use loads the provider package, its classes and native library
+            WebSettings.getDefaultUserAgent(getApplicationContext());
+        } catch (RuntimeException e) {
+            // No usable WebView (being updated); super.onCreate will report it
+            android.util.Log.w("ColorRM_Native", "WebView warm-up failed", e);
+        }
+    }
+
+    // Critical assets listed in cache-manifest.json: bundled copy first, else the server's
+    private java.util.List<String> readCacheManifest(HttpCacheLayer cache, String origin) {
+        java.util.List<String> urls = new ArrayList<>();
+        String json = null;
+        try (InputStream in = getAssets().open("public/cache-manifest.json")) {
+            json = readUtf8(in);
+        } catch (IOException ignored) {
+        }
+        try {
+            if (json == null && origin != null) {
+                HttpCacheLayer.Response response = cache.fetch(
+                        Uri.parse(origin).buildUpon().path("/cache-manifest.json").clearQuery().build().toString(),
+                        new java.util.HashMap<>());
+                if (response != null) {
+                    try (InputStream in = response.body) {
+                        if (response.status == 200) json = readUtf8(in);
+                    }
+                }
+            }
+            if (json == null) return urls;
+            JSONArray list = new JSONObject(json).optJSONArray("urls");
+            if (list == null) return urls;
+            for (int i = 0; i < list.length(); i++) {
+                String url = list.getString(i);
+                if (url.startsWith("/")) {
+                    // Same-origin entries only make sense when the page is served remotely
+                    if (origin == null) continue;
+                    url = Uri.parse(origin).buildUpon().encodedPath(url).clearQuery().build().toString();
+                }
+                urls.add(url);
+            }
+        } catch (Exception e) {
+            android.util.Log.w("ColorRM_Native", "Cache manifest unavailable", e);
+        }
+        return urls;
+    }
+
+    private void setupMemoryGovernor() {
+        android.app.ActivityManager am = (android.app.ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        long memoryClass = (am != null ? am.getMemoryClass() : 128) * 1024L * 1024;
+        Runtime runtime = Runtime.getRuntime();
+        memoryGovernor = new MemoryGovernor(memoryClass, am != null && am.isLowRamDevice(),
+                SystemClock::uptimeMillis, () -> runtime.totalMemory() - runtime.freeMemory());
+        memoryGovernor.setListener((grade, level, jsBudgetBytes) -> {
+            if (eventDispatcher == null) return;
+            java.util.Map<String, Object> budget = new java.util.LinkedHashMap<>();
+            budget.put("grade", grade.id);
+            budget.put("level", level);
+            budget.put("fraction", grade.fraction);
+            budget.put("budgetBytes", jsBudgetBytes);
+            eventDispatcher.memoryTrim(budget);
+        });
+        // Whether the last process was killed for memory is the number this is meant to move
+        if (am != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            prefetchExecutor.execute(() -> {
+                java.util.List<android.app.ApplicationExitInfo> exits =
+                        am.getHistoricalProcessExitReasons(getPackageName(), 0, 1);
+                if (!exits.isEmpty()) memoryGovernor.setLastExit(exitReason(exits.get(0).getReason()));
+            });
+        }
+    }
+
+    private static String exitReason(int reason) {
+        switch (reason) {
+            case android.app.ApplicationExitInfo.REASON_LOW_MEMORY: return "low-memory";
+            case android.app.ApplicationExitInfo.REASON_CRASH:
+            case android.app.ApplicationExitInfo.REASON_CRASH_NATIVE: return "crash";
+            case android.app.ApplicationExitInfo.REASON_ANR: return "anr";
+            case android.app.ApplicationExitInfo.REASON_EXIT_SELF: return "exit-self";
+            case android.app.ApplicationExitInfo.REASON_USER_REQUESTED:
+            case android.app.ApplicationExitInfo.REASON_USER_STOPPED: return "user";
+            case android.app.ApplicationExitInfo.REASON_SIGNALED: return "signaled";
+            default: return "other";
+        }
+    }
+
+    private void setupLogSink() {
+        // 1 MB ring, 4 MB files, 5 generations: ~20 MB of history. The directory is resolved on the sink's thread
+        logSink = new NativeLogSink(() -> {
+            File base = getExternalFilesDir(null);
+            return new File(base != null ? base : getFilesDir(), "logs");
+        }, 1024 * 1024, 4L * 1024 * 1024, 5, 500);
+    }
+
+    private String exportLogs(long maxBytes) throws IOException {
+        if (logSink == null) throw new IOException("Log sink unavailable");
+        String name = "colorrm_logs_" + new java.text.SimpleDateFormat("yyyyMMdd_HHmmss", java.util.Locale.US)
+                .format(new java.util.Date()) + ".txt";
+        DownloadsSink.Target target = downloadsSink.open(name, "text/plain");
+        try {
+            logSink.exportTail(maxBytes, target.channel());
+            target.commit();
+        } catch (IOException | RuntimeException e) {
+            target.abort();
+            throw e;
+        }
+        return target.displayName();
+    }
+
+    // One line per interval into the log file, skipped while nothing was measured
+    private void dumpMetrics() {
+        long samples = metrics.totalSamples();
+        if (logSink == null || samples == lastDumpedSamples) return;
+        lastDumpedSamples = samples;
+        logSink.append(LOG_TIME.get().format(new java.util.Date()) + " [METRICS] " + metrics.toJson() + "\n");
+    }
+
+    private static String readUtf8(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+        return out.toString("UTF-8");
+    }
+
+    private String timedJob(String method, JSONArray args) throws Exception {
+        long t0 = System.nanoTime();
+        BridgeMetrics.Timer timer = metrics.timer("job." + method);
+        try {
+            String result = runJob(method, args);
+            timer.record(t0, 0, result != null ? result.length() : 0);
+            return result;
+        } catch (Exception e) {
+            timer.error();
+            timer.record(t0);
+            throw e;
+        }
+    }
+
+    // Methods available through AndroidNative.startJob(method, argsJson, timeoutMs)
+    private String runJob(String method, JSONArray args) throws Exception {
+        switch (method) {
+            case "getFileName":
+                return queryFileName(args.getString(0));
+            case "getMimeType":
+                return queryMimeType(args.getString(0));
+            case "readContentUri":
+                return readContentUriBase64(args.getString(0));
+            case "saveBlob":
+                return saveBase64ToDownloads(args.getString(0), args.getString(1), args.optString(2, null));
+            case "exportLogs":
+                // [maxMegabytes]: newest log history, across rotated files, into Downloads
+                return exportLogs(args.optLong(0, 8) * 1024 * 1024);
+            case "importImages": {
+                // [uris, {maxDimension, format: "webp"|"jpeg", quality}]
+                JSONObject options = args.optJSONObject(1);
+                if (options == null) options = new JSONObject();
+                return imageImporter.importAll(args.getJSONArray(0),
+                        options.optInt("maxDimension", ImageImporter.DEFAULT_MAX_DIMENSION),
+                        options.optString("format", "webp"), options.optInt("quality", 85));
+            }
+            default:
+                throw new IllegalArgumentException("Unknown native job method: " + method);
+        }
+    }
+
+    private void completeJob(long jobId, boolean ok, String result) {
+        String payload = result != null ? JSONObject.quote(result) : "null";
+        String script = "window.__androidNativeJobDone && window.__androidNativeJobDone(" + jobId + "," + ok + "," + payload + ");";
+        runOnUiThread(() -> evaluateJavascript(script));
+    }
+
+    private String queryFileName(String uriString) {
+        if (uriString == null) return null;
+        // Shared URIs were described on arrival
+        ShareInbox.Metadata staged = shareInbox.metadata(uriString, SHARE_METADATA_WAIT_MS);
+        if (staged != null && staged.name != null) return staged.name;
+        try {
+            Uri uri = Uri.parse(uriString);
+            String result = null;
+            if ("content".equals(uri.getScheme())) {
+                try (Cursor cursor = getContentResolver().query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+                    if (cursor != null && cursor.moveToFirst()) {
+                        int index = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                        if (index >= 0) {
+                            result = cursor.getString(index);
+                        }
+                    }
+                }
+            }
+            if (result == null) {
+                result = uri.getPath();
+                int cut = result.lastIndexOf('/');
+                if (cut != -1) {
+                    result = result.substring(cut + 1);
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return "unknown_file";
+        }
+    }
+
+    private String queryMimeType(String uriString) {
+        if (uriString == null) return null;
+        ShareInbox.Metadata staged = shareInbox.metadata(uriString, SHARE_METADATA_WAIT_MS);
+        if (staged != null && staged.mime != null) return staged.mime;
+        Uri uri = Uri.parse(uriString);
+        String type = getContentResolver().getType(uri);
+        if (type == null) {
+            String ext = MimeTypeMap.getFileExtensionFromUrl(uriString);
+            if (ext != null) type = MimeTypeMap.getSingleton().getMimeTypeFromExtension(ext.toLowerCase());
+        }
+        return type;
+    }
+
+    private String readContentUriBase64(String uriString) throws IOException {
+        if (uriString == null) return null;
+        File local = shareInbox.localCopy(uriString, SHARE_COPY_WAIT_MS);
+        Uri uri = Uri.parse(uriString);
+        try (InputStream iStream = local != null ? new java.io.FileInputStream(local) : getContentResolver().openInputStream(uri)) {
+            if (iStream == null) return null;
+            // Encodes while reading; available() is the file size for local providers
+            String base64 = Base64Codec.encode(iStream, iStream.available());
+            metrics.add("base64.encodedBytes", base64.length() / 4 * 3);
+            return base64;
+        }
+    }
+
+    private String saveBase64ToDownloads(String base64Data, String filename, String mimeType) throws IOException {
+        byte[] bytes = Base64Codec.decode(base64Data);
+        metrics.add("base64.decodedBytes", bytes.length);
+        String mime = mimeType != null && !mimeType.isEmpty() ? mimeType : mimeTypeForName(filename);
+        DownloadsSink.Target target = downloadsSink.open(filename, mime);
+        try {
+            java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) target.channel().write(buffer);
+            target.commit();
+        } catch (IOException | RuntimeException e) {
+            target.abort();
+            throw e;
+        }
+        return target.displayName();
+    }
+
+    // Per-thread decode buffer for appendFile chunks (32 KB from ColorRmStorage); oversized ones aren't kept
+    private static byte[] decodeScratch(int base64Length) {
+        int needed = Base64Codec.maxDecodedLength(base64Length);
+        byte[] scratch = DECODE_SCRATCH.get();
+        if (scratch != null && scratch.length >= needed) return scratch;
+        scratch = new byte[needed];
+        if (needed <= MAX_RETAINED_SCRATCH) DECODE_SCRATCH.set(scratch);
+        return scratch;
+    }
+
+    private static String mimeTypeForName(String filename) {
+        int dot = filename.lastIndexOf('.');
+        String ext = dot >= 0 ? filename.substring(dot + 1).toLowerCase(java.util.Locale.ROOT) : "";
+        String mime = android.webkit.MimeTypeMap.getSingleton().getMimeTypeFromExtension(ext);
+        return mime != null ? mime : "application/octet-stream";
+    }
+
 
     private void handleIntent(Intent intent) {
         if (intent == null) {
@@ -297,76 +1086,69 @@ public class MainActivity extends BridgeActivity {
                 android.util.Log.d("ColorRM_Native", "handleIntent: Shared text=" + sharedText);
                 if (sharedText != null) {
                     // Store in native buffer
-                    pendingSharedText = sharedText;
+                    shareInbox.offerText(sharedText);
                     
                     // Also try to pass to WebView if ready
-                    String safeText = escapeJavascriptString(sharedText);
-                    evaluateJavascript("if(window.handleSharedUrl) { window.handleSharedUrl('" + safeText + "'); }");
+                    if (eventDispatcher != null) eventDispatcher.shareUrl(sharedText);
                 }
             } else {
                 Uri fileUri = intent.getParcelableExtra(Intent.EXTRA_STREAM);
                 android.util.Log.d("ColorRM_Native", "handleIntent: Shared file URI=" + fileUri);
                 if (fileUri != null) {
-                    // Store in native buffer
-                    pendingSharedFileUri = fileUri.toString();
+                    grantContentStream(fileUri);
+
+                    // Store in native buffer; staging starts in the background
+                    shareInbox.offerFile(fileUri.toString());
                     
                     // Also try to pass to WebView if ready
-                    String safeUri = escapeJavascriptString(fileUri.toString());
-                    evaluateJavascript("if(window.handleSharedFile) { window.handleSharedFile('" + safeUri + "'); }");
+                    if (eventDispatcher != null) eventDispatcher.shareFile(fileUri.toString());
                 }
             }
         } else if (Intent.ACTION_SEND_MULTIPLE.equals(action) && type != null) {
             ArrayList<Uri> imageUris = intent.getParcelableArrayListExtra(Intent.EXTRA_STREAM);
             if (imageUris != null) {
-                // Build JSON Array string manually
-                StringBuilder jsonBuilder = new StringBuilder();
-                jsonBuilder.append("[");
-                for (int i = 0; i < imageUris.size(); i++) {
-                    Uri u = imageUris.get(i);
-                    if (i > 0) jsonBuilder.append(",");
-                    jsonBuilder.append("\"").append(escapeJavascriptString(u.toString())).append("\"");
-                }
-                jsonBuilder.append("]");
-                String jsonString = jsonBuilder.toString();
-                
-                android.util.Log.d("ColorRM_Native", "handleIntent: Shared multiple files=" + jsonString);
-                
-                // Store in native buffer
-                pendingSharedFileUris = jsonString;
+                java.util.List<String> uriStrings = new ArrayList<>(imageUris.size());
+                for (Uri u : imageUris) {
+                    grantContentStream(u);
+                    uriStrings.add(u.toString());
+                }
+                android.util.Log.d("ColorRM_Native", "handleIntent: Shared multiple files=" + uriStrings.size());
+
+                // Store in native buffer; staging starts in the background
+                shareInbox.offerFiles(uriStrings);
                 
                 // Also try to pass to WebView if ready
-                evaluateJavascript("if(window.handleSharedFiles) { window.handleSharedFiles(" + jsonString + "); }");
+                if (eventDispatcher != null) eventDispatcher.shareFiles(uriStrings);
             }
         } else if (Intent.ACTION_VIEW.equals(action) && type != null) {
             Uri fileUri = intent.getData();
             android.util.Log.d("ColorRM_Native", "handleIntent: View file URI=" + fileUri);
             if (fileUri != null) {
-                // Store in native buffer
-                pendingSharedFileUri = fileUri.toString();
+                grantContentStream(fileUri);
+
+                // Store in native buffer; staging starts in the background
+                shareInbox.offerFile(fileUri.toString());
                 
                 // Also try to pass to WebView if ready
-                String safeUri = escapeJavascriptString(fileUri.toString());
-                evaluateJavascript("if(window.handleSharedFile) { window.handleSharedFile('" + safeUri + "'); }");
+                if (eventDispatcher != null) eventDispatcher.shareFile(fileUri.toString());
             }
         }
     }
 
+    private void grantContentStream(Uri uri) {
+        if (contentStreamRoute != null) contentStreamRoute.grant(uri);
+    }
+
     private void evaluateJavascript(String script) {
         WebView webView = getBridge().getWebView();
         if (webView != null) {
-            webView.evaluateJavascript(script, null);
+            long t0 = System.nanoTime();
+            // The callback runs once the script has run, so this is post plus execution
+            webView.evaluateJavascript(script,
+                    result -> metrics.timer("js.evaluate").record(t0, script.length(), result != null ? result.length() : 0));
         }
     }
 
-    private String escapeJavascriptString(String text) {
-        if (text == null) return "";
-        return text.replace("\\", "\\\\")
-                   .replace("'", "\\'")
-                   .replace("\"", "\\\"")
-                   .replace("\n", "\\n")
-                   .replace("\r", "\\r");
-    }
-
     @Override
     public void onWindowFocusChanged(boolean hasFocus) {
         super.onWindowFocusChanged(hasFocus);
@@ -409,21 +1191,61 @@ public class MainActivity extends BridgeActivity {
 
     @Override
     public boolean dispatchTouchEvent(MotionEvent event) {
-        if (event.getToolType(0) == MotionEvent.TOOL_TYPE_STYLUS) {
+        long t0 = System.nanoTime();
+        metrics.add("touch.events", 1);
+        metrics.add("touch.samples", event.getHistorySize() + 1);
+        try {
+            return dispatchTouchEventTimed(event);
+        } finally {
+            metrics.timer("touch.dispatch").record(t0);
+        }
+    }
+
+    // Pen hover decides whether a finger landing now is a palm
+    @Override
+    public boolean dispatchGenericMotionEvent(MotionEvent event) {
+        if (palmRejector != null && event.getPointerCount() > 0) {
+            palmRejector.onHoverEvent(event.getActionMasked(), event.getToolType(0), event.getEventTime());
+        }
+        return super.dispatchGenericMotionEvent(event);
+    }
 
-            int action = event.getActionMasked();
-            int buttonState = event.getButtonState();
-            boolean isSideButtonPressed = (buttonState & MotionEvent.BUTTON_STYLUS_PRIMARY) != 0;
+    private boolean dispatchTouchEventTimed(MotionEvent event) {
+        if (palmRejector != null) {
+            int verdict = palmRejector.onTouchEvent(event.getActionMasked(), event.getActionIndex(),
+                    event.getEventTime(), touchPointers.wrap(event));
+            if (verdict == PalmRejector.DROP) {
+                metrics.add("touch.palmDropped", 1);
+                return true;
+            }
+            if (verdict == PalmRejector.CANCEL) {
+                metrics.add("touch.palmCancelled", 1);
+                MotionEvent cancel = MotionEvent.obtain(event);
+                cancel.setAction(MotionEvent.ACTION_CANCEL);
+                if (inkStreamer != null) inkStreamer.onTouchEvent(cancel);
+                boolean result = super.dispatchTouchEvent(cancel);
+                cancel.recycle();
+                return result;
+            }
+            if (verdict == PalmRejector.REWRITE) {
+                metrics.add("touch.palmFiltered", 1);
+                if (inkStreamer != null) inkStreamer.onTouchEvent(event, palmRejector);
+                return dispatchKeptPointers(event);
+            }
+        }
+
+        // Full-rate samples for the page's ink renderer (no-op until it subscribes); palms never reach it
+        if (inkStreamer != null) inkStreamer.onTouchEvent(event);
+
+        if (event.getToolType(0) == MotionEvent.TOOL_TYPE_STYLUS) {
 
-            if (action == MotionEvent.ACTION_DOWN) isTouchActive = true;
-            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) isTouchActive = false;
+            int state = stylusButton.onStylusEvent(event.getActionMasked(), event.getButtonState());
 
-            if (isSideButtonPressed != wasButtonPressed) {
-                wasButtonPressed = isSideButtonPressed;
-                notifyBridge(isSideButtonPressed ? "spen-button-down" : "spen-button-up");
+            if ((state & StylusButtonState.BUTTON_CHANGED) != 0) {
+                if (eventDispatcher != null) eventDispatcher.spenButton(stylusButton.isButtonPressed());
             }
 
-            if (isSideButtonPressed || (wasButtonPressed && isTouchActive)) {
+            if ((state & StylusButtonState.REWRITE) != 0) {
 
                 int pointerCount = event.getPointerCount();
                 // Safety check for array bounds
@@ -437,8 +1259,9 @@ public class MainActivity extends BridgeActivity {
                     event.getPointerCoords(i, coords[i]);
                 }
 
-                int forcedButtonState = isTouchActive ? MotionEvent.BUTTON_PRIMARY : 0;
+                int forcedButtonState = stylusButton.forcedButtonState();
 
+                long obtainStart = System.nanoTime();
                 MotionEvent sanitized = MotionEvent.obtain(
                         event.getDownTime(),
                         event.getEventTime(),
@@ -455,6 +1278,8 @@ public class MainActivity extends BridgeActivity {
                         event.getSource(),
                         event.getFlags()
                 );
+                metrics.timer("touch.obtain").record(obtainStart);
+                metrics.add("touch.sanitized", 1);
 
                 boolean result = super.dispatchTouchEvent(sanitized);
                 sanitized.recycle();
@@ -464,18 +1289,69 @@ public class MainActivity extends BridgeActivity {
         return super.dispatchTouchEvent(event);
     }
 
-    private void notifyBridge(String eventName) {
-        if (getBridge() != null && getBridge().getWebView() != null) {
-            // PERFORMANCE FIX: Check if we are already on UI thread to avoid post() latency
-            if (Looper.myLooper() == Looper.getMainLooper()) {
-                getBridge().getWebView().evaluateJavascript(
-                        "window.dispatchEvent(new CustomEvent('" + eventName + "'));", null);
-            } else {
-                getBridge().getWebView().post(() -> {
-                    getBridge().getWebView().evaluateJavascript(
-                            "window.dispatchEvent(new CustomEvent('" + eventName + "'));", null);
-                });
-            }
+    // The event minus the pointers palmRejector rejected, through the same cached arrays
+    private boolean dispatchKeptPointers(MotionEvent event) {
+        int pointerCount = Math.min(palmRejector.keptCount(), 10);
+        PointerProperties[] props = cachedPointerProperties;
+        PointerCoords[] coords = cachedPointerCoords;
+        for (int k = 0; k < pointerCount; k++) {
+            int i = palmRejector.keptIndex(k);
+            event.getPointerProperties(i, props[k]);
+            event.getPointerCoords(i, coords[k]);
+        }
+        // A pen that outlived a cancelled gesture starts a new one now
+        boolean freshDown = (palmRejector.rewrittenAction() & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_DOWN
+                && event.getActionMasked() != MotionEvent.ACTION_DOWN;
+        long obtainStart = System.nanoTime();
+        MotionEvent filtered = MotionEvent.obtain(
+                freshDown ? event.getEventTime() : event.getDownTime(),
+                event.getEventTime(),
+                palmRejector.rewrittenAction(),
+                pointerCount,
+                props,
+                coords,
+                event.getMetaState(),
+                event.getButtonState(),
+                event.getXPrecision(),
+                event.getYPrecision(),
+                event.getDeviceId(),
+                event.getEdgeFlags(),
+                event.getSource(),
+                event.getFlags()
+        );
+        metrics.timer("touch.obtain").record(obtainStart);
+        boolean result = super.dispatchTouchEvent(filtered);
+        filtered.recycle();
+        return result;
+    }
+
+    // PalmRejector's view of a MotionEvent; one instance, re-pointed at each event
+    private static final class MotionEventPointers implements PalmRejector.Pointers {
+        private MotionEvent event;
+
+        MotionEventPointers wrap(MotionEvent event) {
+            this.event = event;
+            return this;
+        }
+
+        @Override
+        public int pointerCount() {
+            return event.getPointerCount();
+        }
+
+        @Override
+        public int pointerId(int index) {
+            return event.getPointerId(index);
+        }
+
+        @Override
+        public int toolType(int index) {
+            return event.getToolType(index);
+        }
+
+        @Override
+        public float touchMajor(int index) {
+            return event.getTouchMajor(index);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,308 @@
+package shubham.akshit.tldraw;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * One memory budget for the app's caches, shrunk when the system asks us to trim.
+ *
+ * Budgets come from the device's memory class: the page's caches get
+ * {@link #JS_SHARE} of it, native caches {@link #NATIVE_SHARE}, both halved on
+ * low-RAM devices. Each {@code onTrimMemory} level maps to a {@link Grade}, i.e.
+ * a fraction of those budgets; registered native caches are capped right away
+ * and the page is told its new budget through the {@link Listener}.
+ *
+ * Background-only levels are lifted when the app comes back to the foreground;
+ * pressure while running is lifted once {@link #RECOVERY_MS} pass without another
+ * trim ({@link #tick}). Peak footprint, evictions and trims per level are kept
+ * for {@link #toJson()}. Plain Java.
+ */
+final class MemoryGovernor {
+
+    // Same values as ComponentCallbacks2.TRIM_MEMORY_*
+    static final int TRIM_RUNNING_MODERATE = 5;
+    static final int TRIM_RUNNING_LOW = 10;
+    static final int TRIM_RUNNING_CRITICAL = 15;
+    static final int TRIM_UI_HIDDEN = 20;
+    static final int TRIM_BACKGROUND = 40;
+    static final int TRIM_MODERATE = 60;
+    static final int TRIM_COMPLETE = 80;
+    // onLowMemory() is reported as this level
+    static final int LOW_MEMORY = TRIM_COMPLETE;
+
+    static final double JS_SHARE = 0.5;
+    static final double NATIVE_SHARE = 1.0 / 16;
+    static final long RECOVERY_MS = 60_000;
+
+    enum Grade {
+        NORMAL("normal", 1.0),
+        MODERATE("moderate", 0.75),
+        LOW("low", 0.5),
+        CRITICAL("critical", 0.25),
+        // Next in line to be killed: everything that can be rebuilt goes
+        EMPTY("empty", 0.0);
+
+        final String id;
+        final double fraction;
+
+        Grade(String id, double fraction) {
+            this.id = id;
+            this.fraction = fraction;
+        }
+    }
+
+    static Grade gradeFor(int level) {
+        if (level >= TRIM_MODERATE) return Grade.EMPTY;
+        if (level >= TRIM_BACKGROUND) return Grade.CRITICAL;
+        if (level >= TRIM_UI_HIDDEN) return Grade.LOW;
+        if (level >= TRIM_RUNNING_CRITICAL) return Grade.CRITICAL;
+        if (level >= TRIM_RUNNING_LOW) return Grade.LOW;
+        if (level >= TRIM_RUNNING_MODERATE) return Grade.MODERATE;
+        return Grade.NORMAL;
+    }
+
+    /** A native cache the governor can cap. */
+    interface Trimmable {
+        long sizeBytes();
+
+        /** Caps the cache at {@code bytes} (until raised again); returns the entries evicted. */
+        int limitTo(long bytes);
+    }
+
+    interface Listener {
+        // Called on the thread that reported the trim
+        void onBudget(Grade grade, int level, long jsBudgetBytes);
+    }
+
+    private static final class Registered {
+        final String name;
+        final Trimmable cache;
+        final double share;
+        long evictions;
+
+        Registered(String name, Trimmable cache, double share) {
+            this.name = name;
+            this.cache = cache;
+            this.share = share;
+        }
+    }
+
+    private static final class JsUsage {
+        long bytes;
+        long evictions;
+    }
+
+    private final long memoryClassBytes;
+    private final long jsBudget;
+    private final long nativeBudget;
+    private final LongSupplier clock;
+    private final LongSupplier heapUsed;
+    private final List<Registered> caches = new ArrayList<>();
+    private final Map<String, JsUsage> jsUsage = new LinkedHashMap<>();
+    private final Map<Integer, Long> trimsByLevel = new TreeMap<>();
+    private Listener listener;
+
+    private Grade grade = Grade.NORMAL;
+    private int level;
+    private long lastTrimMs;
+    private boolean foreground = true;
+    private long peakFootprint;
+    private long peakHeap;
+    private String lastExit;
+
+    /**
+     * @param memoryClassBytes {@code ActivityManager.getMemoryClass()} in bytes
+     * @param heapUsed         Java heap in use, sampled for the peak
+     */
+    MemoryGovernor(long memoryClassBytes, boolean lowRam, LongSupplier clock, LongSupplier heapUsed) {
+        this.memoryClassBytes = memoryClassBytes;
+        long scale = lowRam ? 2 : 1;
+        this.jsBudget = (long) (memoryClassBytes * JS_SHARE) / scale;
+        this.nativeBudget = (long) (memoryClassBytes * NATIVE_SHARE) / scale;
+        this.clock = clock;
+        this.heapUsed = heapUsed;
+    }
+
+    synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Adds a native cache that gets {@code share} of the native budget; it is capped immediately. */
+    synchronized void register(String name, Trimmable cache, double share) {
+        Registered r = new Registered(name, cache, share);
+        caches.add(r);
+        r.evictions += cache.limitTo(budgetFor(r, grade));
+    }
+
+    long jsBudget() {
+        return jsBudget;
+    }
+
+    synchronized Grade grade() {
+        return grade;
+    }
+
+    synchronized long jsBudgetNow() {
+        return (long) (jsBudget * grade.fraction);
+    }
+
+    /** {@code onTrimMemory} / {@code onLowMemory}. */
+    void onTrim(int level) {
+        Listener notify;
+        Grade now;
+        synchronized (this) {
+            trimsByLevel.merge(level, 1L, Long::sum);
+            lastTrimMs = clock.getAsLong();
+            Grade requested = gradeFor(level);
+            // Harsher levels always apply; a milder one only eases pressure reported while running,
+            // background grades wait for onStart
+            boolean eases = requested.ordinal() < grade.ordinal() && level < TRIM_UI_HIDDEN && this.level < TRIM_UI_HIDDEN;
+            if (requested == grade || (requested.ordinal() < grade.ordinal() && !eases)) {
+                sample();
+                return;
+            }
+            now = apply(requested, level);
+            notify = listener;
+        }
+        if (notify != null) notify.onBudget(now, level, (long) (jsBudget * now.fraction));
+    }
+
+    /** Lifts background-only grades: the app is visible again. */
+    void onStart() {
+        Listener notify = null;
+        Grade now = null;
+        synchronized (this) {
+            foreground = true;
+            if (grade != Grade.NORMAL && level >= TRIM_UI_HIDDEN) {
+                now = apply(Grade.NORMAL, 0);
+                notify = listener;
+            }
+        }
+        if (notify != null) notify.onBudget(now, 0, jsBudget);
+    }
+
+    synchronized void onStop() {
+        foreground = false;
+    }
+
+    /** Periodic: samples the peak and lifts running pressure that has gone quiet. */
+    void tick() {
+        Listener notify = null;
+        synchronized (this) {
+            sample();
+            if (grade == Grade.NORMAL || !foreground || clock.getAsLong() - lastTrimMs < RECOVERY_MS) return;
+            apply(Grade.NORMAL, 0);
+            notify = listener;
+        }
+        if (notify != null) notify.onBudget(Grade.NORMAL, 0, jsBudget);
+    }
+
+    /** What the page's caches hold after it applied a budget (or whenever it likes). */
+    synchronized void reportJs(String cache, long bytes, long evicted) {
+        JsUsage usage = jsUsage.computeIfAbsent(cache, k -> new JsUsage());
+        usage.bytes = Math.max(0, bytes);
+        if (evicted > 0) usage.evictions += evicted;
+        sample();
+    }
+
+    /** How the previous process ended (e.g. "low-memory"), when the platform says. */
+    synchronized void setLastExit(String reason) {
+        lastExit = reason;
+    }
+
+    synchronized long evictions() {
+        long total = 0;
+        for (Registered r : caches) total += r.evictions;
+        for (JsUsage u : jsUsage.values()) total += u.evictions;
+        return total;
+    }
+
+    synchronized long footprint() {
+        long total = 0;
+        for (Registered r : caches) total += r.cache.sizeBytes();
+        for (JsUsage u : jsUsage.values()) total += u.bytes;
+        return total;
+    }
+
+    synchronized long peakFootprint() {
+        return peakFootprint;
+    }
+
+    // Locked
+    private Grade apply(Grade next, int level) {
+        grade = next;
+        this.level = level;
+        for (Registered r : caches) r.evictions += r.cache.limitTo(budgetFor(r, next));
+        sample();
+        return next;
+    }
+
+    private long budgetFor(Registered r, Grade g) {
+        return (long) (nativeBudget * r.share * g.fraction);
+    }
+
+    // Locked
+    private void sample() {
+        peakFootprint = Math.max(peakFootprint, footprint());
+        peakHeap = Math.max(peakHeap, heapUsed.getAsLong());
+    }
+
+    /**
+     * <pre>
+     * {"grade":"low","level":10,"memoryClassMb":192,"jsBudgetBytes":..,"jsBudgetNowBytes":..,
+     *  "nativeBudgetBytes":..,"footprintBytes":..,"peakFootprintBytes":..,"peakHeapBytes":..,
+     *  "evictions":..,"trims":{"10":2,...},"lastExit":"low-memory",
+     *  "caches":{"pdf-tiles":{"bytes":..,"evictions":..,"native":true},...}}
+     * </pre>
+     */
+    synchronized String toJson() {
+        sample();
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"grade\":\"").append(grade.id).append('"')
+                .append(",\"level\":").append(level)
+                .append(",\"memoryClassMb\":").append(memoryClassBytes / (1024 * 1024))
+                .append(",\"jsBudgetBytes\":").append(jsBudget)
+                .append(",\"jsBudgetNowBytes\":").append((long) (jsBudget * grade.fraction))
+                .append(",\"nativeBudgetBytes\":").append(nativeBudget)
+                .append(",\"footprintBytes\":").append(footprint())
+                .append(",\"peakFootprintBytes\":").append(peakFootprint)
+                .append(",\"peakHeapBytes\":").append(peakHeap)
+                .append(",\"evictions\":").append(evictions())
+                .append(",\"trims\":{");
+        boolean first = true;
+        for (Map.Entry<Integer, Long> e : trimsByLevel.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append('"').append(e.getKey()).append("\":").append(e.getValue());
+        }
+        sb.append("},\"lastExit\":");
+        if (lastExit != null) {
+            JsStrings.appendJsonString(sb, lastExit);
+        } else {
+            sb.append("null");
+        }
+        sb.append(",\"caches\":{");
+        first = true;
+        for (Registered r : caches) {
+            if (!first) sb.append(',');
+            first = false;
+            JsStrings.appendJsonString(sb, r.name);
+            sb.append(":{\"bytes\":").append(r.cache.sizeBytes())
+                    .append(",\"evictions\":").append(r.evictions)
+                    .append(",\"native\":true}");
+        }
+        for (Map.Entry<String, JsUsage> e : jsUsage.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            JsStrings.appendJsonString(sb, e.getKey());
+            sb.append(":{\"bytes\":").append(e.getValue().bytes)
+                    .append(",\"evictions\":").append(e.getValue().evictions)
+                    .append(",\"native\":false}");
+        }
+        return sb.append("}}").toString();
+    }
+}
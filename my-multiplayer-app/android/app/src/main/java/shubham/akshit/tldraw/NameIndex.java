@@ -0,0 +1,65 @@
+package shubham.akshit.tldraw;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory record of the file names taken in one directory.
+ *
+ * Seeded once from a directory listing, then kept current by {@link #claim}
+ * and {@link #release}, so picking a free "name(k).ext" never touches the
+ * filesystem. The next suffix to try is remembered per base name, which keeps
+ * a folder full of "Page(37).png" from being rescanned on every export.
+ */
+final class NameIndex {
+
+    private final Set<String> taken = new HashSet<>();
+    // "name" + "\u0000" + ".ext" -> next k to try
+    private final Map<String, Integer> nextSuffix = new HashMap<>();
+    private boolean seeded;
+
+    synchronized boolean isSeeded() {
+        return seeded;
+    }
+
+    synchronized void seed(Iterable<String> existing) {
+        for (String name : existing) taken.add(name);
+        seeded = true;
+    }
+
+    synchronized void markTaken(String name) {
+        taken.add(name);
+    }
+
+    /** Reserves and returns a free name: "name.ext", else "name(1).ext", "name(2).ext", ... */
+    synchronized String claim(String filename) {
+        if (taken.add(filename)) return filename;
+
+        String name = filename;
+        String ext = "";
+        int dot = filename.lastIndexOf('.');
+        if (dot > 0) {
+            name = filename.substring(0, dot);
+            ext = filename.substring(dot);
+        }
+        String key = name + '\u0000' + ext;
+        int k = nextSuffix.getOrDefault(key, 1);
+        String candidate = name + "(" + k + ")" + ext;
+        while (!taken.add(candidate)) {
+            candidate = name + "(" + ++k + ")" + ext;
+        }
+        nextSuffix.put(key, k + 1);
+        return candidate;
+    }
+
+    /** Gives a name back, e.g. after an aborted export. */
+    synchronized void release(String name) {
+        taken.remove(name);
+    }
+
+    synchronized int size() {
+        return taken.size();
+    }
+}
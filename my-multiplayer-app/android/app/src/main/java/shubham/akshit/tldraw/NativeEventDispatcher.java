@@ -0,0 +1,147 @@
+package shubham.akshit.tldraw;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * "events" topic: native-to-page notifications (S Pen button, shares, memory budget, uploads) queued as
+ * typed entries and delivered once per frame as a single message, instead of
+ * one {@code evaluateJavascript} per event. Repeats within a frame follow the
+ * type's {@link NativeEventQueue.Policy}.
+ *
+ * <pre>
+ * page → {op:"subscribe"}     native → {topic:"events", events:[{type, seq, data}, ...]} per frame
+ * page → {op:"unsubscribe"}
+ * </pre>
+ *
+ * Until the current page subscribes (or without port support), each frame's
+ * batch runs as one script through {@link #RELAY_PREFIX}, which raises the
+ * same window events and handlers the page used before. A new page load
+ * drops the subscription.
+ */
+class NativeEventDispatcher implements NativeMessageChannel.TopicHandler, Choreographer.FrameCallback {
+
+    static final String TOPIC = "events";
+
+    interface ScriptRunner {
+        // Called on the UI thread
+        void evaluate(String script);
+    }
+
+    // Kept in step with the page-side relays in NativeBridge.js and client/utils/androidNative.ts
+    static final String RELAY_PREFIX = "(function(events){events.forEach(function(e){"
+            + "if(e.type==='spen-button'){window.dispatchEvent(new CustomEvent(e.data?'spen-button-down':'spen-button-up'));}"
+            + "else if(e.type==='share-file'){if(window.handleSharedFile){window.handleSharedFile(e.data);}}"
+            + "else if(e.type==='share-files'){if(window.handleSharedFiles){window.handleSharedFiles(e.data);}}"
+            + "else if(e.type==='share-url'){if(window.handleSharedUrl){window.handleSharedUrl(e.data);}}"
+            + "else if(e.type==='memory-trim'){window.dispatchEvent(new CustomEvent('native-memory-trim',{detail:e.data}));}"
+            + "else if(e.type==='asset-upload'){window.dispatchEvent(new CustomEvent('native-asset-upload',{detail:e.data}));}"
+            + "});})(";
+
+    private final NativeEventQueue queue = new NativeEventQueue();
+    private final int spenButton = queue.register("spen-button", NativeEventQueue.Policy.TOGGLE);
+    private final int shareFile = queue.register("share-file", NativeEventQueue.Policy.KEEP);
+    private final int shareFiles = queue.register("share-files", NativeEventQueue.Policy.KEEP);
+    private final int shareUrl = queue.register("share-url", NativeEventQueue.Policy.KEEP);
+    // Only the newest budget matters
+    private final int memoryTrim = queue.register("memory-trim", NativeEventQueue.Policy.LATEST);
+    // Progress of several uploads can share a frame; each one matters
+    private final int assetUpload = queue.register("asset-upload", NativeEventQueue.Policy.KEEP);
+
+    private final NativeMessageChannel channel;
+    private final ScriptRunner fallback;
+    private final BridgeMetrics metrics;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean subscribed = false;
+    // UI thread only
+    private boolean frameScheduled = false;
+    private long reportedCoalesced;
+
+    /** @param channel may be null when the WebView has no message listener support */
+    NativeEventDispatcher(NativeMessageChannel channel, ScriptRunner fallback, BridgeMetrics metrics) {
+        this.channel = channel;
+        this.fallback = fallback;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onMessage(JSONObject message) throws JSONException {
+        String op = message.getString("op");
+        if ("subscribe".equals(op)) {
+            subscribed = true;
+        } else if ("unsubscribe".equals(op)) {
+            subscribed = false;
+        }
+    }
+
+    void spenButton(boolean pressed) {
+        post(spenButton, pressed);
+    }
+
+    void shareFile(String uri) {
+        post(shareFile, uri);
+    }
+
+    void shareFiles(List<String> uris) {
+        post(shareFiles, uris);
+    }
+
+    void shareUrl(String text) {
+        post(shareUrl, text);
+    }
+
+    /** {@code {grade, level, budgetBytes}} for the page's caches; see {@link MemoryGovernor}. */
+    void memoryTrim(Map<String, Object> budget) {
+        post(memoryTrim, budget);
+    }
+
+    /** {@code {id, state:"progress"|"done"|"error", ...}}; see {@link AssetUploader}. */
+    void assetUpload(Map<String, Object> status) {
+        post(assetUpload, status);
+    }
+
+    // Any thread; delivered on the next frame
+    private void post(int type, Object data) {
+        metrics.add("events.posted", 1);
+        if (!queue.offer(type, data)) return;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            scheduleFrame();
+        } else {
+            mainHandler.post(this::scheduleFrame);
+        }
+    }
+
+    void onPageStarted() {
+        subscribed = false;
+        queue.resetDeliveredState();
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled) return;
+        frameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        List<NativeEventQueue.Event> batch = queue.drain();
+        if (batch.isEmpty()) return;
+        long t0 = System.nanoTime();
+        String events = queue.toJson(batch);
+        if (subscribed && channel != null && channel.isConnected()) {
+            channel.postString("{\"topic\":\"" + TOPIC + "\",\"events\":" + events + "}");
+        } else {
+            fallback.evaluate(RELAY_PREFIX + events + ");");
+        }
+        metrics.timer("events.flush").record(t0, 0, events.length());
+        long coalesced = queue.coalesced();
+        metrics.add("events.coalesced", coalesced - reportedCoalesced);
+        reportedCoalesced = coalesced;
+    }
+}
@@ -0,0 +1,157 @@
+package shubham.akshit.tldraw;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pending native-to-page events between two frames.
+ *
+ * Events keep the order they were offered in; each carries a sequence number so
+ * the page can tell batches apart. What happens to a repeat of the same type
+ * before the next flush depends on the type's {@link Policy}:
+ * <ul>
+ * <li>{@code KEEP}: every event is delivered (shares).</li>
+ * <li>{@code LATEST}: only the newest is delivered, at the newest one's position.</li>
+ * <li>{@code TOGGLE}: boolean state; a change and its reversal within one frame
+ *     cancel out, and a repeat of the last delivered state is dropped (button chatter).</li>
+ * </ul>
+ * Payloads are stored as given and only turned into JSON at flush. Thread-safe. Plain Java.
+ */
+final class NativeEventQueue {
+
+    enum Policy { KEEP, LATEST, TOGGLE }
+
+    static final class Event {
+        final int type;
+        final long seq;
+        // String, Boolean, Number or List<String>
+        final Object data;
+
+        Event(int type, long seq, Object data) {
+            this.type = type;
+            this.seq = seq;
+            this.data = data;
+        }
+    }
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Policy> policies = new ArrayList<>();
+    private final List<Object> lastDelivered = new ArrayList<>();
+    private final List<Event> pending = new ArrayList<>();
+    private long nextSeq = 1;
+    private long coalesced;
+
+    /** Registers an event type; returns the id to pass to {@link #offer}. */
+    synchronized int register(String name, Policy policy) {
+        names.add(name);
+        policies.add(policy);
+        lastDelivered.add(null);
+        return names.size() - 1;
+    }
+
+    String name(int type) {
+        return names.get(type);
+    }
+
+    /** Queues an event; returns true if the queue was empty, i.e. a flush needs scheduling. */
+    synchronized boolean offer(int type, Object data) {
+        boolean wasEmpty = pending.isEmpty();
+        Policy policy = policies.get(type);
+        if (policy != Policy.KEEP) {
+            int existing = indexOfType(type);
+            if (existing >= 0) {
+                Event previous = pending.remove(existing);
+                coalesced++;
+                if (policy == Policy.TOGGLE && !previous.data.equals(data)) {
+                    // The state flipped back before anyone saw it
+                    coalesced++;
+                    return false;
+                }
+            } else if (policy == Policy.TOGGLE && data.equals(lastDelivered.get(type))) {
+                coalesced++;
+                return false;
+            }
+        }
+        pending.add(new Event(type, nextSeq++, data));
+        return wasEmpty && !pending.isEmpty();
+    }
+
+    synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /** Everything queued since the last drain, in order. */
+    synchronized List<Event> drain() {
+        List<Event> batch = new ArrayList<>(pending);
+        pending.clear();
+        for (Event e : batch) {
+            if (policies.get(e.type) == Policy.TOGGLE) lastDelivered.set(e.type, e.data);
+        }
+        return batch;
+    }
+
+    /** Events that were merged away or dropped by their type's policy. */
+    synchronized long coalesced() {
+        return coalesced;
+    }
+
+    /** Forgets delivered TOGGLE state, e.g. when a new page loads and knows nothing yet. */
+    synchronized void resetDeliveredState() {
+        for (int i = 0; i < lastDelivered.size(); i++) lastDelivered.set(i, null);
+    }
+
+    private int indexOfType(int type) {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            if (pending.get(i).type == type) return i;
+        }
+        return -1;
+    }
+
+    /** {@code [{"type":...,"seq":...,"data":...},...]} */
+    String toJson(List<Event> batch) {
+        StringBuilder sb = new StringBuilder(64 * batch.size() + 2);
+        sb.append('[');
+        for (int i = 0; i < batch.size(); i++) {
+            Event e = batch.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"type\":");
+            JsStrings.appendJsonString(sb, names.get(e.type));
+            sb.append(",\"seq\":").append(e.seq).append(",\"data\":");
+            appendValue(sb, e.data);
+            sb.append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String) {
+            JsStrings.appendJsonString(sb, (String) value);
+        } else if (value instanceof Boolean || value instanceof Number) {
+            sb.append(value);
+        } else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                JsStrings.appendJsonString(sb, String.valueOf(e.getKey()));
+                sb.append(':');
+                appendValue(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof List) {
+            sb.append('[');
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) sb.append(',');
+                appendValue(sb, list.get(i));
+            }
+            sb.append(']');
+        } else {
+            JsStrings.appendJsonString(sb, value.toString());
+        }
+    }
+}
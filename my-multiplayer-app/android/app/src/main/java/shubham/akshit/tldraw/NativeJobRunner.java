@@ -0,0 +1,142 @@
+package shubham.akshit.tldraw;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs bridge calls off the JavaBridge thread.
+ *
+ * {@link #submit} hands back a job id straight away; the result arrives later
+ * through the single {@link CompletionSink}, exactly once per job, whether the
+ * job finished, failed, timed out or was cancelled.
+ */
+class NativeJobRunner {
+
+    interface Job {
+        // Result is passed to JS as a string (callers encode JSON themselves)
+        String run() throws Exception;
+    }
+
+    interface CompletionSink {
+        void complete(long jobId, boolean ok, String result);
+    }
+
+    private static class Entry {
+        final AtomicBoolean done = new AtomicBoolean(false);
+        volatile Future<?> future;
+        volatile ScheduledFuture<?> timeout;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer;
+    private final CompletionSink sink;
+    private final int maxPending;
+    private final long defaultTimeoutMs;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final Map<Long, Entry> jobs = new ConcurrentHashMap<>();
+
+    NativeJobRunner(int threads, int maxPending, long defaultTimeoutMs, CompletionSink sink) {
+        AtomicInteger threadCount = new AtomicInteger(1);
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxPending),
+                r -> {
+                    Thread t = new Thread(r, "native-job-" + threadCount.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "native-job-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.sink = sink;
+        this.maxPending = maxPending;
+        this.defaultTimeoutMs = defaultTimeoutMs;
+    }
+
+    // One thread per core, leaving one for the UI and render threads
+    static int defaultThreadCount() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    long submit(Job job, long timeoutMs) {
+        long id = nextId.getAndIncrement();
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            sink.complete(id, false, "Too many pending native jobs (max " + maxPending + ")");
+            return id;
+        }
+
+        Entry entry = new Entry();
+        jobs.put(id, entry);
+        try {
+            entry.future = executor.submit(() -> {
+                try {
+                    String result = job.run();
+                    finish(id, true, result);
+                } catch (InterruptedException e) {
+                    finish(id, false, "Cancelled");
+                } catch (Exception e) {
+                    finish(id, false, e.getClass().getSimpleName() + ": " + e.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            finish(id, false, "Rejected: " + e.getMessage());
+            return id;
+        }
+
+        long effectiveTimeout = timeoutMs > 0 ? timeoutMs : defaultTimeoutMs;
+        if (effectiveTimeout > 0) {
+            entry.timeout = timer.schedule(() -> {
+                if (finish(id, false, "Timed out after " + effectiveTimeout + "ms")) {
+                    Future<?> future = entry.future;
+                    if (future != null) future.cancel(true);
+                }
+            }, effectiveTimeout, TimeUnit.MILLISECONDS);
+        }
+        return id;
+    }
+
+    boolean cancel(long id) {
+        Entry entry = jobs.get(id);
+        if (entry == null) return false;
+        if (!finish(id, false, "Cancelled")) return false;
+        Future<?> future = entry.future;
+        if (future != null) future.cancel(true);
+        return true;
+    }
+
+    int pendingCount() {
+        return pending.get();
+    }
+
+    void shutdown() {
+        for (Long id : jobs.keySet()) cancel(id);
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    // Returns true only for the call that actually completed the job
+    private boolean finish(long id, boolean ok, String result) {
+        Entry entry = jobs.get(id);
+        if (entry == null || !entry.done.compareAndSet(false, true)) return false;
+        jobs.remove(id);
+        pending.decrementAndGet();
+        ScheduledFuture<?> timeout = entry.timeout;
+        if (timeout != null) timeout.cancel(false);
+        sink.complete(id, ok, result);
+        return true;
+    }
+}
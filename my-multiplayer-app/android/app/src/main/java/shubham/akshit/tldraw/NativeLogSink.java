@@ -0,0 +1,301 @@
+package shubham.akshit.tldraw;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * High-volume log sink for the page's loggers.
+ *
+ * Appends only copy bytes into a preallocated ring buffer under a short lock;
+ * a background thread drains the ring to {@code colorrm.log}, rotating to
+ * {@code colorrm.1.log ... colorrm.N.log} when the file reaches its size cap.
+ * If the writer falls behind and the ring is full, new text is dropped and
+ * counted rather than blocking the caller. When the disk fails (full, or the
+ * file could not be reopened after a rotation) the writer backs off and reopens
+ * the file on its next attempt. The constructor does no I/O: the directory is
+ * looked up, and the file opened, by the writer's first drain. Plain Java.
+ */
+final class NativeLogSink implements Closeable {
+
+    private static final String BASE_NAME = "colorrm";
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final Supplier<File> dirSource;
+    private volatile File dir;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final long flushIntervalMs;
+
+    private final byte[] ring;
+    private final Object lock = new Object();
+    // Monotonic positions; ring index is position % ring.length
+    private long writePos;
+    private long readPos;
+    private long droppedBytes;
+    private long droppedAppends;
+    private boolean closed;
+
+    // Only touched by the writer thread (or under writeLock by flush callers)
+    private final Object writeLock = new Object();
+    private FileOutputStream out;
+    private FileChannel channel;
+    private long fileBytes;
+    private long writtenBytes;
+
+    private final Thread writer;
+
+    NativeLogSink(File dir, int ringBytes, long maxFileBytes, int maxFiles, long flushIntervalMs) {
+        this(() -> dir, ringBytes, maxFileBytes, maxFiles, flushIntervalMs);
+    }
+
+    /** @param dir resolved on first use, which may be disk I/O itself (Context.getExternalFilesDir) */
+    NativeLogSink(Supplier<File> dir, int ringBytes, long maxFileBytes, int maxFiles, long flushIntervalMs) {
+        this.dirSource = dir;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.flushIntervalMs = flushIntervalMs;
+        this.ring = new byte[ringBytes];
+        writer = new Thread(this::runWriter, "log-sink");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    /**
+     * Queues text as-is; returns false if any of it was dropped because the ring
+     * is full. What fits is kept, cut at the last line break that fits.
+     */
+    boolean append(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return append(bytes, 0, bytes.length);
+    }
+
+    boolean append(byte[] bytes, int offset, int length) {
+        synchronized (lock) {
+            if (closed) return false;
+            long free = ring.length - (writePos - readPos);
+            int kept = length <= free ? length : fittingPrefix(bytes, offset, (int) free);
+            if (kept < length) {
+                droppedBytes += length - kept;
+                droppedAppends++;
+            }
+            if (kept > 0) {
+                int start = (int) (writePos % ring.length);
+                int first = Math.min(kept, ring.length - start);
+                System.arraycopy(bytes, offset, ring, start, first);
+                if (first < kept) System.arraycopy(bytes, offset + first, ring, 0, kept - first);
+                writePos += kept;
+            }
+            // Wake the writer early once the ring is half full
+            if (writePos - readPos > ring.length / 2) lock.notify();
+            return kept == length;
+        }
+    }
+
+    // Longest prefix of at most max bytes ending after a newline, else on a UTF-8 character boundary
+    static int fittingPrefix(byte[] bytes, int offset, int max) {
+        for (int i = max - 1; i >= 0; i--) {
+            if (bytes[offset + i] == '\n') return i + 1;
+        }
+        int end = max;
+        while (end > 0 && (bytes[offset + end] & 0xc0) == 0x80) end--;
+        return end;
+    }
+
+    /** Writes everything queued so far to disk before returning. */
+    void flush() throws IOException {
+        drain(true);
+    }
+
+    File currentFile() {
+        return fileAt(0);
+    }
+
+    /**
+     * Copies the newest {@code maxBytes} of log history (oldest file first) into
+     * {@code target} with channel-to-channel transfers. Returns bytes copied.
+     */
+    long exportTail(long maxBytes, WritableByteChannel target) throws IOException {
+        flush();
+        List<File> files = new ArrayList<>();
+        for (int i = maxFiles - 1; i >= 0; i--) {
+            File f = fileAt(i);
+            if (f.isFile()) files.add(f);
+        }
+        long total = 0;
+        for (File f : files) total += f.length();
+        long skip = Math.max(0, total - maxBytes);
+        long copied = 0;
+        for (File f : files) {
+            long length = f.length();
+            if (skip >= length) {
+                skip -= length;
+                continue;
+            }
+            try (FileInputStream in = new FileInputStream(f)) {
+                FileChannel src = in.getChannel();
+                long position = skip;
+                skip = 0;
+                while (position < length) {
+                    long n = src.transferTo(position, length - position, target);
+                    if (n <= 0) break;
+                    position += n;
+                    copied += n;
+                }
+            }
+        }
+        return copied;
+    }
+
+    long writtenBytes() {
+        synchronized (writeLock) {
+            return writtenBytes;
+        }
+    }
+
+    long droppedBytes() {
+        synchronized (lock) {
+            return droppedBytes;
+        }
+    }
+
+    long droppedAppends() {
+        synchronized (lock) {
+            return droppedAppends;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notify();
+        }
+        try {
+            writer.join(2_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            try {
+                drain(true);
+            } finally {
+                if (out != null) out.close();
+            }
+        }
+    }
+
+    private void runWriter() {
+        int failures = 0;
+        while (true) {
+            synchronized (lock) {
+                try {
+                    if (failures > 0) {
+                        // Appends keep waking us while the ring is half full; sit out the whole backoff
+                        long backoff = Math.min(MAX_BACKOFF_MS, flushIntervalMs << Math.min(failures, 16));
+                        long until = System.currentTimeMillis() + backoff;
+                        for (long left = backoff; !closed && left > 0; left = until - System.currentTimeMillis()) {
+                            lock.wait(left);
+                        }
+                    } else if (!closed && writePos == readPos) {
+                        lock.wait(flushIntervalMs);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) return;
+            }
+            try {
+                drain(false);
+                failures = 0;
+            } catch (IOException e) {
+                // Disk full or removed; what is queued stays queued and new text drops once the ring fills
+                failures++;
+            }
+        }
+    }
+
+    private void drain(boolean force) throws IOException {
+        synchronized (writeLock) {
+            // Not opened yet, or a failed rotation left it closed
+            if (channel == null || !channel.isOpen()) openCurrent();
+            long start;
+            long end;
+            synchronized (lock) {
+                start = readPos;
+                end = writePos;
+            }
+            if (end > start) {
+                if (fileBytes > 0 && fileBytes + (end - start) > maxFileBytes) rotate();
+                // The ring region [start, end) is ours until readPos moves, so write without the lock
+                int from = (int) (start % ring.length);
+                int length = (int) (end - start);
+                int first = Math.min(length, ring.length - from);
+                ByteBuffer head = ByteBuffer.wrap(ring, from, first);
+                ByteBuffer tail = first < length ? ByteBuffer.wrap(ring, 0, length - first) : null;
+                try {
+                    writeFully(head);
+                    if (tail != null) writeFully(tail);
+                } finally {
+                    // Only what reached the file; the rest is retried
+                    long written = (head.position() - from) + (tail != null ? tail.position() : 0);
+                    fileBytes += written;
+                    writtenBytes += written;
+                    synchronized (lock) {
+                        readPos = start + written;
+                    }
+                }
+            }
+            if (force) channel.force(false);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        File oldest = fileAt(maxFiles - 1);
+        if (oldest.exists()) oldest.delete();
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            File f = fileAt(i);
+            if (f.exists()) f.renameTo(fileAt(i + 1));
+        }
+        openCurrent();
+    }
+
+    private void openCurrent() throws IOException {
+        File dir = dir();
+        if (!dir.exists()) dir.mkdirs();
+        File file = fileAt(0);
+        out = new FileOutputStream(file, true);
+        channel = out.getChannel();
+        fileBytes = file.length();
+    }
+
+    private File fileAt(int index) {
+        return new File(dir(), index == 0 ? BASE_NAME + ".log" : BASE_NAME + "." + index + ".log");
+    }
+
+    private File dir() {
+        File d = dir;
+        if (d == null) {
+            synchronized (writeLock) {
+                if (dir == null) dir = dirSource.get();
+                d = dir;
+            }
+        }
+        return d;
+    }
+}
@@ -0,0 +1,180 @@
+package shubham.akshit.tldraw;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebView;
+import androidx.webkit.JavaScriptReplyProxy;
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Binary-capable message channel injected into the page as {@code window.AndroidNativePort}.
+ *
+ * String messages are JSON objects routed by their {@code topic} field.
+ * ArrayBuffer messages are frames whose first 4 bytes (big-endian) name the stream
+ * they belong to, so bulk data crosses the bridge without Base64.
+ */
+class NativeMessageChannel {
+
+    static final String JS_OBJECT_NAME = "AndroidNativePort";
+    static final int FRAME_HEADER_BYTES = 4;
+    private static final String TAG = "ColorRM_Native";
+
+    interface TopicHandler {
+        // Called on the UI thread
+        void onMessage(JSONObject message) throws JSONException;
+    }
+
+    interface StreamHandler {
+        // Called on the UI thread; payload starts at FRAME_HEADER_BYTES
+        void onFrame(byte[] frame);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, TopicHandler> topics = new ConcurrentHashMap<>();
+    private final Map<Integer, StreamHandler> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger nextStreamId = new AtomicInteger(1);
+    private volatile JavaScriptReplyProxy replyProxy;
+
+    static boolean isSupported() {
+        return WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER)
+                && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_ARRAY_BUFFER);
+    }
+
+    /**
+     * Injects the port into pages from {@code origins} only (scheme://host[:port]); anything
+     * else the WebView navigates to doesn't see it. URLs are reduced to their origin.
+     */
+    void attach(WebView webView, Collection<String> origins) {
+        Set<String> rules = new LinkedHashSet<>();
+        for (String url : origins) {
+            String origin = originOf(url);
+            if (origin != null) rules.add(origin);
+        }
+        if (rules.isEmpty()) {
+            Log.w(TAG, "No origin to expose " + JS_OBJECT_NAME + " to");
+            return;
+        }
+        WebViewCompat.addWebMessageListener(webView, JS_OBJECT_NAME, rules,
+                (view, message, sourceOrigin, isMainFrame, proxy) -> {
+                    if (!isMainFrame) return;
+                    replyProxy = proxy;
+                    dispatch(message);
+                });
+    }
+
+    // null for anything that isn't an http(s) URL with a host
+    static String originOf(String url) {
+        if (url == null || url.isEmpty()) return null;
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (host == null || host.isEmpty() || !("https".equals(scheme) || "http".equals(scheme))) return null;
+        int port = uri.getPort();
+        return scheme + "://" + host + (port != -1 ? ":" + port : "");
+    }
+
+    void registerTopic(String topic, TopicHandler handler) {
+        topics.put(topic, handler);
+    }
+
+    int openStream(StreamHandler handler) {
+        int id = nextStreamId.getAndIncrement();
+        streams.put(id, handler);
+        return id;
+    }
+
+    // Fixed, well-known streams use negative ids so they never clash with openStream()
+    void registerStream(int fixedId, StreamHandler handler) {
+        streams.put(fixedId, handler);
+    }
+
+    void closeStream(int id) {
+        streams.remove(id);
+    }
+
+    boolean isConnected() {
+        return replyProxy != null;
+    }
+
+    void post(String topic, JSONObject message) {
+        try {
+            message.put("topic", topic);
+        } catch (JSONException ignored) {
+        }
+        String json = message.toString();
+        runOnMain(() -> {
+            JavaScriptReplyProxy proxy = replyProxy;
+            if (proxy != null) proxy.postMessage(json);
+        });
+    }
+
+    // Pre-built JSON that already carries its "topic"
+    void postString(String json) {
+        runOnMain(() -> {
+            JavaScriptReplyProxy proxy = replyProxy;
+            if (proxy != null) proxy.postMessage(json);
+        });
+    }
+
+    void postBinary(byte[] frame) {
+        runOnMain(() -> {
+            JavaScriptReplyProxy proxy = replyProxy;
+            if (proxy != null) proxy.postMessage(frame);
+        });
+    }
+
+    private void runOnMain(Runnable task) {
+        // JavaScriptReplyProxy must be used on the UI thread
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            task.run();
+        } else {
+            mainHandler.post(task);
+        }
+    }
+
+    private void dispatch(WebMessageCompat message) {
+        if (message.getType() == WebMessageCompat.TYPE_ARRAY_BUFFER) {
+            byte[] frame = message.getArrayBuffer();
+            if (frame == null || frame.length < FRAME_HEADER_BYTES) return;
+            int id = readStreamId(frame);
+            StreamHandler handler = streams.get(id);
+            if (handler != null) {
+                handler.onFrame(frame);
+            } else {
+                Log.w(TAG, "Frame for unknown stream " + id);
+            }
+            return;
+        }
+
+        String data = message.getData();
+        if (data == null) return;
+        try {
+            JSONObject json = new JSONObject(data);
+            TopicHandler handler = topics.get(json.optString("topic"));
+            if (handler != null) {
+                handler.onMessage(json);
+            } else {
+                Log.w(TAG, "Message for unknown topic " + json.optString("topic"));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Malformed port message", e);
+        }
+    }
+
+    static int readStreamId(byte[] frame) {
+        return ((frame[0] & 0xff) << 24) | ((frame[1] & 0xff) << 16)
+                | ((frame[2] & 0xff) << 8) | (frame[3] & 0xff);
+    }
+}
@@ -0,0 +1,194 @@
+package shubham.akshit.tldraw;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import com.getcapacitor.Bridge;
+import com.getcapacitor.BridgeWebViewClient;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Serves app-local URLs under {@code /_native/<route>/...} on whatever origin the
+ * WebView is showing, so the page can fetch() native data same-origin.
+ * Everything else falls through to Capacitor's own client.
+ */
+public class NativeWebViewClient extends BridgeWebViewClient {
+
+    static final String PATH_PREFIX = "/_native/";
+    private static final String TAG = "ColorRM_Native";
+    // Longest a request waits for the disk cache to finish opening before going to the network
+    private static final long CACHE_OPEN_WAIT_MS = 2_000;
+
+    interface NativeRoute {
+        // Called on a WebView network thread. Return null to answer 404.
+        WebResourceResponse handle(WebResourceRequest request, Uri url) throws Exception;
+    }
+
+    private final Map<String, NativeRoute> routes = new ConcurrentHashMap<>();
+    private final Context context;
+    private volatile Future<HttpCacheLayer> httpCache;
+    private final List<Runnable> pageStartListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> pageFinishListeners = new CopyOnWriteArrayList<>();
+
+    public NativeWebViewClient(Bridge bridge) {
+        super(bridge);
+        this.context = bridge.getContext();
+    }
+
+    void addRoute(String name, NativeRoute route) {
+        routes.put(name, route);
+    }
+
+    // Remote subresources (server bundle, CDN scripts, fonts) go through this cache; it opens
+    // off the UI thread, so the first requests of a cold start may wait for it briefly
+    void setHttpCache(Future<HttpCacheLayer> cache) {
+        this.httpCache = cache;
+    }
+
+    // Per-page state (port subscriptions) starts over on every navigation
+    void addPageStartListener(Runnable listener) {
+        pageStartListeners.add(listener);
+    }
+
+    @Override
+    public void onPageStarted(WebView view, String url, Bitmap favicon) {
+        super.onPageStarted(view, url, favicon);
+        for (Runnable listener : pageStartListeners) listener.run();
+    }
+
+    void addPageFinishListener(Runnable listener) {
+        pageFinishListeners.add(listener);
+    }
+
+    @Override
+    public void onPageFinished(WebView view, String url) {
+        super.onPageFinished(view, url);
+        for (Runnable listener : pageFinishListeners) listener.run();
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        Uri url = request.getUrl();
+        String path = url.getPath();
+        if (path != null && path.startsWith(PATH_PREFIX)) {
+            String rest = path.substring(PATH_PREFIX.length());
+            int slash = rest.indexOf('/');
+            String name = slash >= 0 ? rest.substring(0, slash) : rest;
+            NativeRoute route = routes.get(name);
+            if (route == null) return textResponse(404, "Not Found", "No native route: " + name);
+            try {
+                WebResourceResponse response = route.handle(request, url);
+                return response != null ? response : textResponse(404, "Not Found", path);
+            } catch (SecurityException e) {
+                return textResponse(403, "Forbidden", String.valueOf(e.getMessage()));
+            } catch (Exception e) {
+                Log.e(TAG, "Native route " + name + " failed", e);
+                return textResponse(500, "Internal Server Error", String.valueOf(e.getMessage()));
+            }
+        }
+        HttpCacheLayer cache = isCacheable(request) ? awaitHttpCache() : null;
+        if (cache != null) {
+            HttpCacheLayer.Response response = null;
+            try {
+                if (request.isForMainFrame()) {
+                    // Documents are Capacitor's (it injects its bridge); we only step in offline.
+                    // The cached page then runs without Capacitor plugins, AndroidNative still works.
+                    response = isOnline() ? null : cache.cachedCopy(url.toString());
+                } else {
+                    response = cache.fetch(url.toString(), withCookies(request.getRequestHeaders(), url));
+                }
+                if (response != null) {
+                    if (response.setCookies != null) {
+                        for (String cookie : response.setCookies) CookieManager.getInstance().setCookie(url.toString(), cookie);
+                    }
+                    return new WebResourceResponse(response.mimeType, response.encoding, response.status,
+                            response.reason, response.headers, response.body);
+                }
+            } catch (IOException e) {
+                // Offline and not cached: let the WebView fail the request as usual
+            } catch (RuntimeException e) {
+                // A response WebResourceResponse refuses; the WebView loads it itself
+                Log.w(TAG, "Cache layer could not answer " + url, e);
+                if (response != null) closeQuietly(response.body);
+            }
+        }
+        return super.shouldInterceptRequest(view, request);
+    }
+
+    // Called on a WebView network thread, never the UI thread
+    private HttpCacheLayer awaitHttpCache() {
+        Future<HttpCacheLayer> cache = httpCache;
+        if (cache == null) return null;
+        try {
+            return cache.get(CACHE_OPEN_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static boolean isCacheable(WebResourceRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod())) return false;
+        Uri url = request.getUrl();
+        String scheme = url.getScheme();
+        if (!"https".equals(scheme) && !"http".equals(scheme)) return false;
+        String host = url.getHost();
+        // Bundled assets are served locally by Capacitor
+        if (host == null || host.equals("localhost")) return false;
+        String path = url.getPath();
+        if (path != null && path.contains("/api/")) return false;
+        Map<String, String> headers = request.getRequestHeaders();
+        return headers == null || (!headers.containsKey("Range") && !headers.containsKey("range"));
+    }
+
+    // The WebView adds cookies after this point; the cache leaves requests that have any to it
+    private static Map<String, String> withCookies(Map<String, String> headers, Uri url) {
+        String cookies = CookieManager.getInstance().getCookie(url.toString());
+        if (cookies == null || cookies.isEmpty()) return headers != null ? headers : new HashMap<>();
+        Map<String, String> withCookies = headers != null ? new HashMap<>(headers) : new HashMap<>();
+        withCookies.put("Cookie", cookies);
+        return withCookies;
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private boolean isOnline() {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) return true;
+        NetworkCapabilities caps = cm.getNetworkCapabilities(cm.getActiveNetwork());
+        return caps != null && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    }
+
+    static WebResourceResponse textResponse(int status, String reason, String body) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "no-store");
+        return new WebResourceResponse("text/plain", "utf-8", status, reason, headers,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
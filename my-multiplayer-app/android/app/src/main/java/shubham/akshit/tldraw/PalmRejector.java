@@ -0,0 +1,335 @@
+package shubham.akshit.tldraw;
+
+/**
+ * Decides which finger pointers reach the WebView, as used by {@code dispatchTouchEvent}.
+ *
+ * A finger that lands while the S Pen is touching, hovering (if
+ * {@link Config#whileHovering}) or was lifted less than {@link Config#graceMs}
+ * ago is rejected, as is one whose contact is at least {@link Config#palmSizeMm}
+ * across. A finger the page has already seen is cancelled when, within
+ * {@link Config#cancelWindowMs} of landing, it grows to palm size or the pen
+ * comes into range. Rejection lasts until that pointer lifts. Stylus, eraser and
+ * mouse pointers are never rejected: one that was down when the page's gesture
+ * was cancelled is dispatched again as a fresh down with its next event.
+ *
+ * Per-pointer state lives in bit masks and the rewrite plan in a fixed array,
+ * so nothing is allocated per event. Called on the UI thread only; the config
+ * may be replaced from any thread. Plain Java; the constants mirror
+ * {@code MotionEvent}'s.
+ */
+final class PalmRejector {
+
+    static final int ACTION_DOWN = 0;
+    static final int ACTION_UP = 1;
+    static final int ACTION_MOVE = 2;
+    static final int ACTION_CANCEL = 3;
+    static final int ACTION_POINTER_DOWN = 5;
+    static final int ACTION_POINTER_UP = 6;
+    static final int ACTION_HOVER_MOVE = 7;
+    static final int ACTION_HOVER_ENTER = 9;
+    static final int ACTION_HOVER_EXIT = 10;
+    static final int ACTION_POINTER_INDEX_SHIFT = 8;
+    static final int TOOL_TYPE_UNKNOWN = 0;
+    static final int TOOL_TYPE_FINGER = 1;
+    static final int TOOL_TYPE_STYLUS = 2;
+    static final int TOOL_TYPE_ERASER = 4;
+    // Pointer ids are 0..31
+    static final int MAX_POINTER_ID = 31;
+
+    // Verdicts of onTouchEvent
+    static final int PASS = 0;
+    static final int DROP = 1;
+    /** Dispatch only {@link #keptIndex} pointers, with {@link #rewrittenAction()}. */
+    static final int REWRITE = 2;
+    /** Dispatch this event as ACTION_CANCEL: the page's gesture is over. */
+    static final int CANCEL = 3;
+
+    /** The pointers of the event being decided, read in place. */
+    interface Pointers {
+        int pointerCount();
+
+        int pointerId(int index);
+
+        int toolType(int index);
+
+        /** Major axis of the contact, in pixels. */
+        float touchMajor(int index);
+    }
+
+    static final class Config {
+        static final Config DEFAULT = new Config(true, true, 300, 16, 250);
+
+        final boolean enabled;
+        final boolean whileHovering;
+        final long graceMs;
+        // 0 turns the size check off
+        final float palmSizeMm;
+        final long cancelWindowMs;
+
+        Config(boolean enabled, boolean whileHovering, long graceMs, float palmSizeMm, long cancelWindowMs) {
+            this.enabled = enabled;
+            this.whileHovering = whileHovering;
+            this.graceMs = Math.max(0, graceMs);
+            this.palmSizeMm = Math.max(0, palmSizeMm);
+            this.cancelWindowMs = Math.max(0, cancelWindowMs);
+        }
+
+        String toJson() {
+            return "{\"enabled\":" + enabled
+                    + ",\"whileHovering\":" + whileHovering
+                    + ",\"graceMs\":" + graceMs
+                    + ",\"palmSizeMm\":" + palmSizeMm
+                    + ",\"cancelWindowMs\":" + cancelWindowMs + "}";
+        }
+    }
+
+    private final float pxPerMm;
+    private volatile Config config = Config.DEFAULT;
+
+    // Bit per pointer id
+    private int down;
+    private int rejected;
+    private int dispatched;
+    // Down pointers that are fingers (or unknown), the only ones a cancel rejects
+    private int fingers;
+    private final long[] downTime = new long[MAX_POINTER_ID + 1];
+
+    private boolean penHovering;
+    private boolean penTouching;
+    private long lastPenTouchMs = Long.MIN_VALUE / 2;
+    private long lastPenHoverMs = Long.MIN_VALUE / 2;
+    // When the pen last came into range after being away
+    private long penSinceMs = Long.MIN_VALUE / 2;
+
+    private final int[] keptIndex = new int[MAX_POINTER_ID + 1];
+    private int keptCount;
+    private int rewrittenAction;
+
+    /** @param pxPerMm display density, to turn {@link Config#palmSizeMm} into touch-major pixels */
+    PalmRejector(float pxPerMm) {
+        this.pxPerMm = pxPerMm;
+    }
+
+    Config config() {
+        return config;
+    }
+
+    void setConfig(Config config) {
+        this.config = config;
+    }
+
+    /** Hover events from {@code dispatchGenericMotionEvent}; only pens count. */
+    void onHoverEvent(int actionMasked, int toolType, long timeMs) {
+        if (!isPen(toolType)) return;
+        if (actionMasked == ACTION_HOVER_ENTER || actionMasked == ACTION_HOVER_MOVE) {
+            notePen(timeMs);
+            penHovering = true;
+        } else if (actionMasked == ACTION_HOVER_EXIT) {
+            penHovering = false;
+        } else {
+            return;
+        }
+        lastPenHoverMs = timeMs;
+    }
+
+    /**
+     * Feeds one touch event and returns its verdict: {@link #PASS}, {@link #DROP},
+     * {@link #REWRITE} or {@link #CANCEL}.
+     */
+    int onTouchEvent(int actionMasked, int actionIndex, long timeMs, Pointers pointers) {
+        Config c = config;
+        int count = pointers.pointerCount();
+        boolean pointerAction = actionMasked == ACTION_DOWN || actionMasked == ACTION_UP
+                || actionMasked == ACTION_POINTER_DOWN || actionMasked == ACTION_POINTER_UP;
+        int actionId = pointerAction ? pointers.pointerId(actionIndex) : -1;
+        for (int i = 0; i < count; i++) {
+            if (pointers.pointerId(i) > MAX_POINTER_ID) return PASS;
+        }
+
+        // The pen first: its state decides the fingers in the same event
+        for (int i = 0; i < count; i++) {
+            if (!isPen(pointers.toolType(i))) continue;
+            int id = pointers.pointerId(i);
+            if (id == actionId && (actionMasked == ACTION_UP || actionMasked == ACTION_POINTER_UP)) {
+                penTouching = false;
+            } else if (actionMasked == ACTION_CANCEL) {
+                penTouching = false;
+            } else {
+                notePen(timeMs);
+                penTouching = true;
+            }
+            lastPenTouchMs = timeMs;
+        }
+
+        if (actionMasked == ACTION_DOWN) {
+            // A new gesture: nothing from an earlier one is still down
+            down = rejected = dispatched = fingers = 0;
+        }
+        if (actionMasked == ACTION_DOWN || actionMasked == ACTION_POINTER_DOWN) {
+            int bit = 1 << actionId;
+            down |= bit;
+            downTime[actionId] = timeMs;
+            if (isFingerLike(pointers.toolType(actionIndex))) {
+                fingers |= bit;
+                if (c.enabled && (penActive(c, timeMs) || isPalmSized(c, pointers.touchMajor(actionIndex)))) {
+                    rejected |= bit;
+                }
+            }
+        }
+
+        // Fingers the page already has: cancel them if they turn out to be a palm
+        boolean cancel = false;
+        if (c.enabled && dispatched != 0 && actionMasked != ACTION_CANCEL) {
+            boolean penActive = penActive(c, timeMs);
+            for (int i = 0; i < count; i++) {
+                int id = pointers.pointerId(i);
+                int bit = 1 << id;
+                if ((dispatched & bit) == 0 || !isFingerLike(pointers.toolType(i))) continue;
+                long landed = downTime[id];
+                boolean young = timeMs - landed <= c.cancelWindowMs;
+                boolean penAfter = penActive && penSinceMs >= landed && penSinceMs - landed <= c.cancelWindowMs;
+                if ((young && isPalmSized(c, pointers.touchMajor(i))) || penAfter) cancel = true;
+            }
+        }
+        if (cancel) {
+            // The fingers down now go with the cancelled gesture; a pen stays and starts a new one
+            rejected |= down & fingers;
+            dispatched = 0;
+            lift(actionMasked, actionId);
+            return CANCEL;
+        }
+
+        int verdict = decide(actionMasked, actionIndex, actionId, pointers, count);
+        lift(actionMasked, actionId);
+        return verdict;
+    }
+
+    private int decide(int actionMasked, int actionIndex, int actionId, Pointers pointers, int count) {
+        keptCount = 0;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int bit = 1 << pointers.pointerId(i);
+            if ((rejected & bit) != 0) continue;
+            keptIndex[keptCount++] = i;
+            kept |= bit;
+        }
+        boolean all = keptCount == count;
+        switch (actionMasked) {
+            case ACTION_DOWN:
+            case ACTION_POINTER_DOWN: {
+                int bit = 1 << actionId;
+                if ((rejected & bit) != 0) return DROP;
+                boolean first = dispatched == 0;
+                dispatched |= bit;
+                if (all && (first == (actionMasked == ACTION_DOWN))) return PASS;
+                return rewrite(first ? ACTION_DOWN : ACTION_POINTER_DOWN, actionIndex);
+            }
+            case ACTION_UP:
+            case ACTION_POINTER_UP: {
+                int bit = 1 << actionId;
+                // Rejected, or lifted before its down could be re-dispatched after a cancel
+                if ((rejected & bit) != 0 || (dispatched & bit) == 0) return DROP;
+                dispatched &= ~bit;
+                boolean last = kept == bit;
+                if (all && (last == (actionMasked == ACTION_UP))) return PASS;
+                return rewrite(last ? ACTION_UP : ACTION_POINTER_UP, actionIndex);
+            }
+            case ACTION_MOVE: {
+                if (keptCount == 0) return DROP;
+                int fresh = kept & ~dispatched;
+                if (fresh != 0) return redispatch(pointers, Integer.numberOfTrailingZeros(fresh));
+                return all ? PASS : rewrite(ACTION_MOVE, -1);
+            }
+            case ACTION_CANCEL:
+                return dispatched != 0 ? PASS : DROP;
+            default:
+                return all ? PASS : DROP;
+        }
+    }
+
+    /**
+     * A kept pointer the page hasn't seen go down, after a cancel: this event becomes
+     * its down, carrying it and the pointers already dispatched. Any other such pointer
+     * follows with a later event.
+     */
+    private int redispatch(Pointers pointers, int id) {
+        int first = dispatched == 0 ? ACTION_DOWN : ACTION_POINTER_DOWN;
+        int actionIndex = -1;
+        int n = 0;
+        for (int k = 0; k < keptCount; k++) {
+            int i = keptIndex[k];
+            int pointerId = pointers.pointerId(i);
+            if (pointerId == id) actionIndex = i;
+            else if ((dispatched & (1 << pointerId)) == 0) continue;
+            keptIndex[n++] = i;
+        }
+        keptCount = n;
+        dispatched |= 1 << id;
+        return rewrite(first, actionIndex);
+    }
+
+    private int rewrite(int action, int actionIndex) {
+        int shifted = 0;
+        if (actionIndex >= 0) {
+            for (int k = 0; k < keptCount; k++) {
+                if (keptIndex[k] == actionIndex) shifted = k;
+            }
+        }
+        rewrittenAction = action | (shifted << ACTION_POINTER_INDEX_SHIFT);
+        return REWRITE;
+    }
+
+    private void lift(int actionMasked, int actionId) {
+        if (actionMasked == ACTION_UP || actionMasked == ACTION_CANCEL) {
+            down = rejected = dispatched = fingers = 0;
+        } else if (actionMasked == ACTION_POINTER_UP) {
+            int bit = ~(1 << actionId);
+            down &= bit;
+            rejected &= bit;
+            dispatched &= bit;
+            fingers &= bit;
+        }
+    }
+
+    /** For {@link #REWRITE}: how many pointers stay. */
+    int keptCount() {
+        return keptCount;
+    }
+
+    /** For {@link #REWRITE}: event index of the {@code k}th pointer that stays. */
+    int keptIndex(int k) {
+        return keptIndex[k];
+    }
+
+    /** For {@link #REWRITE}: the action, pointer index included, of the rewritten event. */
+    int rewrittenAction() {
+        return rewrittenAction;
+    }
+
+    boolean isRejected(int pointerId) {
+        return pointerId <= MAX_POINTER_ID && (rejected & (1 << pointerId)) != 0;
+    }
+
+    private void notePen(long timeMs) {
+        if (!penTouching && !penHovering && timeMs - Math.max(lastPenTouchMs, lastPenHoverMs) > config.graceMs) {
+            penSinceMs = timeMs;
+        }
+    }
+
+    private boolean penActive(Config c, long timeMs) {
+        if (penTouching || timeMs - lastPenTouchMs <= c.graceMs) return true;
+        return c.whileHovering && (penHovering || timeMs - lastPenHoverMs <= c.graceMs);
+    }
+
+    private boolean isPalmSized(Config c, float touchMajorPx) {
+        return c.palmSizeMm > 0 && touchMajorPx >= c.palmSizeMm * pxPerMm;
+    }
+
+    private static boolean isPen(int toolType) {
+        return toolType == TOOL_TYPE_STYLUS || toolType == TOOL_TYPE_ERASER;
+    }
+
+    private static boolean isFingerLike(int toolType) {
+        return toolType == TOOL_TYPE_FINGER || toolType == TOOL_TYPE_UNKNOWN;
+    }
+}
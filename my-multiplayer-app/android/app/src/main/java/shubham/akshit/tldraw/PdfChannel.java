@@ -0,0 +1,86 @@
+package shubham.akshit.tldraw;
+
+import android.util.Log;
+import java.util.concurrent.ExecutorService;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * "pdf" topic on the {@link NativeMessageChannel}: opens stored documents and
+ * steers background rendering. Document bytes arrive through the export channel
+ * with {@code dest:"pdf"}; tiles are fetched from {@link PdfRoute}.
+ *
+ * <pre>
+ * page → {op:"open", req, doc}            native → {op:"opened", req, doc, tile, pages:[w0,h0,w1,h1,...]}
+ *                                          native → {op:"missing", req, doc} | {op:"error", req, message}
+ * page → {op:"prefetch", doc, pages:[...], z}
+ * page → {op:"close", doc}
+ * </pre>
+ */
+class PdfChannel implements NativeMessageChannel.TopicHandler {
+
+    static final String TOPIC = "pdf";
+    private static final String TAG = "ColorRM_Native";
+
+    private final NativeMessageChannel channel;
+    private final PdfRenderService service;
+    private final ExecutorService executor;
+
+    PdfChannel(NativeMessageChannel channel, PdfRenderService service, ExecutorService executor) {
+        this.channel = channel;
+        this.service = service;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onMessage(JSONObject message) throws JSONException {
+        String op = message.getString("op");
+        String doc = message.optString("doc");
+        switch (op) {
+            case "open":
+                open(message.optInt("req"), doc);
+                break;
+            case "prefetch": {
+                JSONArray list = message.optJSONArray("pages");
+                if (list == null) break;
+                int[] pages = new int[list.length()];
+                for (int i = 0; i < pages.length; i++) pages[i] = list.optInt(i, -1);
+                service.prefetch(doc, pages, message.optInt("z"));
+                break;
+            }
+            case "close":
+                executor.execute(() -> service.close(doc));
+                break;
+            default:
+                Log.w(TAG, "Unknown pdf op " + op);
+        }
+    }
+
+    private void open(int req, String doc) {
+        // Opening reads every page size, keep it off the UI thread
+        executor.execute(() -> {
+            JSONObject reply = new JSONObject();
+            try {
+                reply.put("req", req).put("doc", doc);
+                PdfTileRenderer renderer = service.open(doc);
+                if (renderer == null) {
+                    reply.put("op", "missing");
+                } else {
+                    JSONArray pages = new JSONArray();
+                    for (int i = 0; i < renderer.pageCount(); i++) {
+                        pages.put(renderer.pageWidth(i)).put(renderer.pageHeight(i));
+                    }
+                    reply.put("op", "opened").put("tile", PdfTileKey.TILE_SIZE).put("pages", pages);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "PDF open failed", e);
+                try {
+                    reply.put("op", "error").put("message", String.valueOf(e.getMessage()));
+                } catch (JSONException ignored) {
+                }
+            }
+            channel.post(TOPIC, reply);
+        });
+    }
+}
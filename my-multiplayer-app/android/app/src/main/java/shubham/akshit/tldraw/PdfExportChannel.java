@@ -0,0 +1,266 @@
+package shubham.akshit.tldraw;
+
+import android.util.Log;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * "pdf-export" topic on the {@link NativeMessageChannel}: builds a PDF in
+ * Downloads from ColorRM pages sent one at a time, rendering several pages in
+ * parallel and streaming each finished page to disk (see {@link PdfExportJob}).
+ *
+ * <pre>
+ * page → {op:"open", req, name}             native → {op:"opened", req, job, window}
+ * page → {op:"page", job, historyBytes, imageBytes, source, header?, footer?, grid?, lossless?}
+ *        then [job][history JSON][image bytes] as binary frames on stream {@code job}
+ *                                            native → {op:"progress", job, pages, written}
+ * page → {op:"close", job}                  native → {op:"done", job, name, pages, written}
+ * page → {op:"cancel", job}                 native → {op:"cancelled", job} | {op:"error", job?, req?, message}
+ * </pre>
+ *
+ * The page sends at most {@code window} pages beyond the last progress ack.
+ */
+class PdfExportChannel implements NativeMessageChannel.TopicHandler {
+
+    static final String TOPIC = "pdf-export";
+    private static final String TAG = "ColorRM_Native";
+    private static final String MIME = "application/pdf";
+
+    private final NativeMessageChannel channel;
+    private final DownloadsSink sink;
+    private final ExecutorService executor;
+    private final ColorRmPdfRenderer renderer;
+    private final BridgeMetrics metrics;
+    private final int window;
+    private final ExecutorService renderPool;
+    private final Map<Integer, Export> exports = new ConcurrentHashMap<>();
+
+    PdfExportChannel(NativeMessageChannel channel, DownloadsSink sink, ExecutorService executor,
+                     ColorRmPdfRenderer renderer, BridgeMetrics metrics) {
+        this.channel = channel;
+        this.sink = sink;
+        this.executor = executor;
+        this.renderer = renderer;
+        this.metrics = metrics;
+        // Leave a core for the UI thread and the writer
+        int threads = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+        this.window = threads + 2;
+        AtomicInteger n = new AtomicInteger();
+        this.renderPool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "pdf-render-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void onMessage(JSONObject message) throws JSONException {
+        String op = message.getString("op");
+        if (op.equals("open")) {
+            open(message.optInt("req"), message.getString("name"));
+            return;
+        }
+        Export export = exports.get(message.optInt("job"));
+        if (export == null) {
+            Log.w(TAG, "PDF export op " + op + " for unknown job");
+            return;
+        }
+        switch (op) {
+            case "page":
+                export.expect(message.toString(), message.optInt("historyBytes"), message.optInt("imageBytes"));
+                break;
+            case "close":
+                if (export.pending.isEmpty()) {
+                    export.job.close();
+                } else {
+                    // Frames and messages share one ordered port, so this is a sender bug
+                    Log.w(TAG, "PDF export closed with " + export.pending.size() + " incomplete pages");
+                    export.fail("Incomplete page data");
+                }
+                break;
+            case "cancel":
+                export.job.cancel();
+                break;
+            default:
+                Log.w(TAG, "Unknown pdf-export op " + op);
+        }
+    }
+
+    private void open(int req, String name) {
+        executor.execute(() -> {
+            DownloadsSink.Target target;
+            try {
+                target = sink.open(name, MIME);
+            } catch (Exception e) {
+                Log.e(TAG, "PDF export open failed", e);
+                post(reply("error").put("req", req).put("message", String.valueOf(e.getMessage())));
+                return;
+            }
+            long t0 = System.nanoTime();
+            Export export = new Export();
+            export.job = new PdfExportJob(target, renderer, renderPool, metrics, new PdfExportJob.Listener() {
+                @Override
+                public void onProgress(int pages, long written) {
+                    post(reply("progress").put("job", export.id).put("pages", pages).put("written", written));
+                }
+
+                @Override
+                public void onDone(String displayName, int pages, long written) {
+                    finish(export.id);
+                    metrics.timer("pdf.export").record(t0, 0, written);
+                    post(reply("done").put("job", export.id).put("name", displayName)
+                            .put("pages", pages).put("written", written));
+                }
+
+                @Override
+                public void onError(String message) {
+                    finish(export.id);
+                    metrics.timer("pdf.export").error();
+                    post(reply("error").put("job", export.id).put("message", message));
+                }
+
+                @Override
+                public void onCancelled() {
+                    finish(export.id);
+                    if (export.failed != null) {
+                        post(reply("error").put("job", export.id).put("message", export.failed));
+                    } else {
+                        post(reply("cancelled").put("job", export.id));
+                    }
+                }
+            });
+            export.id = channel.openStream(export::onFrame);
+            exports.put(export.id, export);
+            post(reply("opened").put("req", req).put("job", export.id).put("window", window));
+            export.job.run();
+        });
+    }
+
+    private void finish(int id) {
+        channel.closeStream(id);
+        exports.remove(id);
+    }
+
+    void cancelAll() {
+        for (Export export : exports.values()) export.job.cancel();
+    }
+
+    void shutdown() {
+        cancelAll();
+        renderPool.shutdown();
+    }
+
+    private void post(Reply reply) {
+        channel.post(TOPIC, reply.json);
+    }
+
+    private static Reply reply(String op) {
+        return new Reply().put("op", op);
+    }
+
+    /** A job and the pages whose bytes are still arriving. UI thread, except {@link #failed}. */
+    private static class Export {
+        volatile int id;
+        PdfExportJob job;
+        volatile String failed;
+        final ArrayDeque<Incoming> pending = new ArrayDeque<>();
+
+        void expect(String spec, int historyBytes, int imageBytes) {
+            if (failed != null) return;
+            if (historyBytes < 0 || imageBytes < 0) {
+                fail("Bad page size");
+                return;
+            }
+            pending.add(new Incoming(spec, historyBytes, imageBytes));
+            submitComplete();
+        }
+
+        void onFrame(byte[] frame) {
+            if (failed != null) return;
+            int offset = NativeMessageChannel.FRAME_HEADER_BYTES;
+            while (offset < frame.length) {
+                Incoming page = pending.peek();
+                if (page == null) {
+                    fail("Unexpected page data");
+                    return;
+                }
+                offset += page.fill(frame, offset, frame.length - offset);
+                submitComplete();
+            }
+        }
+
+        void fail(String reason) {
+            failed = reason;
+            pending.clear();
+            job.cancel();
+        }
+
+        // In order: a page only goes out once every page before it has
+        private void submitComplete() {
+            while (!pending.isEmpty() && pending.peek().complete()) {
+                Incoming page = pending.poll();
+                job.submit(page.spec, page.history, page.image);
+            }
+        }
+    }
+
+    private static class Incoming {
+        final String spec;
+        final byte[] history;
+        final byte[] image;
+        int filled;
+
+        Incoming(String spec, int historyBytes, int imageBytes) {
+            this.spec = spec;
+            this.history = historyBytes > 0 ? new byte[historyBytes] : null;
+            this.image = imageBytes > 0 ? new byte[imageBytes] : null;
+        }
+
+        private int size() {
+            return (history != null ? history.length : 0) + (image != null ? image.length : 0);
+        }
+
+        boolean complete() {
+            return filled == size();
+        }
+
+        /** Copies what belongs to this page; returns the number of bytes taken. */
+        int fill(byte[] src, int offset, int length) {
+            int taken = Math.min(length, size() - filled);
+            int historyLength = history != null ? history.length : 0;
+            for (int done = 0; done < taken; ) {
+                int at = filled + done;
+                int n;
+                if (at < historyLength) {
+                    n = Math.min(taken - done, historyLength - at);
+                    System.arraycopy(src, offset + done, history, at, n);
+                } else {
+                    n = taken - done;
+                    System.arraycopy(src, offset + done, image, at - historyLength, n);
+                }
+                done += n;
+            }
+            filled += taken;
+            return taken;
+        }
+    }
+
+    // JSONObject.put throws checked exceptions; keep the listener code readable
+    private static class Reply {
+        final JSONObject json = new JSONObject();
+
+        Reply put(String key, Object value) {
+            try {
+                json.put(key, value);
+            } catch (JSONException ignored) {
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package shubham.akshit.tldraw;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * One streaming PDF export. Pages are rendered on a shared pool as soon as they
+ * arrive, several at a time; {@link #run()} writes them to the target in
+ * arrival order and reports each one. The web page keeps only a window of pages
+ * unacknowledged, so neither side holds more than a few pages at once.
+ */
+class PdfExportJob implements Runnable {
+
+    interface Listener {
+        void onProgress(int pages, long written);
+
+        void onDone(String displayName, int pages, long written);
+
+        void onError(String message);
+
+        void onCancelled();
+    }
+
+    private static final Future<PdfPage> CLOSE = new CompletableFuture<>();
+    private static final Future<PdfPage> CANCEL = new CompletableFuture<>();
+    private static final int OUTPUT_BUFFER_BYTES = 64 * 1024;
+
+    private final DownloadsSink.Target target;
+    private final ColorRmPdfRenderer renderer;
+    private final ExecutorService pool;
+    private final BridgeMetrics metrics;
+    private final Listener listener;
+    // Renders in submission order; the window bounds its length
+    private final BlockingQueue<Future<PdfPage>> queue = new LinkedBlockingQueue<>();
+    private volatile boolean cancelled = false;
+
+    PdfExportJob(DownloadsSink.Target target, ColorRmPdfRenderer renderer, ExecutorService pool,
+                 BridgeMetrics metrics, Listener listener) {
+        this.target = target;
+        this.renderer = renderer;
+        this.pool = pool;
+        this.metrics = metrics;
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a page for rendering. Pages are written in the order they are submitted.
+     *
+     * @param spec    page JSON, see {@link ColorRmPdfRenderer}
+     * @param history UTF-8 JSON array of history elements, or null
+     * @param image   background image bytes, or null
+     */
+    void submit(String spec, byte[] history, byte[] image) {
+        if (cancelled) return;
+        queue.add(CompletableFuture.supplyAsync(() -> render(spec, history, image), pool));
+    }
+
+    private PdfPage render(String spec, byte[] history, byte[] image) {
+        if (cancelled) throw new IllegalStateException("Export cancelled");
+        long t0 = System.nanoTime();
+        BridgeMetrics.Timer timer = metrics.timer("pdf.page");
+        try {
+            Object specValue = ColorRmJson.parse(spec);
+            Object historyValue = history != null ? ColorRmJson.parse(new String(history, StandardCharsets.UTF_8)) : null;
+            if (!(specValue instanceof Map) || (historyValue != null && !(historyValue instanceof List))) {
+                throw new IllegalArgumentException("Malformed page");
+            }
+            PdfPage page = renderer.render((Map<?, ?>) specValue, (List<?>) historyValue, image);
+            timer.record(t0, (history != null ? history.length : 0) + (image != null ? image.length : 0),
+                    page.content().length);
+            return page;
+        } catch (IOException | RuntimeException e) {
+            timer.error();
+            timer.record(t0);
+            throw new IllegalStateException(e.getMessage() != null ? e.getMessage() : e.toString(), e);
+        }
+    }
+
+    void close() {
+        queue.add(CLOSE);
+    }
+
+    void cancel() {
+        cancelled = true;
+        for (Future<PdfPage> f : queue) f.cancel(false);
+        queue.clear();
+        queue.add(CANCEL);
+    }
+
+    @Override
+    public void run() {
+        try {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(target.channel()), OUTPUT_BUFFER_BYTES);
+            PdfStreamWriter pdf = new PdfStreamWriter(out);
+            while (true) {
+                Future<PdfPage> next = queue.take();
+                if (next == CANCEL || cancelled) {
+                    target.abort();
+                    listener.onCancelled();
+                    return;
+                }
+                if (next == CLOSE) {
+                    pdf.finish();
+                    // The target closes its channel on commit
+                    out.flush();
+                    target.commit();
+                    listener.onDone(target.displayName(), pdf.pageCount(), pdf.position());
+                    return;
+                }
+                PdfPage page;
+                try {
+                    page = next.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Page " + (pdf.pageCount() + 1) + ": " + e.getCause().getMessage(), e.getCause());
+                }
+                pdf.addPage(page);
+                listener.onProgress(pdf.pageCount(), pdf.position());
+            }
+        } catch (IOException | RuntimeException e) {
+            // A render cancelled under us surfaces as CancellationException
+            boolean byPage = cancelled;
+            cancelled = true;
+            for (Future<PdfPage> f : queue) f.cancel(false);
+            target.abort();
+            if (byPage) {
+                listener.onCancelled();
+            } else {
+                listener.onError(String.valueOf(e.getMessage()));
+            }
+        } catch (InterruptedException e) {
+            target.abort();
+            listener.onCancelled();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
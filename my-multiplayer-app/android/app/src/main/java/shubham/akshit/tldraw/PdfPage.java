@@ -0,0 +1,367 @@
+package shubham.akshit.tldraw;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * One PDF page's content stream and the resources it uses, built up with
+ * canvas-like path operations and then compressed by {@link #finish()}, so
+ * pages can be drawn and deflated on separate threads before the
+ * {@link PdfStreamWriter} writes them out in order. Text uses the writer's
+ * Helvetica font in WinAnsi encoding. Plain Java.
+ */
+final class PdfPage {
+
+    /** An image XObject; JPEG data is embedded as is, pixels are deflated. */
+    static final class Image {
+        final int width;
+        final int height;
+        final String colorSpace;
+        final String filter;
+        final byte[] data;
+        final Image softMask;
+
+        private Image(int width, int height, String colorSpace, String filter, byte[] data, Image softMask) {
+            this.width = width;
+            this.height = height;
+            this.colorSpace = colorSpace;
+            this.filter = filter;
+            this.data = data;
+            this.softMask = softMask;
+        }
+
+        /** A baseline or progressive JPEG, or null for anything the PDF would need to convert (CMYK, not JPEG). */
+        static Image jpeg(byte[] data) {
+            if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) return null;
+            int pos = 2;
+            while (pos + 4 <= data.length) {
+                if ((data[pos] & 0xFF) != 0xFF) return null;
+                int marker = data[pos + 1] & 0xFF;
+                if (marker == 0xFF) {
+                    pos++;
+                    continue;
+                }
+                if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                    pos += 2;
+                    continue;
+                }
+                int length = ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+                boolean frame = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+                if (frame) {
+                    if (pos + 10 > data.length) return null;
+                    int height = ((data[pos + 5] & 0xFF) << 8) | (data[pos + 6] & 0xFF);
+                    int width = ((data[pos + 7] & 0xFF) << 8) | (data[pos + 8] & 0xFF);
+                    int components = data[pos + 9] & 0xFF;
+                    if (width == 0 || height == 0) return null;
+                    if (components == 1) return new Image(width, height, "DeviceGray", "DCTDecode", data, null);
+                    if (components == 3) return new Image(width, height, "DeviceRGB", "DCTDecode", data, null);
+                    return null;
+                }
+                pos += 2 + length;
+            }
+            return null;
+        }
+
+        /**
+         * @param argb  row-major pixels, as from {@code Bitmap.getPixels}
+         * @param alpha whether to keep the alpha channel as a soft mask
+         */
+        static Image pixels(int width, int height, int[] argb, boolean alpha) throws IOException {
+            byte[] rgb = new byte[width * height * 3];
+            byte[] mask = alpha ? new byte[width * height] : null;
+            boolean translucent = false;
+            for (int i = 0, j = 0; i < width * height; i++) {
+                int c = argb[i];
+                rgb[j++] = (byte) (c >> 16);
+                rgb[j++] = (byte) (c >> 8);
+                rgb[j++] = (byte) c;
+                if (mask != null) {
+                    mask[i] = (byte) (c >>> 24);
+                    translucent |= (c >>> 24) != 0xFF;
+                }
+            }
+            Image softMask = translucent ? new Image(width, height, "DeviceGray", "FlateDecode", deflate(mask, mask.length), null) : null;
+            return new Image(width, height, "DeviceRGB", "FlateDecode", deflate(rgb, rgb.length), softMask);
+        }
+    }
+
+    final double width;
+    final double height;
+    private final StringBuilder ops = new StringBuilder(4096);
+    private final List<Image> images = new ArrayList<>();
+    // "/ca 0.4 /CA 0.4" → name, so a page sets each opacity up once
+    private final Map<String, String> alphaStates = new LinkedHashMap<>();
+    private byte[] content;
+
+    /** Size in points; the origin is the bottom left corner, as in PDF. */
+    PdfPage(double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // --- Graphics state ---
+
+    PdfPage save() {
+        ops.append("q\n");
+        return this;
+    }
+
+    PdfPage restore() {
+        ops.append("Q\n");
+        return this;
+    }
+
+    PdfPage transform(double a, double b, double c, double d, double e, double f) {
+        return num(a).num(b).num(c).num(d).num(e).num(f).op("cm");
+    }
+
+    PdfPage strokeColor(int rgb) {
+        return color(rgb).op("RG");
+    }
+
+    PdfPage fillColor(int rgb) {
+        return color(rgb).op("rg");
+    }
+
+    /** Constant opacity for strokes and fills until the next restore. */
+    PdfPage alpha(double stroke, double fill) {
+        StringBuilder key = new StringBuilder("/CA ");
+        appendNumber(key, clamp(stroke));
+        key.append(" /ca ");
+        appendNumber(key, clamp(fill));
+        String name = alphaStates.get(key.toString());
+        if (name == null) {
+            name = "G" + alphaStates.size();
+            alphaStates.put(key.toString(), name);
+        }
+        ops.append('/').append(name).append(" gs\n");
+        return this;
+    }
+
+    PdfPage lineWidth(double w) {
+        return num(w).op("w");
+    }
+
+    /** 0 butt, 1 round, 2 square. */
+    PdfPage lineCap(int cap) {
+        ops.append(cap).append(" J\n");
+        return this;
+    }
+
+    /** 0 miter, 1 round, 2 bevel. */
+    PdfPage lineJoin(int join) {
+        ops.append(join).append(" j\n");
+        return this;
+    }
+
+    PdfPage dash(double... pattern) {
+        ops.append('[');
+        for (int i = 0; i < pattern.length; i++) {
+            if (i > 0) ops.append(' ');
+            appendNumber(ops, pattern[i]);
+        }
+        ops.append("] 0 d\n");
+        return this;
+    }
+
+    // --- Paths ---
+
+    PdfPage moveTo(double x, double y) {
+        return num(x).num(y).op("m");
+    }
+
+    PdfPage lineTo(double x, double y) {
+        return num(x).num(y).op("l");
+    }
+
+    PdfPage curveTo(double x1, double y1, double x2, double y2, double x3, double y3) {
+        return num(x1).num(y1).num(x2).num(y2).num(x3).num(y3).op("c");
+    }
+
+    PdfPage rect(double x, double y, double w, double h) {
+        return num(x).num(y).num(w).num(h).op("re");
+    }
+
+    /** Ellipse centred on (cx, cy), as four Bézier arcs. */
+    PdfPage ellipse(double cx, double cy, double rx, double ry) {
+        // Control point distance for a quarter circle
+        double k = 0.5522847498;
+        moveTo(cx + rx, cy);
+        curveTo(cx + rx, cy + ry * k, cx + rx * k, cy + ry, cx, cy + ry);
+        curveTo(cx - rx * k, cy + ry, cx - rx, cy + ry * k, cx - rx, cy);
+        curveTo(cx - rx, cy - ry * k, cx - rx * k, cy - ry, cx, cy - ry);
+        curveTo(cx + rx * k, cy - ry, cx + rx, cy - ry * k, cx + rx, cy);
+        return closePath();
+    }
+
+    PdfPage closePath() {
+        return op("h");
+    }
+
+    PdfPage stroke() {
+        return op("S");
+    }
+
+    PdfPage fill() {
+        return op("f");
+    }
+
+    PdfPage fillAndStroke() {
+        return op("B");
+    }
+
+    /** Discards the current path without painting it. */
+    PdfPage endPath() {
+        return op("n");
+    }
+
+    /** Intersects the clip with the current path, which is then discarded. */
+    PdfPage clip() {
+        return op("W n");
+    }
+
+    // --- Text and images ---
+
+    /**
+     * One line of Helvetica with its baseline at (x, y).
+     * @param yDown true when the current transform flips y (canvas coordinates)
+     */
+    PdfPage text(String s, double size, double x, double y, boolean yDown) {
+        ops.append("BT /F1 ");
+        appendNumber(ops, size);
+        ops.append(" Tf 1 0 0 ").append(yDown ? "-1 " : "1 ");
+        num(x).num(y).op("Tm");
+        appendWinAnsi(ops, s);
+        ops.append(" Tj ET\n");
+        return this;
+    }
+
+    /** Draws the image into the rectangle whose top left corner is (x, y) in a y-down space. */
+    PdfPage image(Image image, double x, double y, double w, double h) {
+        int index = images.indexOf(image);
+        if (index < 0) {
+            index = images.size();
+            images.add(image);
+        }
+        save();
+        transform(w, 0, 0, -h, x, y + h);
+        ops.append("/Im").append(index).append(" Do\n");
+        return restore();
+    }
+
+    // --- Output ---
+
+    /** Compresses the content; the page can no longer be drawn on. */
+    PdfPage finish() throws IOException {
+        if (content == null) {
+            byte[] raw = new byte[ops.length()];
+            for (int i = 0; i < raw.length; i++) raw[i] = (byte) ops.charAt(i);
+            content = deflate(raw, raw.length);
+            ops.setLength(0);
+            ops.trimToSize();
+        }
+        return this;
+    }
+
+    byte[] content() {
+        if (content == null) throw new IllegalStateException("Page not finished");
+        return content;
+    }
+
+    List<Image> images() {
+        return images;
+    }
+
+    Map<String, String> alphaStates() {
+        return alphaStates;
+    }
+
+    // Helvetica advance widths for U+0020..U+007E, in 1/1000 em
+    private static final short[] HELVETICA_WIDTHS = {
+            278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278,
+            556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556,
+            1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778,
+            667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556,
+            333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556,
+            556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584};
+
+    /** Width of {@code s} in Helvetica at {@code size}. */
+    static double textWidth(String s, double size) {
+        int units = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            units += c >= 0x20 && c <= 0x7E ? HELVETICA_WIDTHS[c - 0x20] : 556;
+        }
+        return units * size / 1000;
+    }
+
+    // Latin-1 maps straight onto WinAnsi above 0xA0; anything else becomes '?'
+    private static void appendWinAnsi(StringBuilder sb, String s) {
+        sb.append('(');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '(' || c == ')' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(' ');
+            } else if (c < 0x7F || (c >= 0xA0 && c <= 0xFF)) {
+                sb.append(c);
+            } else {
+                sb.append('?');
+                if (Character.isHighSurrogate(c) && i + 1 < s.length()) i++;
+            }
+        }
+        sb.append(')');
+    }
+
+    private PdfPage color(int rgb) {
+        return num(((rgb >> 16) & 0xFF) / 255.0).num(((rgb >> 8) & 0xFF) / 255.0).num((rgb & 0xFF) / 255.0);
+    }
+
+    private PdfPage num(double v) {
+        appendNumber(ops, v);
+        ops.append(' ');
+        return this;
+    }
+
+    private PdfPage op(String operator) {
+        ops.append(operator).append('\n');
+        return this;
+    }
+
+    private static double clamp(double alpha) {
+        return Math.max(0, Math.min(1, alpha));
+    }
+
+    /** At most three decimals, no exponent, no trailing zeros. */
+    static void appendNumber(StringBuilder sb, double v) {
+        if (!(Math.abs(v) < 1e9)) v = Double.isNaN(v) ? 0 : Math.copySign(1e9, v);
+        long milli = Math.round(v * 1000);
+        if (milli < 0) {
+            sb.append('-');
+            milli = -milli;
+        }
+        sb.append(milli / 1000);
+        int frac = (int) (milli % 1000);
+        if (frac != 0) {
+            sb.append('.');
+            if (frac < 100) sb.append('0');
+            if (frac < 10) sb.append('0');
+            while (frac % 10 == 0) frac /= 10;
+            sb.append(frac);
+        }
+    }
+
+    static byte[] deflate(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+        try (DeflaterOutputStream z = new DeflaterOutputStream(out)) {
+            z.write(data, 0, length);
+        }
+        return out.toByteArray();
+    }
+}
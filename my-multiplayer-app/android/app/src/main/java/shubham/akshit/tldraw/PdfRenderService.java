@@ -0,0 +1,273 @@
+package shubham.akshit.tldraw;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Native PDF page rendering for the page, replacing pdf.js rasterization.
+ *
+ * Documents are uploaded once under a content id (the page's SHA-256 of the file)
+ * and kept in app storage, so re-opening a project renders without re-uploading.
+ * Stored documents are bounded by {@code maxStoredBytes}, least recently opened
+ * deleted first. At most {@link #MAX_OPEN} are open at once (each holds a file
+ * descriptor); the page closes its own when an import ends.
+ *
+ * Pages are rendered as {@link PdfTileKey} tiles, so the largest bitmap alive is
+ * one tile whatever the page size or zoom. Tiles go through a {@link TileCache};
+ * pages the page is about to need are rendered ahead on a low-priority thread.
+ */
+class PdfRenderService {
+
+    static final int MAX_OPEN = 2;
+    private static final String TAG = "ColorRM_Native";
+    private static final Pattern DOC_ID = Pattern.compile("[A-Za-z0-9_-]{1,128}");
+    // Pages are white paper; JPEG encodes them several times faster than WebP
+    private static final int TILE_JPEG_QUALITY = 92;
+
+    private final File docsDir;
+    private final long maxStoredBytes;
+    private final TileCache cache;
+    private final PdfTileRenderer.Factory factory;
+    // Access-ordered; guarded by itself
+    private final LinkedHashMap<String, PdfTileRenderer> open = new LinkedHashMap<>(4, 0.75f, true);
+    // Bumped by every prefetch request; queued work for older generations is skipped
+    private final Map<String, AtomicInteger> prefetchGeneration = new ConcurrentHashMap<>();
+    private final ExecutorService prefetchExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "pdf-prefetch");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+
+    PdfRenderService(File docsDir, long maxStoredBytes, TileCache cache, PdfTileRenderer.Factory factory) {
+        this.docsDir = docsDir;
+        this.maxStoredBytes = maxStoredBytes;
+        this.cache = cache;
+        this.factory = factory;
+        if (!docsDir.exists()) docsDir.mkdirs();
+    }
+
+    static boolean isValidDocId(String doc) {
+        return doc != null && DOC_ID.matcher(doc).matches();
+    }
+
+    boolean hasDocument(String doc) {
+        if (!isValidDocId(doc)) return false;
+        synchronized (open) {
+            if (open.containsKey(doc)) return true;
+        }
+        return documentFile(doc).isFile();
+    }
+
+    /** Returns the renderer for a stored document, opening it on first use; null if unknown. */
+    PdfTileRenderer open(String doc) throws IOException {
+        if (!isValidDocId(doc)) throw new SecurityException("Bad document id");
+        PdfTileRenderer evicted = null;
+        PdfTileRenderer renderer;
+        synchronized (open) {
+            renderer = open.get(doc);
+            if (renderer != null) return renderer;
+            File file = documentFile(doc);
+            if (!file.isFile()) return null;
+            renderer = factory.open(file);
+            // Marks it recently used for trimStored()
+            file.setLastModified(System.currentTimeMillis());
+            open.put(doc, renderer);
+            if (open.size() > MAX_OPEN) {
+                Iterator<PdfTileRenderer> it = open.values().iterator();
+                evicted = it.next();
+                it.remove();
+            }
+        }
+        if (evicted != null) closeRenderer(evicted);
+        return renderer;
+    }
+
+    void close(String doc) {
+        PdfTileRenderer renderer;
+        synchronized (open) {
+            renderer = open.remove(doc);
+        }
+        if (renderer != null) closeRenderer(renderer);
+    }
+
+    private static void closeRenderer(PdfTileRenderer renderer) {
+        // Waits for a render in progress
+        synchronized (renderer) {
+            try {
+                renderer.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /** Upload target for ExportChannel's "pdf" destination; becomes visible on commit. */
+    DownloadsSink.Target uploadTarget(String doc) throws IOException {
+        if (!isValidDocId(doc)) throw new SecurityException("Bad document id");
+        File part = new File(docsDir, doc + ".part");
+        FileOutputStream fos = new FileOutputStream(part);
+        FileChannel channel = fos.getChannel();
+        return new DownloadsSink.Target() {
+            @Override
+            public FileChannel channel() {
+                return channel;
+            }
+
+            @Override
+            public String displayName() {
+                return doc;
+            }
+
+            @Override
+            public void commit() throws IOException {
+                channel.force(false);
+                fos.close();
+                if (!part.renameTo(documentFile(doc))) throw new IOException("Could not store " + doc);
+                trimStored(doc);
+            }
+
+            @Override
+            public void abort() {
+                try {
+                    fos.close();
+                } catch (IOException ignored) {
+                }
+                part.delete();
+            }
+        };
+    }
+
+    /** Encoded tile (JPEG); null when the document, page, zoom or tile does not exist. */
+    byte[] render(PdfTileKey key) throws IOException {
+        if (!PdfTileKey.isValidZoomBucket(key.zoomBucket)) return null;
+        byte[] cached = cache.get(key.key());
+        if (cached != null) return cached;
+
+        while (true) {
+            PdfTileRenderer renderer = open(key.doc);
+            if (renderer == null || key.page < 0 || key.page >= renderer.pageCount()) return null;
+            byte[] encoded;
+            synchronized (renderer) {
+                // Closed (evicted or by the page) before we got it; open it again
+                if (!isOpen(key.doc, renderer)) continue;
+                // Another thread may have rendered it while we waited
+                cached = cache.get(key.key());
+                if (cached != null) return cached;
+                encoded = renderTile(renderer, key);
+            }
+            if (encoded != null) cache.put(key.key(), encoded);
+            return encoded;
+        }
+    }
+
+    private boolean isOpen(String doc, PdfTileRenderer renderer) {
+        synchronized (open) {
+            return open.get(doc) == renderer;
+        }
+    }
+
+    private static byte[] renderTile(PdfTileRenderer renderer, PdfTileKey key) throws IOException {
+        int pageW = PdfTileKey.scaledSize(renderer.pageWidth(key.page), key.zoomBucket);
+        int pageH = PdfTileKey.scaledSize(renderer.pageHeight(key.page), key.zoomBucket);
+        int left = key.x * PdfTileKey.TILE_SIZE;
+        int top = key.y * PdfTileKey.TILE_SIZE;
+        if (key.x < 0 || key.y < 0 || left >= pageW || top >= pageH) return null;
+        int w = Math.min(PdfTileKey.TILE_SIZE, pageW - left);
+        int h = Math.min(PdfTileKey.TILE_SIZE, pageH - top);
+        return encode(renderer.render(key.page, PdfTileKey.bucketScale(key.zoomBucket), left, top, w, h),
+                Bitmap.CompressFormat.JPEG, TILE_JPEG_QUALITY);
+    }
+
+    private static byte[] encode(Bitmap bitmap, Bitmap.CompressFormat format, int quality) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        bitmap.compress(format, quality, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    /**
+     * Renders every tile of the given pages at the zoom bucket in the background.
+     * A newer prefetch for the same document supersedes whatever is still queued.
+     */
+    void prefetch(String doc, int[] pages, int zoomBucket) {
+        if (!isValidDocId(doc) || !PdfTileKey.isValidZoomBucket(zoomBucket)) return;
+        AtomicInteger generation = prefetchGeneration.computeIfAbsent(doc, d -> new AtomicInteger());
+        int mine = generation.incrementAndGet();
+        for (int page : pages) {
+            prefetchExecutor.execute(() -> {
+                if (generation.get() != mine) return;
+                try {
+                    PdfTileRenderer renderer = open(doc);
+                    if (renderer == null || page < 0 || page >= renderer.pageCount()) return;
+                    int cols = PdfTileKey.tileCount(renderer.pageWidth(page), zoomBucket);
+                    int rows = PdfTileKey.tileCount(renderer.pageHeight(page), zoomBucket);
+                    for (int y = 0; y < rows; y++) {
+                        for (int x = 0; x < cols; x++) {
+                            if (generation.get() != mine) return;
+                            PdfTileKey key = new PdfTileKey(doc, page, zoomBucket, x, y);
+                            if (!cache.contains(key.key())) render(key);
+                        }
+                    }
+                } catch (Exception e) {
+                    Log.w(TAG, "PDF prefetch failed for page " + page, e);
+                }
+            });
+        }
+    }
+
+    // Deletes least recently opened documents past the budget, never {@code keep} or an open one
+    private void trimStored(String keep) {
+        File[] files = docsDir.listFiles((dir, name) -> name.endsWith(".pdf"));
+        if (files == null) return;
+        long total = 0;
+        List<File> candidates = new ArrayList<>();
+        for (File f : files) {
+            total += f.length();
+            candidates.add(f);
+        }
+        if (total <= maxStoredBytes) return;
+        candidates.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : candidates) {
+            if (total <= maxStoredBytes) break;
+            String doc = f.getName().substring(0, f.getName().length() - 4);
+            if (doc.equals(keep)) continue;
+            synchronized (open) {
+                if (open.containsKey(doc)) continue;
+            }
+            long length = f.length();
+            if (f.delete()) total -= length;
+        }
+    }
+
+    void shutdown() {
+        prefetchExecutor.shutdownNow();
+        List<PdfTileRenderer> renderers;
+        synchronized (open) {
+            renderers = new ArrayList<>(open.values());
+            open.clear();
+        }
+        for (PdfTileRenderer renderer : renderers) closeRenderer(renderer);
+    }
+
+    private File documentFile(String doc) {
+        return new File(docsDir, doc + ".pdf");
+    }
+}
@@ -0,0 +1,57 @@
+package shubham.akshit.tldraw;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Serves natively rendered PDF tiles:
+ *
+ * <pre>
+ * /_native/pdf?doc=&lt;id&gt;&amp;page=&lt;0-based&gt;&amp;z=&lt;zoom bucket&gt;&amp;x=&lt;col&gt;&amp;y=&lt;row&gt;   JPEG tile, at most 512px square
+ * </pre>
+ *
+ * A given URL always yields the same bytes, so responses are marked immutable.
+ */
+class PdfRoute implements NativeWebViewClient.NativeRoute {
+
+    static final String ROUTE = "pdf";
+
+    private final PdfRenderService service;
+
+    PdfRoute(PdfRenderService service) {
+        this.service = service;
+    }
+
+    @Override
+    public WebResourceResponse handle(WebResourceRequest request, Uri url) throws Exception {
+        String doc = url.getQueryParameter("doc");
+        if (!PdfRenderService.isValidDocId(doc)) throw new SecurityException("Bad document id");
+        int page = intParam(url, "page", -1);
+        int z = intParam(url, "z", Integer.MIN_VALUE);
+        int x = intParam(url, "x", -1);
+        int y = intParam(url, "y", -1);
+        if (page < 0 || x < 0 || y < 0 || !PdfTileKey.isValidZoomBucket(z)) return null;
+
+        byte[] data = service.render(new PdfTileKey(doc, page, z, x, y));
+        if (data == null) return null;
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "private, max-age=31536000, immutable");
+        headers.put("Content-Length", String.valueOf(data.length));
+        return new WebResourceResponse("image/jpeg", null, 200, "OK", headers, new ByteArrayInputStream(data));
+    }
+
+    private static int intParam(Uri url, String name, int fallback) {
+        String value = url.getQueryParameter(name);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
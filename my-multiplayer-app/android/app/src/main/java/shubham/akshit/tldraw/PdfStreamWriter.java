@@ -0,0 +1,165 @@
+package shubham.akshit.tldraw;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Writes a PDF one page at a time. Each page's objects go to the stream as soon
+ * as the page is added; only object offsets and page object numbers are kept,
+ * so memory does not grow with the pages' content. The page tree, catalog and
+ * cross-reference table are written by {@link #finish()}.
+ *
+ * <pre>
+ * 1 catalog   2 page tree   3 Helvetica   then per page: images, content, page
+ * </pre>
+ * Plain Java.
+ */
+final class PdfStreamWriter {
+
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int FONT = 3;
+
+    private final OutputStream out;
+    private final StringBuilder line = new StringBuilder(256);
+    private long position;
+    // Byte offset of every object, by object number
+    private long[] offsets = new long[64];
+    private int nextObject = FONT + 1;
+    private int[] pageObjects = new int[16];
+    private int pageCount;
+    private boolean finished;
+
+    PdfStreamWriter(OutputStream out) throws IOException {
+        this.out = out;
+        // Binary comment so transfer tools treat the file as binary
+        write("%PDF-1.4\n%âãÏÓ\n");
+        begin(FONT);
+        write("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>\nendobj\n");
+    }
+
+    int pageCount() {
+        return pageCount;
+    }
+
+    /** Bytes written so far. */
+    long position() {
+        return position;
+    }
+
+    void addPage(PdfPage page) throws IOException {
+        if (finished) throw new IllegalStateException("PDF already finished");
+        byte[] content = page.content();
+        int[] imageObjects = new int[page.images().size()];
+        for (int i = 0; i < imageObjects.length; i++) imageObjects[i] = writeImage(page.images().get(i));
+
+        int contentObject = nextObject++;
+        begin(contentObject);
+        write("<< /Length " + content.length + " /Filter /FlateDecode >>\nstream\n");
+        writeBytes(content);
+        write("\nendstream\nendobj\n");
+
+        int pageObject = nextObject++;
+        begin(pageObject);
+        line.setLength(0);
+        line.append("<< /Type /Page /Parent ").append(PAGES).append(" 0 R /MediaBox [0 0 ");
+        PdfPage.appendNumber(line, page.width);
+        line.append(' ');
+        PdfPage.appendNumber(line, page.height);
+        line.append("] /Resources << /Font << /F1 ").append(FONT).append(" 0 R >>");
+        if (imageObjects.length > 0) {
+            line.append(" /XObject <<");
+            for (int i = 0; i < imageObjects.length; i++) line.append(" /Im").append(i).append(' ').append(imageObjects[i]).append(" 0 R");
+            line.append(" >>");
+        }
+        if (!page.alphaStates().isEmpty()) {
+            line.append(" /ExtGState <<");
+            for (Map.Entry<String, String> e : page.alphaStates().entrySet()) {
+                line.append(" /").append(e.getValue()).append(" << ").append(e.getKey()).append(" >>");
+            }
+            line.append(" >>");
+        }
+        line.append(" >> /Contents ").append(contentObject).append(" 0 R >>\nendobj\n");
+        write(line);
+
+        if (pageCount == pageObjects.length) pageObjects = Arrays.copyOf(pageObjects, pageCount * 2);
+        pageObjects[pageCount++] = pageObject;
+    }
+
+    private int writeImage(PdfPage.Image image) throws IOException {
+        int mask = image.softMask != null ? writeImage(image.softMask) : 0;
+        int object = nextObject++;
+        begin(object);
+        line.setLength(0);
+        line.append("<< /Type /XObject /Subtype /Image /Width ").append(image.width)
+                .append(" /Height ").append(image.height)
+                .append(" /ColorSpace /").append(image.colorSpace)
+                .append(" /BitsPerComponent 8 /Filter /").append(image.filter)
+                .append(" /Length ").append(image.data.length);
+        if (mask != 0) line.append(" /SMask ").append(mask).append(" 0 R");
+        line.append(" >>\nstream\n");
+        write(line);
+        writeBytes(image.data);
+        write("\nendstream\nendobj\n");
+        return object;
+    }
+
+    /** Writes the page tree, catalog and cross-reference table. Does not close the stream. */
+    void finish() throws IOException {
+        if (finished) return;
+        finished = true;
+        begin(PAGES);
+        line.setLength(0);
+        line.append("<< /Type /Pages /Count ").append(pageCount).append(" /Kids [");
+        for (int i = 0; i < pageCount; i++) {
+            if (i > 0) line.append(' ');
+            line.append(pageObjects[i]).append(" 0 R");
+            // Keep the buffer small on long documents
+            if (line.length() > 8192) {
+                write(line);
+                line.setLength(0);
+            }
+        }
+        line.append("] >>\nendobj\n");
+        write(line);
+
+        begin(CATALOG);
+        write("<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+
+        long xref = position;
+        line.setLength(0);
+        line.append("xref\n0 ").append(nextObject).append("\n0000000000 65535 f \n");
+        for (int i = 1; i < nextObject; i++) {
+            String offset = Long.toString(offsets[i]);
+            for (int pad = offset.length(); pad < 10; pad++) line.append('0');
+            line.append(offset).append(" 00000 n \n");
+            if (line.length() > 8192) {
+                write(line);
+                line.setLength(0);
+            }
+        }
+        line.append("trailer\n<< /Size ").append(nextObject).append(" /Root ").append(CATALOG)
+                .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        write(line);
+        out.flush();
+    }
+
+    private void begin(int object) throws IOException {
+        if (object >= offsets.length) offsets = Arrays.copyOf(offsets, Math.max(object + 1, offsets.length * 2));
+        offsets[object] = position;
+        write(object + " 0 obj\n");
+    }
+
+    // Everything outside streams is ASCII except the header comment, which is Latin-1
+    private void write(CharSequence s) throws IOException {
+        writeBytes(s.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+}
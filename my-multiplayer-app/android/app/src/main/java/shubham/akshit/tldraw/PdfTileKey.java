@@ -0,0 +1,71 @@
+package shubham.akshit.tldraw;
+
+/**
+ * Identifies one rendered PDF tile: document, page, zoom bucket and tile column/row.
+ *
+ * Zoom is bucketed in half-octaves (scale = 2^(bucket / 2)) so nearby scales
+ * reuse the same tiles and the cache holds a bounded number of them. Every tile
+ * is at most {@link #TILE_SIZE} square, so no render needs more than one
+ * tile-sized bitmap however large the page or scale.
+ */
+final class PdfTileKey {
+
+    static final int TILE_SIZE = 512;
+    // 2^(±6/2): 1/8x to 8x, i.e. 9 to 576 dpi
+    static final int MIN_ZOOM_BUCKET = -6;
+    static final int MAX_ZOOM_BUCKET = 6;
+
+    final String doc;
+    final int page;
+    final int zoomBucket;
+    final int x;
+    final int y;
+    private final String key;
+
+    PdfTileKey(String doc, int page, int zoomBucket, int x, int y) {
+        this.doc = doc;
+        this.page = page;
+        this.zoomBucket = zoomBucket;
+        this.x = x;
+        this.y = y;
+        this.key = doc + "/" + page + "_" + zoomBucket + "_" + x + "_" + y;
+    }
+
+    static boolean isValidZoomBucket(int bucket) {
+        return bucket >= MIN_ZOOM_BUCKET && bucket <= MAX_ZOOM_BUCKET;
+    }
+
+    static float bucketScale(int bucket) {
+        return (float) Math.pow(2, bucket / 2.0);
+    }
+
+    /** Pixels along one side of a page {@code points} long, at the bucket's scale. */
+    static int scaledSize(float points, int bucket) {
+        return Math.max(1, (int) Math.ceil(points * bucketScale(bucket)));
+    }
+
+    /** Tiles along one side of a page {@code points} long. */
+    static int tileCount(float points, int bucket) {
+        return (scaledSize(points, bucket) + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /** Cache key; also a safe relative file path as long as {@link #doc} is. */
+    String key() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PdfTileKey && ((PdfTileKey) o).key.equals(key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,30 @@
+package shubham.akshit.tldraw;
+
+import android.graphics.Bitmap;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Rasterizes regions of one open PDF document. Implementations need not be
+ * thread-safe; {@link PdfRenderService} serializes calls per document.
+ */
+interface PdfTileRenderer extends Closeable {
+
+    interface Factory {
+        PdfTileRenderer open(File pdf) throws IOException;
+    }
+
+    int pageCount();
+
+    // Page size in PDF points (1/72 inch)
+    float pageWidth(int page);
+
+    float pageHeight(int page);
+
+    /**
+     * Renders the page at {@code scale} (pixels per point) and returns the region
+     * starting at ({@code left}, {@code top}) in scaled pixels, on a white background.
+     */
+    Bitmap render(int page, float scale, int left, int top, int width, int height) throws IOException;
+}
@@ -0,0 +1,152 @@
+package shubham.akshit.tldraw;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import java.io.File;
+
+/**
+ * ColorRM page histories as one SQLite row per element, keyed by session, page
+ * and element id, in a WAL-mode database.
+ *
+ * A save writes only the elements that changed: a new stroke, a move or a
+ * soft-delete is an upsert of that element's row, so its cost follows the edit
+ * and not the page. Each row carries a {@code z} the page keeps strictly
+ * increasing along its history array; loads read in that order straight off
+ * the {@code (session, page, z)} index. Soft-deleted rows are dropped by
+ * {@link #compact}, the on-disk counterpart of the page's compactHistory().
+ *
+ * Not thread-safe: {@link ProjectStoreChannel} confines it to one thread.
+ */
+class ProjectStore {
+
+    /** Receives a page's rows in z order; {@code data} is the element's JSON as the page stored it. */
+    interface RowSink {
+        void row(double z, String data);
+    }
+
+    private static final int SCHEMA_VERSION = 1;
+    // A CursorWindow holds about 2 MB of UTF-8; larger elements (embedded images) are read in pieces
+    private static final int INLINE_DATA_LIMIT = 512 * 1024;
+
+    private final SQLiteDatabase db;
+    private final SQLiteStatement upsert;
+    private final SQLiteStatement deleteElement;
+    private final SQLiteStatement deletePage;
+    private final SQLiteStatement deleteSession;
+    private final SQLiteStatement compactPage;
+
+    ProjectStore(File file) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        db = SQLiteDatabase.openDatabase(file.getPath(), null,
+                SQLiteDatabase.CREATE_IF_NECESSARY | SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING);
+        if (db.getVersion() < SCHEMA_VERSION) {
+            db.beginTransaction();
+            try {
+                db.execSQL("CREATE TABLE IF NOT EXISTS elements ("
+                        + "session TEXT NOT NULL, page TEXT NOT NULL, id TEXT NOT NULL, "
+                        + "z REAL NOT NULL, deleted INTEGER NOT NULL, data TEXT NOT NULL, updated INTEGER NOT NULL, "
+                        + "PRIMARY KEY (session, page, id)) WITHOUT ROWID");
+                db.execSQL("CREATE INDEX IF NOT EXISTS elements_z ON elements (session, page, z)");
+                db.setVersion(SCHEMA_VERSION);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        upsert = db.compileStatement("INSERT OR REPLACE INTO elements "
+                + "(session, page, id, z, deleted, data, updated) VALUES (?, ?, ?, ?, ?, ?, ?)");
+        deleteElement = db.compileStatement("DELETE FROM elements WHERE session = ? AND page = ? AND id = ?");
+        deletePage = db.compileStatement("DELETE FROM elements WHERE session = ? AND page = ?");
+        deleteSession = db.compileStatement("DELETE FROM elements WHERE session = ?");
+        compactPage = db.compileStatement("DELETE FROM elements WHERE session = ? AND page = ? AND deleted = 1");
+    }
+
+    void beginBatch() {
+        db.beginTransactionNonExclusive();
+    }
+
+    void commitBatch() {
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    void abortBatch() {
+        db.endTransaction();
+    }
+
+    void put(String session, String page, String id, double z, boolean deleted, String data, long now) {
+        upsert.bindString(1, session);
+        upsert.bindString(2, page);
+        upsert.bindString(3, id);
+        upsert.bindDouble(4, z);
+        upsert.bindLong(5, deleted ? 1 : 0);
+        upsert.bindString(6, data);
+        upsert.bindLong(7, now);
+        upsert.executeInsert();
+    }
+
+    void remove(String session, String page, String id) {
+        deleteElement.bindString(1, session);
+        deleteElement.bindString(2, page);
+        deleteElement.bindString(3, id);
+        deleteElement.executeUpdateDelete();
+    }
+
+    int clearPage(String session, String page) {
+        deletePage.bindString(1, session);
+        deletePage.bindString(2, page);
+        return deletePage.executeUpdateDelete();
+    }
+
+    int clearSession(String session) {
+        deleteSession.bindString(1, session);
+        return deleteSession.executeUpdateDelete();
+    }
+
+    /** Drops the page's soft-deleted rows; returns how many. */
+    int compact(String session, String page) {
+        compactPage.bindString(1, session);
+        compactPage.bindString(2, page);
+        int removed = compactPage.executeUpdateDelete();
+        if (removed > 0) {
+            // Fold the freed pages back into the main file while nothing is waiting on the store
+            try (Cursor c = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null)) {
+                c.moveToFirst();
+            }
+        }
+        return removed;
+    }
+
+    /** Streams every row of a page in z order; returns the row count. */
+    int load(String session, String page, RowSink sink) {
+        String[] args = {session, page};
+        int count = 0;
+        try (Cursor c = db.rawQuery("SELECT z, CASE WHEN length(data) <= " + INLINE_DATA_LIMIT
+                + " THEN data END, id, length(data) FROM elements WHERE session = ? AND page = ? ORDER BY z", args)) {
+            while (c.moveToNext()) {
+                String data = c.isNull(1) ? readLarge(session, page, c.getString(2), c.getInt(3)) : c.getString(1);
+                sink.row(c.getDouble(0), data);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String readLarge(String session, String page, String id, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int offset = 1; offset <= length; offset += INLINE_DATA_LIMIT) {
+            try (Cursor c = db.rawQuery("SELECT substr(data, " + offset + ", " + INLINE_DATA_LIMIT
+                    + ") FROM elements WHERE session = ? AND page = ? AND id = ?", new String[]{session, page, id})) {
+                if (!c.moveToFirst()) break;
+                sb.append(c.getString(0));
+            }
+        }
+        return sb.toString();
+    }
+
+    void close() {
+        db.close();
+    }
+}
@@ -0,0 +1,252 @@
+package shubham.akshit.tldraw;
+
+import android.util.Log;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * "store" topic on the {@link NativeMessageChannel}: ColorRM page histories in
+ * the {@link ProjectStore}. All database work runs in order on one background
+ * thread, so an append that was sent before a load is visible to it.
+ *
+ * <pre>
+ * page → {op:"hello", req}                              native → {op:"ready", req, stream}
+ * page → {op:"append", req, session, page, replace, put:[[id, z, deleted, json], ...], remove:[id, ...]}
+ *                                                        native → {op:"appended", req, rows} | {op:"error", req, message}
+ * page → {op:"load", req, session, page}                native → {op:"rows", req, z:[...], rows:[...]} ... {op:"loaded", req, count}
+ * page → {op:"drop", session, page?}
+ * </pre>
+ *
+ * {@code replace} clears the page before the puts (first save of a page whose
+ * history came from IndexedDB). Once a page has collected enough soft-deletes
+ * they are compacted away in the background.
+ *
+ * An append may also arrive as a binary frame on {@link #STREAM_ID} holding the
+ * same JSON in UTF-8; a first save carries the whole page, and this way it is
+ * parsed on the store thread instead of the UI thread.
+ */
+class ProjectStoreChannel implements NativeMessageChannel.TopicHandler, NativeMessageChannel.StreamHandler {
+
+    static final String TOPIC = "store";
+    static final int STREAM_ID = -3;
+    private static final String TAG = "ColorRM_Native";
+    // Same trigger as the page's checkAutoCompact()
+    private static final int COMPACT_AFTER_DELETES = 100;
+    private static final int ROWS_PER_MESSAGE = 500;
+    private static final int CHARS_PER_MESSAGE = 256 * 1024;
+
+    private final NativeMessageChannel channel;
+    private final File dbFile;
+    private final BridgeMetrics metrics;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "project-store");
+        t.setDaemon(true);
+        return t;
+    });
+    // Store thread only
+    private ProjectStore store;
+    private final Map<String, Integer> deletesSinceCompact = new HashMap<>();
+
+    ProjectStoreChannel(NativeMessageChannel channel, File dbFile, BridgeMetrics metrics) {
+        this.channel = channel;
+        this.dbFile = dbFile;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onMessage(JSONObject message) throws JSONException {
+        String op = message.getString("op");
+        int req = message.optInt("req");
+        switch (op) {
+            case "hello":
+                channel.post(TOPIC, new JSONObject().put("op", "ready").put("req", req).put("stream", STREAM_ID));
+                break;
+            case "append":
+                executor.execute(() -> append(req, message));
+                break;
+            case "load":
+                executor.execute(() -> load(req, message.optString("session"), message.optString("page")));
+                break;
+            case "drop":
+                executor.execute(() -> drop(message.optString("session"), message.optString("page", null)));
+                break;
+            default:
+                Log.w(TAG, "Unknown store op " + op);
+        }
+    }
+
+    @Override
+    public void onFrame(byte[] frame) {
+        executor.execute(() -> {
+            JSONObject message;
+            try {
+                message = new JSONObject(new String(frame, NativeMessageChannel.FRAME_HEADER_BYTES,
+                        frame.length - NativeMessageChannel.FRAME_HEADER_BYTES, StandardCharsets.UTF_8));
+            } catch (JSONException e) {
+                // No request id to answer; the page's request times out
+                Log.e(TAG, "Malformed store frame", e);
+                return;
+            }
+            append(message.optInt("req"), message);
+        });
+    }
+
+    private ProjectStore store() {
+        // Opened on first use so the UI thread never touches the file
+        if (store == null) store = new ProjectStore(dbFile);
+        return store;
+    }
+
+    private void append(int req, JSONObject message) {
+        long t0 = System.nanoTime();
+        BridgeMetrics.Timer timer = metrics.timer("store.append");
+        try {
+            String session = message.getString("session");
+            String page = message.getString("page");
+            JSONArray put = message.optJSONArray("put");
+            JSONArray remove = message.optJSONArray("remove");
+            ProjectStore db = store();
+            long now = System.currentTimeMillis();
+            long bytes = 0;
+            int deletes = 0;
+            db.beginBatch();
+            try {
+                if (message.optBoolean("replace")) db.clearPage(session, page);
+                for (int i = 0; put != null && i < put.length(); i++) {
+                    JSONArray row = put.getJSONArray(i);
+                    boolean deleted = row.getInt(2) != 0;
+                    String data = row.getString(3);
+                    db.put(session, page, row.getString(0), row.getDouble(1), deleted, data, now);
+                    bytes += data.length();
+                    if (deleted) deletes++;
+                }
+                for (int i = 0; remove != null && i < remove.length(); i++) {
+                    db.remove(session, page, remove.getString(i));
+                }
+                db.commitBatch();
+            } catch (RuntimeException | JSONException e) {
+                db.abortBatch();
+                throw e;
+            }
+            int rows = (put != null ? put.length() : 0) + (remove != null ? remove.length() : 0);
+            channel.post(TOPIC, new JSONObject().put("op", "appended").put("req", req).put("rows", rows));
+            timer.record(t0, bytes, 0);
+            metrics.add("store.rows", rows);
+            if (deletes > 0) noteDeletes(session, page, deletes);
+        } catch (Exception e) {
+            Log.e(TAG, "Store append failed", e);
+            timer.error();
+            timer.record(t0);
+            replyError(req, e);
+        }
+    }
+
+    private void noteDeletes(String session, String page, int deletes) {
+        String key = session + '\u0000' + page;
+        int pending = deletesSinceCompact.getOrDefault(key, 0) + deletes;
+        if (pending < COMPACT_AFTER_DELETES) {
+            deletesSinceCompact.put(key, pending);
+            return;
+        }
+        deletesSinceCompact.remove(key);
+        // Queued behind whatever the page sends next, so saves are never held up by it
+        executor.execute(() -> {
+            try {
+                int removed = store().compact(session, page);
+                metrics.add("store.compacted", removed);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Store compaction failed", e);
+            }
+        });
+    }
+
+    private void load(int req, String session, String page) {
+        long t0 = System.nanoTime();
+        BridgeMetrics.Timer timer = metrics.timer("store.load");
+        try {
+            RowBatcher batcher = new RowBatcher(req);
+            int count = store().load(session, page, batcher);
+            batcher.flush();
+            channel.post(TOPIC, new JSONObject().put("op", "loaded").put("req", req).put("count", count));
+            timer.record(t0, 0, batcher.chars);
+        } catch (Exception e) {
+            Log.e(TAG, "Store load failed", e);
+            timer.error();
+            timer.record(t0);
+            replyError(req, e);
+        }
+    }
+
+    private void drop(String session, String page) {
+        try {
+            if (page != null) {
+                store().clearPage(session, page);
+                deletesSinceCompact.remove(session + '\u0000' + page);
+            } else {
+                store().clearSession(session);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Store drop failed", e);
+        }
+    }
+
+    private void replyError(int req, Exception e) {
+        try {
+            channel.post(TOPIC, new JSONObject().put("op", "error").put("req", req)
+                    .put("message", String.valueOf(e.getMessage())));
+        } catch (JSONException ignored) {
+        }
+    }
+
+    void shutdown() {
+        executor.execute(() -> {
+            if (store != null) store.close();
+        });
+        executor.shutdown();
+    }
+
+    /**
+     * Groups rows into {@code rows} messages. Element JSON goes out verbatim, so
+     * nothing is parsed on this side and the page parses each row once.
+     */
+    private class RowBatcher implements ProjectStore.RowSink {
+        private final int req;
+        private final StringBuilder z = new StringBuilder();
+        private final StringBuilder rows = new StringBuilder();
+        private int count;
+        long chars;
+
+        RowBatcher(int req) {
+            this.req = req;
+        }
+
+        @Override
+        public void row(double zValue, String data) {
+            if (count > 0) {
+                z.append(',');
+                rows.append(',');
+            }
+            z.append(zValue);
+            rows.append(data);
+            if (++count >= ROWS_PER_MESSAGE || rows.length() >= CHARS_PER_MESSAGE) flush();
+        }
+
+        void flush() {
+            if (count == 0) return;
+            String json = "{\"topic\":\"" + TOPIC + "\",\"op\":\"rows\",\"req\":" + req
+                    + ",\"z\":[" + z + "],\"rows\":[" + rows + "]}";
+            channel.postString(json);
+            chars += json.length();
+            z.setLength(0);
+            rows.setLength(0);
+            count = 0;
+        }
+    }
+}
@@ -1,24 +1,40 @@
 package shubham.akshit.tldraw;
 
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
-import com.samsung.android.sdk.SsdkUnsupportedException;
-import com.samsung.android.sdk.penremote.ButtonEvent;
-import com.samsung.android.sdk.penremote.SpenEvent;
-import com.samsung.android.sdk.penremote.SpenEventListener;
 import com.samsung.android.sdk.penremote.SpenRemote;
-import com.samsung.android.sdk.penremote.SpenUnit;
 import com.samsung.android.sdk.penremote.SpenUnitManager;
 
+/**
+ * S Pen Remote button and air motion, batched by {@link SpenRemoteAggregator}
+ * into at most one "spenEvents" notification per frame:
+ *
+ * <pre>
+ * {motion?: {dx, dy, samples, spanMs}, buttons?: [{action: "down"|"up", time}],
+ *  gestures?: [{type, durationMs, dx, dy}]}
+ * </pre>
+ *
+ * "spenClick" {pressed: true} is still sent on every button press.
+ * connect/configure take {airMotion: true, maxRate: 60, swipeDistance: 1}.
+ */
 @CapacitorPlugin(name = "SPenRemote")
-public class SPenRemotePlugin extends Plugin {
+public class SPenRemotePlugin extends Plugin implements Choreographer.FrameCallback {
 
-    private SpenUnitManager mSpenUnitManager = null;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final SpenRemoteAggregator aggregator = new SpenRemoteAggregator(() -> mainHandler.post(this::scheduleFrame));
     private SpenRemote mSpenRemote;
+    private SpenUnits units;
+    private boolean airMotion = true;
+    // UI thread only
+    private boolean frameScheduled = false;
 
     @PluginMethod
     public void connect(PluginCall call) {
@@ -33,14 +49,15 @@ public class SPenRemotePlugin extends Plugin {
             call.reject("S Pen Button feature not available on this device.");
             return;
         }
+        applyOptions(call);
 
-        if (!mSpenRemote.isConnected()) {
+        if (!mSpenRemote.isConnected() || units == null) {
             mSpenRemote.connect(getContext(), new SpenRemote.ConnectionResultCallback() {
                 @Override
                 public void onSuccess(SpenUnitManager manager) {
-                    mSpenUnitManager = manager;
-                    registerButtonListener();
-                    call.resolve();
+                    units = new SamsungSpenUnits(mSpenRemote, manager);
+                    register();
+                    call.resolve(status());
                 }
 
                 @Override
@@ -49,36 +66,105 @@ public class SPenRemotePlugin extends Plugin {
                 }
             });
         } else {
-            call.resolve(); // Already connected
+            call.resolve(status()); // Already connected
         }
     }
 
-    private void registerButtonListener() {
-        try {
-            SpenUnit button = mSpenUnitManager.getUnit(SpenUnit.TYPE_BUTTON);
-            mSpenUnitManager.registerSpenEventListener(new SpenEventListener() {
-                @Override
-                // FIX 2: Renamed from 'onEventChanged' to 'onEvent'
-                public void onEvent(SpenEvent ev) {
-                    ButtonEvent buttonEvent = new ButtonEvent(ev);
+    /** Changes the options of a live connection; air motion is (un)registered as needed. */
+    @PluginMethod
+    public void configure(PluginCall call) {
+        boolean wasAirMotion = airMotion;
+        applyOptions(call);
+        if (units != null && wasAirMotion != airMotion) register();
+        call.resolve(status());
+    }
+
+    private void applyOptions(PluginCall call) {
+        airMotion = call.getBoolean("airMotion", airMotion);
+        aggregator.setStreamMotion(airMotion);
+        Integer maxRate = call.getInt("maxRate");
+        if (maxRate != null) aggregator.setMaxRate(maxRate);
+        Float swipeDistance = call.getFloat("swipeDistance");
+        if (swipeDistance != null) aggregator.setSwipeDistance(swipeDistance);
+    }
+
+    private void register() {
+        aggregator.reset();
+        units.register(aggregator, airMotion);
+    }
+
+    private JSObject status() {
+        JSObject ret = new JSObject();
+        ret.put("airMotion", airMotion && units != null && units.hasAirMotion());
+        ret.put("samples", aggregator.samplesIn());
+        ret.put("batches", aggregator.batchesOut());
+        return ret;
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled) return;
+        frameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        SpenRemoteAggregator.Batch batch = aggregator.flush(SystemClock.uptimeMillis());
+        if (batch != null) notify(batch);
+        // Motion held back by the rate cap goes out on a later frame
+        if (aggregator.hasPending()) scheduleFrame();
+    }
 
-                    if (buttonEvent.getAction() == ButtonEvent.ACTION_DOWN) {
-                        JSObject ret = new JSObject();
-                        ret.put("pressed", true);
-                        notifyListeners("spenClick", ret);
-                    }
+    private void notify(SpenRemoteAggregator.Batch batch) {
+        JSObject ret = new JSObject();
+        if (batch.hasMotion()) {
+            JSObject motion = new JSObject();
+            motion.put("dx", batch.motionDx);
+            motion.put("dy", batch.motionDy);
+            motion.put("samples", batch.motionSamples);
+            motion.put("spanMs", batch.motionLastMs - batch.motionFirstMs);
+            ret.put("motion", motion);
+        }
+        if (batch.buttonCount > 0) {
+            JSArray buttons = new JSArray();
+            for (int i = 0; i < batch.buttonCount; i++) {
+                boolean down = batch.buttonActions[i] == SpenUnits.ACTION_DOWN;
+                JSObject button = new JSObject();
+                button.put("action", down ? "down" : "up");
+                button.put("time", batch.buttonTimes[i]);
+                buttons.put(button);
+                if (down) {
+                    JSObject click = new JSObject();
+                    click.put("pressed", true);
+                    notifyListeners("spenClick", click);
                 }
-            }, button);
-        } catch (Exception e) {
-            Log.e("SPenRemote", "Error registering listener", e);
+            }
+            ret.put("buttons", buttons);
+        }
+        if (batch.gestureCount > 0) {
+            JSArray gestures = new JSArray();
+            for (int i = 0; i < batch.gestureCount; i++) {
+                JSObject gesture = new JSObject();
+                gesture.put("type", batch.gestures[i].jsName);
+                gesture.put("durationMs", batch.gestureDurations[i]);
+                gesture.put("dx", batch.gestureDx[i]);
+                gesture.put("dy", batch.gestureDy[i]);
+                gestures.put(gesture);
+            }
+            ret.put("gestures", gestures);
         }
+        notifyListeners("spenEvents", ret);
     }
 
     @Override
     protected void handleOnDestroy() {
+        if (units != null) units.unregister();
+        units = null;
+        Choreographer.getInstance().removeFrameCallback(this);
         if (mSpenRemote != null && mSpenRemote.isConnected()) {
             mSpenRemote.disconnect(getContext());
         }
         super.handleOnDestroy();
     }
-}
\ No newline at end of file
+}
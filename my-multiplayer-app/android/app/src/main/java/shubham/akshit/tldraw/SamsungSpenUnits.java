@@ -0,0 +1,68 @@
+package shubham.akshit.tldraw;
+
+import android.os.SystemClock;
+import android.util.Log;
+import com.samsung.android.sdk.penremote.AirMotionEvent;
+import com.samsung.android.sdk.penremote.ButtonEvent;
+import com.samsung.android.sdk.penremote.SpenRemote;
+import com.samsung.android.sdk.penremote.SpenUnit;
+import com.samsung.android.sdk.penremote.SpenUnitManager;
+
+/** {@link SpenUnits} on a connected {@link SpenUnitManager}. */
+final class SamsungSpenUnits implements SpenUnits {
+
+    private static final String TAG = "SPenRemote";
+
+    private final SpenUnitManager manager;
+    private final boolean airMotionFeature;
+    private SpenUnit button;
+    private SpenUnit airMotion;
+
+    SamsungSpenUnits(SpenRemote remote, SpenUnitManager manager) {
+        this.manager = manager;
+        this.airMotionFeature = remote.isFeatureEnabled(SpenRemote.FEATURE_TYPE_AIR_MOTION);
+    }
+
+    @Override
+    public boolean hasAirMotion() {
+        return airMotionFeature;
+    }
+
+    @Override
+    public void register(Listener listener, boolean withAirMotion) {
+        unregister();
+        try {
+            button = manager.getUnit(SpenUnit.TYPE_BUTTON);
+            manager.registerSpenEventListener(ev -> {
+                ButtonEvent event = new ButtonEvent(ev);
+                listener.onButton(event.getAction(), SystemClock.uptimeMillis());
+            }, button);
+        } catch (Exception e) {
+            button = null;
+            Log.e(TAG, "Error registering button listener", e);
+        }
+        if (!withAirMotion || !airMotionFeature) return;
+        try {
+            airMotion = manager.getUnit(SpenUnit.TYPE_AIR_MOTION);
+            manager.registerSpenEventListener(ev -> {
+                AirMotionEvent event = new AirMotionEvent(ev);
+                listener.onAirMotion(event.getDeltaX(), event.getDeltaY(), SystemClock.uptimeMillis());
+            }, airMotion);
+        } catch (Exception e) {
+            airMotion = null;
+            Log.e(TAG, "Error registering air motion listener", e);
+        }
+    }
+
+    @Override
+    public void unregister() {
+        try {
+            if (button != null) manager.unregisterSpenEventListener(button);
+            if (airMotion != null) manager.unregisterSpenEventListener(airMotion);
+        } catch (Exception e) {
+            Log.w(TAG, "Error unregistering listeners", e);
+        }
+        button = null;
+        airMotion = null;
+    }
+}
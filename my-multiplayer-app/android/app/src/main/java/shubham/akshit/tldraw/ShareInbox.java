@@ -0,0 +1,299 @@
+package shubham.akshit.tldraw;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares that arrived before the page asked for them, in arrival order.
+ *
+ * Intents are offered on the UI thread and drained from the JavaBridge thread;
+ * a second share no longer overwrites the first. As soon as a file share is
+ * offered, a worker resolves its name, size and MIME type (one provider query
+ * per URI) and copies the bytes into an app-private directory, so by the time
+ * the page imports it the stream route and the Base64 fallback read a local
+ * file instead of waiting on the sending app's provider. Copies only live for
+ * one process. Plain Java.
+ */
+final class ShareInbox {
+
+    /** Where shared URIs are read from; the app's is backed by a ContentResolver. */
+    interface Source {
+        // Null fields are allowed; size is -1 when unknown
+        Metadata describe(String uri) throws IOException;
+
+        InputStream open(String uri) throws IOException;
+    }
+
+    static final class Metadata {
+        final String name;
+        final long size;
+        final String mime;
+
+        Metadata(String name, long size, String mime) {
+            this.name = name;
+            this.size = size;
+            this.mime = mime;
+        }
+    }
+
+    enum Kind { FILE, FILES, TEXT }
+
+    static final class Share {
+        final Kind kind;
+        final long seq;
+        // URIs for FILE/FILES, the shared text for TEXT
+        final List<String> values;
+
+        Share(Kind kind, long seq, List<String> values) {
+            this.kind = kind;
+            this.seq = seq;
+            this.values = values;
+        }
+    }
+
+    /** One shared URI: metadata, then the local copy, filled in by the worker. */
+    static final class Item {
+        final String uri;
+        final CompletableFuture<Metadata> metadata = new CompletableFuture<>();
+        // Completes with null when the content was not copied (too large, provider error)
+        final CompletableFuture<File> local = new CompletableFuture<>();
+
+        Item(String uri) {
+            this.uri = uri;
+        }
+
+        Metadata metadataNow() {
+            return metadata.isDone() && !metadata.isCompletedExceptionally() ? metadata.getNow(null) : null;
+        }
+
+        File localNow() {
+            return local.isDone() ? local.getNow(null) : null;
+        }
+    }
+
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    private final Source source;
+    private final File dir;
+    private final long maxCopyBytes;
+    private final ExecutorService worker;
+    // Emptying dir; copies are written there only after it
+    private final CompletableFuture<Void> prepared;
+    private final ConcurrentLinkedQueue<Share> queue = new ConcurrentLinkedQueue<>();
+    private final Map<String, Item> items = new ConcurrentHashMap<>();
+    private final AtomicLong nextSeq = new AtomicLong(1);
+    private final AtomicLong nextFile = new AtomicLong(1);
+    private final AtomicLong copiedBytes = new AtomicLong();
+
+    /**
+     * @param maxCopyBytes total bytes staged per process; shares beyond it are
+     *                     left with the provider and streamed from there
+     * @param setup        runs the cleanup of {@code dir}, off the caller's thread
+     */
+    ShareInbox(Source source, File dir, long maxCopyBytes, Executor setup) {
+        this.source = source;
+        this.dir = dir;
+        this.maxCopyBytes = maxCopyBytes;
+        this.worker = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "share-stage");
+            t.setDaemon(true);
+            return t;
+        });
+        this.prepared = CompletableFuture.runAsync(() -> {
+            File[] stale = dir.listFiles();
+            if (stale != null) for (File f : stale) f.delete();
+            if (!dir.exists()) dir.mkdirs();
+        }, setup);
+    }
+
+    void offerText(String text) {
+        List<String> values = new ArrayList<>(1);
+        values.add(text);
+        queue.add(new Share(Kind.TEXT, nextSeq.getAndIncrement(), values));
+    }
+
+    void offerFile(String uri) {
+        List<String> values = new ArrayList<>(1);
+        values.add(uri);
+        offerUris(Kind.FILE, values);
+    }
+
+    void offerFiles(List<String> uris) {
+        offerUris(Kind.FILES, new ArrayList<>(uris));
+    }
+
+    private void offerUris(Kind kind, List<String> uris) {
+        for (String uri : uris) stage(uri);
+        queue.add(new Share(kind, nextSeq.getAndIncrement(), uris));
+    }
+
+    private void stage(String uri) {
+        Item item = new Item(uri);
+        // The same URI shared twice keeps its first copy
+        if (items.putIfAbsent(uri, item) != null) return;
+        worker.execute(() -> {
+            Metadata meta;
+            try {
+                meta = source.describe(uri);
+                item.metadata.complete(meta);
+            } catch (Exception e) {
+                item.metadata.completeExceptionally(e);
+                meta = null;
+            }
+            item.local.complete(copy(uri, meta));
+        });
+    }
+
+    private File copy(String uri, Metadata meta) {
+        long known = meta != null ? meta.size : -1;
+        if (known > maxCopyBytes - copiedBytes.get()) return null;
+        prepared.join();
+        File target = new File(dir, nextFile.getAndIncrement() + ".bin");
+        long written = 0;
+        try (InputStream in = source.open(uri)) {
+            if (in == null) return null;
+            try (OutputStream out = new FileOutputStream(target)) {
+                byte[] buffer = new byte[COPY_BUFFER];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    written += n;
+                    if (copiedBytes.get() + written > maxCopyBytes) {
+                        // Size was unknown or wrong; give up and stream from the provider
+                        throw new IOException("Share exceeds the staging budget");
+                    }
+                }
+            }
+            copiedBytes.addAndGet(written);
+            return target;
+        } catch (Exception e) {
+            // Provider error or over budget: the page still reads the URI directly
+            target.delete();
+            return null;
+        }
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /** Removes and returns every queued share, oldest first. */
+    List<Share> drain() {
+        List<Share> batch = new ArrayList<>();
+        Share share;
+        while ((share = queue.poll()) != null) batch.add(share);
+        return batch;
+    }
+
+    /** Removes and returns the oldest share of one kind, or null. Backs the single-slot getters. */
+    Share poll(Kind kind) {
+        for (Iterator<Share> it = queue.iterator(); it.hasNext(); ) {
+            Share share = it.next();
+            // remove() succeeds for exactly one caller if two threads race for the same entry
+            if (share.kind == kind && queue.remove(share)) return share;
+        }
+        return null;
+    }
+
+    Item item(String uri) {
+        return uri != null ? items.get(uri) : null;
+    }
+
+    /** Metadata if the worker has it, waiting up to {@code timeoutMs}; null otherwise. */
+    Metadata metadata(String uri, long timeoutMs) {
+        Item item = item(uri);
+        return item != null ? await(item.metadata, timeoutMs) : null;
+    }
+
+    /** The staged copy, waiting up to {@code timeoutMs} for a copy in progress; null to use the provider. */
+    File localCopy(String uri, long timeoutMs) {
+        Item item = item(uri);
+        return item != null ? await(item.local, timeoutMs) : null;
+    }
+
+    private static <T> T await(CompletableFuture<T> future, long timeoutMs) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    long copiedBytes() {
+        return copiedBytes.get();
+    }
+
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * {@code [{"kind":"file"|"files"|"text","seq":n,"text":...}|{..., "items":[{uri,name,size,mime,local}]}]}.
+     * Metadata is whatever has resolved so far; {@code local} is true once the bytes are on disk.
+     */
+    String toJson(List<Share> batch) {
+        StringBuilder sb = new StringBuilder(128 * batch.size() + 2);
+        sb.append('[');
+        for (int i = 0; i < batch.size(); i++) {
+            Share share = batch.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"kind\":\"").append(share.kind.name().toLowerCase(java.util.Locale.ROOT))
+                    .append("\",\"seq\":").append(share.seq);
+            if (share.kind == Kind.TEXT) {
+                sb.append(",\"text\":");
+                JsStrings.appendJsonString(sb, share.values.get(0));
+            } else {
+                sb.append(",\"items\":[");
+                for (int j = 0; j < share.values.size(); j++) {
+                    if (j > 0) sb.append(',');
+                    appendItem(sb, share.values.get(j));
+                }
+                sb.append(']');
+            }
+            sb.append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private void appendItem(StringBuilder sb, String uri) {
+        Item item = item(uri);
+        Metadata meta = item != null ? item.metadataNow() : null;
+        sb.append("{\"uri\":");
+        JsStrings.appendJsonString(sb, uri);
+        sb.append(",\"name\":");
+        appendNullable(sb, meta != null ? meta.name : null);
+        sb.append(",\"size\":").append(meta != null ? meta.size : -1);
+        sb.append(",\"mime\":");
+        appendNullable(sb, meta != null ? meta.mime : null);
+        sb.append(",\"local\":").append(item != null && item.localNow() != null);
+        sb.append('}');
+    }
+
+    private static void appendNullable(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+        } else {
+            JsStrings.appendJsonString(sb, value);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package shubham.akshit.tldraw;
+
+/**
+ * Turns the S Pen Remote's event stream into at most one notification per frame.
+ *
+ * <ul>
+ * <li>Air motion while the button is up is summed between flushes, and motion
+ *     batches go out no more often than the rate cap allows.</li>
+ * <li>Air motion while the button is held is not streamed; it decides the
+ *     gesture the press turns into.</li>
+ * <li>Each press becomes one {@link Gesture} on release: a click, a long
+ *     press, or a swipe. A click is held for {@link #DOUBLE_CLICK_MS}; a
+ *     second click within that time makes the pair one double click.</li>
+ * <li>Button down/up transitions are reported as they happened.</li>
+ * </ul>
+ *
+ * Events arrive on the SDK's thread; {@link #flush} runs once per frame.
+ * Nothing is allocated per event. Thread-safe. Plain Java.
+ */
+final class SpenRemoteAggregator implements SpenUnits.Listener {
+
+    enum Gesture {
+        CLICK("click"), DOUBLE_CLICK("double-click"), LONG_PRESS("long-press"),
+        SWIPE_LEFT("swipe-left"), SWIPE_RIGHT("swipe-right"), SWIPE_UP("swipe-up"), SWIPE_DOWN("swipe-down");
+
+        final String jsName;
+
+        Gesture(String jsName) {
+            this.jsName = jsName;
+        }
+    }
+
+    interface Wakeup {
+        // Something is pending that was not before; any thread
+        void requestFlush();
+    }
+
+    static final int DEFAULT_MAX_RATE_HZ = 60;
+    static final long LONG_PRESS_MS = 500;
+    static final long DOUBLE_CLICK_MS = 300;
+    // Air motion deltas are small per sample; a deliberate flick sums to well over this
+    static final float DEFAULT_SWIPE_DISTANCE = 1f;
+    // Transitions kept per frame; a button cannot be pressed faster than this
+    static final int MAX_EVENTS = 16;
+
+    /** What happened since the previous flush. Reused; valid until the next flush. */
+    static final class Batch {
+        float motionDx;
+        float motionDy;
+        int motionSamples;
+        long motionFirstMs;
+        long motionLastMs;
+
+        int buttonCount;
+        final int[] buttonActions = new int[MAX_EVENTS];
+        final long[] buttonTimes = new long[MAX_EVENTS];
+
+        int gestureCount;
+        final Gesture[] gestures = new Gesture[MAX_EVENTS];
+        final long[] gestureDurations = new long[MAX_EVENTS];
+        final float[] gestureDx = new float[MAX_EVENTS];
+        final float[] gestureDy = new float[MAX_EVENTS];
+
+        boolean isEmpty() {
+            return motionSamples == 0 && buttonCount == 0 && gestureCount == 0;
+        }
+
+        boolean hasMotion() {
+            return motionSamples > 0;
+        }
+
+        private void clear() {
+            motionDx = 0;
+            motionDy = 0;
+            motionSamples = 0;
+            buttonCount = 0;
+            gestureCount = 0;
+            for (int i = 0; i < MAX_EVENTS; i++) gestures[i] = null;
+        }
+    }
+
+    private final Wakeup wakeup;
+    private Batch pending = new Batch();
+    private Batch delivered = new Batch();
+
+    private long minMotionIntervalMs = 1000 / DEFAULT_MAX_RATE_HZ;
+    private float swipeDistance = DEFAULT_SWIPE_DISTANCE;
+    private boolean streamMotion = true;
+    private long lastMotionFlushMs = Long.MIN_VALUE / 2;
+
+    // Current press
+    private boolean held;
+    private long downMs;
+    private float heldDx;
+    private float heldDy;
+
+    // Click waiting to see whether a second one follows
+    private boolean clickHeld;
+    private long clickUpMs;
+    private long clickDurationMs;
+    private float clickDx;
+    private float clickDy;
+
+    private long samplesIn;
+    private long batchesOut;
+    private long dropped;
+
+    SpenRemoteAggregator(Wakeup wakeup) {
+        this.wakeup = wakeup;
+    }
+
+    /** Caps motion notifications at {@code hz} per second; 0 leaves only the frame rate as the cap. */
+    synchronized void setMaxRate(int hz) {
+        minMotionIntervalMs = hz > 0 ? 1000 / Math.min(hz, 1000) : 0;
+    }
+
+    synchronized void setStreamMotion(boolean stream) {
+        streamMotion = stream;
+        if (!stream) {
+            pending.motionDx = 0;
+            pending.motionDy = 0;
+            pending.motionSamples = 0;
+        }
+    }
+
+    synchronized void setSwipeDistance(float distance) {
+        if (distance > 0) swipeDistance = distance;
+    }
+
+    @Override
+    public void onButton(int action, long timeMs) {
+        boolean wake;
+        synchronized (this) {
+            boolean wasEmpty = pending.isEmpty();
+            if (action == SpenUnits.ACTION_DOWN) {
+                if (held) return;
+                if (clickHeld && timeMs - clickUpMs > DOUBLE_CLICK_MS) releaseClick();
+                held = true;
+                downMs = timeMs;
+                heldDx = 0;
+                heldDy = 0;
+            } else if (action == SpenUnits.ACTION_UP) {
+                // An up without its down (listener registered mid-press) is not a gesture
+                if (!held) return;
+                held = false;
+                Gesture gesture = classify(timeMs);
+                if (gesture != Gesture.CLICK) {
+                    releaseClick();
+                    addGesture(gesture, timeMs - downMs, heldDx, heldDy);
+                } else if (clickHeld) {
+                    clickHeld = false;
+                    addGesture(Gesture.DOUBLE_CLICK, timeMs - downMs, heldDx, heldDy);
+                } else {
+                    clickHeld = true;
+                    clickUpMs = timeMs;
+                    clickDurationMs = timeMs - downMs;
+                    clickDx = heldDx;
+                    clickDy = heldDy;
+                }
+            } else {
+                return;
+            }
+            if (pending.buttonCount < MAX_EVENTS) {
+                pending.buttonActions[pending.buttonCount] = action;
+                pending.buttonTimes[pending.buttonCount++] = timeMs;
+            } else {
+                dropped++;
+            }
+            wake = wasEmpty;
+        }
+        if (wake) wakeup.requestFlush();
+    }
+
+    @Override
+    public void onAirMotion(float dx, float dy, long timeMs) {
+        boolean wake;
+        synchronized (this) {
+            samplesIn++;
+            if (held) {
+                heldDx += dx;
+                heldDy += dy;
+                return;
+            }
+            if (!streamMotion) return;
+            wake = pending.isEmpty();
+            if (pending.motionSamples == 0) pending.motionFirstMs = timeMs;
+            pending.motionLastMs = timeMs;
+            pending.motionDx += dx;
+            pending.motionDy += dy;
+            pending.motionSamples++;
+        }
+        if (wake) wakeup.requestFlush();
+    }
+
+    private Gesture classify(long upMs) {
+        float distance = (float) Math.hypot(heldDx, heldDy);
+        if (distance >= swipeDistance) {
+            if (Math.abs(heldDx) >= Math.abs(heldDy)) return heldDx < 0 ? Gesture.SWIPE_LEFT : Gesture.SWIPE_RIGHT;
+            return heldDy < 0 ? Gesture.SWIPE_UP : Gesture.SWIPE_DOWN;
+        }
+        if (upMs - downMs >= LONG_PRESS_MS) return Gesture.LONG_PRESS;
+        return Gesture.CLICK;
+    }
+
+    private void releaseClick() {
+        if (!clickHeld) return;
+        clickHeld = false;
+        addGesture(Gesture.CLICK, clickDurationMs, clickDx, clickDy);
+    }
+
+    private void addGesture(Gesture gesture, long durationMs, float dx, float dy) {
+        if (pending.gestureCount == MAX_EVENTS) {
+            dropped++;
+            return;
+        }
+        int i = pending.gestureCount++;
+        pending.gestures[i] = gesture;
+        pending.gestureDurations[i] = durationMs;
+        pending.gestureDx[i] = dx;
+        pending.gestureDy[i] = dy;
+    }
+
+    /**
+     * Takes everything pending, or returns null when there is nothing to send
+     * yet: either nothing happened, or only motion did and the rate cap holds it
+     * back (see {@link #hasPending()}). Button events and gestures are never held back;
+     * a single click goes out with the first flush after its double-click window.
+     */
+    synchronized Batch flush(long nowMs) {
+        if (clickHeld && !held && nowMs - clickUpMs > DOUBLE_CLICK_MS) releaseClick();
+        if (pending.isEmpty()) return null;
+        boolean urgent = pending.buttonCount > 0 || pending.gestureCount > 0;
+        if (!urgent && nowMs - lastMotionFlushMs < minMotionIntervalMs) return null;
+        if (pending.hasMotion()) lastMotionFlushMs = nowMs;
+        Batch out = pending;
+        pending = delivered;
+        pending.clear();
+        delivered = out;
+        batchesOut++;
+        return out;
+    }
+
+    synchronized boolean hasPending() {
+        return !pending.isEmpty() || (clickHeld && !held);
+    }
+
+    /** Forgets the current press and anything not yet flushed, e.g. when the listener is re-registered. */
+    synchronized void reset() {
+        pending.clear();
+        held = false;
+        clickHeld = false;
+    }
+
+    synchronized long samplesIn() {
+        return samplesIn;
+    }
+
+    synchronized long batchesOut() {
+        return batchesOut;
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,27 @@
+package shubham.akshit.tldraw;
+
+/**
+ * The S Pen Remote units the plugin listens to, behind an interface so
+ * {@link SpenRemoteAggregator} can be driven without the Samsung SDK (see
+ * {@link SamsungSpenUnits}). Plain Java.
+ */
+interface SpenUnits {
+
+    // Same values as ButtonEvent.ACTION_DOWN / ACTION_UP
+    int ACTION_DOWN = 0;
+    int ACTION_UP = 1;
+
+    /** Called on the SDK's binder thread; times are uptime milliseconds at receipt. */
+    interface Listener {
+        void onButton(int action, long timeMs);
+
+        void onAirMotion(float dx, float dy, long timeMs);
+    }
+
+    boolean hasAirMotion();
+
+    /** Starts delivering button events, and air motion too when {@code airMotion} is set and available. */
+    void register(Listener listener, boolean airMotion);
+
+    void unregister();
+}
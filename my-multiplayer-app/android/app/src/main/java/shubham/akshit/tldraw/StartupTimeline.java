@@ -0,0 +1,170 @@
+package shubham.akshit.tldraw;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Cold-start timeline: named phases (with a start and a duration, on whatever
+ * thread ran them) and point-in-time milestones, all relative to process start.
+ * Phases also open a trace section through {@link Tracer}, so the same names
+ * show up in Perfetto / systrace captures.
+ *
+ * <pre>
+ * try (StartupTimeline.Section s = timeline.section("bridge")) { super.onCreate(state); }
+ * timeline.mark("firstFrame");
+ * </pre>
+ *
+ * Milestones keep their first time; a page reload doesn't move "interactive".
+ * Plain Java; the clock is injected so sequences can be replayed on the JVM.
+ */
+final class StartupTimeline {
+
+    interface Tracer {
+        // Same thread for a matching begin/end, as android.os.Trace requires
+        void begin(String name);
+
+        void end();
+    }
+
+    static final Tracer NO_TRACE = new Tracer() {
+        @Override
+        public void begin(String name) {
+        }
+
+        @Override
+        public void end() {
+        }
+    };
+
+    /** Open phase; closing it records the duration and ends the trace section. */
+    final class Section implements AutoCloseable {
+        private final String name;
+        private final long startNanos;
+        private boolean closed;
+
+        private Section(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            long end = clock.getAsLong();
+            tracer.end();
+            synchronized (StartupTimeline.this) {
+                phases.add(new Phase(name, Thread.currentThread().getName(), startNanos, end));
+            }
+        }
+    }
+
+    static final class Phase {
+        final String name;
+        final String thread;
+        final long startNanos;
+        final long endNanos;
+
+        Phase(String name, String thread, long startNanos, long endNanos) {
+            this.name = name;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+    }
+
+    private final Tracer tracer;
+    private final LongSupplier clock;
+    private final long originNanos;
+    private final boolean cold;
+    private final List<Phase> phases = new ArrayList<>();
+    private final Map<String, Long> marks = new LinkedHashMap<>();
+    private final Map<String, String> info = new LinkedHashMap<>();
+
+    /**
+     * @param clock       nanoseconds on the same base as {@code originNanos}
+     * @param originNanos process start; phase and mark times are reported relative to it
+     * @param cold        whether this activity launch also started the process
+     */
+    StartupTimeline(Tracer tracer, LongSupplier clock, long originNanos, boolean cold) {
+        this.tracer = tracer;
+        this.clock = clock;
+        this.originNanos = originNanos;
+        this.cold = cold;
+    }
+
+    Section section(String name) {
+        tracer.begin(name);
+        return new Section(name, clock.getAsLong());
+    }
+
+    /** Records a milestone at the current time; false if it was already recorded. */
+    synchronized boolean mark(String name) {
+        if (marks.containsKey(name)) return false;
+        marks.put(name, clock.getAsLong());
+        return true;
+    }
+
+    synchronized boolean hasMark(String name) {
+        return marks.containsKey(name);
+    }
+
+    /** Milliseconds from process start to {@code name}, or -1 if it hasn't happened. */
+    synchronized long millisTo(String name) {
+        Long at = marks.get(name);
+        return at != null ? (at - originNanos) / 1_000_000 : -1;
+    }
+
+    /** Free-form context reported with the timeline (app version, server URL kind, ...). */
+    synchronized void put(String key, String value) {
+        info.put(key, value);
+    }
+
+    boolean isCold() {
+        return cold;
+    }
+
+    /**
+     * <pre>
+     * {"cold":true,"info":{...},"marks":{"firstFrame":412,...},
+     *  "phases":[{"name":"bridge","thread":"main","startMs":120,"durationMs":230},...]}
+     * </pre>
+     * Phases are in completion order; times in milliseconds since process start.
+     */
+    synchronized String toJson() {
+        StringBuilder sb = new StringBuilder(256 + phases.size() * 80);
+        sb.append("{\"cold\":").append(cold).append(",\"info\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> e : info.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            JsStrings.appendJsonString(sb, e.getKey());
+            sb.append(':');
+            JsStrings.appendJsonString(sb, e.getValue());
+        }
+        sb.append("},\"marks\":{");
+        first = true;
+        for (Map.Entry<String, Long> e : marks.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            JsStrings.appendJsonString(sb, e.getKey());
+            sb.append(':').append((e.getValue() - originNanos) / 1_000_000);
+        }
+        sb.append("},\"phases\":[");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase p = phases.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"name\":");
+            JsStrings.appendJsonString(sb, p.name);
+            sb.append(",\"thread\":");
+            JsStrings.appendJsonString(sb, p.thread);
+            sb.append(",\"startMs\":").append((p.startNanos - originNanos) / 1_000_000)
+                    .append(",\"durationMs\":").append((p.endNanos - p.startNanos) / 1_000_000)
+                    .append('}');
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,167 @@
+package shubham.akshit.tldraw;
+
+/**
+ * Predicts where the pen tip will be a few milliseconds ahead of the last real sample.
+ *
+ * Velocity and acceleration are estimated from consecutive samples and smoothed
+ * exponentially, then extrapolated with a constant-acceleration model over the
+ * configured horizon. Plain Java so it runs (and is tested) on the JVM.
+ *
+ * Accuracy is measured against reality: each prediction is kept until a real
+ * sample reaches its target time, and the distance between the two is recorded.
+ */
+final class StrokePredictor {
+
+    // Never predict across gaps longer than this; the pen probably stopped or lifted
+    private static final float MAX_SAMPLE_GAP_MS = 50f;
+
+    private float horizonMs;
+    private int pointsPerPrediction;
+    private final float smoothing;
+
+    // Last real sample
+    private float lastX, lastY, lastT;
+    private int samples;
+
+    // Smoothed motion state, in px/ms and px/ms^2
+    private float vx, vy, ax, ay;
+
+    // Outstanding predictions for the accuracy metric, oldest first (ring buffer)
+    private static final int MAX_PENDING = 16;
+    private final float[] pendingX = new float[MAX_PENDING];
+    private final float[] pendingY = new float[MAX_PENDING];
+    private final float[] pendingT = new float[MAX_PENDING];
+    private int pendingHead, pendingCount;
+
+    private long evaluated;
+    private double errorSum;
+    private float errorMax;
+
+    /**
+     * @param horizonMs how far ahead to predict; 0 disables prediction
+     * @param pointsPerPrediction predicted points spread evenly over the horizon
+     * @param smoothing weight of a new velocity/acceleration estimate, in (0, 1]
+     */
+    StrokePredictor(float horizonMs, int pointsPerPrediction, float smoothing) {
+        this.horizonMs = horizonMs;
+        this.pointsPerPrediction = Math.max(1, pointsPerPrediction);
+        this.smoothing = Math.max(0.01f, Math.min(1f, smoothing));
+    }
+
+    void setHorizon(float horizonMs, int pointsPerPrediction) {
+        this.horizonMs = horizonMs;
+        this.pointsPerPrediction = Math.max(1, pointsPerPrediction);
+    }
+
+    float horizonMs() {
+        return horizonMs;
+    }
+
+    int pointsPerPrediction() {
+        return pointsPerPrediction;
+    }
+
+    /** Starts a new stroke; motion state is not carried across strokes. */
+    void reset() {
+        samples = 0;
+        vx = vy = ax = ay = 0;
+        pendingHead = pendingCount = 0;
+    }
+
+    /** Feeds one real sample, in order. */
+    void addSample(float x, float y, float timeMs) {
+        // Compare matured predictions with where the pen really was at that time
+        while (pendingCount > 0 && timeMs >= pendingT[pendingHead]) {
+            float span = timeMs - lastT;
+            float f = span > 0 ? (pendingT[pendingHead] - lastT) / span : 1f;
+            float actualX = lastX + (x - lastX) * f;
+            float actualY = lastY + (y - lastY) * f;
+            recordError((float) Math.hypot(pendingX[pendingHead] - actualX, pendingY[pendingHead] - actualY));
+            pendingHead = (pendingHead + 1) % MAX_PENDING;
+            pendingCount--;
+        }
+
+        if (samples > 0) {
+            float dt = timeMs - lastT;
+            if (dt <= 0) {
+                // Duplicate timestamp: just move the anchor
+                lastX = x;
+                lastY = y;
+                return;
+            }
+            if (dt > MAX_SAMPLE_GAP_MS) {
+                samples = 0;
+                vx = vy = ax = ay = 0;
+            } else {
+                float nvx = (x - lastX) / dt;
+                float nvy = (y - lastY) / dt;
+                if (samples >= 2) {
+                    float nax = (nvx - vx) / dt;
+                    float nay = (nvy - vy) / dt;
+                    ax += (nax - ax) * smoothing;
+                    ay += (nay - ay) * smoothing;
+                    vx += (nvx - vx) * smoothing;
+                    vy += (nvy - vy) * smoothing;
+                } else {
+                    vx = nvx;
+                    vy = nvy;
+                }
+            }
+        }
+
+        lastX = x;
+        lastY = y;
+        lastT = timeMs;
+        samples++;
+    }
+
+    /**
+     * Writes up to {@link #pointsPerPrediction()} predicted points as x,y pairs into
+     * {@code out} (which must hold twice that many floats) and returns how many were written.
+     */
+    int predict(float[] out) {
+        if (horizonMs <= 0 || samples < 2) return 0;
+        int n = pointsPerPrediction;
+        for (int i = 1; i <= n; i++) {
+            float t = horizonMs * i / n;
+            out[(i - 1) * 2] = lastX + vx * t + 0.5f * ax * t * t;
+            out[(i - 1) * 2 + 1] = lastY + vy * t + 0.5f * ay * t * t;
+        }
+        // Track the furthest point for the accuracy metric; drop the oldest if full
+        if (pendingCount == MAX_PENDING) {
+            pendingHead = (pendingHead + 1) % MAX_PENDING;
+            pendingCount--;
+        }
+        int slot = (pendingHead + pendingCount) % MAX_PENDING;
+        pendingX[slot] = out[(n - 1) * 2];
+        pendingY[slot] = out[(n - 1) * 2 + 1];
+        pendingT[slot] = lastT + horizonMs;
+        pendingCount++;
+        return n;
+    }
+
+    private void recordError(float error) {
+        evaluated++;
+        errorSum += error;
+        if (error > errorMax) errorMax = error;
+    }
+
+    long evaluatedPredictions() {
+        return evaluated;
+    }
+
+    /** Mean distance in px between predicted and actual positions at the horizon. */
+    double meanError() {
+        return evaluated == 0 ? 0 : errorSum / evaluated;
+    }
+
+    float maxError() {
+        return errorMax;
+    }
+
+    void resetMetrics() {
+        evaluated = 0;
+        errorSum = 0;
+        errorMax = 0;
+    }
+}
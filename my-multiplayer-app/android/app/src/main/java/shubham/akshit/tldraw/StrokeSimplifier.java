@@ -0,0 +1,164 @@
+package shubham.akshit.tldraw;
+
+import java.util.Arrays;
+
+/**
+ * Reduces a committed pen stroke: pressure-aware smoothing followed by
+ * Ramer–Douglas–Peucker decimation.
+ *
+ * Points are interleaved x, y, pressure ({@link #STRIDE} floats each). Every
+ * smoothed point is guaranteed to lie within {@code tolerance} of the returned
+ * polyline, and smoothing moves a point by at most {@code smoothing} times the
+ * distance to its farther neighbour. Scratch arrays are reused between calls.
+ */
+final class StrokeSimplifier {
+
+    static final int STRIDE = 3;
+
+    private float tolerance;
+    private float smoothing;
+
+    private float[] smoothed = new float[0];
+    private boolean[] keep = new boolean[0];
+    private int[] stack = new int[0];
+
+    private long pointsIn;
+    private long pointsOut;
+
+    /**
+     * @param tolerance max distance (same units as the points) a dropped point may be from the result
+     * @param smoothing 0 = none, 1 = replace each point by its pressure-weighted neighbour average
+     */
+    StrokeSimplifier(float tolerance, float smoothing) {
+        configure(tolerance, smoothing);
+    }
+
+    void configure(float tolerance, float smoothing) {
+        this.tolerance = Math.max(0f, tolerance);
+        this.smoothing = Math.max(0f, Math.min(1f, smoothing));
+    }
+
+    float tolerance() {
+        return tolerance;
+    }
+
+    float smoothing() {
+        return smoothing;
+    }
+
+    /**
+     * Simplifies {@code count} points from {@code in} into {@code out} (which must hold
+     * at least {@code count * STRIDE} floats) and returns the number of points written.
+     */
+    int simplify(float[] in, int count, float[] out) {
+        if (count <= 2) {
+            System.arraycopy(in, 0, out, 0, count * STRIDE);
+            record(count, count);
+            return count;
+        }
+        ensureCapacity(count);
+        smooth(in, count, smoothed);
+
+        // Iterative RDP over [first, last] segments
+        Arrays.fill(keep, 0, count, false);
+        keep[0] = true;
+        keep[count - 1] = true;
+        int sp = 0;
+        stack[sp++] = 0;
+        stack[sp++] = count - 1;
+        float tolSq = tolerance * tolerance;
+        while (sp > 0) {
+            int last = stack[--sp];
+            int first = stack[--sp];
+            int index = -1;
+            float maxSq = tolSq;
+            for (int i = first + 1; i < last; i++) {
+                float d = segmentDistanceSq(smoothed, i, first, last);
+                if (d > maxSq) {
+                    maxSq = d;
+                    index = i;
+                }
+            }
+            if (index >= 0) {
+                keep[index] = true;
+                stack[sp++] = first;
+                stack[sp++] = index;
+                stack[sp++] = index;
+                stack[sp++] = last;
+            }
+        }
+
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                System.arraycopy(smoothed, i * STRIDE, out, n * STRIDE, STRIDE);
+                n++;
+            }
+        }
+        record(count, n);
+        return n;
+    }
+
+    /**
+     * Neighbours are weighted by their pressure, so light, jittery contact pulls a
+     * point less than firm contact. Endpoints and pressure values are kept as-is.
+     */
+    private void smooth(float[] in, int count, float[] dst) {
+        System.arraycopy(in, 0, dst, 0, count * STRIDE);
+        if (smoothing <= 0) return;
+        for (int i = 1; i < count - 1; i++) {
+            int prev = (i - 1) * STRIDE;
+            int cur = i * STRIDE;
+            int next = (i + 1) * STRIDE;
+            float wp = Math.max(in[prev + 2], 0f);
+            float wn = Math.max(in[next + 2], 0f);
+            float wSum = wp + wn;
+            if (wSum <= 0) {
+                wp = wn = 0.5f;
+                wSum = 1f;
+            }
+            float avgX = (in[prev] * wp + in[next] * wn) / wSum;
+            float avgY = (in[prev + 1] * wp + in[next + 1] * wn) / wSum;
+            dst[cur] = in[cur] + (avgX - in[cur]) * smoothing;
+            dst[cur + 1] = in[cur + 1] + (avgY - in[cur + 1]) * smoothing;
+        }
+    }
+
+    static float segmentDistanceSq(float[] pts, int i, int a, int b) {
+        float px = pts[i * STRIDE], py = pts[i * STRIDE + 1];
+        float ax = pts[a * STRIDE], ay = pts[a * STRIDE + 1];
+        float bx = pts[b * STRIDE], by = pts[b * STRIDE + 1];
+        float dx = bx - ax, dy = by - ay;
+        float lenSq = dx * dx + dy * dy;
+        float t = lenSq > 0 ? ((px - ax) * dx + (py - ay) * dy) / lenSq : 0;
+        if (t < 0) t = 0;
+        else if (t > 1) t = 1;
+        float cx = ax + t * dx - px, cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+
+    private void ensureCapacity(int count) {
+        if (smoothed.length < count * STRIDE) smoothed = new float[count * STRIDE];
+        if (keep.length < count) keep = new boolean[count];
+        // Each split pushes two segments; depth is bounded by the point count
+        if (stack.length < count * 4) stack = new int[count * 4];
+    }
+
+    private void record(int in, int out) {
+        pointsIn += in;
+        pointsOut += out;
+    }
+
+    /** Fraction of points removed across all strokes so far, 0..1. */
+    double reductionRatio() {
+        return pointsIn == 0 ? 0 : 1.0 - (double) pointsOut / pointsIn;
+    }
+
+    long pointsIn() {
+        return pointsIn;
+    }
+
+    long pointsOut() {
+        return pointsOut;
+    }
+}
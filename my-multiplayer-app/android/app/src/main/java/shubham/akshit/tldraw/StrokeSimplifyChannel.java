@@ -0,0 +1,88 @@
+package shubham.akshit.tldraw;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Simplifies committed strokes off the UI thread, binary in both directions on
+ * stream {@link #STREAM_ID}. All values are little-endian floats after the 4-byte
+ * frame header:
+ *
+ * <pre>
+ * page → [reqId, tolerance, smoothing, x, y, pressure, x, y, pressure, ...]
+ * native → [reqId, rawCount, keptCount, reductionRatioSoFar, x, y, pressure, ...]
+ * </pre>
+ *
+ * The page asks on the "simplify" topic first ({@code {op:"hello"}} →
+ * {@code {op:"ready", stream}}); a shell without this channel never answers
+ * and the page keeps its strokes as drawn.
+ */
+class StrokeSimplifyChannel implements NativeMessageChannel.TopicHandler, NativeMessageChannel.StreamHandler {
+
+    static final String TOPIC = "simplify";
+    static final int STREAM_ID = -2;
+    private static final int REQUEST_HEADER_FLOATS = 3;
+    private static final int REPLY_HEADER_FLOATS = 4;
+
+    private final NativeMessageChannel channel;
+    private final StrokeSimplifier simplifier = new StrokeSimplifier(0.5f, 0.3f);
+    // Single thread: the simplifier reuses its scratch buffers between strokes
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "stroke-simplify");
+        t.setDaemon(true);
+        return t;
+    });
+    private float[] points = new float[0];
+    private float[] reduced = new float[0];
+
+    StrokeSimplifyChannel(NativeMessageChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void onMessage(JSONObject message) throws JSONException {
+        if ("hello".equals(message.optString("op"))) {
+            channel.post(TOPIC, new JSONObject().put("op", "ready").put("stream", STREAM_ID));
+        }
+    }
+
+    @Override
+    public void onFrame(byte[] frame) {
+        executor.execute(() -> process(frame));
+    }
+
+    private void process(byte[] frame) {
+        FloatBuffer in = ByteBuffer.wrap(frame, NativeMessageChannel.FRAME_HEADER_BYTES,
+                frame.length - NativeMessageChannel.FRAME_HEADER_BYTES)
+                .slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        if (in.remaining() < REQUEST_HEADER_FLOATS) return;
+        float reqId = in.get();
+        simplifier.configure(in.get(), in.get());
+
+        int count = in.remaining() / StrokeSimplifier.STRIDE;
+        if (points.length < count * StrokeSimplifier.STRIDE) {
+            points = new float[count * StrokeSimplifier.STRIDE];
+            reduced = new float[count * StrokeSimplifier.STRIDE];
+        }
+        in.get(points, 0, count * StrokeSimplifier.STRIDE);
+        int kept = simplifier.simplify(points, count, reduced);
+
+        byte[] reply = new byte[NativeMessageChannel.FRAME_HEADER_BYTES
+                + (REPLY_HEADER_FLOATS + kept * StrokeSimplifier.STRIDE) * 4];
+        ByteBuffer out = ByteBuffer.wrap(reply);
+        out.putInt(STREAM_ID);
+        FloatBuffer floats = out.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        floats.put(reqId).put(count).put(kept).put((float) simplifier.reductionRatio());
+        floats.put(reduced, 0, kept * StrokeSimplifier.STRIDE);
+        channel.postBinary(reply);
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,54 @@
+package shubham.akshit.tldraw;
+
+/**
+ * Side-button state for stylus events, as used by {@code dispatchTouchEvent}.
+ *
+ * While the S Pen button is held the page should still see a normal primary
+ * touch (the WebView would otherwise report a secondary-button pointer), so
+ * those events are re-dispatched with {@link #forcedButtonState()}. Button
+ * transitions are reported so the page can switch tools. Plain Java; the
+ * constants mirror {@code MotionEvent}'s.
+ */
+final class StylusButtonState {
+
+    static final int ACTION_DOWN = 0;
+    static final int ACTION_UP = 1;
+    static final int ACTION_CANCEL = 3;
+    static final int BUTTON_PRIMARY = 1;
+    static final int BUTTON_STYLUS_PRIMARY = 0x20;
+
+    // Result bits of onStylusEvent
+    static final int BUTTON_CHANGED = 1;
+    static final int REWRITE = 2;
+
+    private boolean buttonPressed;
+    private boolean touchActive;
+
+    /**
+     * Feeds one stylus event. Returns {@link #BUTTON_CHANGED} when the side
+     * button went down or up (see {@link #isButtonPressed()}) and
+     * {@link #REWRITE} when the event must be dispatched with the forced state.
+     */
+    int onStylusEvent(int actionMasked, int buttonState) {
+        boolean pressed = (buttonState & BUTTON_STYLUS_PRIMARY) != 0;
+        if (actionMasked == ACTION_DOWN) touchActive = true;
+        if (actionMasked == ACTION_UP || actionMasked == ACTION_CANCEL) touchActive = false;
+
+        int result = 0;
+        if (pressed != buttonPressed) {
+            buttonPressed = pressed;
+            result |= BUTTON_CHANGED;
+        }
+        if (pressed || (buttonPressed && touchActive)) result |= REWRITE;
+        return result;
+    }
+
+    boolean isButtonPressed() {
+        return buttonPressed;
+    }
+
+    /** Button state for rewritten events: primary while the pen touches, none while hovering. */
+    int forcedButtonState() {
+        return touchActive ? BUTTON_PRIMARY : 0;
+    }
+}
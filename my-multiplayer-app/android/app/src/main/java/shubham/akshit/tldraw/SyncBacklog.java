@@ -0,0 +1,213 @@
+package shubham.akshit.tldraw;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LiveSync messages (public/scripts/LiveSync.js, worker/YjsDurableObject.ts)
+ * held while they can't be delivered, merged into the smallest equivalent list.
+ *
+ * <ul>
+ * <li>{@code state-update}: one per {@code pageIdx}. Histories are merged the
+ *     way {@code LiveSync._crdtMergeHistory} merges a remote one: union by item
+ *     {@code id} in first-seen order, the newer {@code lastMod} (else the
+ *     message's {@code timestamp}) wins, and a deletion wins a tie. Other
+ *     fields come from the newest message.</li>
+ * <li>{@code page-structure}: only the newest.</li>
+ * <li>{@code presence}: only the newest per {@code clientId}.</li>
+ * <li>Anything else, or anything that isn't JSON: every message, as sent.</li>
+ * </ul>
+ *
+ * Merged entries keep the position of their first message, so a page's
+ * structure still comes before the updates for pages it added. Past
+ * {@code maxBytes} the backlog gives up and reports {@link #overflowed()}: the
+ * receiver must then reload state instead. Thread-safe. Plain Java.
+ */
+final class SyncBacklog {
+
+    private static final class Entry {
+        // The message as received, until a merge replaces it with a parsed one
+        String text;
+        Map<String, Object> merged;
+        long bytes;
+
+        Entry(String text) {
+            this.text = text;
+            this.bytes = text.length();
+        }
+    }
+
+    private final long maxBytes;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Entry> byKey = new HashMap<>();
+    private long bytes;
+    private boolean overflowed;
+    private long received;
+    private long coalesced;
+
+    SyncBacklog(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** Returns false once the backlog has overflowed; later messages are dropped until {@link #drain}. */
+    synchronized boolean add(String text) {
+        received++;
+        if (overflowed) return false;
+        Map<String, Object> message = parseObject(text);
+        String key = message != null ? keyOf(message) : null;
+        Entry existing = key != null ? byKey.get(key) : null;
+        if (existing == null) {
+            Entry entry = new Entry(text);
+            entries.add(entry);
+            if (key != null) byKey.put(key, entry);
+            bytes += entry.bytes;
+        } else {
+            coalesced++;
+            long before = existing.bytes;
+            if ("state-update".equals(message.get("type"))) {
+                Map<String, Object> previous = existing.merged != null ? existing.merged : parseObject(existing.text);
+                existing.merged = mergeStateUpdates(previous, message);
+                // The union is about as large as the larger of the two
+                existing.bytes = Math.max(before, text.length());
+            } else {
+                existing.merged = null;
+                existing.bytes = text.length();
+            }
+            existing.text = existing.merged != null ? null : text;
+            bytes += existing.bytes - before;
+        }
+        if (bytes > maxBytes) {
+            overflowed = true;
+            entries.clear();
+            byKey.clear();
+            bytes = 0;
+        }
+        return !overflowed;
+    }
+
+    /** Everything held, merged, in delivery order; empties the backlog and clears {@link #overflowed()}. */
+    synchronized List<String> drain() {
+        List<String> out = new ArrayList<>(entries.size());
+        for (Entry entry : entries) out.add(entry.merged != null ? ColorRmJson.write(entry.merged) : entry.text);
+        entries.clear();
+        byKey.clear();
+        bytes = 0;
+        overflowed = false;
+        return out;
+    }
+
+    synchronized boolean overflowed() {
+        return overflowed;
+    }
+
+    synchronized boolean isEmpty() {
+        return entries.isEmpty() && !overflowed;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /** Messages offered so far, and how many of them were folded into an earlier one. */
+    synchronized long received() {
+        return received;
+    }
+
+    synchronized long coalesced() {
+        return coalesced;
+    }
+
+    private static String keyOf(Map<String, Object> message) {
+        Object type = message.get("type");
+        if ("state-update".equals(type)) {
+            Object page = message.get("pageIdx");
+            return page instanceof Number && message.get("history") instanceof List
+                    ? "state-update:" + ((Number) page).longValue() : null;
+        }
+        if ("page-structure".equals(type)) return "page-structure";
+        if ("presence".equals(type)) {
+            Object client = message.get("clientId");
+            return client instanceof String ? "presence:" + client : null;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parseObject(String text) {
+        try {
+            Object value = ColorRmJson.parse(text);
+            return value instanceof Map ? (Map<String, Object>) value : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> mergeStateUpdates(Map<String, Object> older, Map<String, Object> newer) {
+        double olderTime = number(older.get("timestamp"), 0);
+        double newerTime = number(newer.get("timestamp"), 0);
+        LinkedHashMap<String, Object> items = new LinkedHashMap<>();
+        List<Object> anonymous = new ArrayList<>();
+        for (Object o : (List<Object>) older.get("history")) {
+            String id = idOf(o);
+            if (id != null) items.put(id, o);
+            else anonymous.add(o);
+        }
+        for (Object o : (List<Object>) newer.get("history")) {
+            String id = idOf(o);
+            if (id == null) {
+                anonymous.add(o);
+                continue;
+            }
+            Object current = items.get(id);
+            if (current == null) {
+                items.put(id, o);
+                continue;
+            }
+            Map<String, Object> was = (Map<String, Object>) current;
+            Map<String, Object> now = (Map<String, Object>) o;
+            double wasTime = number(was.get("lastMod"), olderTime);
+            double nowTime = number(now.get("lastMod"), newerTime);
+            if (nowTime > wasTime || (nowTime == wasTime && isTrue(now.get("deleted")) && !isTrue(was.get("deleted")))) {
+                items.put(id, o);
+            }
+        }
+        List<Object> history = new ArrayList<>(items.size() + anonymous.size());
+        history.addAll(items.values());
+        history.addAll(anonymous);
+
+        LinkedHashMap<String, Object> merged = new LinkedHashMap<>(older);
+        merged.putAll(newer);
+        merged.put("history", history);
+        if (older.containsKey("timestamp") || newer.containsKey("timestamp")) {
+            merged.put("timestamp", Math.max(olderTime, newerTime));
+        }
+        return merged;
+    }
+
+    // Same key LiveSync uses: String(item.id)
+    @SuppressWarnings("unchecked")
+    private static String idOf(Object item) {
+        if (!(item instanceof Map)) return null;
+        Object id = ((Map<String, Object>) item).get("id");
+        if (id == null) return null;
+        if (id instanceof Number) {
+            StringBuilder sb = new StringBuilder();
+            ColorRmJson.appendNumber(sb, ((Number) id).doubleValue());
+            return sb.toString();
+        }
+        return String.valueOf(id);
+    }
+
+    private static double number(Object value, double fallback) {
+        // JS: `item.lastMod || fallback`
+        return value instanceof Number && ((Number) value).doubleValue() != 0 ? ((Number) value).doubleValue() : fallback;
+    }
+
+    private static boolean isTrue(Object value) {
+        return Boolean.TRUE.equals(value);
+    }
+}
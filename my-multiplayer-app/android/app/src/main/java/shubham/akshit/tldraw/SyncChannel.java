@@ -0,0 +1,175 @@
+package shubham.akshit.tldraw;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * "sync" topic: LiveSync WebSockets held by the shell ({@link SyncConnection}),
+ * so they stay connected while the activity is paused and the page's timers and
+ * sockets are not running. What arrives meanwhile is merged and handed over as
+ * one batch on resume; the page doesn't reconnect or reload.
+ *
+ * <pre>
+ * page → {op:"open", id, url}          native → {op:"open", id, reconnected, deflate}
+ * page → {op:"send", id, data}
+ * page → {op:"close", id}
+ *                                      native → {op:"messages", id, data:[text, ...]}
+ *                                      native → {op:"resync", id}   (too much while paused: reload state)
+ *                                      native → {op:"closed", id, code, reason}
+ * </pre>
+ *
+ * Ids are the page's own; a new page load closes every connection. "closed"
+ * is only sent for a connection the shell gave up on, i.e. one that never
+ * opened. Per-connection counters are in {@link #statsJson()}.
+ */
+class SyncChannel implements NativeMessageChannel.TopicHandler {
+
+    static final String TOPIC = "sync";
+    // Quiet connections are pinged this often; the Durable Object itself never pings
+    static final int PING_INTERVAL_MS = 25_000;
+    // Per connection; past it the page is asked to resync instead
+    static final long BACKLOG_BYTES = 8L * 1024 * 1024;
+
+    private final NativeMessageChannel channel;
+    private final ExecutorService readerExecutor;
+    private final ExecutorService sendExecutor;
+    private final BridgeMetrics metrics;
+    private final Map<String, SyncConnection> connections = new ConcurrentHashMap<>();
+    private volatile boolean paused;
+
+    SyncChannel(NativeMessageChannel channel, ExecutorService readerExecutor, ExecutorService sendExecutor,
+                BridgeMetrics metrics) {
+        this.channel = channel;
+        this.readerExecutor = readerExecutor;
+        this.sendExecutor = sendExecutor;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onMessage(JSONObject message) throws JSONException {
+        String op = message.getString("op");
+        String id = message.optString("id");
+        if ("open".equals(op)) {
+            open(id, message.getString("url"));
+        } else if ("send".equals(op)) {
+            SyncConnection connection = connections.get(id);
+            if (connection != null) connection.send(message.getString("data"));
+        } else if ("close".equals(op)) {
+            SyncConnection connection = connections.remove(id);
+            if (connection != null) connection.close();
+        }
+    }
+
+    /** {@code {paused, connections:[{url, connected, deflate, messagesIn, wireBytesIn, ...}]}} */
+    String statsJson() {
+        StringBuilder sb = new StringBuilder("{\"paused\":").append(paused).append(",\"connections\":[");
+        boolean first = true;
+        for (SyncConnection connection : connections.values()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(connection.statsJson());
+        }
+        return sb.append("]}").toString();
+    }
+
+    private void open(String id, String url) {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            postClosed(id, 1006, "Bad URL");
+            return;
+        }
+        if (!"ws".equals(uri.getScheme()) && !"wss".equals(uri.getScheme())) {
+            postClosed(id, 1006, "Not a WebSocket URL");
+            return;
+        }
+        PageListener listener = new PageListener(id);
+        SyncConnection connection = new SyncConnection(uri, null, readerExecutor, sendExecutor, Thread::sleep,
+                listener, PING_INTERVAL_MS, BACKLOG_BYTES);
+        listener.connection = connection;
+        SyncConnection previous = connections.put(id, connection);
+        if (previous != null) previous.close();
+        connection.setPaused(paused);
+        connection.start();
+    }
+
+    /** From the activity's onPause/onResume. */
+    void setPaused(boolean paused) {
+        this.paused = paused;
+        for (SyncConnection connection : connections.values()) connection.setPaused(paused);
+    }
+
+    void closeAll() {
+        for (SyncConnection connection : connections.values()) connection.close();
+        connections.clear();
+    }
+
+    void shutdown() {
+        closeAll();
+        // Lets the close frames go out
+        sendExecutor.shutdown();
+        readerExecutor.shutdown();
+    }
+
+    private void postClosed(String id, int code, String reason) {
+        StringBuilder sb = new StringBuilder(96).append("{\"topic\":\"" + TOPIC + "\",\"op\":\"closed\",\"id\":");
+        JsStrings.appendJsonString(sb, id);
+        sb.append(",\"code\":").append(code).append(",\"reason\":");
+        JsStrings.appendJsonString(sb, reason != null ? reason : "");
+        channel.postString(sb.append('}').toString());
+    }
+
+    private final class PageListener implements SyncConnection.Listener {
+        private final String id;
+        private final String prefix;
+        volatile SyncConnection connection;
+
+        PageListener(String id) {
+            this.id = id;
+            StringBuilder sb = new StringBuilder(48).append("{\"topic\":\"" + TOPIC + "\",\"id\":");
+            JsStrings.appendJsonString(sb, id);
+            this.prefix = sb.toString();
+        }
+
+        @Override
+        public void onOpen(boolean reconnected, boolean deflate) {
+            if (reconnected) metrics.add("sync.reconnects", 1);
+            channel.postString(prefix + ",\"op\":\"open\",\"reconnected\":" + reconnected + ",\"deflate\":" + deflate + "}");
+        }
+
+        @Override
+        public void onMessages(List<String> messages) {
+            long t0 = System.nanoTime();
+            int estimate = prefix.length() + 32;
+            for (String text : messages) estimate += text.length() + 16;
+            StringBuilder sb = new StringBuilder(estimate).append(prefix).append(",\"op\":\"messages\",\"data\":[");
+            for (int i = 0; i < messages.size(); i++) {
+                if (i > 0) sb.append(',');
+                JsStrings.appendJsonString(sb, messages.get(i));
+            }
+            String json = sb.append("]}").toString();
+            channel.postString(json);
+            metrics.add("sync.messages", messages.size());
+            if (messages.size() > 1) metrics.timer("sync.resumeBatch").record(t0, 0, json.length());
+        }
+
+        @Override
+        public void onResync() {
+            metrics.add("sync.resyncs", 1);
+            channel.postString(prefix + ",\"op\":\"resync\"}");
+        }
+
+        @Override
+        public void onClosed(int code, String reason) {
+            // Only news when the shell gave up; the page (or a reload) closed the others itself
+            if (connections.remove(id, connection)) postClosed(id, code, reason);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package shubham.akshit.tldraw;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A LiveSync WebSocket kept by the shell rather than the page, so it outlives
+ * the WebView being paused.
+ *
+ * The connection is kept alive with pings after {@code pingIntervalMs} of
+ * silence and dropped when the next interval passes without an answer; it is
+ * then reopened with exponential backoff and jitter until {@link #close()}.
+ * Only a connection that never opened gives up, after {@link #MAX_ATTEMPTS}.
+ *
+ * While {@link #setPaused paused}, incoming messages go to a {@link SyncBacklog}
+ * and {@code setPaused(false)} hands the listener one merged batch, or
+ * {@link Listener#onResync()} when there was too much to hold. Sends made while
+ * the connection is down wait, merged the same way, and go out when it is
+ * back.
+ *
+ * One reader thread per connection (from {@code readerExecutor}) and one
+ * serial {@code sendExecutor}: sends never block the caller. Plain Java so it
+ * can be exercised on the JVM against a local stand-in.
+ */
+final class SyncConnection {
+
+    static final int MAX_ATTEMPTS = 6;
+    static final long BACKOFF_BASE_MS = 500;
+    static final long BACKOFF_MAX_MS = 30_000;
+    static final int CONNECT_TIMEOUT_MS = 15_000;
+
+    interface Sleeper {
+        void sleep(long ms) throws InterruptedException;
+    }
+
+    interface Listener {
+        // Called on the reader thread, or on the thread calling setPaused(false)
+
+        /** Connected; {@code reconnected} after a drop, when the page should resend its state. */
+        void onOpen(boolean reconnected, boolean deflate);
+
+        /** One live message, or the merged backlog after a pause. */
+        void onMessages(List<String> messages);
+
+        /** The backlog overflowed while paused: the page must reload instead. */
+        void onResync();
+
+        /** Final: closed by {@link #close()} or never opened. */
+        void onClosed(int code, String reason);
+    }
+
+    private final URI uri;
+    private final String origin;
+    private final Executor readerExecutor;
+    private final Executor sendExecutor;
+    private final Sleeper sleeper;
+    private final Listener listener;
+    private final int pingIntervalMs;
+    private final SyncBacklog inbox;
+    private final SyncBacklog outbox;
+
+    private volatile boolean closed;
+    private volatile Thread reader;
+    // Guarded by this
+    private SyncSocket socket;
+    private boolean paused;
+
+    private final AtomicLong messagesIn = new AtomicLong();
+    private final AtomicLong wireBytesIn = new AtomicLong();
+    private final AtomicLong messagesOut = new AtomicLong();
+    private final AtomicLong wireBytesOut = new AtomicLong();
+    private final AtomicLong plainBytesOut = new AtomicLong();
+    private final AtomicLong pings = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private volatile boolean deflate;
+
+    SyncConnection(URI uri, String origin, Executor readerExecutor, Executor sendExecutor, Sleeper sleeper,
+                   Listener listener, int pingIntervalMs, long backlogBytes) {
+        this.uri = uri;
+        this.origin = origin;
+        this.readerExecutor = readerExecutor;
+        this.sendExecutor = sendExecutor;
+        this.sleeper = sleeper;
+        this.listener = listener;
+        this.pingIntervalMs = pingIntervalMs;
+        this.inbox = new SyncBacklog(backlogBytes);
+        this.outbox = new SyncBacklog(backlogBytes);
+    }
+
+    void start() {
+        readerExecutor.execute(this::run);
+    }
+
+    /** Any thread; queued while the connection is down. */
+    void send(String text) {
+        if (closed) return;
+        post(() -> {
+            SyncSocket s = current();
+            // Behind anything still waiting, so order holds across a reconnect
+            if (s == null || !outbox.isEmpty()) {
+                outbox.add(text);
+                if (s != null) flushOutbox(s);
+                return;
+            }
+            sendNow(s, text);
+        });
+    }
+
+    /** Paused: hold incoming messages. Resumed: deliver what was held as one batch. */
+    synchronized void setPaused(boolean paused) {
+        if (this.paused == paused) return;
+        this.paused = paused;
+        if (paused) return;
+        if (inbox.overflowed()) {
+            inbox.drain();
+            resyncs.incrementAndGet();
+            listener.onResync();
+        } else if (!inbox.isEmpty()) {
+            listener.onMessages(inbox.drain());
+        }
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        SyncSocket s = current();
+        if (s != null) {
+            post(() -> {
+                try {
+                    s.sendClose(SyncSocket.CLOSE_NORMAL);
+                } catch (IOException ignored) {
+                }
+            });
+        }
+        Thread t = reader;
+        // Wakes a backoff sleep; a blocked read ends with the close handshake or the read timeout
+        if (t != null && s == null) t.interrupt();
+    }
+
+    private void post(Runnable task) {
+        try {
+            sendExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shut down with the activity: nothing left to send to
+        }
+    }
+
+    private synchronized SyncSocket current() {
+        return socket;
+    }
+
+    private void run() {
+        reader = Thread.currentThread();
+        boolean opened = false;
+        int failures = 0;
+        int closeCode = SyncSocket.CLOSE_NORMAL;
+        String reason = "closed";
+        while (!closed) {
+            SyncSocket s;
+            try {
+                s = SyncSocket.connect(uri, origin, CONNECT_TIMEOUT_MS, pingIntervalMs, true);
+            } catch (IOException e) {
+                failures++;
+                if (!opened && failures >= MAX_ATTEMPTS) {
+                    closeCode = 1006;
+                    reason = e.getMessage();
+                    break;
+                }
+                if (!backoff(failures)) break;
+                continue;
+            }
+            if (closed) {
+                // close() came in while connecting
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+                break;
+            }
+            failures = 0;
+            deflate = s.isDeflateEnabled();
+            synchronized (this) {
+                socket = s;
+            }
+            if (opened) reconnects.incrementAndGet();
+            listener.onOpen(opened, deflate);
+            opened = true;
+            post(() -> flushOutbox(s));
+
+            try {
+                readLoop(s);
+            } catch (IOException e) {
+                // Dropped: reconnect below
+            } finally {
+                synchronized (this) {
+                    socket = null;
+                }
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (!closed && !backoff(1)) break;
+        }
+        reader = null;
+        listener.onClosed(closeCode, reason);
+    }
+
+    private void readLoop(SyncSocket s) throws IOException {
+        boolean awaitingPong = false;
+        while (true) {
+            SyncSocket.Message message;
+            try {
+                message = s.readMessage();
+            } catch (SocketTimeoutException e) {
+                if (closed || awaitingPong) throw new IOException("No answer to ping");
+                awaitingPong = true;
+                pings.incrementAndGet();
+                post(() -> {
+                    try {
+                        s.sendPing();
+                    } catch (IOException ignored) {
+                        // The read side notices
+                    }
+                });
+                continue;
+            }
+            awaitingPong = false;
+            if (message.opcode == SyncSocket.OP_CLOSE) return;
+            if (message.opcode != SyncSocket.OP_TEXT) continue;
+            messagesIn.incrementAndGet();
+            wireBytesIn.addAndGet(message.wireBytes);
+            deliver(message.text);
+        }
+    }
+
+    private synchronized void deliver(String text) {
+        if (paused) {
+            inbox.add(text);
+        } else {
+            listener.onMessages(Collections.singletonList(text));
+        }
+    }
+
+    // On the send executor
+    private void flushOutbox(SyncSocket s) {
+        // Overflowed while down: the page resends its state on reconnect anyway
+        for (String text : outbox.drain()) {
+            if (!sendNow(s, text)) return;
+        }
+    }
+
+    private boolean sendNow(SyncSocket s, String text) {
+        try {
+            wireBytesOut.addAndGet(s.sendText(text));
+            plainBytesOut.addAndGet(text.length());
+            messagesOut.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            outbox.add(text);
+            try {
+                // Ends the read loop, which reconnects
+                s.close();
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+    }
+
+    private boolean backoff(int attempt) {
+        long cap = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempt - 1, 16));
+        try {
+            sleeper.sleep(cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1));
+            return !closed;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    String statsJson() {
+        return "{\"url\":\"" + JsStrings.escape(uri.toString()) + "\""
+                + ",\"connected\":" + (current() != null)
+                + ",\"deflate\":" + deflate
+                + ",\"messagesIn\":" + messagesIn.get()
+                + ",\"wireBytesIn\":" + wireBytesIn.get()
+                + ",\"messagesOut\":" + messagesOut.get()
+                + ",\"bytesOut\":" + plainBytesOut.get()
+                + ",\"wireBytesOut\":" + wireBytesOut.get()
+                + ",\"pings\":" + pings.get()
+                + ",\"reconnects\":" + reconnects.get()
+                + ",\"held\":" + inbox.received()
+                + ",\"merged\":" + inbox.coalesced()
+                + ",\"resyncs\":" + resyncs.get() + "}";
+    }
+}
@@ -0,0 +1,409 @@
+package shubham.akshit.tldraw;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * One client WebSocket connection (RFC 6455) for text messages, with
+ * permessage-deflate (RFC 7692) when the server accepts it.
+ *
+ * Outgoing messages of at least {@link #COMPRESS_MIN_BYTES} are compressed;
+ * smaller ones go as they are, which the extension allows per message. Both
+ * directions keep their compression context across messages unless the
+ * server's response says otherwise. Pings are answered from
+ * {@link #readMessage}; fragments are reassembled there too.
+ *
+ * {@link #readMessage} is for one reader thread; the send methods may be
+ * called from any thread. Plain Java ({@link Socket}) so it can be exercised
+ * on the JVM against a local stand-in.
+ */
+final class SyncSocket implements Closeable {
+
+    static final int COMPRESS_MIN_BYTES = 64;
+    static final int MAX_MESSAGE_BYTES = 16 * 1024 * 1024;
+
+    static final int OP_CONTINUATION = 0x0;
+    static final int OP_TEXT = 0x1;
+    static final int OP_BINARY = 0x2;
+    static final int OP_CLOSE = 0x8;
+    static final int OP_PING = 0x9;
+    static final int OP_PONG = 0xA;
+
+    static final int CLOSE_NORMAL = 1000;
+    static final int CLOSE_GOING_AWAY = 1001;
+
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    // What a sync-flushed deflate block ends with; stripped on send, restored on receive
+    private static final byte[] FLUSH_TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+
+    /**
+     * What {@link #readMessage} returns: a complete text message ({@link #OP_TEXT}),
+     * the close frame that ended the connection ({@link #OP_CLOSE}), or a ping or
+     * pong, which carry no text but show the connection is alive.
+     */
+    static final class Message {
+        final int opcode;
+        final String text;
+        final int closeCode;
+        // Bytes as they came off the wire, headers excluded
+        final int wireBytes;
+
+        Message(int opcode, String text, int closeCode, int wireBytes) {
+            this.opcode = opcode;
+            this.text = text;
+            this.closeCode = closeCode;
+            this.wireBytes = wireBytes;
+        }
+    }
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final boolean deflate;
+    private final boolean resetDeflater;
+    private final boolean resetInflater;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    // One per direction: the reader inflates while senders deflate
+    private final byte[] deflateScratch = new byte[16 * 1024];
+    private final byte[] inflateScratch = new byte[16 * 1024];
+    private boolean closeSent;
+
+    private SyncSocket(Socket socket, InputStream in, String extensions) throws IOException {
+        this.socket = socket;
+        this.in = in;
+        this.out = socket.getOutputStream();
+        String ext = extensions != null ? extensions.toLowerCase(Locale.US) : "";
+        this.deflate = ext.contains("permessage-deflate");
+        this.resetInflater = ext.contains("server_no_context_takeover");
+        // Deflater's window is always 15 bits: a smaller client_max_window_bits means no compressed sends
+        boolean narrowWindow = ext.matches(".*client_max_window_bits\\s*=\\s*\"?(8|9|1[0-4])\\b.*");
+        this.resetDeflater = ext.contains("client_no_context_takeover");
+        this.deflater = deflate && !narrowWindow ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+        this.inflater = deflate ? new Inflater(true) : null;
+    }
+
+    /**
+     * Opens {@code ws://} or {@code wss://} and completes the handshake.
+     *
+     * @param readTimeoutMs socket timeout for {@link #readMessage}; 0 waits forever
+     */
+    static SyncSocket connect(URI uri, String origin, int connectTimeoutMs, int readTimeoutMs, boolean offerDeflate)
+            throws IOException {
+        String scheme = uri.getScheme();
+        boolean secure = "wss".equals(scheme);
+        if (!secure && !"ws".equals(scheme)) throw new IOException("Not a WebSocket URL: " + uri);
+        String host = uri.getHost();
+        int port = uri.getPort() != -1 ? uri.getPort() : secure ? 443 : 80;
+
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+            socket.setSoTimeout(connectTimeoutMs);
+            if (secure) socket = startTls(socket, host, port);
+
+            byte[] nonce = new byte[16];
+            ThreadLocalRandom.current().nextBytes(nonce);
+            String key = Base64Codec.encode(nonce, 0, nonce.length);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) path += "?" + uri.getRawQuery();
+            boolean defaultPort = uri.getPort() == -1 || uri.getPort() == (secure ? 443 : 80);
+            StringBuilder request = new StringBuilder(256)
+                    .append("GET ").append(path).append(" HTTP/1.1\r\n")
+                    .append("Host: ").append(host).append(defaultPort ? "" : ":" + port).append("\r\n")
+                    .append("Upgrade: websocket\r\n")
+                    .append("Connection: Upgrade\r\n")
+                    .append("Sec-WebSocket-Key: ").append(key).append("\r\n")
+                    .append("Sec-WebSocket-Version: 13\r\n");
+            if (origin != null) request.append("Origin: ").append(origin).append("\r\n");
+            if (offerDeflate) request.append("Sec-WebSocket-Extensions: permessage-deflate\r\n");
+            OutputStream out = socket.getOutputStream();
+            out.write(request.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            String status = readLine(in);
+            if (!status.startsWith("HTTP/1.1 101")) throw new IOException("Handshake refused: " + status);
+            String accept = null;
+            String extensions = null;
+            for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                int colon = line.indexOf(':');
+                if (colon < 0) continue;
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.US);
+                String value = line.substring(colon + 1).trim();
+                if (name.equals("sec-websocket-accept")) accept = value;
+                else if (name.equals("sec-websocket-extensions")) extensions = value;
+            }
+            if (!acceptFor(key).equals(accept)) throw new IOException("Bad Sec-WebSocket-Accept");
+            if (extensions != null && !offerDeflate) throw new IOException("Unrequested extension: " + extensions);
+            socket.setSoTimeout(readTimeoutMs);
+            return new SyncSocket(socket, in, extensions);
+        } catch (IOException | RuntimeException e) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    private static Socket startTls(Socket plain, String host, int port) throws IOException {
+        SSLSocket tls = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                .createSocket(plain, host, port, true);
+        tls.startHandshake();
+        // SSLSocket checks the chain but not the name
+        HostnameVerifier verifier = javax.net.ssl.HttpsURLConnection.getDefaultHostnameVerifier();
+        if (!verifier.verify(host, tls.getSession())) {
+            tls.close();
+            throw new IOException("Certificate does not match " + host);
+        }
+        return tls;
+    }
+
+    static String acceptFor(String key) {
+        try {
+            byte[] sha1 = MessageDigest.getInstance("SHA-1").digest((key + GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64Codec.encode(sha1, 0, sha1.length);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    boolean isDeflateEnabled() {
+        return deflate;
+    }
+
+    /** Returns the bytes written for the payload, after compression. */
+    int sendText(String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        if (deflater == null || payload.length < COMPRESS_MIN_BYTES) {
+            writeFrame(OP_TEXT, false, payload, payload.length);
+            return payload.length;
+        }
+        synchronized (deflater) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(payload.length / 2 + 16);
+            deflater.setInput(payload);
+            int n;
+            do {
+                n = deflater.deflate(deflateScratch, 0, deflateScratch.length, Deflater.SYNC_FLUSH);
+                compressed.write(deflateScratch, 0, n);
+            } while (n == deflateScratch.length);
+            if (resetDeflater) deflater.reset();
+            byte[] bytes = compressed.toByteArray();
+            int length = bytes.length;
+            if (endsWithFlushTail(bytes, length)) length -= FLUSH_TAIL.length;
+            // Still under the lock: with context takeover, frames must go out in deflate order
+            writeFrame(OP_TEXT, true, bytes, length);
+            return length;
+        }
+    }
+
+    void sendPing() throws IOException {
+        writeFrame(OP_PING, false, new byte[0], 0);
+    }
+
+    /** Sends a close frame once; the connection ends when the server answers or drops it. */
+    void sendClose(int code) throws IOException {
+        synchronized (this) {
+            if (closeSent) return;
+            closeSent = true;
+        }
+        writeFrame(OP_CLOSE, false, new byte[] {(byte) (code >> 8), (byte) code}, 2);
+    }
+
+    /**
+     * Reads until the next complete text message or control frame, answering
+     * pings on the way.
+     *
+     * @throws java.net.SocketTimeoutException after the read timeout with nothing
+     *         received; a stall partway through a message is an {@link IOException}
+     */
+    Message readMessage() throws IOException {
+        ByteArrayOutputStream message = null;
+        int messageOpcode = 0;
+        boolean compressed = false;
+        int wireBytes = 0;
+        while (true) {
+            // Only a timeout between messages leaves the stream usable
+            int b0 = message == null ? readByte() : readByteInMessage();
+            int b1 = readByteInMessage();
+            boolean fin = (b0 & 0x80) != 0;
+            boolean rsv1 = (b0 & 0x40) != 0;
+            int opcode = b0 & 0x0f;
+            if ((b1 & 0x80) != 0) throw new IOException("Masked frame from server");
+            long length = b1 & 0x7f;
+            if (length == 126) {
+                length = (readByteInMessage() << 8) | readByteInMessage();
+            } else if (length == 127) {
+                length = 0;
+                for (int i = 0; i < 8; i++) length = (length << 8) | readByteInMessage();
+            }
+            if (length > MAX_MESSAGE_BYTES || length < 0) throw new IOException("Frame too large: " + length);
+            byte[] payload;
+            try {
+                payload = readFully((int) length);
+            } catch (java.net.SocketTimeoutException e) {
+                throw new IOException("Stalled inside a frame", e);
+            }
+
+            if (opcode >= OP_CLOSE) {
+                if (!fin || length > 125) throw new IOException("Bad control frame");
+                if (opcode == OP_CLOSE) {
+                    int code = payload.length >= 2 ? ((payload[0] & 0xff) << 8) | (payload[1] & 0xff) : 1005;
+                    try {
+                        sendClose(code == 1005 ? CLOSE_NORMAL : code);
+                    } catch (IOException ignored) {
+                        // Already gone; the close still counts
+                    }
+                    return new Message(OP_CLOSE, null, code, wireBytes);
+                }
+                if (opcode == OP_PING) writeFrame(OP_PONG, false, payload, payload.length);
+                // Between messages, report it as proof of life; inside one, keep reading
+                if (message == null && (opcode == OP_PING || opcode == OP_PONG)) {
+                    return new Message(opcode, null, 0, 0);
+                }
+                continue;
+            }
+
+            if (opcode == OP_CONTINUATION) {
+                if (message == null) throw new IOException("Continuation without a message");
+            } else {
+                if (message != null) throw new IOException("New message inside a fragmented one");
+                if (rsv1 && !deflate) throw new IOException("Compressed frame without permessage-deflate");
+                if (opcode != OP_TEXT && opcode != OP_BINARY) throw new IOException("Unknown opcode " + opcode);
+                message = new ByteArrayOutputStream((int) length);
+                messageOpcode = opcode;
+                compressed = rsv1;
+            }
+            message.write(payload, 0, payload.length);
+            wireBytes += payload.length;
+            if (message.size() > MAX_MESSAGE_BYTES) throw new IOException("Message too large");
+            if (!fin) continue;
+
+            // Inflated even when unused: the next message's context depends on it
+            byte[] bytes = compressed ? inflate(message.toByteArray()) : message.toByteArray();
+            message = null;
+            // Binary messages aren't part of the sync protocol; read past them
+            if (messageOpcode == OP_BINARY) {
+                wireBytes = 0;
+                continue;
+            }
+            return new Message(OP_TEXT, new String(bytes, StandardCharsets.UTF_8), 0, wireBytes);
+        }
+    }
+
+    private byte[] inflate(byte[] data) throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream(data.length * 4);
+        byte[] input = new byte[data.length + FLUSH_TAIL.length];
+        System.arraycopy(data, 0, input, 0, data.length);
+        System.arraycopy(FLUSH_TAIL, 0, input, data.length, FLUSH_TAIL.length);
+        inflater.setInput(input);
+        try {
+            while (true) {
+                int n = inflater.inflate(inflateScratch);
+                plain.write(inflateScratch, 0, n);
+                if (plain.size() > MAX_MESSAGE_BYTES) throw new IOException("Message too large");
+                if (n == 0 && (inflater.needsInput() || inflater.finished() || inflater.needsDictionary())) break;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bad compressed message", e);
+        }
+        if (resetInflater || inflater.finished()) inflater.reset();
+        return plain.toByteArray();
+    }
+
+    private void writeFrame(int opcode, boolean rsv1, byte[] payload, int length) throws IOException {
+        byte[] header = new byte[14];
+        int h = 0;
+        header[h++] = (byte) (0x80 | (rsv1 ? 0x40 : 0) | opcode);
+        if (length < 126) {
+            header[h++] = (byte) (0x80 | length);
+        } else if (length <= 0xffff) {
+            header[h++] = (byte) (0x80 | 126);
+            header[h++] = (byte) (length >> 8);
+            header[h++] = (byte) length;
+        } else {
+            header[h++] = (byte) (0x80 | 127);
+            for (int shift = 56; shift >= 0; shift -= 8) header[h++] = (byte) ((long) length >> shift);
+        }
+        // Client frames are masked (RFC 6455 5.3)
+        int mask = ThreadLocalRandom.current().nextInt();
+        for (int shift = 24; shift >= 0; shift -= 8) header[h++] = (byte) (mask >> shift);
+        byte[] masked = new byte[length];
+        for (int i = 0; i < length; i++) masked[i] = (byte) (payload[i] ^ (mask >> (24 - 8 * (i & 3))));
+        synchronized (out) {
+            out.write(header, 0, h);
+            out.write(masked, 0, length);
+            out.flush();
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException("Connection closed");
+        return b;
+    }
+
+    private int readByteInMessage() throws IOException {
+        try {
+            return readByte();
+        } catch (java.net.SocketTimeoutException e) {
+            throw new IOException("Stalled inside a frame", e);
+        }
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int off = 0;
+        while (off < length) {
+            int n = in.read(bytes, off, length - off);
+            if (n < 0) throw new EOFException("Connection closed");
+            off += n;
+        }
+        return bytes;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder(64);
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) throw new EOFException("Connection closed during handshake");
+            if (c != '\r') sb.append((char) c);
+            if (sb.length() > 8192) throw new IOException("Handshake header too long");
+        }
+        return sb.toString();
+    }
+
+    private static boolean endsWithFlushTail(byte[] bytes, int length) {
+        if (length < FLUSH_TAIL.length) return false;
+        for (int i = 0; i < FLUSH_TAIL.length; i++) {
+            if (bytes[length - FLUSH_TAIL.length + i] != FLUSH_TAIL[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,223 @@
+package shubham.akshit.tldraw;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two-tier cache of encoded tiles: an LRU in memory bounded by bytes, backed by
+ * files under a cache directory bounded by total size (least recently used files
+ * are deleted first). The memory tier can be capped below its budget under
+ * memory pressure ({@link #limitTo}). Plain Java so it runs on the JVM.
+ */
+final class TileCache implements MemoryGovernor.Trimmable {
+
+    private final long memoryBudget;
+    private final long diskBudget;
+    private final File root;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private long memoryLimit; // guarded by memory; at most memoryBudget
+
+    private final Object diskLock = new Object();
+    private long diskBytes = -1; // -1 until the first scan
+
+    private long memoryHits, diskHits, misses;
+
+    TileCache(File root, long memoryBudget, long diskBudget) {
+        this.root = root;
+        this.memoryBudget = memoryBudget;
+        this.diskBudget = diskBudget;
+        this.memoryLimit = memoryBudget;
+    }
+
+    byte[] get(String key) {
+        synchronized (memory) {
+            byte[] data = memory.get(key);
+            if (data != null) {
+                memoryHits++;
+                return data;
+            }
+        }
+        File file = fileFor(key);
+        if (file.isFile()) {
+            try {
+                byte[] data = readFile(file);
+                file.setLastModified(System.currentTimeMillis());
+                putMemory(key, data);
+                synchronized (memory) {
+                    diskHits++;
+                }
+                return data;
+            } catch (IOException ignored) {
+                // Fall through and re-render
+            }
+        }
+        synchronized (memory) {
+            misses++;
+        }
+        return null;
+    }
+
+    boolean contains(String key) {
+        synchronized (memory) {
+            if (memory.containsKey(key)) return true;
+        }
+        return fileFor(key).isFile();
+    }
+
+    void put(String key, byte[] data) {
+        putMemory(key, data);
+        writeDisk(key, data);
+    }
+
+    private void putMemory(String key, byte[] data) {
+        synchronized (memory) {
+            if (data.length > memoryLimit) return;
+            byte[] old = memory.put(key, data);
+            if (old != null) memoryBytes -= old.length;
+            memoryBytes += data.length;
+            Iterator<Map.Entry<String, byte[]>> it = memory.entrySet().iterator();
+            while (memoryBytes > memoryLimit && it.hasNext()) {
+                memoryBytes -= it.next().getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    private void writeDisk(String key, byte[] data) {
+        File file = fileFor(key);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        synchronized (diskLock) {
+            ensureScanned();
+            long replaced = file.isFile() ? file.length() : 0;
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+            diskBytes += data.length - replaced;
+            if (diskBytes > diskBudget) trimDisk();
+        }
+    }
+
+    /** Caps the in-memory tier (never above its budget) and evicts down to it. Disk stays. */
+    @Override
+    public int limitTo(long bytes) {
+        int evicted = 0;
+        synchronized (memory) {
+            memoryLimit = Math.max(0, Math.min(bytes, memoryBudget));
+            Iterator<Map.Entry<String, byte[]>> it = memory.entrySet().iterator();
+            while (memoryBytes > memoryLimit && it.hasNext()) {
+                memoryBytes -= it.next().getValue().length;
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    @Override
+    public long sizeBytes() {
+        return memoryBytes();
+    }
+
+    long memoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    long diskBytes() {
+        synchronized (diskLock) {
+            ensureScanned();
+            return diskBytes;
+        }
+    }
+
+    long memoryHits() {
+        synchronized (memory) {
+            return memoryHits;
+        }
+    }
+
+    long diskHits() {
+        synchronized (memory) {
+            return diskHits;
+        }
+    }
+
+    long misses() {
+        synchronized (memory) {
+            return misses;
+        }
+    }
+
+    // Files.readAllBytes is API 26
+    private static byte[] readFile(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            long length = file.length();
+            if (length > Integer.MAX_VALUE) throw new IOException("Too large: " + file);
+            byte[] data = new byte[(int) length];
+            int n = 0;
+            while (n < data.length) {
+                int read = in.read(data, n, data.length - n);
+                if (read < 0) throw new IOException("Truncated: " + file);
+                n += read;
+            }
+            return data;
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(root, key);
+    }
+
+    private void ensureScanned() {
+        if (diskBytes >= 0) return;
+        long total = 0;
+        for (File file : listFiles()) total += file.length();
+        diskBytes = total;
+    }
+
+    // Deletes least recently used files until the disk tier is at 90% of its budget
+    private void trimDisk() {
+        List<File> files = listFiles();
+        files.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        long target = diskBudget - diskBudget / 10;
+        for (File file : files) {
+            if (diskBytes <= target) break;
+            long length = file.length();
+            if (file.delete()) diskBytes -= length;
+        }
+    }
+
+    private List<File> listFiles() {
+        List<File> out = new ArrayList<>();
+        File[] docs = root.listFiles();
+        if (docs == null) return out;
+        for (File doc : docs) {
+            File[] tiles = doc.listFiles();
+            if (tiles == null) continue;
+            for (File tile : tiles) {
+                if (tile.isFile() && !tile.getName().endsWith(".tmp")) out.add(tile);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,249 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AssetUploaderTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    // Stand-in for worker/assetUploads.ts, with an R2-like multipart store in memory
+    private static final class FakeWorker {
+        final Map<String, byte[]> objects = new HashMap<>();
+        final Map<String, TreeMap<Integer, byte[]>> sessions = new HashMap<>();
+        final List<String> requests = new ArrayList<>();
+        final Map<String, Integer> failures = new HashMap<>();
+        int partSize = 4;
+        int nextSession;
+        HttpServer server;
+
+        String start() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/uploads/sha256/", this::handle);
+            server.start();
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/uploads/sha256/";
+        }
+
+        // Answers the next `times` requests for `request` ("PUT part 2") with `code`
+        void fail(String request, int code, int times) {
+            failures.put(request, code * 100 + times);
+        }
+
+        private synchronized void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath().substring("/api/uploads/sha256/".length());
+            byte[] body = readAll(exchange.getRequestBody());
+            String[] parts = path.split("/");
+            String hash = parts[0];
+            String method = exchange.getRequestMethod();
+            String name = parts.length == 4 ? method + " part " + parts[3] : parts.length == 3 ? "complete" : "begin";
+            requests.add(name);
+            Integer failure = failures.get(name);
+            if (failure != null && failure % 100 > 0) {
+                failures.put(name, failure - 1);
+                respond(exchange, failure / 100, "{\"error\":\"injected\"}");
+                return;
+            }
+
+            if (parts.length == 1) {
+                if (objects.containsKey(hash)) {
+                    respond(exchange, 200, "{\"exists\":true}");
+                    return;
+                }
+                // Like R2's resumeMultipartUpload, a resumed id isn't checked until a part arrives
+                String id = exchange.getRequestHeaders().getFirst("X-Resume-Upload-Id");
+                if (id == null) {
+                    id = "s" + (++nextSession);
+                    sessions.put(id, new TreeMap<>());
+                }
+                respond(exchange, 200, "{\"exists\":false,\"uploadId\":\"" + id + "\",\"partSize\":" + partSize + "}");
+            } else if (parts.length == 4) {
+                TreeMap<Integer, byte[]> session = sessions.get(parts[2]);
+                if (session == null) {
+                    respond(exchange, 404, "{\"error\":\"no such upload\"}");
+                    return;
+                }
+                int n = Integer.parseInt(parts[3]);
+                session.put(n, body);
+                respond(exchange, 200, "{\"partNumber\":" + n + ",\"etag\":\"e" + n + "-" + body.length + "\"}");
+            } else {
+                TreeMap<Integer, byte[]> session = sessions.remove(parts[2]);
+                if (session == null) {
+                    respond(exchange, 404, "{\"error\":\"no such upload\"}");
+                    return;
+                }
+                Matcher listed = Pattern.compile("\"partNumber\":(\\d+),\"etag\":\"e\\d+-\\d+\"")
+                        .matcher(new String(body, StandardCharsets.UTF_8));
+                ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+                while (listed.find()) assembled.write(session.get(Integer.parseInt(listed.group(1))));
+                byte[] bytes = assembled.toByteArray();
+                if (!AssetUploader.sha256Hex(new ByteArrayInputStream(bytes), new long[1]).equals(hash)) {
+                    respond(exchange, 422, "{\"error\":\"hash mismatch\"}");
+                    return;
+                }
+                objects.put(hash, bytes);
+                respond(exchange, 200, "{\"ok\":true,\"size\":" + bytes.length + "}");
+            }
+        }
+
+        private static void respond(HttpExchange exchange, int code, String json) throws IOException {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
+    private final FakeWorker worker = new FakeWorker();
+    private final List<Long> sleeps = new ArrayList<>();
+    private ExecutorService executor;
+    private File stateDir;
+    private String endpoint;
+    private AssetUploader uploader;
+
+    @Before
+    public void setUp() throws Exception {
+        endpoint = worker.start();
+        executor = Executors.newSingleThreadExecutor();
+        stateDir = Files.createTempDirectory("uploads").toFile();
+        uploader = new AssetUploader(stateDir, executor, sleeps::add, 2_000, 2_000);
+    }
+
+    @After
+    public void tearDown() {
+        worker.server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static AssetUploader.Source source(byte[] bytes) {
+        return () -> new ByteArrayInputStream(bytes);
+    }
+
+    private String hashOf(byte[] bytes) throws IOException {
+        return AssetUploader.sha256Hex(new ByteArrayInputStream(bytes), new long[1]);
+    }
+
+    @Test
+    public void hashesTheWholeStream() throws Exception {
+        long[] size = new long[1];
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                AssetUploader.sha256Hex(new ByteArrayInputStream("abc".getBytes(StandardCharsets.US_ASCII)), size));
+        assertEquals(3, size[0]);
+    }
+
+    @Test
+    public void uploadsInPartsThenSkipsKnownContent() throws Exception {
+        List<String> progress = new ArrayList<>();
+        AssetUploader.Result first = uploader.upload(endpoint, source(CONTENT), "application/pdf",
+                (sent, total) -> progress.add(sent + "/" + total)).get();
+        assertFalse(first.deduplicated);
+        assertEquals(hashOf(CONTENT), first.sha256);
+        assertEquals(10, first.bytesSent);
+        assertArrayEquals(CONTENT, worker.objects.get(first.sha256));
+        assertEquals("[begin, PUT part 1, PUT part 2, PUT part 3, complete]", worker.requests.toString());
+        assertEquals("[4/10, 8/10, 10/10]", progress.toString());
+
+        worker.requests.clear();
+        AssetUploader.Result again = uploader.uploadNow(endpoint, source(CONTENT), "application/pdf", null);
+        assertTrue(again.deduplicated);
+        assertEquals(0, again.bytesSent);
+        assertEquals("[begin]", worker.requests.toString());
+        assertTrue(uploader.statsJson().contains("\"deduplicated\":1,\"bytesSent\":10,\"bytesSkipped\":10"));
+        assertEquals(0, stateDir.list().length);
+    }
+
+    @Test
+    public void transientFailuresAreRetriedWithBackoff() throws Exception {
+        worker.fail("PUT part 2", 503, 2);
+        AssetUploader.Result result = uploader.uploadNow(endpoint, source(CONTENT), "image/png", null);
+        assertArrayEquals(CONTENT, worker.objects.get(result.sha256));
+        assertEquals(2, sleeps.size());
+        assertTrue(sleeps.get(0) >= AssetUploader.BACKOFF_BASE_MS / 2 && sleeps.get(0) <= AssetUploader.BACKOFF_BASE_MS);
+        assertTrue(sleeps.get(1) >= AssetUploader.BACKOFF_BASE_MS && sleeps.get(1) <= 2 * AssetUploader.BACKOFF_BASE_MS);
+        assertTrue(uploader.statsJson().contains("\"retries\":2"));
+    }
+
+    @Test
+    public void giveUpAfterMaxAttemptsThenResumeFromTheFirstMissingPart() throws Exception {
+        worker.fail("PUT part 3", 500, AssetUploader.MAX_ATTEMPTS);
+        try {
+            uploader.upload(endpoint, source(CONTENT), "application/pdf", null).get();
+            fail("upload should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("HTTP 500"));
+        }
+        assertEquals(AssetUploader.MAX_ATTEMPTS - 1, sleeps.size());
+        assertEquals(1, stateDir.list().length);
+
+        // Same content later (another share, another process): parts 1 and 2 aren't sent again
+        worker.requests.clear();
+        List<String> progress = new ArrayList<>();
+        AssetUploader fresh = new AssetUploader(stateDir, executor, sleeps::add, 2_000, 2_000);
+        AssetUploader.Result result = fresh.uploadNow(endpoint, source(CONTENT), "application/pdf",
+                (sent, total) -> progress.add(sent + "/" + total));
+        assertEquals("[begin, PUT part 3, complete]", worker.requests.toString());
+        assertEquals(2, result.bytesSent);
+        assertEquals("[4/10, 8/10, 10/10]", progress.toString());
+        assertArrayEquals(CONTENT, worker.objects.get(result.sha256));
+        assertTrue(fresh.statsJson().contains("\"resumedParts\":2"));
+        assertEquals(0, stateDir.list().length);
+    }
+
+    @Test
+    public void lostSessionStartsOver() throws Exception {
+        worker.fail("PUT part 2", 400, 1);
+        try {
+            uploader.uploadNow(endpoint, source(CONTENT), "application/pdf", null);
+            fail("a 400 is not retried");
+        } catch (IOException expected) {
+            assertTrue(sleeps.isEmpty());
+        }
+        // The server expired the multipart upload in the meantime
+        worker.sessions.clear();
+        worker.requests.clear();
+        AssetUploader.Result result = uploader.uploadNow(endpoint, source(CONTENT), "application/pdf", null);
+        assertEquals("[begin, PUT part 2, begin, PUT part 1, PUT part 2, PUT part 3, complete]",
+                worker.requests.toString());
+        assertArrayEquals(CONTENT, worker.objects.get(result.sha256));
+    }
+
+    @Test(expected = IOException.class)
+    public void contentThatChangesBetweenReadsIsRejected() throws Exception {
+        byte[][] reads = {CONTENT, "012345678x".getBytes(StandardCharsets.US_ASCII)};
+        int[] opened = {0};
+        uploader.uploadNow(endpoint, () -> new ByteArrayInputStream(reads[Math.min(opened[0]++, 1)]), "image/png", null);
+    }
+}
@@ -0,0 +1,80 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.Test;
+
+public class Base64CodecTest {
+
+    // Hands out at most a few bytes per read, like a slow content provider
+    private static InputStream trickle(byte[] data, long seed) {
+        Random random = new Random(seed);
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1 + random.nextInt(7)));
+            }
+        };
+    }
+
+    @Test
+    public void encodeMatchesJdkForEveryTailLength() throws IOException {
+        Random random = new Random(3);
+        for (int length = 0; length < 200; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String expected = Base64.getEncoder().encodeToString(data);
+            assertEquals(expected, Base64Codec.encode(data, 0, length));
+            assertEquals(expected, Base64Codec.encode(new ByteArrayInputStream(data), length));
+            // Wrong or missing size hints only cost a resize
+            assertEquals(expected, Base64Codec.encode(trickle(data, length), -1));
+            assertEquals(expected, Base64Codec.encode(new ByteArrayInputStream(data), length / 3));
+        }
+    }
+
+    @Test
+    public void encodeStreamsLargeInput() throws IOException {
+        byte[] data = new byte[300_001];
+        new Random(9).nextBytes(data);
+        assertEquals(Base64.getEncoder().encodeToString(data),
+                Base64Codec.encode(new ByteArrayInputStream(data), data.length));
+    }
+
+    @Test
+    public void decodeRoundTripsWithAndWithoutPaddingOrLineBreaks() {
+        Random random = new Random(5);
+        for (int length = 0; length < 200; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String padded = Base64.getEncoder().encodeToString(data);
+            assertArrayEquals(data, Base64Codec.decode(padded));
+            assertArrayEquals(data, Base64Codec.decode(Base64.getEncoder().withoutPadding().encodeToString(data)));
+            assertArrayEquals(data, Base64Codec.decode(Base64.getMimeEncoder().encodeToString(data)));
+        }
+    }
+
+    @Test
+    public void decodeIntoReusedBuffer() {
+        byte[] scratch = new byte[Base64Codec.maxDecodedLength(8)];
+        assertEquals(4, Base64Codec.decode("AQIDBA==", scratch, 0));
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, java.util.Arrays.copyOf(scratch, 4));
+        assertEquals(3, Base64Codec.decode("/+8A", scratch, 0));
+        assertEquals((byte) 0xff, scratch[0]);
+        assertEquals((byte) 0xef, scratch[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeRejectsOtherAlphabets() {
+        Base64Codec.decode("ab-_");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeRejectsTruncatedGroup() {
+        Base64Codec.decode("QUJDR");
+    }
+}
@@ -0,0 +1,220 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class ColorRmBinaryTest {
+
+    private static final String[] TOOLS = {"pen", "highlighter", "shape", "text", "image", "group", "eraser"};
+    private static final String[] STRINGS = {"#000000", "#ff0000", "round", "solid", "Calibri", "", "q\"uo\\te", " ünï"};
+
+    private static Map<String, Object> point(double x, double y) {
+        Map<String, Object> p = new LinkedHashMap<>();
+        p.put("x", x);
+        p.put("y", y);
+        return p;
+    }
+
+    private static String randomString(Random r) {
+        if (r.nextInt(3) > 0) return STRINGS[r.nextInt(STRINGS.length)];
+        StringBuilder sb = new StringBuilder();
+        int n = r.nextInt(12);
+        for (int i = 0; i < n; i++) sb.append((char) (r.nextInt(4) == 0 ? r.nextInt(0x3000) : 32 + r.nextInt(95)));
+        return sb.toString();
+    }
+
+    private static Object randomNumber(Random r) {
+        switch (r.nextInt(4)) {
+            case 0: return (double) r.nextInt(100);
+            case 1: return r.nextInt(100000) / 1000.0;
+            case 2: return r.nextDouble();
+            default: return (r.nextDouble() - 0.5) * 1e6;
+        }
+    }
+
+    private static Object randomJson(Random r, int depth) {
+        switch (depth > 2 ? r.nextInt(4) : r.nextInt(6)) {
+            case 0: return randomString(r);
+            case 1: return randomNumber(r);
+            case 2: return r.nextBoolean();
+            case 3: return null;
+            case 4: {
+                Map<String, Object> m = new LinkedHashMap<>();
+                for (int i = r.nextInt(4); i > 0; i--) m.put(randomString(r), randomJson(r, depth + 1));
+                return m;
+            }
+            default: {
+                List<Object> l = new ArrayList<>();
+                for (int i = r.nextInt(4); i > 0; i--) l.add(randomJson(r, depth + 1));
+                return l;
+            }
+        }
+    }
+
+    private static Map<String, Object> randomElement(Random r) {
+        Map<String, Object> e = new LinkedHashMap<>();
+        switch (r.nextInt(5)) {
+            case 0: e.put("id", randomString(r)); break;
+            case 1: e.put("id", 1.7e12 + r.nextInt(1 << 20) + r.nextDouble()); break;
+            case 2: e.put("id", null); break;
+            default: e.put("id", "s" + r.nextLong());
+        }
+        String tool = r.nextInt(8) == 0 ? randomString(r) : TOOLS[r.nextInt(TOOLS.length)];
+        if (r.nextInt(10) > 0) e.put("tool", tool);
+        switch (r.nextInt(4)) {
+            case 0: e.put("lastMod", 1.7e12 + r.nextInt(1 << 30)); break;
+            case 1: e.put("lastMod", 1.7e12 + r.nextDouble()); break;
+            case 2: e.put("lastMod", (double) r.nextInt(3)); break;
+            default:
+        }
+        if (r.nextBoolean()) e.put("deleted", r.nextBoolean());
+        if (r.nextInt(3) > 0) {
+            List<Object> pts = new ArrayList<>();
+            double x = r.nextDouble() * 2000;
+            double y = r.nextDouble() * 3000;
+            Map<String, Object> first = null;
+            for (int i = r.nextInt(60); i > 0; i--) {
+                x += r.nextGaussian() * 3;
+                y += r.nextGaussian() * 3;
+                Map<String, Object> p = point(x, y);
+                if (first == null) first = p;
+                pts.add(p);
+            }
+            // Shapes of other kinds: points that are not plain {x, y}
+            if (r.nextInt(10) == 0 && first != null) first.put("p", 0.5);
+            if (r.nextInt(20) == 0) pts.add(point(1e300, 0));
+            e.put("pts", pts);
+        }
+        for (String f : new String[]{"x", "y", "w", "h"}) {
+            if (r.nextInt(6) > 0) e.put(f, randomNumber(r));
+        }
+        for (String f : ColorRmBinary.STRING_FIELDS) {
+            if (r.nextInt(3) == 0) e.put(f, r.nextInt(8) == 0 ? randomNumber(r) : randomString(r));
+        }
+        for (String f : ColorRmBinary.NUMBER_FIELDS) {
+            if (r.nextInt(3) == 0) e.put(f, r.nextInt(8) == 0 ? randomString(r) : randomNumber(r));
+        }
+        for (int i = r.nextInt(3); i > 0; i--) e.put(randomString(r), randomJson(r, 0));
+        return e;
+    }
+
+    /** The original with its geometry snapped to the grid, which is all the codec may change. */
+    private static Map<String, Object> expected(Map<String, Object> element, int scale) {
+        Map<String, Object> out = new LinkedHashMap<>(element);
+        Object pts = element.get("pts");
+        if (!"shape".equals(element.get("tool")) && pts instanceof List) {
+            List<Object> snapped = new ArrayList<>();
+            for (Object p : (List<?>) pts) {
+                Map<?, ?> m = (Map<?, ?>) p;
+                double x = (Double) m.get("x");
+                if (m.size() != 2 || Math.abs(x) > 1e12) {
+                    snapped = null;
+                    break;
+                }
+                snapped.add(point(ColorRmBinary.quantize(x, scale), ColorRmBinary.quantize((Double) m.get("y"), scale)));
+            }
+            if (snapped != null) out.put("pts", snapped);
+        }
+        boolean box = true;
+        for (String f : new String[]{"x", "y", "w", "h"}) box &= element.get(f) instanceof Double;
+        if (box) {
+            for (String f : new String[]{"x", "y", "w", "h"}) out.put(f, ColorRmBinary.quantize((Double) element.get(f), scale));
+        }
+        return out;
+    }
+
+    @Test
+    public void fuzzRoundTripsExceptForGeometryQuantization() {
+        Random r = new Random(20240601);
+        for (int iteration = 0; iteration < 300; iteration++) {
+            int scale = iteration % 3 == 0 ? 1 : ColorRmBinary.DEFAULT_SCALE * (1 + r.nextInt(4));
+            List<Object> history = new ArrayList<>();
+            List<Object> expected = new ArrayList<>();
+            for (int i = r.nextInt(40); i > 0; i--) {
+                Map<String, Object> e = randomElement(r);
+                history.add(e);
+                expected.add(expected(e, scale));
+            }
+            byte[] encoded = ColorRmBinary.encode(history, scale);
+            List<Object> decoded = ColorRmBinary.decode(encoded);
+            assertEquals("iteration " + iteration, expected, decoded);
+            // Decoding loses nothing the encoding kept
+            assertArrayEquals("iteration " + iteration, encoded, ColorRmBinary.encode(decoded, scale));
+        }
+    }
+
+    @Test
+    public void corruptInputOnlyEverThrowsIllegalArgument() {
+        Random r = new Random(7);
+        List<Object> history = new ArrayList<>();
+        for (int i = 0; i < 30; i++) history.add(randomElement(r));
+        byte[] valid = ColorRmBinary.encode(history, ColorRmBinary.DEFAULT_SCALE);
+        for (int iteration = 0; iteration < 3000; iteration++) {
+            byte[] bad = Arrays.copyOf(valid, r.nextInt(4) == 0 ? r.nextInt(valid.length) : valid.length);
+            for (int flips = 1 + r.nextInt(4); flips > 0 && bad.length > 5; flips--) {
+                bad[5 + r.nextInt(bad.length - 5)] = (byte) r.nextInt(256);
+            }
+            try {
+                ColorRmBinary.decode(bad);
+            } catch (IllegalArgumentException expected) {
+                // Rejected cleanly
+            }
+        }
+    }
+
+    @Test
+    public void rejectsOtherData() {
+        for (String s : new String[]{"", "CRB", "[{\"id\":1}]", "CRB2\u0002"}) {
+            try {
+                ColorRmBinary.decode(s.getBytes(StandardCharsets.ISO_8859_1));
+                fail("decoded " + s);
+            } catch (IllegalArgumentException expected) {
+                // Not ours
+            }
+        }
+    }
+
+    @Test
+    public void denseHandwritingIsMuchSmallerThanJson() {
+        Random r = new Random(1);
+        List<Object> history = new ArrayList<>();
+        for (int s = 0; s < 200; s++) {
+            Map<String, Object> stroke = new LinkedHashMap<>();
+            stroke.put("id", 1.7e12 + s * 917 + r.nextDouble());
+            stroke.put("lastMod", 1.7e12 + s * 917.0);
+            stroke.put("tool", "pen");
+            List<Object> pts = new ArrayList<>();
+            double x = r.nextDouble() * 1000;
+            double y = r.nextDouble() * 1400;
+            for (int i = 0; i < 80; i++) {
+                x += r.nextGaussian() * 2;
+                y += r.nextGaussian() * 2;
+                pts.add(point(x, y));
+            }
+            stroke.put("pts", pts);
+            stroke.put("color", "#000000");
+            stroke.put("size", 2.0);
+            stroke.put("deleted", false);
+            history.add(stroke);
+        }
+        int json = ColorRmJson.write(history).getBytes(StandardCharsets.UTF_8).length;
+        int binary = ColorRmBinary.encode(history, ColorRmBinary.DEFAULT_SCALE).length;
+        assertTrue(json + " vs " + binary, binary * 8 < json);
+    }
+
+    @Test
+    public void jsonReaderAndWriterRoundTrip() {
+        String json = "{\"a\":[1,-2.5,1.0E-7,true,null,\"x\\\"\\u00e9\\n\"],\"b\":{},\"c\":[]}";
+        Object parsed = ColorRmJson.parse(json);
+        assertEquals(parsed, ColorRmJson.parse(ColorRmJson.write(parsed)));
+        assertEquals("{\"a\":[1,-2.5,1.0E-7,true,null,\"x\\\"é\\n\"],\"b\":{},\"c\":[]}", ColorRmJson.write(parsed));
+    }
+}
@@ -0,0 +1,42 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class JsStringsTest {
+
+    // The chained replace the single-pass escape replaced
+    private static String chained(String text) {
+        return text.replace("\\", "\\\\")
+                .replace("'", "\\'")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r");
+    }
+
+    @Test
+    public void escapeMatchesChainedReplace() {
+        String[] samples = {
+                "", "content://media/external/images/1234", "it's \"quoted\"", "a\\b\\'c",
+                "line1\nline2\r\n", "\\\\\n'\"", "tail'", "'head", "ünïcødé ✓ 'x'"
+        };
+        for (String s : samples) assertEquals(s, chained(s), JsStrings.escape(s));
+        assertEquals("", JsStrings.escape(null));
+    }
+
+    @Test
+    public void escapeReturnsSameInstanceWhenNothingToEscape() {
+        String uri = "content://com.android.providers.downloads.documents/document/42";
+        assertSame(uri, JsStrings.escape(uri));
+    }
+
+    @Test
+    public void jsonArrayIsValidJson() {
+        assertEquals("[]", JsStrings.jsonArray(Collections.emptyList()));
+        assertEquals("[\"content://a/1\",\"it's \\\"b\\\"\",\"c\\\\d\\n\\u0001\\u2028\"]",
+                JsStrings.jsonArray(Arrays.asList("content://a/1", "it's \"b\"", "c\\d\n\u0001\u2028")));
+    }
+}
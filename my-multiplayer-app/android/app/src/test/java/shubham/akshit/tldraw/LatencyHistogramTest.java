@@ -0,0 +1,97 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveTheirOwnBuckets() {
+        for (int v = 0; v < LatencyHistogram.SUB_BUCKETS; v++) {
+            int i = LatencyHistogram.indexFor(v);
+            assertEquals(v, i);
+            assertEquals(v, LatencyHistogram.lowerBound(i));
+            assertEquals(v, LatencyHistogram.upperBound(i));
+        }
+    }
+
+    @Test
+    public void everyValueFallsInsideItsBucket() {
+        Random r = new Random(7);
+        for (int n = 0; n < 100_000; n++) {
+            long v = (r.nextLong() >>> 1) >>> r.nextInt(63);
+            int i = LatencyHistogram.indexFor(v);
+            long lo = LatencyHistogram.lowerBound(i);
+            long hi = LatencyHistogram.upperBound(i);
+            assertTrue(v + " below bucket " + i, v >= lo);
+            assertTrue(v + " above bucket " + i, v <= hi);
+            // 1/16 relative precision
+            assertTrue(v + " in a bucket of width " + (hi - lo), hi - lo <= lo / LatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.indexFor(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void bucketsAreContiguousAndOrdered() {
+        int last = LatencyHistogram.indexFor(Long.MAX_VALUE);
+        for (int i = 1; i <= last; i++) {
+            assertEquals(LatencyHistogram.upperBound(i - 1) + 1, LatencyHistogram.lowerBound(i));
+            assertEquals(i, LatencyHistogram.indexFor(LatencyHistogram.lowerBound(i)));
+            assertEquals(i, LatencyHistogram.indexFor(LatencyHistogram.upperBound(i)));
+        }
+    }
+
+    @Test
+    public void percentilesStayWithinBucketPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 10_000; v++) h.record(v * 1000);
+
+        assertEquals(10_000, h.count());
+        assertEquals(10_000_000, h.max());
+        assertEquals(5_000_500, h.mean(), 1e-6);
+        assertNear(5_000_000, h.percentile(0.5));
+        assertNear(9_000_000, h.percentile(0.9));
+        assertNear(9_900_000, h.percentile(0.99));
+        assertTrue(h.percentile(0.5) <= h.percentile(0.9));
+        assertTrue(h.percentile(0.9) <= h.percentile(0.99));
+        // Capped at the largest value seen, not the top of its bucket
+        assertEquals(10_000_000, h.percentile(1.0));
+        assertNear(1000, h.percentile(0.0));
+    }
+
+    @Test
+    public void outlierOnlyMovesTheTail() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 999; i++) h.record(200_000);
+        h.record(50_000_000);
+        assertNear(200_000, h.percentile(0.5));
+        assertNear(200_000, h.percentile(0.99));
+        assertNear(50_000_000, h.percentile(0.9999));
+        assertEquals(50_000_000, h.max());
+    }
+
+    @Test
+    public void emptyNegativeAndReset() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(0.5));
+        assertEquals(0, h.mean(), 0);
+
+        h.record(-5);
+        assertEquals(1, h.count());
+        assertEquals(0, h.max());
+        assertEquals(0, h.percentile(0.5));
+
+        h.record(1234);
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.max());
+        assertEquals(0, h.percentile(0.99));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / LatencyHistogram.SUB_BUCKETS + 1);
+    }
+}
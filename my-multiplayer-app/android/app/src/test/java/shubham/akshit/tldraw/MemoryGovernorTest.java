@@ -0,0 +1,185 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class MemoryGovernorTest {
+
+    private static final long MB = 1024 * 1024;
+
+    // Holds up to `limit` bytes in 1 MB entries
+    private static final class FakeCache implements MemoryGovernor.Trimmable {
+        long bytes;
+        long limit = Long.MAX_VALUE;
+
+        @Override
+        public long sizeBytes() {
+            return bytes;
+        }
+
+        @Override
+        public int limitTo(long limit) {
+            this.limit = limit;
+            int evicted = 0;
+            while (bytes > limit) {
+                bytes -= MB;
+                evicted++;
+            }
+            return evicted;
+        }
+
+        void fill(long amount) {
+            bytes = Math.min(limit / MB * MB, bytes + amount);
+        }
+    }
+
+    private static final class Clock {
+        long ms;
+    }
+
+    private static final class Budgets implements MemoryGovernor.Listener {
+        final List<String> seen = new ArrayList<>();
+
+        @Override
+        public void onBudget(MemoryGovernor.Grade grade, int level, long jsBudgetBytes) {
+            seen.add(grade.id + "@" + level + "=" + jsBudgetBytes / MB);
+        }
+    }
+
+    @Test
+    public void budgetsFollowTheMemoryClass() {
+        MemoryGovernor normal = new MemoryGovernor(256 * MB, false, () -> 0, () -> 0);
+        assertEquals(128 * MB, normal.jsBudget());
+        assertEquals(128 * MB, normal.jsBudgetNow());
+
+        MemoryGovernor lowRam = new MemoryGovernor(256 * MB, true, () -> 0, () -> 0);
+        assertEquals(64 * MB, lowRam.jsBudget());
+
+        // Native caches get 1/16 of the class, split by share
+        FakeCache tiles = new FakeCache();
+        tiles.bytes = 40 * MB;
+        normal.register("tiles", tiles, 0.5);
+        assertEquals(8 * MB, tiles.limit);
+        assertEquals(8 * MB, tiles.bytes);
+        assertEquals(32, normal.evictions());
+    }
+
+    @Test
+    public void trimLevelsMapToGrades() {
+        assertEquals(MemoryGovernor.Grade.NORMAL, MemoryGovernor.gradeFor(0));
+        assertEquals(MemoryGovernor.Grade.MODERATE, MemoryGovernor.gradeFor(MemoryGovernor.TRIM_RUNNING_MODERATE));
+        assertEquals(MemoryGovernor.Grade.LOW, MemoryGovernor.gradeFor(MemoryGovernor.TRIM_RUNNING_LOW));
+        assertEquals(MemoryGovernor.Grade.CRITICAL, MemoryGovernor.gradeFor(MemoryGovernor.TRIM_RUNNING_CRITICAL));
+        assertEquals(MemoryGovernor.Grade.LOW, MemoryGovernor.gradeFor(MemoryGovernor.TRIM_UI_HIDDEN));
+        assertEquals(MemoryGovernor.Grade.CRITICAL, MemoryGovernor.gradeFor(MemoryGovernor.TRIM_BACKGROUND));
+        assertEquals(MemoryGovernor.Grade.EMPTY, MemoryGovernor.gradeFor(MemoryGovernor.TRIM_MODERATE));
+        assertEquals(MemoryGovernor.Grade.EMPTY, MemoryGovernor.gradeFor(MemoryGovernor.LOW_MEMORY));
+    }
+
+    @Test
+    public void backgroundTrimsShrinkUntilTheAppIsVisibleAgain() {
+        Clock clock = new Clock();
+        MemoryGovernor governor = new MemoryGovernor(160 * MB, false, () -> clock.ms, () -> 0);
+        Budgets budgets = new Budgets();
+        governor.setListener(budgets);
+        FakeCache tiles = new FakeCache();
+        governor.register("tiles", tiles, 1.0);
+        tiles.fill(10 * MB);
+
+        governor.onStop();
+        governor.onTrim(MemoryGovernor.TRIM_UI_HIDDEN);
+        assertEquals(5 * MB, tiles.bytes);
+        governor.onTrim(MemoryGovernor.TRIM_MODERATE);
+        assertEquals(0, tiles.bytes);
+        // A repeat of the same grade is not another signal
+        governor.onTrim(MemoryGovernor.TRIM_COMPLETE);
+        assertEquals(Arrays.asList("low@20=40", "empty@60=0"), budgets.seen);
+
+        governor.onStart();
+        assertEquals(MemoryGovernor.Grade.NORMAL, governor.grade());
+        assertEquals("normal@0=80", budgets.seen.get(2));
+        assertEquals(10 * MB, tiles.limit);
+        assertEquals(10, governor.evictions());
+        assertTrue(governor.toJson().contains("\"trims\":{\"20\":1,\"60\":1,\"80\":1}"));
+    }
+
+    @Test
+    public void runningPressureEasesAndRecoversAfterQuiet() {
+        Clock clock = new Clock();
+        MemoryGovernor governor = new MemoryGovernor(160 * MB, false, () -> clock.ms, () -> 0);
+        Budgets budgets = new Budgets();
+        governor.setListener(budgets);
+
+        governor.onTrim(MemoryGovernor.TRIM_RUNNING_CRITICAL);
+        governor.onTrim(MemoryGovernor.TRIM_RUNNING_LOW);
+        assertEquals(MemoryGovernor.Grade.LOW, governor.grade());
+
+        // onStart doesn't lift pressure the system reported while we were running
+        governor.onStart();
+        assertEquals(MemoryGovernor.Grade.LOW, governor.grade());
+
+        clock.ms += MemoryGovernor.RECOVERY_MS - 1;
+        governor.tick();
+        assertEquals(MemoryGovernor.Grade.LOW, governor.grade());
+        clock.ms += 1;
+        governor.tick();
+        assertEquals(MemoryGovernor.Grade.NORMAL, governor.grade());
+        assertEquals(Arrays.asList("critical@15=20", "low@10=40", "normal@0=80"), budgets.seen);
+    }
+
+    @Test
+    public void hiddenGradeIsNotEasedByARunningLevel() {
+        MemoryGovernor governor = new MemoryGovernor(160 * MB, false, () -> 0, () -> 0);
+        governor.onStop();
+        governor.onTrim(MemoryGovernor.TRIM_BACKGROUND);
+        governor.onTrim(MemoryGovernor.TRIM_RUNNING_MODERATE);
+        assertEquals(MemoryGovernor.Grade.CRITICAL, governor.grade());
+    }
+
+    @Test
+    public void peakFootprintCountsPageCaches() {
+        long[] heap = {50 * MB};
+        MemoryGovernor governor = new MemoryGovernor(160 * MB, false, () -> 0, () -> heap[0]);
+        FakeCache tiles = new FakeCache();
+        governor.register("pdf-tiles", tiles, 1.0);
+        tiles.fill(4 * MB);
+        governor.reportJs("colorrm.tiles", 30 * MB, 0);
+        governor.reportJs("colorrm.tiles", 12 * MB, 18);
+        heap[0] = 20 * MB;
+        governor.setLastExit("low-memory");
+
+        assertEquals(16 * MB, governor.footprint());
+        assertEquals(34 * MB, governor.peakFootprint());
+        assertEquals(18, governor.evictions());
+        String json = governor.toJson();
+        assertTrue(json, json.contains("\"peakHeapBytes\":" + 50 * MB));
+        assertTrue(json, json.contains("\"lastExit\":\"low-memory\""));
+        assertTrue(json, json.contains("\"pdf-tiles\":{\"bytes\":" + 4 * MB + ",\"evictions\":0,\"native\":true}"));
+        assertTrue(json, json.contains("\"colorrm.tiles\":{\"bytes\":" + 12 * MB + ",\"evictions\":18,\"native\":false}"));
+    }
+
+    @Test
+    public void tileCacheHonoursTheLimitUntilRaised() throws Exception {
+        File dir = Files.createTempDirectory("tiles").toFile();
+        TileCache cache = new TileCache(dir, 4 * MB, 64 * MB);
+        for (int i = 0; i < 4; i++) cache.put("doc/" + i, new byte[(int) MB]);
+        assertEquals(4 * MB, cache.sizeBytes());
+
+        assertEquals(3, cache.limitTo(MB));
+        cache.put("doc/4", new byte[(int) MB]);
+        assertEquals(MB, cache.sizeBytes());
+        // Evicted from memory only: the disk tier still answers
+        assertNotNull(cache.get("doc/0"));
+
+        // Never above the construction budget
+        assertEquals(0, cache.limitTo(100 * MB));
+        for (int i = 0; i < 6; i++) cache.put("doc/" + i, new byte[(int) MB]);
+        assertEquals(4 * MB, cache.sizeBytes());
+    }
+}
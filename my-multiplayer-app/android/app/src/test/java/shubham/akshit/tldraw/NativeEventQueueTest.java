@@ -0,0 +1,104 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class NativeEventQueueTest {
+
+    private static String types(NativeEventQueue queue, List<NativeEventQueue.Event> batch) {
+        StringBuilder sb = new StringBuilder();
+        for (NativeEventQueue.Event e : batch) sb.append(queue.name(e.type)).append('=').append(e.data).append(' ');
+        return sb.toString().trim();
+    }
+
+    @Test
+    public void keepsOfferOrderAndSequence() {
+        NativeEventQueue queue = new NativeEventQueue();
+        int file = queue.register("share-file", NativeEventQueue.Policy.KEEP);
+        int url = queue.register("share-url", NativeEventQueue.Policy.KEEP);
+        assertTrue(queue.offer(file, "a"));
+        assertFalse(queue.offer(url, "b"));
+        assertFalse(queue.offer(file, "c"));
+        List<NativeEventQueue.Event> batch = queue.drain();
+        assertEquals("share-file=a share-url=b share-file=c", types(queue, batch));
+        assertTrue(batch.get(0).seq < batch.get(1).seq && batch.get(1).seq < batch.get(2).seq);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void latestReplacesAndMovesToTheEnd() {
+        NativeEventQueue queue = new NativeEventQueue();
+        int zoom = queue.register("zoom", NativeEventQueue.Policy.LATEST);
+        int file = queue.register("share-file", NativeEventQueue.Policy.KEEP);
+        queue.offer(zoom, 1);
+        queue.offer(file, "a");
+        queue.offer(zoom, 2);
+        assertEquals("share-file=a zoom=2", types(queue, queue.drain()));
+        assertEquals(1, queue.coalesced());
+    }
+
+    @Test
+    public void toggleChatterWithinAFrameCancelsOut() {
+        NativeEventQueue queue = new NativeEventQueue();
+        int button = queue.register("spen-button", NativeEventQueue.Policy.TOGGLE);
+
+        // down/up inside one frame: the page never needs to hear about it
+        queue.offer(button, true);
+        queue.offer(button, false);
+        assertTrue(queue.drain().isEmpty());
+
+        // down, up, down: net result is one "down"
+        queue.offer(button, true);
+        queue.offer(button, false);
+        queue.offer(button, true);
+        assertEquals("spen-button=true", types(queue, queue.drain()));
+
+        // Repeating the delivered state is dropped; a real change goes through
+        assertFalse(queue.offer(button, true));
+        assertTrue(queue.isEmpty());
+        queue.offer(button, false);
+        assertEquals("spen-button=false", types(queue, queue.drain()));
+    }
+
+    @Test
+    public void pageResetForgetsDeliveredState() {
+        NativeEventQueue queue = new NativeEventQueue();
+        int button = queue.register("spen-button", NativeEventQueue.Policy.TOGGLE);
+        queue.offer(button, true);
+        queue.drain();
+        queue.resetDeliveredState();
+        queue.offer(button, true);
+        assertEquals("spen-button=true", types(queue, queue.drain()));
+    }
+
+    @Test
+    public void batchSerializesAsJson() {
+        NativeEventQueue queue = new NativeEventQueue();
+        int button = queue.register("spen-button", NativeEventQueue.Policy.TOGGLE);
+        int files = queue.register("share-files", NativeEventQueue.Policy.KEEP);
+        queue.offer(button, true);
+        queue.offer(files, Arrays.asList("content://a/1", "it's \"x\""));
+        assertEquals("[{\"type\":\"spen-button\",\"seq\":1,\"data\":true},"
+                        + "{\"type\":\"share-files\",\"seq\":2,\"data\":[\"content://a/1\",\"it's \\\"x\\\"\"]}]",
+                queue.toJson(queue.drain()));
+    }
+
+    @Test
+    public void mapPayloadsSerializeAsObjects() {
+        NativeEventQueue queue = new NativeEventQueue();
+        int trim = queue.register("memory-trim", NativeEventQueue.Policy.LATEST);
+        Map<String, Object> budget = new LinkedHashMap<>();
+        budget.put("grade", "low");
+        budget.put("fraction", 0.5);
+        budget.put("budgetBytes", 41943040L);
+        queue.offer(trim, budget);
+        assertEquals("[{\"type\":\"memory-trim\",\"seq\":1,\"data\":"
+                        + "{\"grade\":\"low\",\"fraction\":0.5,\"budgetBytes\":41943040}}]",
+                queue.toJson(queue.drain()));
+    }
+}
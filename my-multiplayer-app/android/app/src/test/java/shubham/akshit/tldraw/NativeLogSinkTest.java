@@ -0,0 +1,80 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Test;
+
+public class NativeLogSinkTest {
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void batchLargerThanTheFreeSpaceKeepsTheLinesThatFit() throws Exception {
+        File dir = Files.createTempDirectory("logs").toFile();
+        // Long flush interval: nothing drains until flush()
+        NativeLogSink sink = new NativeLogSink(dir, 16, 1 << 20, 2, 60_000);
+        try {
+            assertFalse(sink.append("one\ntwo\nthree\nfour\n"));
+            assertEquals(1, sink.droppedAppends());
+            assertEquals("four\n".length(), sink.droppedBytes());
+            sink.flush();
+            assertEquals("one\ntwo\nthree\n", read(sink.currentFile()));
+        } finally {
+            sink.close();
+        }
+    }
+
+    @Test
+    public void aLineWithoutRoomForItsBreakIsCutOnACharacterBoundary() {
+        byte[] bytes = "ab\u00e9cd".getBytes(StandardCharsets.UTF_8);
+        // 'é' is two bytes at 2..3: three bytes would split it
+        assertEquals(2, NativeLogSink.fittingPrefix(bytes, 0, 3));
+        assertEquals(4, NativeLogSink.fittingPrefix(bytes, 0, 4));
+    }
+
+    @Test
+    public void nothingTouchesTheDiskUntilTheFirstDrain() throws Exception {
+        File dir = new File(Files.createTempDirectory("logs").toFile(), "nested");
+        NativeLogSink sink = new NativeLogSink(dir, 1024, 1 << 20, 2, 60_000);
+        try {
+            assertFalse(dir.exists());
+            sink.append("hello\n");
+            sink.flush();
+            assertEquals("hello\n", read(sink.currentFile()));
+        } finally {
+            sink.close();
+        }
+    }
+
+    @Test
+    public void aFailedRotationReopensTheFileOnTheNextDrain() throws Exception {
+        File dir = Files.createTempDirectory("logs").toFile();
+        NativeLogSink sink = new NativeLogSink(dir, 1024, 8, 2, 60_000);
+        try {
+            sink.append("first\n");
+            sink.flush();
+            // A plain file where the directory was: rotation renames fail and the new file can't be created
+            for (File f : dir.listFiles()) f.delete();
+            dir.delete();
+            assertTrue(dir.createNewFile());
+            sink.append("second\n");
+            try {
+                sink.flush();
+                fail("Expected the rotation to fail");
+            } catch (java.io.IOException expected) {
+            }
+
+            // The reopen makes the directory again
+            dir.delete();
+            sink.flush();
+            assertEquals("second\n", read(sink.currentFile()));
+        } finally {
+            sink.close();
+        }
+    }
+}
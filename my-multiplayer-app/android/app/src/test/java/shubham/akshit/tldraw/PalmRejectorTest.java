@@ -0,0 +1,212 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PalmRejectorTest {
+
+    private static final int FINGER = PalmRejector.TOOL_TYPE_FINGER;
+    private static final int STYLUS = PalmRejector.TOOL_TYPE_STYLUS;
+    // 10 px per mm: the default 16 mm palm is 160 px across
+    private static final float PX_PER_MM = 10;
+
+    // One recorded event's pointers: {id, toolType, touchMajorPx} per pointer
+    private static final class Recorded implements PalmRejector.Pointers {
+        final float[][] pointers;
+
+        Recorded(float[]... pointers) {
+            this.pointers = pointers;
+        }
+
+        @Override
+        public int pointerCount() {
+            return pointers.length;
+        }
+
+        @Override
+        public int pointerId(int index) {
+            return (int) pointers[index][0];
+        }
+
+        @Override
+        public int toolType(int index) {
+            return (int) pointers[index][1];
+        }
+
+        @Override
+        public float touchMajor(int index) {
+            return pointers[index][2];
+        }
+    }
+
+    private static float[] finger(int id, float major) {
+        return new float[] {id, FINGER, major};
+    }
+
+    private static float[] pen(int id) {
+        return new float[] {id, STYLUS, 0};
+    }
+
+    private static int feed(PalmRejector rejector, int action, int index, long t, float[]... pointers) {
+        return rejector.onTouchEvent(action, index, t, new Recorded(pointers));
+    }
+
+    @Test
+    public void fingersPassWhenThePenIsAway() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_DOWN, 0, 0, finger(0, 80)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_MOVE, 0, 16, finger(0, 90)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_POINTER_DOWN, 1, 32, finger(0, 90), finger(1, 70)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_POINTER_UP, 0, 48, finger(0, 90), finger(1, 70)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_UP, 0, 64, finger(1, 70)));
+    }
+
+    @Test
+    public void palmWhileTheStylusHoversIsDroppedUntilItLifts() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        rejector.onHoverEvent(PalmRejector.ACTION_HOVER_ENTER, STYLUS, 0);
+        rejector.onHoverEvent(PalmRejector.ACTION_HOVER_MOVE, STYLUS, 8);
+
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_DOWN, 0, 10, finger(0, 60)));
+        assertTrue(rejector.isRejected(0));
+        // Still rejected once the pen has gone
+        rejector.onHoverEvent(PalmRejector.ACTION_HOVER_EXIT, STYLUS, 20);
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_MOVE, 0, 2_000, finger(0, 60)));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_UP, 0, 2_016, finger(0, 60)));
+
+        // The next touch is a finger again
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_DOWN, 0, 3_000, finger(0, 60)));
+    }
+
+    @Test
+    public void graceWindowFollowsPenContact() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        rejector.setConfig(new PalmRejector.Config(true, false, 300, 16, 250));
+        // Hovering alone doesn't count with whileHovering off
+        rejector.onHoverEvent(PalmRejector.ACTION_HOVER_ENTER, STYLUS, 0);
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_DOWN, 0, 5, finger(0, 60)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_UP, 0, 6, finger(0, 60)));
+
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_DOWN, 0, 100, pen(0)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_UP, 0, 500, pen(0)));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_DOWN, 0, 800, finger(0, 60)));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_UP, 0, 800, finger(0, 60)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_DOWN, 0, 801, finger(0, 60)));
+    }
+
+    @Test
+    public void palmSizedContactIsRejectedAndTheFingerNextToItKept() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_DOWN, 0, 0, finger(0, 220)));
+
+        // A finger after the palm becomes the page's first pointer
+        assertEquals(PalmRejector.REWRITE,
+                feed(rejector, PalmRejector.ACTION_POINTER_DOWN, 1, 40, finger(0, 230), finger(1, 70)));
+        assertEquals(PalmRejector.ACTION_DOWN, rejector.rewrittenAction());
+        assertEquals(1, rejector.keptCount());
+        assertEquals(1, rejector.keptIndex(0));
+
+        assertEquals(PalmRejector.REWRITE, feed(rejector, PalmRejector.ACTION_MOVE, 0, 56, finger(0, 230), finger(1, 72)));
+        assertEquals(PalmRejector.ACTION_MOVE, rejector.rewrittenAction());
+
+        // Its lift is the page's last one, while the palm stays down
+        assertEquals(PalmRejector.REWRITE,
+                feed(rejector, PalmRejector.ACTION_POINTER_UP, 1, 90, finger(0, 230), finger(1, 72)));
+        assertEquals(PalmRejector.ACTION_UP, rejector.rewrittenAction());
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_MOVE, 0, 100, finger(0, 230)));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_UP, 0, 120, finger(0, 230)));
+    }
+
+    @Test
+    public void secondPointerIndexIsRemappedAroundAPalm() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        feed(rejector, PalmRejector.ACTION_DOWN, 0, 0, finger(0, 60));
+        assertEquals(PalmRejector.DROP,
+                feed(rejector, PalmRejector.ACTION_POINTER_DOWN, 1, 10, finger(0, 60), finger(1, 240)));
+        assertEquals(PalmRejector.REWRITE,
+                feed(rejector, PalmRejector.ACTION_POINTER_DOWN, 2, 20, finger(0, 60), finger(1, 240), finger(2, 70)));
+        assertEquals(PalmRejector.ACTION_POINTER_DOWN | (1 << PalmRejector.ACTION_POINTER_INDEX_SHIFT),
+                rejector.rewrittenAction());
+        assertEquals(2, rejector.keptCount());
+        assertEquals(0, rejector.keptIndex(0));
+        assertEquals(2, rejector.keptIndex(1));
+    }
+
+    @Test
+    public void growingIntoAPalmCancelsTheGesture() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_DOWN, 0, 0, finger(0, 90)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_MOVE, 0, 16, finger(0, 120)));
+        assertEquals(PalmRejector.CANCEL, feed(rejector, PalmRejector.ACTION_MOVE, 0, 32, finger(0, 200)));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_MOVE, 0, 48, finger(0, 210)));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_UP, 0, 64, finger(0, 210)));
+
+        // A finger flattened after the window is left alone
+        feed(rejector, PalmRejector.ACTION_DOWN, 0, 1_000, finger(0, 90));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_MOVE, 0, 1_400, finger(0, 200)));
+    }
+
+    @Test
+    public void penArrivingJustAfterAPalmCancelsIt() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_DOWN, 0, 1_000, finger(0, 90)));
+        rejector.onHoverEvent(PalmRejector.ACTION_HOVER_ENTER, STYLUS, 1_120);
+        assertEquals(PalmRejector.CANCEL, feed(rejector, PalmRejector.ACTION_MOVE, 0, 1_130, finger(0, 90)));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_UP, 0, 1_200, finger(0, 90)));
+
+        // A pan that was already going when the pen came along keeps going
+        rejector.onHoverEvent(PalmRejector.ACTION_HOVER_EXIT, STYLUS, 1_300);
+        feed(rejector, PalmRejector.ACTION_DOWN, 0, 5_000, finger(0, 90));
+        rejector.onHoverEvent(PalmRejector.ACTION_HOVER_ENTER, STYLUS, 6_000);
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_MOVE, 0, 6_010, finger(0, 90)));
+    }
+
+    @Test
+    public void penTouchingDownWithoutHoveringKeepsItsStroke() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_DOWN, 0, 1_000, finger(0, 90)));
+        // No hover first: the pen's own down cancels the finger, not the pen
+        assertEquals(PalmRejector.CANCEL,
+                feed(rejector, PalmRejector.ACTION_POINTER_DOWN, 1, 1_100, finger(0, 90), pen(1)));
+        assertTrue(rejector.isRejected(0));
+        assertFalse(rejector.isRejected(1));
+
+        // Its next event is the page's new gesture: a down carrying the pen alone
+        assertEquals(PalmRejector.REWRITE, feed(rejector, PalmRejector.ACTION_MOVE, 0, 1_116, finger(0, 90), pen(1)));
+        assertEquals(1, rejector.keptCount());
+        assertEquals(1, rejector.keptIndex(0));
+        assertEquals(PalmRejector.ACTION_DOWN, rejector.rewrittenAction());
+
+        assertEquals(PalmRejector.REWRITE, feed(rejector, PalmRejector.ACTION_MOVE, 0, 1_132, finger(0, 90), pen(1)));
+        assertEquals(PalmRejector.ACTION_MOVE, rejector.rewrittenAction());
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_POINTER_UP, 0, 1_150, finger(0, 90), pen(1)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_MOVE, 0, 1_166, pen(1)));
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_UP, 0, 1_182, pen(1)));
+    }
+
+    @Test
+    public void penLiftedBeforeItsNextEventIsDropped() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        feed(rejector, PalmRejector.ACTION_DOWN, 0, 1_000, finger(0, 90));
+        assertEquals(PalmRejector.CANCEL,
+                feed(rejector, PalmRejector.ACTION_POINTER_DOWN, 1, 1_100, finger(0, 90), pen(1)));
+        // The page never saw it go down, so it doesn't see it go up either
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_POINTER_UP, 1, 1_110, finger(0, 90), pen(1)));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_UP, 0, 1_120, finger(0, 90)));
+    }
+
+    @Test
+    public void disabledPassesEverythingButFinishesWhatItRejected() {
+        PalmRejector rejector = new PalmRejector(PX_PER_MM);
+        feed(rejector, PalmRejector.ACTION_DOWN, 0, 0, finger(0, 300));
+        rejector.setConfig(new PalmRejector.Config(false, true, 300, 16, 250));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_MOVE, 0, 16, finger(0, 300)));
+        assertEquals(PalmRejector.DROP, feed(rejector, PalmRejector.ACTION_UP, 0, 32, finger(0, 300)));
+
+        rejector.onHoverEvent(PalmRejector.ACTION_HOVER_ENTER, STYLUS, 40);
+        assertEquals(PalmRejector.PASS, feed(rejector, PalmRejector.ACTION_DOWN, 0, 50, finger(0, 300)));
+        assertEquals("{\"enabled\":false,\"whileHovering\":true,\"graceMs\":300,\"palmSizeMm\":16.0,\"cancelWindowMs\":250}",
+                rejector.config().toJson());
+    }
+}
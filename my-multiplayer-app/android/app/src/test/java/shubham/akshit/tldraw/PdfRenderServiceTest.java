@@ -0,0 +1,117 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import android.graphics.Bitmap;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class PdfRenderServiceTest {
+
+    /** Counts open renderers; renders nothing. */
+    private static final class FakeRenderers implements PdfTileRenderer.Factory {
+        final List<String> opened = new ArrayList<>();
+        final List<String> closed = new ArrayList<>();
+
+        @Override
+        public PdfTileRenderer open(File pdf) {
+            String doc = pdf.getName().replace(".pdf", "");
+            opened.add(doc);
+            return new PdfTileRenderer() {
+                @Override
+                public int pageCount() {
+                    return 1;
+                }
+
+                @Override
+                public float pageWidth(int page) {
+                    return 612;
+                }
+
+                @Override
+                public float pageHeight(int page) {
+                    return 792;
+                }
+
+                @Override
+                public Bitmap render(int page, float scale, int left, int top, int width, int height) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void close() {
+                    closed.add(doc);
+                }
+            };
+        }
+    }
+
+    private static void upload(PdfRenderService service, String doc, int bytes) throws Exception {
+        DownloadsSink.Target target = service.uploadTarget(doc);
+        target.channel().write(ByteBuffer.allocate(bytes));
+        target.commit();
+    }
+
+    private static PdfRenderService service(File dir, long maxStoredBytes, FakeRenderers renderers) {
+        return new PdfRenderService(new File(dir, "docs"), maxStoredBytes,
+                new TileCache(new File(dir, "tiles"), 1 << 20, 1 << 20), renderers);
+    }
+
+    @Test
+    public void openingPastTheLimitClosesTheLeastRecentlyUsed() throws Exception {
+        File dir = Files.createTempDirectory("pdf").toFile();
+        FakeRenderers renderers = new FakeRenderers();
+        PdfRenderService service = service(dir, 1 << 20, renderers);
+        for (String doc : new String[]{"a", "b", "c"}) upload(service, doc, 10);
+
+        service.open("a");
+        service.open("b");
+        service.open("a");
+        service.open("c");
+        assertEquals(PdfRenderService.MAX_OPEN, renderers.opened.size() - renderers.closed.size());
+        assertEquals(Arrays.asList("b"), renderers.closed);
+
+        service.close("a");
+        assertEquals(Arrays.asList("b", "a"), renderers.closed);
+        service.shutdown();
+        assertEquals(Arrays.asList("b", "a", "c"), renderers.closed);
+    }
+
+    @Test
+    public void tilesOutsideThePageOrZoomRangeAreNotRendered() throws Exception {
+        File dir = Files.createTempDirectory("pdf").toFile();
+        PdfRenderService service = service(dir, 1 << 20, new FakeRenderers());
+        upload(service, "a", 10);
+        // 612 x 792 pt at 1x is 2 x 2 tiles; the fake renderer throws if asked to draw
+        assertNull(service.render(new PdfTileKey("a", 0, 0, 2, 0)));
+        assertNull(service.render(new PdfTileKey("a", 0, 0, 0, 2)));
+        assertNull(service.render(new PdfTileKey("a", 1, 0, 0, 0)));
+        assertNull(service.render(new PdfTileKey("a", 0, PdfTileKey.MAX_ZOOM_BUCKET + 1, 0, 0)));
+        assertNull(service.render(new PdfTileKey("missing", 0, 0, 0, 0)));
+        service.shutdown();
+    }
+
+    @Test
+    public void storedDocumentsPastTheBudgetGoLeastRecentlyOpenedFirst() throws Exception {
+        File dir = Files.createTempDirectory("pdf").toFile();
+        FakeRenderers renderers = new FakeRenderers();
+        PdfRenderService service = service(dir, 250, renderers);
+        upload(service, "old", 100);
+        upload(service, "open", 100);
+        new File(dir, "docs/old.pdf").setLastModified(1_000);
+        new File(dir, "docs/open.pdf").setLastModified(2_000);
+        service.open("open");
+        new File(dir, "docs/open.pdf").setLastModified(500);
+
+        // Over budget: "open" is older now but in use, so "old" goes
+        upload(service, "new", 100);
+        assertFalse(service.hasDocument("old"));
+        assertTrue(service.hasDocument("open"));
+        assertTrue(service.hasDocument("new"));
+    }
+}
@@ -0,0 +1,296 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PdfStreamWriterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(3);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private static final String STROKE = "{\"id\":\"a\",\"tool\":\"pen\",\"color\":\"#ff0000\",\"size\":3,"
+            + "\"pts\":[{\"x\":10,\"y\":10},{\"x\":50,\"y\":80},{\"x\":90,\"y\":20}]}";
+    private static final String HIGHLIGHT = "{\"id\":\"b\",\"tool\":\"highlighter\",\"color\":\"#ffff00\",\"size\":20,"
+            + "\"pts\":[{\"x\":0,\"y\":50},{\"x\":100,\"y\":50}]}";
+
+    // Smallest header PdfPage.Image.jpeg accepts: SOI, then an SOF0 for 2x3 RGB
+    private static final byte[] JPEG = {
+            (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xC0, 0, 17, 8, 0, 3, 0, 2, 3,
+            1, 0x22, 0, 2, 0x11, 1, 3, 0x11, 1, (byte) 0xFF, (byte) 0xD9};
+
+    private static PdfPage page(ColorRmPdfRenderer renderer, String spec, String history, byte[] image) throws IOException {
+        Map<?, ?> s = (Map<?, ?>) ColorRmJson.parse(spec);
+        List<?> h = history != null ? (List<?>) ColorRmJson.parse(history) : null;
+        return renderer.render(s, h, image);
+    }
+
+    private static String latin1(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String inflate(byte[] data) throws Exception {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buf);
+            if (n == 0 && inflater.needsInput()) throw new AssertionError("Truncated stream");
+            out.write(buf, 0, n);
+        }
+        inflater.end();
+        return latin1(out.toByteArray());
+    }
+
+    /** Every page content stream, decompressed, in file order. */
+    private static List<String> contents(byte[] pdf) throws Exception {
+        String text = latin1(pdf);
+        List<String> result = new ArrayList<>();
+        Matcher m = Pattern.compile("<< /Length (\\d+) /Filter /FlateDecode >>\nstream\n").matcher(text);
+        while (m.find()) {
+            int length = Integer.parseInt(m.group(1));
+            byte[] data = new byte[length];
+            System.arraycopy(pdf, m.end(), data, 0, length);
+            result.add(inflate(data));
+        }
+        return result;
+    }
+
+    /** Checks the cross-reference table against the file and returns the page count. */
+    private static int verifyStructure(byte[] pdf) {
+        String text = latin1(pdf);
+        assertTrue(text.startsWith("%PDF-1.4\n"));
+        assertTrue(text.endsWith("%%EOF\n"));
+        Matcher start = Pattern.compile("startxref\n(\\d+)\n%%EOF\n$").matcher(text);
+        assertTrue(start.find());
+        int xref = Integer.parseInt(start.group(1));
+        assertTrue(text.startsWith("xref\n0 ", xref));
+        Matcher size = Pattern.compile("xref\n0 (\\d+)\n").matcher(text);
+        assertTrue(size.find(xref));
+        int objects = Integer.parseInt(size.group(1));
+        int entry = size.end() + 20;
+        for (int i = 1; i < objects; i++, entry += 20) {
+            int offset = Integer.parseInt(text.substring(entry, entry + 10));
+            assertTrue("object " + i, text.startsWith(i + " 0 obj\n", offset));
+        }
+        assertTrue(text.contains("/Size " + objects + " /Root 1 0 R"));
+        Matcher count = Pattern.compile("/Type /Pages /Count (\\d+) /Kids \\[([^\\]]*)\\]").matcher(text);
+        assertTrue(count.find());
+        int pages = Integer.parseInt(count.group(1));
+        assertEquals(pages, count.group(2).isEmpty() ? 0 : count.group(2).split(" 0 R").length);
+        return pages;
+    }
+
+    @Test
+    public void writesAValidMultiPageFile() throws Exception {
+        ColorRmPdfRenderer renderer = new ColorRmPdfRenderer(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PdfStreamWriter writer = new PdfStreamWriter(out);
+        for (int i = 0; i < 5; i++) {
+            writer.addPage(page(renderer, "{\"source\":[0,0,800,600]}", "[" + STROKE + "," + HIGHLIGHT + "]", i == 2 ? JPEG : null));
+        }
+        writer.finish();
+        byte[] pdf = out.toByteArray();
+
+        assertEquals(5, writer.pageCount());
+        assertEquals(pdf.length, writer.position());
+        assertEquals(5, verifyStructure(pdf));
+        String text = latin1(pdf);
+        assertTrue(text.contains("/Subtype /Image /Width 2 /Height 3 /ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /DCTDecode"));
+        assertTrue(text.contains("/ExtGState << /G0 <<"));
+    }
+
+    @Test
+    public void drawsStrokesAsPaths() throws Exception {
+        ColorRmPdfRenderer renderer = new ColorRmPdfRenderer(null);
+        PdfPage page = page(renderer, "{\"source\":[0,0,100,100],\"header\":{\"text\":\"Page (1)\",\"align\":\"left\"}}",
+                "[" + STROKE + "," + HIGHLIGHT + ",{\"tool\":\"pen\",\"deleted\":true,\"pts\":[{\"x\":0,\"y\":0},{\"x\":1,\"y\":1}]}]", null);
+        String ops = inflate(page.content());
+
+        assertTrue(ops.contains("1 0 0 RG\n3 w\n"));
+        assertTrue(ops.contains("10 10 m\n50 80 l\n90 20 l\nS\n"));
+        assertTrue(ops.contains("0 50 m\n100 50 l\nS\n"));
+        // Highlighter at 40%, in the page's own graphics state
+        assertEquals("G0", page.alphaStates().get("/CA 0.4 /ca 0.4"));
+        assertTrue(ops.contains("/G0 gs\n1 1 0 RG\n20 w\n"));
+        assertTrue(ops.contains("(Page \\(1\\)) Tj"));
+        // The deleted stroke is not drawn
+        assertEquals(2, ops.split("\nS\n", -1).length - 1);
+    }
+
+    @Test
+    public void rejectsPagesWithoutASourceArea() throws Exception {
+        try {
+            page(new ColorRmPdfRenderer(null), "{\"source\":[0,0,0,0]}", null, null);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /** File target that records how it ended. */
+    private class FileTarget implements DownloadsSink.Target {
+        final File file;
+        final FileChannel channel;
+        boolean committed;
+        boolean aborted;
+
+        FileTarget() throws IOException {
+            file = tmp.newFile("out.pdf");
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        @Override
+        public FileChannel channel() {
+            return channel;
+        }
+
+        @Override
+        public String displayName() {
+            return file.getName();
+        }
+
+        @Override
+        public void commit() throws IOException {
+            channel.close();
+            committed = true;
+        }
+
+        @Override
+        public void abort() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            file.delete();
+            aborted = true;
+        }
+    }
+
+    private static class Recorder implements PdfExportJob.Listener {
+        final List<Integer> progress = new ArrayList<>();
+        final CountDownLatch ended = new CountDownLatch(1);
+        String outcome;
+
+        @Override
+        public synchronized void onProgress(int pages, long written) {
+            progress.add(pages);
+        }
+
+        @Override
+        public void onDone(String displayName, int pages, long written) {
+            outcome = "done " + pages;
+            ended.countDown();
+        }
+
+        @Override
+        public void onError(String message) {
+            outcome = "error " + message;
+            ended.countDown();
+        }
+
+        @Override
+        public void onCancelled() {
+            outcome = "cancelled";
+            ended.countDown();
+        }
+    }
+
+    @Test
+    public void jobWritesPagesInSubmissionOrder() throws Exception {
+        // The first page's image decodes slowly, so later pages finish rendering first
+        ColorRmPdfRenderer renderer = new ColorRmPdfRenderer((data, lossless) -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return PdfPage.Image.pixels(1, 1, new int[]{0xFF336699}, false);
+        });
+        FileTarget target = new FileTarget();
+        Recorder recorder = new Recorder();
+        PdfExportJob job = new PdfExportJob(target, renderer, pool, new BridgeMetrics(), recorder);
+        Thread writer = new Thread(job);
+        writer.start();
+        for (int i = 1; i <= 4; i++) {
+            String spec = "{\"source\":[0,0,100,100],\"header\":{\"text\":\"Page " + i + "\"}}";
+            job.submit(spec, ("[" + STROKE + "]").getBytes(StandardCharsets.UTF_8), i == 1 ? new byte[]{1} : null);
+        }
+        job.close();
+        assertTrue(recorder.ended.await(10, TimeUnit.SECONDS));
+        writer.join();
+
+        assertEquals("done 4", recorder.outcome);
+        assertEquals(List.of(1, 2, 3, 4), recorder.progress);
+        assertTrue(target.committed);
+        byte[] pdf = Files.readAllBytes(target.file.toPath());
+        assertEquals(4, verifyStructure(pdf));
+        List<String> pages = contents(pdf);
+        assertEquals(4, pages.size());
+        for (int i = 0; i < 4; i++) assertTrue(pages.get(i).contains("(Page " + (i + 1) + ") Tj"));
+    }
+
+    @Test
+    public void failedPageAbortsTheFile() throws Exception {
+        FileTarget target = new FileTarget();
+        Recorder recorder = new Recorder();
+        PdfExportJob job = new PdfExportJob(target, new ColorRmPdfRenderer(null), pool, new BridgeMetrics(), recorder);
+        Thread writer = new Thread(job);
+        writer.start();
+        job.submit("{\"source\":[0,0,100,100]}", null, null);
+        // PNG signature: needs a decoder, and there is none
+        job.submit("{\"source\":[0,0,100,100]}", null, new byte[]{(byte) 0x89, 'P', 'N', 'G'});
+        job.close();
+        assertTrue(recorder.ended.await(10, TimeUnit.SECONDS));
+        writer.join();
+
+        assertEquals("error Page 2: Unsupported image format", recorder.outcome);
+        assertTrue(target.aborted);
+        assertFalse(target.file.exists());
+    }
+
+    @Test
+    public void cancelAbortsTheFile() throws Exception {
+        FileTarget target = new FileTarget();
+        Recorder recorder = new Recorder();
+        PdfExportJob job = new PdfExportJob(target, new ColorRmPdfRenderer(null), pool, new BridgeMetrics(), recorder);
+        Thread writer = new Thread(job);
+        writer.start();
+        job.submit("{\"source\":[0,0,100,100]}", null, null);
+        job.cancel();
+        job.submit("{\"source\":[0,0,100,100]}", null, null);
+        assertTrue(recorder.ended.await(10, TimeUnit.SECONDS));
+        writer.join();
+
+        assertEquals("cancelled", recorder.outcome);
+        assertTrue(target.aborted);
+        assertFalse(target.file.exists());
+    }
+}
@@ -0,0 +1,39 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PdfTileKeyTest {
+
+    @Test
+    public void bucketsAreHalfOctaves() {
+        assertEquals(1f, PdfTileKey.bucketScale(0), 1e-6f);
+        assertEquals(2f, PdfTileKey.bucketScale(2), 1e-6f);
+        assertEquals((float) Math.sqrt(2), PdfTileKey.bucketScale(1), 1e-6f);
+        assertEquals(0.5f, PdfTileKey.bucketScale(-2), 1e-6f);
+        assertTrue(PdfTileKey.isValidZoomBucket(PdfTileKey.MAX_ZOOM_BUCKET));
+        assertFalse(PdfTileKey.isValidZoomBucket(PdfTileKey.MAX_ZOOM_BUCKET + 1));
+        assertFalse(PdfTileKey.isValidZoomBucket(PdfTileKey.MIN_ZOOM_BUCKET - 1));
+    }
+
+    @Test
+    public void tilesCoverThePageAndNoMore() {
+        // US Letter at 2x: 1224 x 1584 px
+        assertEquals(1224, PdfTileKey.scaledSize(612, 2));
+        assertEquals(3, PdfTileKey.tileCount(612, 2));
+        assertEquals(4, PdfTileKey.tileCount(792, 2));
+        // Exactly one tile wide, and a sliver past it
+        assertEquals(1, PdfTileKey.tileCount(PdfTileKey.TILE_SIZE, 0));
+        assertEquals(2, PdfTileKey.tileCount(PdfTileKey.TILE_SIZE + 0.5f, 0));
+        assertEquals(1, PdfTileKey.tileCount(0, 0));
+    }
+
+    @Test
+    public void keyNamesEveryCoordinate() {
+        PdfTileKey key = new PdfTileKey("abc", 3, -1, 2, 5);
+        assertEquals("abc/3_-1_2_5", key.key());
+        assertEquals(key, new PdfTileKey("abc", 3, -1, 2, 5));
+        assertFalse(key.equals(new PdfTileKey("abc", 3, -1, 5, 2)));
+    }
+}
@@ -0,0 +1,130 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShareInboxTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /** In-memory provider; counts describe() calls per URI. */
+    private static class FakeSource implements ShareInbox.Source {
+        final Map<String, byte[]> content = new HashMap<>();
+        final Map<String, Integer> describes = new HashMap<>();
+
+        FakeSource put(String uri, String body) {
+            content.put(uri, body.getBytes());
+            return this;
+        }
+
+        @Override
+        public synchronized ShareInbox.Metadata describe(String uri) throws IOException {
+            describes.merge(uri, 1, Integer::sum);
+            byte[] bytes = content.get(uri);
+            if (bytes == null) throw new IOException("gone");
+            return new ShareInbox.Metadata(uri.substring(uri.lastIndexOf('/') + 1), bytes.length, "application/pdf");
+        }
+
+        @Override
+        public InputStream open(String uri) throws IOException {
+            byte[] bytes = content.get(uri);
+            if (bytes == null) throw new IOException("gone");
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+
+    @Test
+    public void keepsEveryShareInArrivalOrder() throws Exception {
+        FakeSource source = new FakeSource().put("content://a/1.pdf", "one").put("content://a/2.pdf", "two");
+        ShareInbox inbox = new ShareInbox(source, tmp.newFolder(), 1024, Runnable::run);
+        inbox.offerFile("content://a/1.pdf");
+        inbox.offerText("https://example.com");
+        inbox.offerFile("content://a/2.pdf");
+
+        List<ShareInbox.Share> batch = inbox.drain();
+        assertEquals(3, batch.size());
+        assertEquals(Arrays.asList("content://a/1.pdf"), batch.get(0).values);
+        assertEquals(ShareInbox.Kind.TEXT, batch.get(1).kind);
+        assertEquals(Arrays.asList("content://a/2.pdf"), batch.get(2).values);
+        assertTrue(batch.get(0).seq < batch.get(1).seq && batch.get(1).seq < batch.get(2).seq);
+        assertTrue(inbox.isEmpty());
+        inbox.shutdown();
+    }
+
+    @Test
+    public void pollTakesOldestOfOneKind() throws Exception {
+        ShareInbox inbox = new ShareInbox(new FakeSource(), tmp.newFolder(), 1024, Runnable::run);
+        inbox.offerText("first");
+        inbox.offerFiles(Arrays.asList("content://x/1", "content://x/2"));
+        inbox.offerText("second");
+
+        assertEquals("first", inbox.poll(ShareInbox.Kind.TEXT).values.get(0));
+        assertEquals("second", inbox.poll(ShareInbox.Kind.TEXT).values.get(0));
+        assertNull(inbox.poll(ShareInbox.Kind.TEXT));
+        assertNull(inbox.poll(ShareInbox.Kind.FILE));
+        assertEquals(2, inbox.poll(ShareInbox.Kind.FILES).values.size());
+        assertTrue(inbox.isEmpty());
+        inbox.shutdown();
+    }
+
+    @Test
+    public void stagesMetadataAndContentOncePerUri() throws Exception {
+        FakeSource source = new FakeSource().put("content://a/doc.pdf", "%PDF-1.7 body");
+        ShareInbox inbox = new ShareInbox(source, tmp.newFolder(), 1024, Runnable::run);
+        inbox.offerFile("content://a/doc.pdf");
+        inbox.offerFile("content://a/doc.pdf");
+
+        File local = inbox.localCopy("content://a/doc.pdf", 5000);
+        assertNotNull(local);
+        assertEquals("%PDF-1.7 body", new String(Files.readAllBytes(local.toPath())));
+        ShareInbox.Metadata meta = inbox.metadata("content://a/doc.pdf", 0);
+        assertEquals("doc.pdf", meta.name);
+        assertEquals(13, meta.size);
+        assertEquals(1, (int) source.describes.get("content://a/doc.pdf"));
+        assertEquals(13, inbox.copiedBytes());
+
+        String json = inbox.toJson(inbox.drain());
+        assertTrue(json, json.startsWith("[{\"kind\":\"file\",\"seq\":1,\"items\":[{\"uri\":\"content://a/doc.pdf\","
+                + "\"name\":\"doc.pdf\",\"size\":13,\"mime\":\"application/pdf\",\"local\":true}]}"));
+        inbox.shutdown();
+    }
+
+    @Test
+    public void leavesOversizedAndFailingSharesWithTheProvider() throws Exception {
+        FakeSource source = new FakeSource().put("content://a/big", "0123456789abcdef");
+        ShareInbox inbox = new ShareInbox(source, tmp.newFolder(), 8, Runnable::run);
+        inbox.offerFiles(Arrays.asList("content://a/big", "content://a/missing"));
+
+        assertNull(inbox.localCopy("content://a/big", 5000));
+        assertNull(inbox.localCopy("content://a/missing", 5000));
+        assertNull(inbox.metadata("content://a/missing", 0));
+        assertNull(inbox.localCopy("content://never/shared", 0));
+        assertEquals(0, inbox.copiedBytes());
+
+        String json = inbox.toJson(inbox.drain());
+        assertTrue(json, json.contains("{\"uri\":\"content://a/missing\",\"name\":null,\"size\":-1,\"mime\":null,\"local\":false}"));
+        inbox.shutdown();
+    }
+
+    @Test
+    public void clearsCopiesFromThePreviousProcess() throws Exception {
+        File dir = tmp.newFolder();
+        File stale = new File(dir, "1.bin");
+        Files.write(stale.toPath(), new byte[]{1, 2, 3});
+        new ShareInbox(new FakeSource(), dir, 1024, Runnable::run).shutdown();
+        assertFalse(stale.exists());
+    }
+}
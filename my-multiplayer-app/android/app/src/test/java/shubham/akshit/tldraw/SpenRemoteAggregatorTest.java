@@ -0,0 +1,208 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SpenRemoteAggregatorTest {
+
+    /** Stands in for the SDK's unit manager: the test plays events through it. */
+    private static class FakeUnits implements SpenUnits {
+        Listener listener;
+        boolean airMotion;
+
+        @Override
+        public boolean hasAirMotion() {
+            return true;
+        }
+
+        @Override
+        public void register(Listener listener, boolean airMotion) {
+            this.listener = listener;
+            this.airMotion = airMotion;
+        }
+
+        @Override
+        public void unregister() {
+            listener = null;
+        }
+
+        void button(int action, long t) {
+            listener.onButton(action, t);
+        }
+
+        void motion(float dx, float dy, long t) {
+            if (airMotion) listener.onAirMotion(dx, dy, t);
+        }
+
+        void press(long down, long up) {
+            button(ACTION_DOWN, down);
+            button(ACTION_UP, up);
+        }
+    }
+
+    private int wakeups;
+    private final SpenRemoteAggregator aggregator = new SpenRemoteAggregator(() -> wakeups++);
+    private final FakeUnits units = new FakeUnits();
+
+    {
+        units.register(aggregator, true);
+    }
+
+    @Test
+    public void motionIsSummedIntoOneBatchPerFlush() {
+        for (int i = 0; i < 200; i++) units.motion(0.01f, -0.02f, 1000 + i);
+        assertEquals(1, wakeups);
+
+        SpenRemoteAggregator.Batch batch = aggregator.flush(1200);
+        assertNotNull(batch);
+        assertEquals(200, batch.motionSamples);
+        assertEquals(2f, batch.motionDx, 1e-4);
+        assertEquals(-4f, batch.motionDy, 1e-4);
+        assertEquals(1000, batch.motionFirstMs);
+        assertEquals(1199, batch.motionLastMs);
+        assertEquals(0, batch.buttonCount);
+        assertNull(aggregator.flush(1216));
+        assertEquals(200, aggregator.samplesIn());
+    }
+
+    @Test
+    public void rateCapHoldsMotionBack() {
+        aggregator.setMaxRate(20);
+        units.motion(1, 0, 0);
+        assertNotNull(aggregator.flush(100));
+        units.motion(1, 0, 110);
+        // 16ms frames: nothing until 50ms after the last motion batch
+        assertNull(aggregator.flush(116));
+        assertNull(aggregator.flush(132));
+        assertTrue(aggregator.hasPending());
+        units.motion(1, 0, 140);
+        SpenRemoteAggregator.Batch batch = aggregator.flush(150);
+        assertNotNull(batch);
+        assertEquals(2, batch.motionSamples);
+        assertFalse(aggregator.hasPending());
+    }
+
+    @Test
+    public void buttonsAreNotHeldBackByTheRateCap() {
+        aggregator.setMaxRate(1);
+        units.motion(1, 0, 0);
+        assertNotNull(aggregator.flush(0));
+        units.button(SpenUnits.ACTION_DOWN, 10);
+        SpenRemoteAggregator.Batch batch = aggregator.flush(16);
+        assertNotNull(batch);
+        assertEquals(1, batch.buttonCount);
+        assertEquals(SpenUnits.ACTION_DOWN, batch.buttonActions[0]);
+    }
+
+    @Test
+    public void pressBecomesOneGesture() {
+        units.press(0, 120);
+        SpenRemoteAggregator.Batch batch = aggregator.flush(130);
+        assertEquals(2, batch.buttonCount);
+        assertEquals(SpenUnits.ACTION_UP, batch.buttonActions[1]);
+        // The click waits out the double-click window
+        assertEquals(0, batch.gestureCount);
+        assertTrue(aggregator.hasPending());
+        assertNull(aggregator.flush(120 + SpenRemoteAggregator.DOUBLE_CLICK_MS));
+        batch = aggregator.flush(121 + SpenRemoteAggregator.DOUBLE_CLICK_MS);
+        assertEquals(0, batch.buttonCount);
+        assertEquals(1, batch.gestureCount);
+        assertEquals(SpenRemoteAggregator.Gesture.CLICK, batch.gestures[0]);
+        assertEquals(120, batch.gestureDurations[0]);
+        assertFalse(aggregator.hasPending());
+
+        units.press(1000, 1000 + SpenRemoteAggregator.LONG_PRESS_MS);
+        assertEquals(SpenRemoteAggregator.Gesture.LONG_PRESS, aggregator.flush(2000).gestures[0]);
+    }
+
+    @Test
+    public void secondQuickClickIsADoubleClick() {
+        units.press(0, 80);
+        units.press(200, 280);
+        units.press(400, 480);
+        SpenRemoteAggregator.Batch batch = aggregator.flush(500);
+        // No CLICK ahead of the DOUBLE_CLICK; the third click starts a new pair
+        assertEquals(1, batch.gestureCount);
+        assertEquals(SpenRemoteAggregator.Gesture.DOUBLE_CLICK, batch.gestures[0]);
+        batch = aggregator.flush(800);
+        assertEquals(1, batch.gestureCount);
+        assertEquals(SpenRemoteAggregator.Gesture.CLICK, batch.gestures[0]);
+    }
+
+    @Test
+    public void heldClickGoesOutBeforeTheNextGesture() {
+        // Second press too late for a double click
+        units.press(0, 80);
+        units.press(500, 560);
+        SpenRemoteAggregator.Batch batch = aggregator.flush(570);
+        assertEquals(1, batch.gestureCount);
+        assertEquals(SpenRemoteAggregator.Gesture.CLICK, batch.gestures[0]);
+        assertEquals(80, batch.gestureDurations[0]);
+
+        // A swipe inside the window does not pair with the click
+        units.press(1000, 1050);
+        units.button(SpenUnits.ACTION_DOWN, 1100);
+        for (int i = 0; i < 50; i++) units.motion(0.05f, 0, 1100 + i);
+        units.button(SpenUnits.ACTION_UP, 1160);
+        batch = aggregator.flush(1170);
+        assertEquals(3, batch.gestureCount);
+        assertEquals(SpenRemoteAggregator.Gesture.CLICK, batch.gestures[0]);
+        assertEquals(SpenRemoteAggregator.Gesture.CLICK, batch.gestures[1]);
+        assertEquals(SpenRemoteAggregator.Gesture.SWIPE_RIGHT, batch.gestures[2]);
+    }
+
+    @Test
+    public void motionDuringAPressIsASwipeNotAStream() {
+        units.button(SpenUnits.ACTION_DOWN, 0);
+        for (int i = 0; i < 50; i++) units.motion(-0.05f, 0.01f, i);
+        units.button(SpenUnits.ACTION_UP, 60);
+        SpenRemoteAggregator.Batch batch = aggregator.flush(70);
+        assertFalse(batch.hasMotion());
+        assertEquals(1, batch.gestureCount);
+        assertEquals(SpenRemoteAggregator.Gesture.SWIPE_LEFT, batch.gestures[0]);
+        assertEquals(-2.5f, batch.gestureDx[0], 1e-4);
+
+        units.button(SpenUnits.ACTION_DOWN, 1000);
+        for (int i = 0; i < 50; i++) units.motion(0.001f, 0.05f, 1000 + i);
+        units.button(SpenUnits.ACTION_UP, 1060);
+        assertEquals(SpenRemoteAggregator.Gesture.SWIPE_DOWN, aggregator.flush(1070).gestures[0]);
+    }
+
+    @Test
+    public void unmatchedAndRepeatedTransitionsAreIgnored() {
+        // Registered mid-press: the up has no down
+        units.button(SpenUnits.ACTION_UP, 0);
+        units.button(SpenUnits.ACTION_DOWN, 10);
+        units.button(SpenUnits.ACTION_DOWN, 20);
+        SpenRemoteAggregator.Batch batch = aggregator.flush(30);
+        assertEquals(1, batch.buttonCount);
+        assertEquals(0, batch.gestureCount);
+    }
+
+    @Test
+    public void motionOffDropsTheStreamButKeepsGestures() {
+        units.register(aggregator, false);
+        aggregator.setStreamMotion(false);
+        units.motion(1, 1, 0);
+        assertNull(aggregator.flush(10));
+        units.press(20, 60);
+        assertEquals(0, aggregator.flush(70).gestureCount);
+        assertEquals(SpenRemoteAggregator.Gesture.CLICK, aggregator.flush(400).gestures[0]);
+    }
+
+    @Test
+    public void batchesAreReusedAndCleared() {
+        units.motion(1, 0, 0);
+        units.press(0, 10);
+        SpenRemoteAggregator.Batch first = aggregator.flush(20);
+        units.motion(1, 0, 40);
+        SpenRemoteAggregator.Batch second = aggregator.flush(100);
+        assertNotSame(first, second);
+        assertEquals(0, second.buttonCount);
+        assertEquals(0, second.gestureCount);
+        assertEquals(1, second.motionSamples);
+        units.motion(1, 0, 140);
+        assertSame(first, aggregator.flush(200));
+    }
+}
@@ -0,0 +1,105 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class StartupTimelineTest {
+
+    private static final long MS = 1_000_000;
+
+    private static final class FakeClock {
+        long nanos;
+
+        void advanceMs(long ms) {
+            nanos += ms * MS;
+        }
+    }
+
+    private static final class RecordingTracer implements StartupTimeline.Tracer {
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void begin(String name) {
+            calls.add("begin " + name);
+        }
+
+        @Override
+        public void end() {
+            calls.add("end");
+        }
+    }
+
+    @Test
+    public void phasesAreRelativeToProcessStartAndTraced() {
+        FakeClock clock = new FakeClock();
+        clock.nanos = 1_000 * MS;
+        RecordingTracer tracer = new RecordingTracer();
+        // Process started 200 ms before the activity
+        StartupTimeline timeline = new StartupTimeline(tracer, () -> clock.nanos, 800 * MS, true);
+
+        StartupTimeline.Section outer = timeline.section("startup.bridge");
+        clock.advanceMs(30);
+        StartupTimeline.Section inner = timeline.section("startup.webView");
+        clock.advanceMs(120);
+        inner.close();
+        clock.advanceMs(10);
+        outer.close();
+        // A second close is a no-op
+        outer.close();
+        assertEquals(Arrays.asList("begin startup.bridge", "begin startup.webView", "end", "end"), tracer.calls);
+
+        String thread = Thread.currentThread().getName();
+        // Completion order: the inner phase closes first
+        assertEquals("{\"cold\":true,\"info\":{},\"marks\":{},\"phases\":["
+                + "{\"name\":\"startup.webView\",\"thread\":\"" + thread + "\",\"startMs\":230,\"durationMs\":120},"
+                + "{\"name\":\"startup.bridge\",\"thread\":\"" + thread + "\",\"startMs\":200,\"durationMs\":160}]}",
+                timeline.toJson());
+    }
+
+    @Test
+    public void closingTwiceRecordsOnce() {
+        FakeClock clock = new FakeClock();
+        RecordingTracer tracer = new RecordingTracer();
+        StartupTimeline timeline = new StartupTimeline(tracer, () -> clock.nanos, 0, true);
+        StartupTimeline.Section section = timeline.section("startup.prefs");
+        section.close();
+        section.close();
+        assertEquals(2, tracer.calls.size());
+        String json = timeline.toJson();
+        assertEquals(json.indexOf("startup.prefs"), json.lastIndexOf("startup.prefs"));
+    }
+
+    @Test
+    public void marksKeepTheirFirstTime() {
+        FakeClock clock = new FakeClock();
+        StartupTimeline timeline = new StartupTimeline(StartupTimeline.NO_TRACE, () -> clock.nanos, 0, false);
+        assertEquals(-1, timeline.millisTo("interactive"));
+
+        clock.advanceMs(900);
+        assertTrue(timeline.mark("interactive"));
+        clock.advanceMs(5_000);
+        // A page reload reports the milestone again; the cold-start time stays
+        assertFalse(timeline.mark("interactive"));
+        assertEquals(900, timeline.millisTo("interactive"));
+        assertTrue(timeline.hasMark("interactive"));
+        assertFalse(timeline.isCold());
+    }
+
+    @Test
+    public void jsonKeepsMarkOrderAndEscapesInfo() {
+        FakeClock clock = new FakeClock();
+        StartupTimeline timeline = new StartupTimeline(StartupTimeline.NO_TRACE, () -> clock.nanos, 0, true);
+        timeline.put("appVersion", "1.0 \"beta\"");
+        clock.advanceMs(5);
+        timeline.mark("activityCreate");
+        clock.advanceMs(400);
+        timeline.mark("firstFrame");
+
+        assertEquals("{\"cold\":true,\"info\":{\"appVersion\":\"1.0 \\\"beta\\\"\"},"
+                + "\"marks\":{\"activityCreate\":5,\"firstFrame\":405},\"phases\":[]}", timeline.toJson());
+    }
+}
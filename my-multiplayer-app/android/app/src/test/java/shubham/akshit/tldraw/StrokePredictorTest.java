@@ -0,0 +1,93 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class StrokePredictorTest {
+
+    // 240 Hz digitizer
+    private static final float SAMPLE_MS = 1000f / 240f;
+
+    @Test
+    public void constantVelocityIsPredictedExactly() {
+        StrokePredictor predictor = new StrokePredictor(16, 4, 0.5f);
+        for (int i = 0; i < 100; i++) {
+            float t = i * SAMPLE_MS;
+            predictor.addSample(10 + 0.5f * t, 20 - 0.25f * t, t);
+        }
+        float[] out = new float[8];
+        assertEquals(4, predictor.predict(out));
+
+        float lastT = 99 * SAMPLE_MS;
+        float expectedX = 10 + 0.5f * (lastT + 16);
+        float expectedY = 20 - 0.25f * (lastT + 16);
+        assertEquals(expectedX, out[6], 0.05f);
+        assertEquals(expectedY, out[7], 0.05f);
+        assertTrue(predictor.meanError() < 0.05);
+    }
+
+    @Test
+    public void circleTraceBeatsHoldingTheLastPoint() {
+        float horizon = 16f;
+        StrokePredictor predictor = new StrokePredictor(horizon, 1, 0.6f);
+        float[] out = new float[2];
+        double radius = 200;
+        double omega = 2 * Math.PI / 1000.0; // one revolution per second
+
+        for (int i = 0; i < 480; i++) {
+            float t = i * SAMPLE_MS;
+            predictor.addSample((float) (radius * Math.cos(omega * t)), (float) (radius * Math.sin(omega * t)), t);
+            predictor.predict(out);
+        }
+
+        // Holding the last point is off by the chord the pen covers within the horizon
+        double holdError = 2 * radius * Math.sin(omega * horizon / 2);
+        assertTrue(predictor.evaluatedPredictions() > 400);
+        assertTrue("mean " + predictor.meanError() + " vs hold " + holdError,
+                predictor.meanError() < holdError * 0.25);
+    }
+
+    @Test
+    public void noisyRecordedTraceStaysBounded() {
+        // Deterministic jitter on a handwriting-like curve
+        java.util.Random random = new java.util.Random(42);
+        StrokePredictor predictor = new StrokePredictor(12, 2, 0.4f);
+        float[] out = new float[4];
+        for (int i = 0; i < 600; i++) {
+            float t = i * SAMPLE_MS;
+            float x = (float) (t * 0.3 + 30 * Math.sin(t / 80.0)) + (float) random.nextGaussian() * 0.3f;
+            float y = (float) (40 * Math.sin(t / 45.0)) + (float) random.nextGaussian() * 0.3f;
+            predictor.addSample(x, y, t);
+            predictor.predict(out);
+        }
+        assertTrue("mean " + predictor.meanError(), predictor.meanError() < 3.0);
+    }
+
+    @Test
+    public void zeroHorizonDisablesPrediction() {
+        StrokePredictor predictor = new StrokePredictor(0, 2, 0.5f);
+        predictor.addSample(0, 0, 0);
+        predictor.addSample(1, 1, SAMPLE_MS);
+        predictor.addSample(2, 2, 2 * SAMPLE_MS);
+        assertEquals(0, predictor.predict(new float[4]));
+    }
+
+    @Test
+    public void longGapRestartsMotionEstimate() {
+        StrokePredictor predictor = new StrokePredictor(10, 1, 0.5f);
+        float[] out = new float[2];
+        predictor.addSample(0, 0, 0);
+        predictor.addSample(5, 0, SAMPLE_MS);
+        assertEquals(1, predictor.predict(out));
+
+        // Pen paused: a single sample after the gap is not enough to extrapolate
+        predictor.reset();
+        predictor.addSample(100, 100, 500);
+        assertEquals(0, predictor.predict(out));
+        predictor.addSample(100, 101, 500 + SAMPLE_MS);
+        assertEquals(1, predictor.predict(out));
+        assertEquals(100, out[0], 0.01f);
+        assertTrue(out[1] > 101);
+    }
+}
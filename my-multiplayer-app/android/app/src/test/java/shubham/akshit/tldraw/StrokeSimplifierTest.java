@@ -0,0 +1,107 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class StrokeSimplifierTest {
+
+    private static final int S = StrokeSimplifier.STRIDE;
+
+    private static float[] handwriting(int count, long seed) {
+        Random random = new Random(seed);
+        float[] pts = new float[count * S];
+        for (int i = 0; i < count; i++) {
+            double t = i * 0.02;
+            pts[i * S] = (float) (t * 40 + 15 * Math.sin(t * 3) + random.nextGaussian() * 0.2);
+            pts[i * S + 1] = (float) (25 * Math.sin(t * 5) + random.nextGaussian() * 0.2);
+            pts[i * S + 2] = (float) (0.3 + 0.6 * random.nextDouble());
+        }
+        return pts;
+    }
+
+    // Distance from point i of pts to the nearest segment of the simplified polyline
+    private static float distanceToPolyline(float[] pts, int i, float[] line, int lineCount) {
+        float best = Float.MAX_VALUE;
+        float[] tmp = new float[3 * S];
+        System.arraycopy(pts, i * S, tmp, 0, S);
+        for (int k = 0; k + 1 < lineCount; k++) {
+            System.arraycopy(line, k * S, tmp, S, S);
+            System.arraycopy(line, (k + 1) * S, tmp, 2 * S, S);
+            best = Math.min(best, (float) Math.sqrt(StrokeSimplifier.segmentDistanceSq(tmp, 0, 1, 2)));
+        }
+        return best;
+    }
+
+    @Test
+    public void everyInputPointStaysWithinTolerance() {
+        for (float tolerance : new float[]{0.25f, 0.5f, 1f, 2f}) {
+            float[] in = handwriting(2000, 7);
+            float[] out = new float[in.length];
+            StrokeSimplifier simplifier = new StrokeSimplifier(tolerance, 0f);
+            int kept = simplifier.simplify(in, 2000, out);
+
+            assertTrue(kept < 2000);
+            for (int i = 0; i < 2000; i++) {
+                assertTrue("point " + i + " at tolerance " + tolerance,
+                        distanceToPolyline(in, i, out, kept) <= tolerance + 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void endpointsAndPressureArePreserved() {
+        float[] in = handwriting(500, 3);
+        float[] out = new float[in.length];
+        int kept = new StrokeSimplifier(1f, 0.5f).simplify(in, 500, out);
+
+        assertEquals(in[0], out[0], 0f);
+        assertEquals(in[1], out[1], 0f);
+        assertEquals(in[499 * S], out[(kept - 1) * S], 0f);
+        assertEquals(in[499 * S + 1], out[(kept - 1) * S + 1], 0f);
+        for (int k = 0; k < kept; k++) {
+            float p = out[k * S + 2];
+            assertTrue(p >= 0.3f && p <= 0.9f);
+        }
+    }
+
+    @Test
+    public void smoothingDisplacementIsBounded() {
+        float[] in = handwriting(300, 11);
+        float[] out = new float[in.length];
+        float smoothing = 0.4f;
+        // Zero tolerance keeps every non-collinear point so displacement can be compared index by index
+        int kept = new StrokeSimplifier(0f, smoothing).simplify(in, 300, out);
+        assertEquals(300, kept);
+        for (int i = 1; i < 299; i++) {
+            float reach = Math.max(
+                    (float) Math.hypot(in[(i - 1) * S] - in[i * S], in[(i - 1) * S + 1] - in[i * S + 1]),
+                    (float) Math.hypot(in[(i + 1) * S] - in[i * S], in[(i + 1) * S + 1] - in[i * S + 1]));
+            float moved = (float) Math.hypot(out[i * S] - in[i * S], out[i * S + 1] - in[i * S + 1]);
+            assertTrue("point " + i, moved <= smoothing * reach + 1e-4f);
+        }
+    }
+
+    @Test
+    public void straightLineCollapsesToEndpoints() {
+        float[] in = new float[100 * S];
+        for (int i = 0; i < 100; i++) {
+            in[i * S] = i;
+            in[i * S + 1] = 2 * i;
+            in[i * S + 2] = 1;
+        }
+        StrokeSimplifier simplifier = new StrokeSimplifier(0.1f, 0.3f);
+        float[] out = new float[in.length];
+        assertEquals(2, simplifier.simplify(in, 100, out));
+        assertEquals(0.98, simplifier.reductionRatio(), 1e-9);
+    }
+
+    @Test
+    public void shortStrokesPassThrough() {
+        float[] in = {1, 2, 0.5f, 3, 4, 0.6f};
+        float[] out = new float[6];
+        assertEquals(2, new StrokeSimplifier(5f, 1f).simplify(in, 2, out));
+        assertArrayEquals(in, out, 0f);
+    }
+}
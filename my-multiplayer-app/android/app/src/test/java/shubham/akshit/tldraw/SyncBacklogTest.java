@@ -0,0 +1,95 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class SyncBacklogTest {
+
+    private static String update(int page, long timestamp, String... items) {
+        return "{\"type\":\"state-update\",\"pageIdx\":" + page + ",\"history\":[" + String.join(",", items)
+                + "],\"timestamp\":" + timestamp + ",\"metadata\":{\"name\":\"n" + timestamp + "\"}}";
+    }
+
+    private static String item(String id, long lastMod) {
+        return "{\"id\":\"" + id + "\",\"lastMod\":" + lastMod + "}";
+    }
+
+    private static String fill(char c, int n) {
+        char[] chars = new char[n];
+        java.util.Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parse(String json) {
+        return (Map<String, Object>) ColorRmJson.parse(json);
+    }
+
+    @Test
+    public void updatesOfOnePageMergeLikeLiveSync() {
+        SyncBacklog backlog = new SyncBacklog(1 << 20);
+        backlog.add(update(0, 100, item("a", 10), item("b", 10)));
+        backlog.add(update(0, 200, item("a", 50), item("c", 60)));
+        // Older edit of b from another client loses; the deletion of c at the same time wins
+        backlog.add(update(0, 300, item("b", 5), "{\"id\":\"c\",\"lastMod\":60,\"deleted\":true}"));
+
+        List<String> drained = backlog.drain();
+        assertEquals(1, drained.size());
+        assertEquals("{\"type\":\"state-update\",\"pageIdx\":0,\"history\":["
+                + "{\"id\":\"a\",\"lastMod\":50},{\"id\":\"b\",\"lastMod\":10},{\"id\":\"c\",\"lastMod\":60,\"deleted\":true}"
+                + "],\"timestamp\":300,\"metadata\":{\"name\":\"n300\"}}", drained.get(0));
+        assertEquals(3, backlog.received());
+        assertEquals(2, backlog.coalesced());
+        assertTrue(backlog.isEmpty());
+    }
+
+    @Test
+    public void itemsWithoutLastModUseTheMessageTimestamp() {
+        Map<String, Object> merged = SyncBacklog.mergeStateUpdates(
+                parse(update(1, 100, "{\"id\":7,\"c\":\"old\"}")),
+                parse(update(1, 200, "{\"id\":7,\"c\":\"new\"}", "{\"tool\":\"anonymous\"}")));
+        assertEquals("[{\"id\":7,\"c\":\"new\"},{\"tool\":\"anonymous\"}]", ColorRmJson.write(merged.get("history")));
+    }
+
+    @Test
+    public void structureAndPresenceKeepOnlyTheNewestInFirstPosition() {
+        SyncBacklog backlog = new SyncBacklog(1 << 20);
+        backlog.add("{\"type\":\"page-structure\",\"pageCount\":2}");
+        backlog.add("{\"type\":\"presence\",\"clientId\":\"x\",\"pageIdx\":0}");
+        backlog.add(update(1, 100, item("a", 1)));
+        backlog.add("{\"type\":\"presence\",\"clientId\":\"y\",\"pageIdx\":1}");
+        backlog.add("{\"type\":\"page-structure\",\"pageCount\":3}");
+        backlog.add("{\"type\":\"presence\",\"clientId\":\"x\",\"pageIdx\":2}");
+        backlog.add("{\"type\":\"chat\",\"text\":\"hi\"}");
+        backlog.add("{\"type\":\"chat\",\"text\":\"hi\"}");
+        backlog.add("not json");
+
+        List<String> drained = backlog.drain();
+        assertEquals(7, drained.size());
+        assertEquals("{\"type\":\"page-structure\",\"pageCount\":3}", drained.get(0));
+        assertEquals("{\"type\":\"presence\",\"clientId\":\"x\",\"pageIdx\":2}", drained.get(1));
+        assertEquals(update(1, 100, item("a", 1)), drained.get(2));
+        assertEquals("{\"type\":\"presence\",\"clientId\":\"y\",\"pageIdx\":1}", drained.get(3));
+        assertEquals("{\"type\":\"chat\",\"text\":\"hi\"}", drained.get(4));
+        assertEquals("{\"type\":\"chat\",\"text\":\"hi\"}", drained.get(5));
+        assertEquals("not json", drained.get(6));
+    }
+
+    @Test
+    public void overflowDropsEverythingUntilDrained() {
+        SyncBacklog backlog = new SyncBacklog(100);
+        assertTrue(backlog.add("{\"type\":\"chat\",\"text\":\"" + fill('x', 50) + "\"}"));
+        assertFalse(backlog.add("{\"type\":\"chat\",\"text\":\"" + fill('y', 50) + "\"}"));
+        assertFalse(backlog.add("{\"type\":\"chat\"}"));
+        assertTrue(backlog.overflowed());
+        assertFalse(backlog.isEmpty());
+        assertEquals(0, backlog.size());
+
+        assertTrue(backlog.drain().isEmpty());
+        assertFalse(backlog.overflowed());
+        assertTrue(backlog.add("{\"type\":\"chat\"}"));
+    }
+}
@@ -0,0 +1,380 @@
+package shubham.akshit.tldraw;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyncConnectionTest {
+
+    // Stand-in for the Yjs Durable Object's WebSocket: permessage-deflate with context takeover
+    private static final class FakeSyncServer {
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        final List<Boolean> receivedCompressed = new CopyOnWriteArrayList<>();
+        final List<Integer> receivedWireBytes = new CopyOnWriteArrayList<>();
+        volatile boolean deflate = true;
+        volatile boolean answerPings = true;
+        volatile boolean refuse;
+        volatile int pingsSeen;
+        volatile int connections;
+        volatile String closeCode;
+        private volatile Socket current;
+        private Deflater deflater;
+        ServerSocket server;
+
+        URI start() throws IOException {
+            server = new ServerSocket(0, 50, java.net.InetAddress.getLoopbackAddress());
+            Thread accept = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket socket = server.accept();
+                        new Thread(() -> serve(socket)).start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            accept.setDaemon(true);
+            accept.start();
+            return URI.create("ws://127.0.0.1:" + server.getLocalPort() + "/yjs/yjs_owner_project");
+        }
+
+        private void serve(Socket socket) {
+            try (Socket s = socket) {
+                InputStream in = s.getInputStream();
+                String key = null;
+                boolean offered = false;
+                for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                    if (line.startsWith("Sec-WebSocket-Key:")) key = line.substring(18).trim();
+                    if (line.startsWith("Sec-WebSocket-Extensions:") && line.contains("permessage-deflate")) offered = true;
+                }
+                OutputStream out = s.getOutputStream();
+                if (refuse) {
+                    out.write("HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                    return;
+                }
+                boolean compress = offered && deflate;
+                // Ready to send before the client can see the 101
+                synchronized (this) {
+                    deflater = compress ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+                    current = s;
+                    connections++;
+                }
+                out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                        + "Sec-WebSocket-Accept: " + SyncSocket.acceptFor(key) + "\r\n"
+                        + (compress ? "Sec-WebSocket-Extensions: permessage-deflate\r\n" : "") + "\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                Inflater inflater = new Inflater(true);
+                while (true) {
+                    int b0 = in.read();
+                    if (b0 < 0) return;
+                    int b1 = in.read();
+                    int length = b1 & 0x7f;
+                    if (length == 126) length = (in.read() << 8) | in.read();
+                    byte[] mask = readFully(in, 4);
+                    byte[] payload = readFully(in, length);
+                    for (int i = 0; i < length; i++) payload[i] ^= mask[i & 3];
+                    int opcode = b0 & 0x0f;
+                    if (opcode == SyncSocket.OP_PING) {
+                        pingsSeen++;
+                        if (answerPings) write(s, 0x80 | SyncSocket.OP_PONG, payload);
+                    } else if (opcode == SyncSocket.OP_CLOSE) {
+                        closeCode = String.valueOf(((payload[0] & 0xff) << 8) | (payload[1] & 0xff));
+                        write(s, 0x80 | SyncSocket.OP_CLOSE, payload);
+                        return;
+                    } else if (opcode == SyncSocket.OP_TEXT) {
+                        boolean rsv1 = (b0 & 0x40) != 0;
+                        byte[] plain = payload;
+                        if (rsv1) {
+                            byte[] input = new byte[length + 4];
+                            System.arraycopy(payload, 0, input, 0, length);
+                            input[length + 2] = (byte) 0xff;
+                            input[length + 3] = (byte) 0xff;
+                            inflater.setInput(input);
+                            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                            byte[] chunk = new byte[4096];
+                            int n;
+                            while ((n = inflater.inflate(chunk)) > 0) bytes.write(chunk, 0, n);
+                            plain = bytes.toByteArray();
+                        }
+                        receivedCompressed.add(rsv1);
+                        receivedWireBytes.add(length);
+                        received.add(new String(plain, StandardCharsets.UTF_8));
+                    }
+                }
+            } catch (Exception e) {
+                // Dropped
+            }
+        }
+
+        synchronized void send(String text) throws IOException {
+            byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+            if (deflater == null) {
+                write(current, 0x80 | SyncSocket.OP_TEXT, plain);
+                return;
+            }
+            deflater.setInput(plain);
+            byte[] buffer = new byte[plain.length + 64];
+            int n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            byte[] payload = new byte[n - 4];
+            System.arraycopy(buffer, 0, payload, 0, n - 4);
+            write(current, 0x80 | 0x40 | SyncSocket.OP_TEXT, payload);
+        }
+
+        void drop() throws IOException {
+            current.close();
+        }
+
+        private static synchronized void write(Socket s, int b0, byte[] payload) throws IOException {
+            OutputStream out = s.getOutputStream();
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            frame.write(b0);
+            if (payload.length < 126) {
+                frame.write(payload.length);
+            } else {
+                frame.write(126);
+                frame.write(payload.length >> 8);
+                frame.write(payload.length);
+            }
+            frame.write(payload);
+            out.write(frame.toByteArray());
+            out.flush();
+        }
+
+        private static byte[] readFully(InputStream in, int n) throws IOException {
+            byte[] bytes = new byte[n];
+            int off = 0;
+            while (off < n) {
+                int r = in.read(bytes, off, n - off);
+                if (r < 0) throw new IOException("eof");
+                off += r;
+            }
+            return bytes;
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) throw new IOException("eof");
+                if (c != '\r') sb.append((char) c);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final class Events implements SyncConnection.Listener {
+        final BlockingQueue<String> seen = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onOpen(boolean reconnected, boolean deflate) {
+            seen.add("open reconnected=" + reconnected + " deflate=" + deflate);
+        }
+
+        @Override
+        public void onMessages(List<String> messages) {
+            seen.add("messages " + messages);
+        }
+
+        @Override
+        public void onResync() {
+            seen.add("resync");
+        }
+
+        @Override
+        public void onClosed(int code, String reason) {
+            seen.add("closed " + code);
+        }
+
+        String next() throws InterruptedException {
+            String event = seen.poll(5, TimeUnit.SECONDS);
+            assertNotNull("timed out waiting for a listener call", event);
+            return event;
+        }
+    }
+
+    private final FakeSyncServer server = new FakeSyncServer();
+    private final Events events = new Events();
+    private final List<Long> sleeps = new CopyOnWriteArrayList<>();
+    private ExecutorService readers;
+    private ExecutorService sender;
+    private URI uri;
+
+    @Before
+    public void setUp() throws Exception {
+        uri = server.start();
+        readers = Executors.newCachedThreadPool();
+        sender = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.server.close();
+        readers.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    private SyncConnection connect(int pingIntervalMs, long backlogBytes) {
+        SyncConnection connection = new SyncConnection(uri, null, readers, sender, sleeps::add,
+                events, pingIntervalMs, backlogBytes);
+        connection.start();
+        return connection;
+    }
+
+    private static String stroke(String id, long lastMod) {
+        return "{\"id\":\"" + id + "\",\"tool\":\"pen\",\"pts\":[[1,2],[3,4],[5,6],[7,8]],\"lastMod\":" + lastMod + "}";
+    }
+
+    private static String update(int page, long timestamp, String... items) {
+        return "{\"type\":\"state-update\",\"pageIdx\":" + page + ",\"history\":[" + String.join(",", items)
+                + "],\"timestamp\":" + timestamp + "}";
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void deflateCompressesBothWaysAcrossMessages() throws Exception {
+        try (SyncSocket socket = SyncSocket.connect(uri, null, 2_000, 2_000, true)) {
+            assertTrue(socket.isDeflateEnabled());
+            String big = update(0, 1, stroke("a", 1), stroke("b", 2), stroke("c", 3), stroke("d", 4));
+            assertTrue(socket.sendText(big) < big.length() / 2);
+            socket.sendText(big);
+            socket.sendText("{\"type\":\"x\"}");
+            assertEquals(big, server.received.poll(5, TimeUnit.SECONDS));
+            assertEquals(big, server.received.poll(5, TimeUnit.SECONDS));
+            assertEquals("{\"type\":\"x\"}", server.received.poll(5, TimeUnit.SECONDS));
+            // The repeat compresses to almost nothing with the shared context; short messages go as they are
+            assertTrue(server.receivedWireBytes.get(1) < server.receivedWireBytes.get(0) / 2);
+            assertEquals(java.util.Arrays.asList(true, true, false), server.receivedCompressed);
+
+            server.send(big);
+            server.send(big);
+            assertEquals(big, socket.readMessage().text);
+            SyncSocket.Message repeat = socket.readMessage();
+            assertEquals(big, repeat.text);
+            assertTrue(repeat.wireBytes < big.length() / 4);
+        }
+    }
+
+    @Test
+    public void plainConnectionWhenTheServerDeclinesDeflate() throws Exception {
+        server.deflate = false;
+        try (SyncSocket socket = SyncSocket.connect(uri, null, 2_000, 2_000, true)) {
+            assertFalse(socket.isDeflateEnabled());
+            String big = update(0, 1, stroke("a", 1), stroke("b", 2));
+            assertEquals(big.length(), socket.sendText(big));
+            assertEquals(big, server.received.poll(5, TimeUnit.SECONDS));
+            assertEquals(java.util.Arrays.asList(false), server.receivedCompressed);
+        }
+    }
+
+    @Test
+    public void messagesWhilePausedArriveAsOneMergedBatch() throws Exception {
+        SyncConnection connection = connect(10_000, 1 << 20);
+        assertEquals("open reconnected=false deflate=true", events.next());
+        server.send("{\"type\":\"chat\",\"n\":0}");
+        assertEquals("messages [{\"type\":\"chat\",\"n\":0}]", events.next());
+
+        connection.setPaused(true);
+        server.send(update(0, 100, stroke("a", 1), stroke("b", 1)));
+        server.send("{\"type\":\"presence\",\"clientId\":\"x\",\"pageIdx\":0}");
+        server.send(update(0, 200, stroke("a", 5), stroke("c", 5)));
+        server.send("{\"type\":\"presence\",\"clientId\":\"x\",\"pageIdx\":1}");
+        waitFor(() -> connection.statsJson().contains("\"messagesIn\":5"));
+        assertNull(events.seen.poll(50, TimeUnit.MILLISECONDS));
+
+        connection.setPaused(false);
+        assertEquals("messages [" + update(0, 200, stroke("a", 5), stroke("b", 1), stroke("c", 5))
+                + ", {\"type\":\"presence\",\"clientId\":\"x\",\"pageIdx\":1}]", events.next());
+        assertTrue(connection.statsJson().contains("\"held\":4,\"merged\":2,\"resyncs\":0"));
+        connection.close();
+        assertEquals("closed 1000", events.next());
+        waitFor(() -> "1000".equals(server.closeCode));
+    }
+
+    @Test
+    public void tooMuchWhilePausedAsksForAResync() throws Exception {
+        SyncConnection connection = connect(10_000, 64);
+        assertEquals("open reconnected=false deflate=true", events.next());
+        connection.setPaused(true);
+        server.send(update(0, 100, stroke("a", 1)));
+        waitFor(() -> connection.statsJson().contains("\"messagesIn\":1"));
+        connection.setPaused(false);
+        assertEquals("resync", events.next());
+        // Live again afterwards
+        server.send("{\"type\":\"chat\"}");
+        assertEquals("messages [{\"type\":\"chat\"}]", events.next());
+        connection.close();
+    }
+
+    @Test
+    public void sendsWhileDownWaitMergedUntilTheReconnect() throws Exception {
+        SyncConnection connection = connect(10_000, 1 << 20);
+        assertEquals("open reconnected=false deflate=true", events.next());
+
+        server.refuse = true;
+        server.drop();
+        waitFor(() -> connection.statsJson().contains("\"connected\":false"));
+        connection.send(update(2, 100, stroke("a", 1)));
+        connection.send(update(2, 200, stroke("b", 2)));
+        waitFor(() -> sleeps.size() >= 3);
+        assertTrue(server.received.isEmpty());
+
+        server.refuse = false;
+        assertEquals("open reconnected=true deflate=true", events.next());
+        assertEquals(update(2, 200, stroke("a", 1), stroke("b", 2)), server.received.poll(5, TimeUnit.SECONDS));
+        connection.send("{\"type\":\"presence\",\"clientId\":\"me\"}");
+        assertEquals("{\"type\":\"presence\",\"clientId\":\"me\"}", server.received.poll(5, TimeUnit.SECONDS));
+        assertTrue(connection.statsJson().contains("\"reconnects\":1"));
+        // Backoff grows with each refused attempt
+        assertTrue(sleeps.get(0) <= SyncConnection.BACKOFF_BASE_MS);
+        assertTrue(sleeps.get(1) >= SyncConnection.BACKOFF_BASE_MS / 2 && sleeps.get(1) <= SyncConnection.BACKOFF_BASE_MS);
+        assertTrue(sleeps.get(2) >= SyncConnection.BACKOFF_BASE_MS && sleeps.get(2) <= 2 * SyncConnection.BACKOFF_BASE_MS);
+        connection.close();
+    }
+
+    @Test
+    public void silenceIsPingedAndAnUnansweredPingReconnects() throws Exception {
+        SyncConnection connection = connect(100, 1 << 20);
+        assertEquals("open reconnected=false deflate=true", events.next());
+        waitFor(() -> server.pingsSeen >= 3);
+        assertEquals(1, server.connections);
+
+        server.answerPings = false;
+        assertEquals("open reconnected=true deflate=true", events.next());
+        assertEquals(2, server.connections);
+        connection.close();
+    }
+
+    @Test
+    public void neverOpenedGivesUpAfterMaxAttempts() throws Exception {
+        server.refuse = true;
+        connect(10_000, 1 << 20);
+        assertEquals("closed 1006", events.next());
+        assertEquals(SyncConnection.MAX_ATTEMPTS - 1, sleeps.size());
+    }
+}
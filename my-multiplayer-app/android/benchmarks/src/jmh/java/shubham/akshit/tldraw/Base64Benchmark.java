@@ -0,0 +1,67 @@
+package shubham.akshit.tldraw;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Bridge Base64 paths: readContentUri (whole file to one string) and appendFile
+ * (32 KB chunks from ColorRmStorage). The "buffered" and "allocating" variants
+ * follow the previous MainActivity code, with java.util.Base64 standing in for
+ * android.util.Base64 on the JVM.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class Base64Benchmark {
+
+    @Param({"32768", "1048576"})
+    public int size;
+
+    private byte[] data;
+    private String encoded;
+    private byte[] scratch;
+
+    @Setup
+    public void setUp() {
+        data = new byte[size];
+        new Random(1).nextBytes(data);
+        encoded = Base64.getEncoder().encodeToString(data);
+        scratch = new byte[Base64Codec.maxDecodedLength(encoded.length())];
+    }
+
+    @Benchmark
+    public String encodeStream() throws IOException {
+        InputStream in = new ByteArrayInputStream(data);
+        return Base64Codec.encode(in, in.available());
+    }
+
+    @Benchmark
+    public String encodeBuffered() throws IOException {
+        InputStream in = new ByteArrayInputStream(data);
+        ByteArrayOutputStream byteBuffer = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int len;
+        while ((len = in.read(buffer)) != -1) byteBuffer.write(buffer, 0, len);
+        return Base64.getEncoder().encodeToString(byteBuffer.toByteArray());
+    }
+
+    @Benchmark
+    public int decodeIntoScratch() {
+        return Base64Codec.decode(encoded, scratch, 0);
+    }
+
+    @Benchmark
+    public byte[] decodeAllocating() {
+        return Base64.getMimeDecoder().decode(encoded);
+    }
+}
@@ -0,0 +1,112 @@
+package shubham.akshit.tldraw;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A densely handwritten page (100-point pen strokes plus a few shapes) in the
+ * binary history encoding against its JSON form. Sizes are printed once per
+ * trial; throughput is per page.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColorRmBinaryBenchmark {
+
+    @Param({"200", "2000"})
+    public int strokes;
+
+    private List<Object> history;
+    private byte[] binary;
+    private String json;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random r = new Random(42);
+        String[] colors = {"#000000", "#1e40af", "#dc2626"};
+        history = new ArrayList<>();
+        double lastMod = 1.7e12;
+        for (int s = 0; s < strokes; s++) {
+            Map<String, Object> e = new LinkedHashMap<>();
+            lastMod += r.nextInt(2000);
+            e.put("id", lastMod + r.nextDouble());
+            e.put("lastMod", lastMod);
+            if (s % 50 == 49) {
+                e.put("tool", "shape");
+                e.put("shapeType", "rectangle");
+                e.put("x", r.nextDouble() * 1000);
+                e.put("y", r.nextDouble() * 1400);
+                e.put("w", r.nextDouble() * 300);
+                e.put("h", r.nextDouble() * 300);
+                e.put("borderColor", colors[r.nextInt(colors.length)]);
+                e.put("fillColor", "transparent");
+                e.put("borderSize", 2.0);
+                e.put("rotation", 0.0);
+            } else {
+                e.put("tool", s % 10 == 0 ? "highlighter" : "pen");
+                List<Object> pts = new ArrayList<>();
+                double x = r.nextDouble() * 1000;
+                double y = r.nextDouble() * 1400;
+                for (int i = 0; i < 100; i++) {
+                    x += r.nextGaussian() * 2;
+                    y += r.nextGaussian() * 2;
+                    Map<String, Object> p = new LinkedHashMap<>();
+                    p.put("x", x);
+                    p.put("y", y);
+                    pts.add(p);
+                }
+                e.put("pts", pts);
+                e.put("color", colors[r.nextInt(colors.length)]);
+                e.put("size", 3.0);
+            }
+            e.put("deleted", false);
+            history.add(e);
+        }
+        binary = ColorRmBinary.encode(history, ColorRmBinary.DEFAULT_SCALE);
+        json = ColorRmJson.write(history);
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        System.out.printf("%n%d strokes: json %d B (gzip %d B), binary %d B (gzip %d B)%n",
+                strokes, jsonBytes.length, gzipSize(jsonBytes), binary.length, gzipSize(binary));
+    }
+
+    private static int gzipSize(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return ColorRmBinary.encode(history, ColorRmBinary.DEFAULT_SCALE);
+    }
+
+    @Benchmark
+    public List<Object> decodeBinary() {
+        return ColorRmBinary.decode(binary);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return ColorRmJson.write(history).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object decodeJson() {
+        return ColorRmJson.parse(json);
+    }
+}
@@ -0,0 +1,80 @@
+package shubham.akshit.tldraw;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Escaping for shared text and URIs, and the URI array built for multi-file
+ * shares. The "chained" and "manual" variants are the code MainActivity used
+ * before, kept as the reference point.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsStringsBenchmark {
+
+    @Param({"uri", "sharedText"})
+    public String input;
+
+    @Param({"20"})
+    public int uriCount;
+
+    private String text;
+    private List<String> uris;
+
+    @Setup
+    public void setUp() {
+        text = "uri".equals(input)
+                ? "content://com.android.providers.media.documents/document/image%3A1000012345"
+                : "Check this out: \"Notes\" from today's lecture\nhttps://example.com/board?id=42\r\n";
+        uris = new ArrayList<>();
+        for (int i = 0; i < uriCount; i++) {
+            uris.add("content://com.android.providers.media.documents/document/image%3A10000" + i);
+        }
+    }
+
+    @Benchmark
+    public String escape() {
+        return JsStrings.escape(text);
+    }
+
+    @Benchmark
+    public String escapeChained() {
+        return text.replace("\\", "\\\\")
+                .replace("'", "\\'")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r");
+    }
+
+    @Benchmark
+    public String uriArray() {
+        return JsStrings.jsonArray(uris);
+    }
+
+    @Benchmark
+    public String uriArrayManual() {
+        StringBuilder jsonBuilder = new StringBuilder();
+        jsonBuilder.append("[");
+        for (int i = 0; i < uris.size(); i++) {
+            if (i > 0) jsonBuilder.append(",");
+            jsonBuilder.append("\"").append(escapeChainedOf(uris.get(i))).append("\"");
+        }
+        jsonBuilder.append("]");
+        return jsonBuilder.toString();
+    }
+
+    private static String escapeChainedOf(String s) {
+        return s.replace("\\", "\\\\")
+                .replace("'", "\\'")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r");
+    }
+}
@@ -0,0 +1,49 @@
+package shubham.akshit.tldraw;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Duplicate-name resolution for Downloads: a folder that already holds
+ * "Page.png" through "Page(n).png", exporting the same name again.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NameIndexBenchmark {
+
+    @Param({"10", "1000"})
+    public int existing;
+
+    private NameIndex index;
+
+    @Setup
+    public void setUp() {
+        List<String> names = new ArrayList<>();
+        names.add("Page.png");
+        for (int i = 1; i < existing; i++) names.add("Page(" + i + ").png");
+        index = new NameIndex();
+        index.seed(names);
+    }
+
+    // Claim then give the name back, so every call sees the same folder
+    @Benchmark
+    public String claimDuplicate() {
+        String name = index.claim("Page.png");
+        index.release(name);
+        return name;
+    }
+
+    @Benchmark
+    public String claimFresh() {
+        String name = index.claim("Board.pdf");
+        index.release(name);
+        return name;
+    }
+}
@@ -0,0 +1,46 @@
+package shubham.akshit.tldraw;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-event cost of the stylus side-button state machine from dispatchTouchEvent,
+ * over a stroke drawn with the button pressed halfway through.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StylusButtonBenchmark {
+
+    private static final int EVENTS = 256;
+    private static final int ACTION_MOVE = 2;
+
+    private final int[] actions = new int[EVENTS];
+    private final int[] buttons = new int[EVENTS];
+    private StylusButtonState state;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < EVENTS; i++) {
+            actions[i] = i == 0 ? StylusButtonState.ACTION_DOWN
+                    : i == EVENTS - 1 ? StylusButtonState.ACTION_UP : ACTION_MOVE;
+            buttons[i] = i >= EVENTS / 2 && i < EVENTS - 8 ? StylusButtonState.BUTTON_STYLUS_PRIMARY : 0;
+        }
+        state = new StylusButtonState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void stroke(Blackhole bh) {
+        for (int i = 0; i < EVENTS; i++) {
+            int result = state.onStylusEvent(actions[i], buttons[i]);
+            if ((result & StylusButtonState.REWRITE) != 0) bh.consume(state.forcedButtonState());
+            bh.consume(result);
+        }
+    }
+}
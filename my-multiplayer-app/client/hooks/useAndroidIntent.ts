@@ -1,5 +1,6 @@
 import { useEffect } from 'react'
 import { Editor } from 'tldraw'
+import { callNativeAsync, canCallNativeAsync } from '../utils/androidNative'
 
 export function useAndroidIntent(editor: Editor) {
     useEffect(() => {
@@ -7,10 +8,28 @@ export function useAndroidIntent(editor: Editor) {
 
         const convertUriToFileObject = async (uri: string): Promise<File | null> => {
             try {
-                // Priority: Try Android Native Interface for content:// URIs
+                // Priority: Stream content:// URIs from the native /_native/content route
+                const streamUrl = uri.startsWith('content://') ? window.AndroidNative?.getContentStreamUrl?.(uri) : null
+                if (streamUrl) {
+                    console.log("Streaming content URI through native route:", uri);
+                    const response = await fetch(streamUrl)
+                    if (response.ok) {
+                        // blob() lets the browser spool the body instead of holding a decoded copy in JS
+                        const blob = await response.blob()
+                        const fileName = window.AndroidNative?.getFileName?.(uri) || 'imported_file'
+                        const type = response.headers.get('Content-Type') || 'application/octet-stream'
+                        return new File([blob], fileName, { type })
+                    }
+                    console.warn("Native stream failed with status", response.status, "- falling back to Base64 read")
+                }
+
+                // Fallback: Base64 read through the Android Native Interface
                 if (uri.startsWith('content://') && window.AndroidNative && window.AndroidNative.readContentUri) {
                     console.log("Using AndroidNative to read content URI:", uri);
-                    const base64Data = window.AndroidNative.readContentUri(uri);
+                    // Off the JavaBridge thread when the async job surface is available
+                    const base64Data = canCallNativeAsync()
+                        ? await callNativeAsync('readContentUri', [uri])
+                        : window.AndroidNative.readContentUri(uri);
                     if (base64Data) {
                          const binaryString = atob(base64Data);
                          const bytes = new Uint8Array(binaryString.length);
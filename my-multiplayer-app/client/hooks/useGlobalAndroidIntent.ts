@@ -1,4 +1,5 @@
 import { useEffect } from 'react'
+import { relayNativeEvents, type PendingShare } from '../utils/androidNative'
 
 export function useGlobalAndroidIntent() {
     useEffect(() => {
@@ -52,6 +53,9 @@ export function useGlobalAndroidIntent() {
         window.handleSharedUrl = (url: string) => {
             handleUrl(url)
         }
+
+        // Native notifications over the message port once the handlers above exist
+        relayNativeEvents()
         
         // 1. Process JS-buffered items
         if (window.pendingFileUri) {
@@ -66,6 +70,23 @@ export function useGlobalAndroidIntent() {
             if (window.AndroidNative) {
                 console.log("[Global] AndroidNative interface found. Checking buffer...");
                 try {
+                    // Newer shells queue every share; bytes are usually already staged locally
+                    const drained = window.AndroidNative.drainPendingShares?.();
+                    if (drained !== undefined) {
+                        const shares: PendingShare[] = drained ? JSON.parse(drained) : [];
+                        shares.forEach((share) => {
+                            console.log('[Global] Found native pending share:', share.kind, share.seq);
+                            if (share.kind === 'text') {
+                                handleUrl(share.text);
+                            } else if (share.kind === 'files') {
+                                handleFiles(share.items.map((item) => item.uri));
+                            } else if (share.items.length > 0) {
+                                handleFile(share.items[0].uri);
+                            }
+                        });
+                        return;
+                    }
+
                     const pendingFile = window.AndroidNative.getPendingFileUri?.();
                     if (pendingFile) {
                         console.log('[Global] Found native pending file:', pendingFile);
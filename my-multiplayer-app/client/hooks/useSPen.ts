@@ -1,5 +1,6 @@
 import { useEffect, useRef } from 'react'
 import { Editor } from 'tldraw'
+import { configurePalmRejection } from '../utils/androidNative'
 
 export function useSPen(editor: Editor) {
     const previousToolRef = useRef<string>('draw')
@@ -51,6 +52,9 @@ export function useSPen(editor: Editor) {
     useEffect(() => {
         if (!editor) return
 
+        // Palms near the pen are dropped natively; a short grace keeps the finger-pans-after-pen switch below usable
+        configurePalmRejection({ enabled: true, graceMs: 150 })
+
         // 1. Independent Pointer State Tracker & Double Tap Detector
         const trackPointer = (e: PointerEvent) => {
             // TRACK PEN ACTIVITY
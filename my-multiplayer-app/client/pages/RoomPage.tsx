@@ -35,6 +35,7 @@ import { getEraserSettings } from '../utils/eraserUtils'
 import { EquationShapeUtil } from '../shapes/EquationShapeUtil'
 import { BackupMenuItem, DownloadMenuItem, RestoreMenuItem, RestoreFileHandler, PdfExportMenuItem, ImportSvgMenuItem } from '../components/BackupControl'
 import { AndroidIntentListener } from '../components/AndroidIntentListener'
+import { markStartup } from '../utils/androidNative'
 
 const customShapeUtils = [
     ...defaultShapeUtils.filter(u => u.type !== 'geo'),
@@ -296,6 +297,9 @@ export function RoomPage() {
                 components={components}
                 shapeUtils={customShapeUtils}
                 onMount={(editor) => {
+                    // The store has synced and the board accepts input: end of the shell's cold start
+                    markStartup('interactive')
+
                     // Expose editor to window for debugging
                     ;(window as any).editor = editor
 
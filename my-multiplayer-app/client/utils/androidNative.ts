@@ -0,0 +1,122 @@
+// Promise wrapper around AndroidNative.startJob: the native side runs the call on its
+// job pool and reports back once through window.__androidNativeJobDone.
+
+type PendingJob = { resolve: (value: string | null) => void; reject: (error: Error) => void }
+
+const pendingJobs = new Map<number, PendingJob>()
+
+function installJobCallback() {
+    if (window.__androidNativeJobDone) return
+    window.__androidNativeJobDone = (jobId: number, ok: boolean, result: string | null) => {
+        const job = pendingJobs.get(jobId)
+        if (!job) return
+        pendingJobs.delete(jobId)
+        if (ok) job.resolve(result)
+        else job.reject(new Error(result || 'Native job failed'))
+    }
+}
+
+export function canCallNativeAsync(): boolean {
+    return !!window.AndroidNative?.startJob
+}
+
+export function callNativeAsync(
+    method: string,
+    args: unknown[] = [],
+    { timeoutMs = 0, signal }: { timeoutMs?: number; signal?: AbortSignal } = {}
+): Promise<string | null> {
+    const native = window.AndroidNative
+    if (!native?.startJob) return Promise.reject(new Error('AndroidNative.startJob not available'))
+    installJobCallback()
+    return new Promise((resolve, reject) => {
+        const jobId = native.startJob!(method, JSON.stringify(args), timeoutMs)
+        pendingJobs.set(jobId, { resolve, reject })
+        signal?.addEventListener('abort', () => native.cancelJob?.(jobId), { once: true })
+    })
+}
+
+// Cold-start timeline kept by the shell (StartupTimeline.java); times are ms since process start
+export type StartupTimeline = {
+    cold: boolean
+    info: Record<string, string>
+    marks: Record<string, number>
+    phases: { name: string; thread: string; startMs: number; durationMs: number }[]
+}
+
+export function getStartupTimeline(): StartupTimeline | null {
+    const raw = window.AndroidNative?.getStartupTimeline?.()
+    if (!raw) return null
+    try { return JSON.parse(raw) } catch { return null }
+}
+
+/** Page-side startup milestone; "interactive" makes the shell log the whole timeline. */
+export function markStartup(name: string) {
+    window.AndroidNative?.markStartup?.(name)
+}
+
+// Native palm rejection (PalmRejector.java): finger contacts near the S Pen never reach the page
+export type PalmRejectionConfig = {
+    enabled: boolean
+    whileHovering: boolean
+    graceMs: number
+    palmSizeMm: number
+    cancelWindowMs: number
+}
+
+/** Merges `options` over the shell's palm rejection config and returns the result; null outside the shell. */
+export function configurePalmRejection(options?: Partial<PalmRejectionConfig>): PalmRejectionConfig | null {
+    const raw = window.AndroidNative?.configurePalmRejection?.(options ? JSON.stringify(options) : '')
+    if (!raw) return null
+    try { return JSON.parse(raw) } catch { return null }
+}
+
+type NativeEvent = { type: string; seq: number; data: unknown }
+
+// One entry of AndroidNative.drainPendingShares(); metadata is null/-1 until the shell has resolved it
+export type PendingShareItem = { uri: string; name: string | null; size: number; mime: string | null; local: boolean }
+export type PendingShare =
+    | { kind: 'text'; seq: number; text: string }
+    | { kind: 'file' | 'files'; seq: number; items: PendingShareItem[] }
+
+let eventsRelayed = false
+
+// Mirrors relayNativeEvent in public/scripts/modules/NativeBridge.js
+function relayNativeEvent(e: NativeEvent) {
+    switch (e.type) {
+        case 'spen-button':
+            window.dispatchEvent(new CustomEvent(e.data ? 'spen-button-down' : 'spen-button-up'))
+            break
+        case 'share-file':
+            window.handleSharedFile?.(e.data as string)
+            break
+        case 'share-files':
+            window.handleSharedFiles?.(e.data as string[])
+            break
+        case 'share-url':
+            window.handleSharedUrl?.(e.data as string)
+            break
+        case 'memory-trim':
+            window.dispatchEvent(new CustomEvent('native-memory-trim', { detail: e.data }))
+            break
+        case 'asset-upload':
+            window.dispatchEvent(new CustomEvent('native-asset-upload', { detail: e.data }))
+            break
+    }
+}
+
+/**
+ * Receive native notifications (S Pen button, shares) as one port message per frame.
+ * Without this the shell falls back to evaluating a relay script each frame.
+ */
+export function relayNativeEvents() {
+    const port = window.AndroidNativePort
+    if (!port || eventsRelayed) return
+    eventsRelayed = true
+    port.addEventListener('message', (event: MessageEvent) => {
+        if (typeof event.data !== 'string') return
+        let msg: { topic?: string; events?: NativeEvent[] }
+        try { msg = JSON.parse(event.data) } catch { return }
+        if (msg.topic === 'events' && msg.events) msg.events.forEach(relayNativeEvent)
+    })
+    port.postMessage(JSON.stringify({ topic: 'events', op: 'subscribe' }))
+}
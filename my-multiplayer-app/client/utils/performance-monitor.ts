@@ -1,3 +1,6 @@
+type NativeTimer = { count: number; errors: number; bytesIn: number; bytesOut: number; meanUs: number; p50Us: number; p90Us: number; p99Us: number; maxUs: number }
+type NativeMetrics = { uptimeMs: number; timers: Record<string, NativeTimer>; counters: Record<string, number> }
+
 export class PerformanceMonitor {
     private metrics = {
         touchLatency: [] as number[],
@@ -7,6 +10,9 @@ export class PerformanceMonitor {
         lastFrameTime: performance.now()
     }
 
+    // Previous native snapshot, so each report shows rates for its own interval
+    private lastNative: NativeMetrics | null = null
+
     private static instance: PerformanceMonitor
 
     static getInstance(): PerformanceMonitor {
@@ -55,6 +61,7 @@ export class PerformanceMonitor {
             Frame Drop Rate: ${dropRate.toFixed(2)}%
             Total Frames: ${this.metrics.totalFrames}
         `)
+        this.reportNative()
 
         // Reset
         this.metrics.touchLatency = []
@@ -63,6 +70,33 @@ export class PerformanceMonitor {
         this.metrics.lastFrameTime = performance.now()
     }
 
+    // Native side of the same interval: touch dispatch cost in the activity and the slowest bridge calls
+    reportNative() {
+        const raw = window.AndroidNative?.getBridgeMetrics?.()
+        if (!raw) return
+        let native: NativeMetrics
+        try { native = JSON.parse(raw) } catch { return }
+        const prev = this.lastNative
+        this.lastNative = native
+        if (!prev) return
+
+        const seconds = (native.uptimeMs - prev.uptimeMs) / 1000
+        const delta = (name: string) => (native.counters[name] || 0) - (prev.counters[name] || 0)
+        const dispatch = native.timers['touch.dispatch']
+        const slowest = Object.entries(native.timers)
+            .filter(([name]) => name.startsWith('bridge.') || name.startsWith('job.'))
+            .sort((a, b) => b[1].p99Us - a[1].p99Us)
+            .slice(0, 3)
+            .map(([name, t]) => `${name} p50 ${t.p50Us}µs p99 ${t.p99Us}µs (${t.count})`)
+
+        console.log(`📊 Native Report:
+            Touch Dispatch: p50 ${dispatch?.p50Us ?? 0}µs p99 ${dispatch?.p99Us ?? 0}µs
+            Touch Events: ${(delta('touch.events') / seconds).toFixed(1)}/s (${(delta('touch.samples') / seconds).toFixed(1)} samples/s)
+            Base64: ${delta('base64.decodedBytes')} B decoded, ${delta('base64.encodedBytes')} B encoded
+            Slowest Bridge Calls: ${slowest.join(', ') || 'none'}
+        `)
+    }
+
     startMonitoring() {
         const loop = () => {
             this.trackFrame()
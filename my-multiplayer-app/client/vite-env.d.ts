@@ -9,14 +9,35 @@ declare global {
         pendingUrl?: string | null
         AndroidNative?: {
             readContentUri: (uri: string) => string
+            getContentStreamUrl?: (uri: string) => string | null
             getFileName: (uri: string) => string | null
             saveBlob: (base64: string, filename: string, mimeType: string) => void
             writeLog: (level: string, message: string) => void
+            writeLogBatch?: (lines: string) => void
             getLogFilePath: () => string
+            getBridgeMetrics?: () => string
+            resetBridgeMetrics?: () => void
+            getStartupTimeline?: () => string
+            markStartup?: (name: string) => void
+            getMemoryBudget?: () => string
+            reportMemoryUsage?: (cache: string, bytes: number, evicted: number) => void
+            configurePalmRejection?: (json: string) => string
+            uploadAsset?: (uri: string, mimeType: string, endpoint: string) => string | null
+            getAssetUploadStats?: () => string
+            getSyncStats?: () => string | null
+            drainPendingShares?: () => string | null
             getPendingFileUri: () => string | null
             getPendingFileUris: () => string | null
             getPendingSharedText: () => string | null
+            getMimeType?: (uri: string) => string | null
+            startJob?: (method: string, argsJson: string, timeoutMs: number) => number
+            cancelJob?: (jobId: number) => boolean
         }
+        AndroidNativePort?: {
+            postMessage: (message: string | ArrayBuffer) => void
+            addEventListener: (type: 'message', listener: (event: MessageEvent) => void) => void
+        }
+        __androidNativeJobDone?: (jobId: number, ok: boolean, result: string | null) => void
         Capacitor?: any
         Logger?: any
     }
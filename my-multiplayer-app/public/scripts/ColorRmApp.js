@@ -8,6 +8,7 @@ import { ColorRmExport } from './modules/ColorRmExport.js';
 import { PerformanceManager } from './modules/ColorRmPerformance.js';
 import { ColorRmSvgImporter } from './modules/ColorRmSvgImporter.js';
 import { SOTAPerformanceManager, sotaPerf, SOTABenchmark } from './modules/ColorRmSOTAPerformance.js';
+import { NativeBridge } from './modules/NativeBridge.js';
 
 export class ColorRmApp {
     constructor(config = {}) {
@@ -235,6 +236,7 @@ export class ColorRmApp {
 
         // 6. Initialize Android Intent Handling for URLs and PDF files
         this.initializeAndroidIntentHandling();
+        this.initializeMemoryBudget();
 
         // 7. Process PDF Import if present AND no pending files in storage
         if (importPdfUri && !hasPendingFiles) {
@@ -251,6 +253,41 @@ export class ColorRmApp {
                  this.ui.showToast("Critical Error Importing PDF");
              }
         }
+
+        // Board is loaded and wired up: end of the shell's cold start
+        NativeBridge.markStartup('interactive');
+    }
+
+    // Android shell: caches follow the native memory governor's budget (device class, then trim signals)
+    initializeMemoryBudget() {
+        const budget = NativeBridge.getMemoryBudget();
+        if (!budget) return;
+        this.applyMemoryBudget({ grade: budget.grade, budgetBytes: budget.jsBudgetNowBytes });
+        window.addEventListener('native-memory-trim', (e) => this.applyMemoryBudget(e.detail));
+    }
+
+    applyMemoryBudget({ grade, budgetBytes }) {
+        let evicted = 0;
+        const perf = this.performanceManager;
+        const usage = perf ? perf.applyMemoryBudget(budgetBytes) : { tileBytes: 0, lodBytes: 0, evicted: 0 };
+        evicted += usage.evicted;
+
+        if (grade !== 'normal' && grade !== 'moderate') {
+            // Viewport-sized canvases; the next render rebuilds them
+            if (this.cache.hiResCache) { this.cache.hiResCache = null; evicted++; }
+            if (this._previewCache) { this.invalidatePreviewCache(); evicted++; }
+        }
+        if (grade === 'critical' || grade === 'empty') {
+            // Bounds memos of pages that aren't showing; recomputed when the page is opened
+            this.state.images.forEach((img, i) => {
+                if (i === this.state.idx || !img.history) return;
+                for (const st of img.history) delete st._cachedBounds;
+            });
+        }
+
+        console.log(`ColorRmApp: memory budget ${grade} (${(budgetBytes / 1048576).toFixed(0)} MB), ${evicted} entries evicted`);
+        NativeBridge.reportMemoryUsage('colorrm.tiles', usage.tileBytes, evicted);
+        NativeBridge.reportMemoryUsage('colorrm.lod', usage.lodBytes);
     }
 
     // Initialize Android Intent Handling for URLs and PDF files
@@ -276,6 +313,23 @@ export class ColorRmApp {
         const checkNative = () => {
             if (window.AndroidNative) {
                 try {
+                    // Newer shells queue every share; bytes are usually already staged locally
+                    if (window.AndroidNative.drainPendingShares) {
+                        const drained = window.AndroidNative.drainPendingShares();
+                        const shares = drained ? JSON.parse(drained) : [];
+                        shares.forEach((share) => {
+                            console.log('ColorRmApp: Found native pending share:', share.kind, share.seq);
+                            if (share.kind === 'text') {
+                                this.handleIncomingUrl(share.text);
+                            } else if (share.kind === 'files') {
+                                this.handlePdfFilesFromUris(share.items.map((item) => item.uri));
+                            } else if (share.items.length > 0) {
+                                this.handlePdfFileFromUri(share.items[0].uri);
+                            }
+                        });
+                        return;
+                    }
+
                     const pendingFile = window.AndroidNative.getPendingFileUri?.();
                     if (pendingFile) {
                         console.log('ColorRmApp: Found native pending file:', pendingFile);
@@ -538,13 +592,16 @@ export class ColorRmApp {
         try {
             this.ui.showToast("Processing multiple files...");
             const files = [];
-            
-            for (const uri of uris) {
-                const file = await this.convertUriToFileObject(uri);
+
+            // Images: decoded, downsampled and re-encoded natively in parallel
+            const imported = await this.importSharedImagesNative(uris);
+
+            for (let i = 0; i < uris.length; i++) {
+                const file = imported[i] || await this.convertUriToFileObject(uris[i]);
                 if (file) {
                     files.push(file);
                 } else {
-                    console.error("Failed to convert URI to file:", uri);
+                    console.error("Failed to convert URI to file:", uris[i]);
                 }
             }
 
@@ -560,6 +617,36 @@ export class ColorRmApp {
         }
     }
 
+    /**
+     * Ask the Android shell to import shared images at board size.
+     * Returns one File (or null for non-images / failures) per URI.
+     */
+    async importSharedImagesNative(uris) {
+        if (!NativeBridge.canCallAsync()) return [];
+        try {
+            // Generous timeout: 40 full-size camera photos on a mid-range tablet
+            const json = await NativeBridge.call('importImages', [uris, { maxDimension: 2560, format: 'webp', quality: 85 }],
+                { timeoutMs: 5 * 60 * 1000 });
+            const results = JSON.parse(json);
+            return Promise.all(results.map(async (r) => {
+                if (!r.url) {
+                    if (r.error) console.warn("Native image import failed:", r.uri, r.error);
+                    return null;
+                }
+                const res = await fetch(r.url);
+                if (!res.ok) return null;
+                const blob = await res.blob();
+                let name = window.AndroidNative.getFileName?.(r.uri) || 'image';
+                name = name.replace(/\.[^/.]+$/, "") + (r.mime === 'image/webp' ? '.webp' : '.jpg');
+                console.log(`Native image import: ${name} ${r.sourceWidth}x${r.sourceHeight} -> ${r.width}x${r.height}, ${r.size} bytes`);
+                return new File([blob], name, { type: r.mime });
+            }));
+        } catch (e) {
+            console.warn("Native image import unavailable, reading originals:", e);
+            return [];
+        }
+    }
+
     async handleExternalFiles(files) {
         this.ui.toggleLoader(true, `Importing ${files.length} projects...`);
         // We set isBulkImporting to true to influence project naming logic in ColorRmSession
@@ -637,10 +724,36 @@ export class ColorRmApp {
     async convertUriToFileObject(uri) {
         console.log("convertUriToFileObject: Converting:", uri);
         try {
-            // Priority: Try Android Native Interface for content:// URIs
+            // Priority: Stream content:// URIs from the native /_native/content route
+            const streamUrl = uri.startsWith('content://') && window.AndroidNative && window.AndroidNative.getContentStreamUrl
+                ? window.AndroidNative.getContentStreamUrl(uri) : null;
+            if (streamUrl) {
+                console.log("Streaming content URI through native route:", uri);
+                const response = await fetch(streamUrl);
+                if (response.ok) {
+                    // blob() lets the browser spool the body instead of holding a decoded copy in JS
+                    const blob = await response.blob();
+                    const contentType = response.headers.get('Content-Type') || 'application/octet-stream';
+                    let fileName = 'imported_file.bin';
+                    if (window.AndroidNative.getFileName) {
+                        const nativeName = window.AndroidNative.getFileName(uri);
+                        if (nativeName) fileName = nativeName;
+                    }
+                    console.log("Created File object:", fileName, "with type:", contentType, "size:", blob.size);
+                    const file = new File([blob], fileName, { type: contentType });
+                    file.nativeUri = uri; // lets the upload go through the shell (NativeBridge.uploadAsset)
+                    return file;
+                }
+                console.warn("Native stream failed with status", response.status, "- falling back to Base64 read");
+            }
+
+            // Fallback: Base64 read through the Android Native Interface
             if (uri.startsWith('content://') && window.AndroidNative && window.AndroidNative.readContentUri) {
                 console.log("Using AndroidNative to read content URI:", uri);
-                const base64Data = window.AndroidNative.readContentUri(uri);
+                // Off the JavaBridge thread when the async job surface is available
+                const base64Data = NativeBridge.canCallAsync()
+                    ? await NativeBridge.call('readContentUri', [uri])
+                    : window.AndroidNative.readContentUri(uri);
                 if (base64Data) {
                      console.log("AndroidNative read successful, data length:", base64Data.length);
                      const binaryString = atob(base64Data);
@@ -675,7 +788,9 @@ export class ColorRmApp {
                      }
 
                      console.log("Created File object:", fileName, "with type:", contentType);
-                     return new File([blob], fileName, { type: contentType });
+                     const file = new File([blob], fileName, { type: contentType });
+                     file.nativeUri = uri;
+                     return file;
                 } else {
                     console.error("AndroidNative returned null/empty for URI");
                 }
@@ -814,8 +929,10 @@ export class ColorRmApp {
 
         return new Promise((resolve) => {
             const q = this.db.transaction('pages').objectStore('pages').index('sessionId').getAll(id);
-            q.onsuccess = () => {
-                this.state.images = q.result.sort((a,b)=>a.pageIndex-b.pageIndex);
+            q.onsuccess = async () => {
+                const pages = q.result.sort((a,b)=>a.pageIndex-b.pageIndex);
+                await this.loadNativeHistories(id, pages);
+                this.state.images = pages;
                 this.ui.hideDashboard();
                 this.updateLockUI();
                 
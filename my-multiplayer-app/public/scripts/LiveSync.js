@@ -1,5 +1,6 @@
 
 import { createClient, LiveObject, LiveMap, LiveList } from 'https://cdn.jsdelivr.net/npm/@liveblocks/client@3.12.1/+esm';
+import { NativeBridge } from './modules/NativeBridge.js';
 
 // Yjs imports - lazy loaded only when beta mode is used
 let Y = null;
@@ -195,12 +196,16 @@ export class LiveSyncClient {
         console.log(`[Yjs] Connecting to: ${wsUrl}`);
 
         try {
-            // Create WebSocket connection directly (simpler than y-websocket provider)
-            this._yjsSocket = new WebSocket(wsUrl);
+            // Create WebSocket connection directly (simpler than y-websocket provider).
+            // In the Android shell the socket is held natively: it stays up while the app is in the
+            // background and hands over what arrived meanwhile as one merged batch on resume
+            this._yjsSocket = NativeBridge.canSyncNatively()
+                ? NativeBridge.openSyncSocket(wsUrl)
+                : new WebSocket(wsUrl);
             this._yjsConnected = false;
 
-            this._yjsSocket.onopen = () => {
-                console.log('[Yjs] WebSocket connected');
+            this._yjsSocket.onopen = (event) => {
+                console.log(event?.reconnected ? '[Yjs] WebSocket reconnected' : '[Yjs] WebSocket connected');
                 this._yjsConnected = true;
                 this.app.ui.setSyncStatus('saved');
                 if (this.app.renderDebug) this.app.renderDebug();
@@ -240,6 +245,17 @@ export class LiveSyncClient {
                 this._yjsConnected = false;
             };
 
+            // Native socket only: more arrived in the background than the shell could merge.
+            // Reconnect now rather than after the close delay; the server sends full state on connect
+            this._yjsSocket.onresync = () => {
+                console.log('[Yjs] Backlog dropped while in background, resyncing');
+                const stale = this._yjsSocket;
+                stale.onclose = null;
+                stale.close();
+                this._yjsConnected = false;
+                if (!this._yjsClosedIntentionally) this._initYjs(this.ownerId, this.projectId);
+            };
+
             // Set up leave function for cleanup
             this.leave = () => {
                 this._yjsClosedIntentionally = true;
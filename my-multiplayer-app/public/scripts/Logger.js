@@ -1,6 +1,8 @@
 // Global Console Logger - Vercel-inspired design
 // Include in any page: <script type="module" src="/scripts/Logger.js"></script>
 
+import { NativeBridge } from './modules/NativeBridge.js';
+
 const STYLES = `
 #logger-fab {
     position: fixed;
@@ -274,6 +276,8 @@ export const Logger = {
     errorCount: 0,
     filter: 'all',
     isInitialized: false,
+    nativeQueue: [],
+    nativeFlushTimer: null,
 
     init() {
         if (this.isInitialized) return;
@@ -312,6 +316,12 @@ export const Logger = {
             self.capture('error', [`Promise: ${e.reason?.message || e.reason}`]);
         });
 
+        // Hand queued lines to the native sink before the page goes away
+        window.addEventListener('pagehide', () => self.flushNative());
+        document.addEventListener('visibilitychange', () => {
+            if (document.visibilityState === 'hidden') self.flushNative();
+        });
+
         this.capture('info', ['🚀 Logger initialized']);
     },
 
@@ -377,10 +387,38 @@ export const Logger = {
             this.logs = this.logs.slice(-this.maxLogs);
         }
 
-        // Write to Android if available
-        if (window.AndroidNative?.writeLog) {
-            try { window.AndroidNative.writeLog(level.toUpperCase(), message); } catch {}
+        this.queueNative(level, timestamp, message);
+    },
+
+    // Lines go to the native log file in batches: one bridge call per flush instead of one per line
+    queueNative(level, timestamp, message) {
+        const native = window.AndroidNative;
+        if (!native?.writeLogBatch && !native?.writeLog) return;
+        this.nativeQueue.push(`[${timestamp.toISOString()}] [${level.toUpperCase()}] ${message}`);
+        if (this.nativeQueue.length >= 200) {
+            this.flushNative();
+        } else if (!this.nativeFlushTimer) {
+            this.nativeFlushTimer = setTimeout(() => this.flushNative(), 250);
+        }
+    },
+
+    flushNative() {
+        if (this.nativeFlushTimer) {
+            clearTimeout(this.nativeFlushTimer);
+            this.nativeFlushTimer = null;
         }
+        if (this.nativeQueue.length === 0) return;
+        const lines = this.nativeQueue;
+        this.nativeQueue = [];
+        const native = window.AndroidNative;
+        try {
+            if (native?.writeLogBatch) {
+                native.writeLogBatch(lines.join('\n'));
+            } else if (native?.writeLog) {
+                // Older shells: the line already carries its timestamp and level
+                for (const line of lines) native.writeLog('PAGE', line);
+            }
+        } catch {}
     },
 
     updateBadge() {
@@ -476,6 +514,21 @@ export const Logger = {
     },
 
     export() {
+        // The app keeps several MB of history on disk; export that instead of the last few thousand lines
+        if (NativeBridge.canCallAsync()) {
+            this.flushNative();
+            NativeBridge.call('exportLogs', [8], { timeoutMs: 60000 })
+                .then((name) => this.capture('info', [`📄 Logs exported to Downloads/${name}`]))
+                .catch((e) => {
+                    this.capture('warn', [`Native log export failed: ${e.message}`]);
+                    this.exportPageLogs();
+                });
+            return;
+        }
+        this.exportPageLogs();
+    },
+
+    exportPageLogs() {
         const content = this.getLogsText();
         const filename = `logs_${new Date().toISOString().replace(/[:.]/g, '-')}.txt`;
 
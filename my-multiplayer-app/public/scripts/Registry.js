@@ -181,6 +181,7 @@ export const Registry = {
                                 req.onerror = () => r([]);
                             });
                             pages.forEach(pg => store.delete(pg.id));
+                            if (app.dropNativeHistory) app.dropNativeHistory(id);
                         } catch (e) {}
                     }
                 }
@@ -814,6 +814,7 @@ export const SplitView = {
                 pagesStore.delete(page.id);
             }
             sessionsStore.delete(projectId);
+            if (this.app.dropNativeHistory) this.app.dropNativeHistory(projectId);
         }
 
         // If this was the active project, clear the view
@@ -0,0 +1,184 @@
+/**
+ * ColorRM Binary - decoder for the binary v2 history encoding
+ *
+ * The layout and the reference encoder live in ColorRmBinary.java (Android shell).
+ * Geometry comes back quantized to 1/scale px; every other field is exactly what
+ * was encoded. Column values stay below 2^50, so plain numbers hold them exactly.
+ */
+
+const MAGIC = [0x43, 0x52, 0x42, 0x32]; // "CRB2"
+const FORMAT_VERSION = 1;
+const STRING_FIELDS = ['color', 'lineCap', 'lineJoin', 'shapeType', 'borderType', 'fillColor', 'borderColor', 'fontFamily'];
+const NUMBER_FIELDS = ['size', 'opacity', 'rotation', 'fillOpacity', 'borderOpacity', 'borderSize'];
+const NUMBER_SCALE = 1000;
+
+const ID = 1;
+const ID_NUMBER = 1 << 1;
+const TOOL = 1 << 2;
+const LAST_MOD = 1 << 3;
+const HAS_DELETED = 1 << 4;
+const DELETED = 1 << 5;
+const PTS = 1 << 6;
+const BOX = 1 << 7;
+const EXTRAS = 1 << 8;
+const STRING_BIT = 9;
+const NUMBER_BIT = STRING_BIT + STRING_FIELDS.length;
+const MASK_LIMIT = 2 ** (NUMBER_BIT + NUMBER_FIELDS.length);
+const COLUMN_COUNT = 4 + STRING_FIELDS.length + NUMBER_FIELDS.length + 4;
+
+const utf8 = new TextDecoder('utf-8');
+
+class ByteSource {
+    constructor(bytes, pos, end) {
+        this.bytes = bytes;
+        this.pos = pos;
+        this.end = end;
+    }
+
+    remaining() {
+        return this.end - this.pos;
+    }
+
+    readByte() {
+        if (this.pos >= this.end) throw new Error('Truncated data');
+        return this.bytes[this.pos++];
+    }
+
+    // Arithmetic instead of shifts: values go past 32 bits
+    readVarint() {
+        let value = 0;
+        let factor = 1;
+        for (let i = 0; i < 8; i++) {
+            const b = this.readByte();
+            value += (b & 0x7f) * factor;
+            if ((b & 0x80) === 0) return value;
+            factor *= 128;
+        }
+        throw new Error('Varint too long');
+    }
+
+    readZigzag() {
+        const n = this.readVarint();
+        return n % 2 === 0 ? n / 2 : -(n + 1) / 2;
+    }
+
+    readCount() {
+        const n = this.readVarint();
+        if (n > this.remaining()) throw new Error('Count exceeds data');
+        return n;
+    }
+
+    readString() {
+        const length = this.readCount();
+        const s = utf8.decode(this.bytes.subarray(this.pos, this.pos + length));
+        this.pos += length;
+        return s;
+    }
+
+    readColumn() {
+        const length = this.readCount();
+        const column = new ByteSource(this.bytes, this.pos, this.pos + length);
+        this.pos += length;
+        return column;
+    }
+}
+
+function lookup(dictionary, index) {
+    if (index >= dictionary.length) throw new Error('Bad dictionary index');
+    return dictionary[index];
+}
+
+function toBytes(data) {
+    if (data instanceof Uint8Array) return data;
+    if (ArrayBuffer.isView(data)) return new Uint8Array(data.buffer, data.byteOffset, data.byteLength);
+    return new Uint8Array(data);
+}
+
+export const ColorRmBinary = {
+    /** True for an ArrayBuffer or byte view holding a binary history. */
+    isBinaryHistory(data) {
+        if (!(data instanceof ArrayBuffer) && !ArrayBuffer.isView(data)) return false;
+        const bytes = toBytes(data);
+        return bytes.length > MAGIC.length && MAGIC.every((b, i) => bytes[i] === b);
+    },
+
+    /**
+     * Decodes to a plain history array, as JSON.parse of the v2 JSON form would.
+     * Throws on anything that is not a valid encoding.
+     */
+    decode(data) {
+        if (!this.isBinaryHistory(data)) throw new Error('Not a ColorRM binary history');
+        const bytes = toBytes(data);
+        const input = new ByteSource(bytes, MAGIC.length, bytes.length);
+        const version = input.readByte();
+        if (version !== FORMAT_VERSION) throw new Error(`Unsupported version ${version}`);
+        const scale = input.readVarint();
+        if (scale < 1) throw new Error('Bad scale');
+        const count = input.readCount();
+        const dictionary = new Array(input.readCount());
+        for (let i = 0; i < dictionary.length; i++) dictionary[i] = input.readString();
+
+        const columns = [];
+        for (let i = 0; i < COLUMN_COUNT; i++) columns.push(input.readColumn());
+        const [masks, ids, tools, lastMods] = columns;
+        const strings = columns.slice(4, 4 + STRING_FIELDS.length);
+        const numbers = columns.slice(4 + STRING_FIELDS.length, 4 + STRING_FIELDS.length + NUMBER_FIELDS.length);
+        const [boxes, pointCounts, points, extras] = columns.slice(COLUMN_COUNT - 4);
+
+        if (count > masks.remaining()) throw new Error('Element count exceeds data');
+        const history = new Array(count);
+        let prevLastMod = 0;
+        let cursorX = 0;
+        let cursorY = 0;
+        for (let n = 0; n < count; n++) {
+            const mask = masks.readVarint();
+            if (mask >= MASK_LIMIT) throw new Error('Unknown element flags');
+            const element = {};
+            if (mask & ID) {
+                const id = ids.readString();
+                element.id = mask & ID_NUMBER ? Number(id) : id;
+            }
+            if (mask & TOOL) element.tool = lookup(dictionary, tools.readVarint());
+            if (mask & LAST_MOD) {
+                prevLastMod += lastMods.readZigzag();
+                element.lastMod = prevLastMod;
+            }
+            if (mask & PTS) {
+                const pointCount = pointCounts.readVarint();
+                if (pointCount > points.remaining() / 2) throw new Error('Point count exceeds data');
+                const pts = new Array(pointCount);
+                for (let i = 0; i < pointCount; i++) {
+                    cursorX += points.readZigzag();
+                    cursorY += points.readZigzag();
+                    pts[i] = { x: cursorX / scale, y: cursorY / scale };
+                }
+                element.pts = pts;
+            }
+            if (mask & BOX) {
+                element.x = boxes.readZigzag() / scale;
+                element.y = boxes.readZigzag() / scale;
+                element.w = boxes.readZigzag() / scale;
+                element.h = boxes.readZigzag() / scale;
+            }
+            for (let i = 0; i < STRING_FIELDS.length; i++) {
+                if (mask & (1 << (STRING_BIT + i))) element[STRING_FIELDS[i]] = lookup(dictionary, strings[i].readVarint());
+            }
+            for (let i = 0; i < NUMBER_FIELDS.length; i++) {
+                if (mask & (1 << (NUMBER_BIT + i))) element[NUMBER_FIELDS[i]] = numbers[i].readZigzag() / NUMBER_SCALE;
+            }
+            if (mask & HAS_DELETED) element.deleted = (mask & DELETED) !== 0;
+            if (mask & EXTRAS) {
+                const rest = JSON.parse(extras.readString());
+                if (rest === null || typeof rest !== 'object' || Array.isArray(rest)) {
+                    throw new Error('Extras are not an object');
+                }
+                for (const key of Object.keys(rest)) {
+                    // A plain assignment to "__proto__" would replace the prototype
+                    Object.defineProperty(element, key, { value: rest[key], writable: true, enumerable: true, configurable: true });
+                }
+            }
+            history[n] = element;
+        }
+        return history;
+    }
+};
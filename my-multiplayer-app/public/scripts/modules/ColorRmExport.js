@@ -1,3 +1,5 @@
+import { NativeBridge } from './NativeBridge.js';
+
 export const ColorRmExport = {
     setDlTab(t) {
         const tabRange = this.getElement('tabRange');
@@ -151,6 +153,17 @@ export const ColorRmExport = {
         const getTagText = (tpl, seq, pg) => tpl.replace('{seq}', seq).replace('{date}', dateStr).replace('{page}', pg).replace('{day}', dayStr).replace('{time}', now.toLocaleTimeString());
         const hexToRgb = (hex) => { const r = /^#?([a-f\d]{2})([a-f\d]{2})([a-f\d]{2})$/i.exec(hex); return r ? [parseInt(r[1], 16), parseInt(r[2], 16), parseInt(r[3], 16)] : [0,0,0]; };
 
+        if (NativeBridge.isAvailable()) {
+            const cvs = document.createElement('canvas'); const cx = cvs.getContext('2d');
+            const tags = { doHeader, headTpl, headAlign, headSize, headColor, doFooter, footTpl, footAlign, footSize, footColor, getTagText };
+            const done = await this._exportPdfNative(`${this.sanitizeFilename(this.state.projectName || "Export")}.pdf`, indices, tags, async (idx) => {
+                await this._renderRasterPage(this.state.images[idx], cvs, cx);
+                const image = await new Promise(r => cvs.toBlob(r, imageFormat, imageQuality));
+                return { spec: { source: [0, 0, cvs.width, cvs.height], lossless: hiQuality }, image };
+            });
+            if (done) return;
+        }
+
         if (!window.jspdf) {
             this.ui.showToast("jsPDF library not loaded");
             this.ui.toggleLoader(false);
@@ -165,116 +178,7 @@ export const ColorRmExport = {
             this.ui.updateProgress((i/indices.length)*100, `Page ${i+1}/${indices.length}`);
 
             const item = this.state.images[idx];
-            const img = new Image(); img.src = URL.createObjectURL(item.blob);
-            await new Promise(r=>img.onload=r);
-
-            cvs.width = img.width; cvs.height = img.height;
-            cx.drawImage(img,0,0);
-
-            // Color Removal
-            let targets = this.state.colors.map(x=>x.lab);
-            if(targets.length > 0) {
-                const imgD = cx.getImageData(0,0,cvs.width,cvs.height); const d = imgD.data; const lab = new Float32Array(cvs.width*cvs.height*3);
-                for(let k=0,j=0; k<d.length; k+=4,j+=3){ const [l,a,b] = this.rgbToLab(d[k],d[k+1],d[k+2]); lab[j]=l; lab[j+1]=a; lab[j+2]=b; }
-                const sq = this.state.strict**2;
-                for(let k=0, j=0; k<d.length; k+=4, j+=3) { if(d[k+3]===0) continue; const l=lab[j], a=lab[j+1], b=lab[j+2]; let keep = false; for(let t of targets) if(((l-t[0])**2 + (a-t[1])**2 + (b-t[2])**2) <= sq) { keep = true; break; } if(!keep) d[k+3] = 0; }
-                cx.putImageData(imgD, 0, 0);
-            }
-
-            // Draw history - filter out deleted items
-            if (item.history) {
-                // Helper function to render item to canvas (handles groups recursively)
-                const renderItemToCanvas = (st, ctx) => {
-                    if (st.deleted) return;
-
-                    ctx.save();
-                    if(st.rotation && st.tool!=='pen' && st.tool!=='highlighter') {
-                        const centerx = st.x + st.w/2;
-                        const centery = st.y + st.h/2;
-                        ctx.translate(centerx, centery);
-                        ctx.rotate(st.rotation);
-                        ctx.translate(-centerx, -centery);
-                    }
-
-                    if(st.tool === 'group' && st.children) {
-                        // Render group children
-                        st.children.forEach(child => renderItemToCanvas(child, ctx));
-                    } else if(st.tool === 'text') {
-                        ctx.fillStyle = st.color;
-                        ctx.font = `${st.size}px sans-serif`;
-                        ctx.textBaseline = 'top';
-                        ctx.fillText(st.text, st.x, st.y);
-                    } else if(st.tool === 'shape') {
-                        ctx.strokeStyle = st.border;
-                        ctx.lineWidth = st.width;
-                        if(st.fill!=='transparent') { ctx.fillStyle=st.fill; }
-
-                        // Handle dashed/dotted borders
-                        if (st.borderType === 'dashed') {
-                            ctx.setLineDash([st.width * 4, st.width * 2]);
-                        } else if (st.borderType === 'dotted') {
-                            ctx.setLineDash([st.width, st.width * 2]);
-                        } else {
-                            ctx.setLineDash([]);
-                        }
-
-                        ctx.beginPath();
-                        const {x,y,w,h} = st;
-                        if(st.shapeType==='rectangle') ctx.rect(x,y,w,h);
-                        else if(st.shapeType==='circle') ctx.ellipse(x+w/2, y+h/2, Math.abs(w/2), Math.abs(h/2), 0, 0, 2*Math.PI);
-                        else if(st.shapeType==='line') { ctx.moveTo(x,y); ctx.lineTo(x+w,y+h); }
-                        else if(st.shapeType==='arrow') {
-                            const head=15;
-                            const ang=Math.atan2(h,w);
-                            ctx.moveTo(x,y);
-                            ctx.lineTo(x+w,y+h);
-                            ctx.lineTo(x+w - head*Math.cos(ang-0.5), y+h - head*Math.sin(ang-0.5));
-                            ctx.moveTo(x+w,y+h);
-                            ctx.lineTo(x+w - head*Math.cos(ang+0.5), y+h - head*Math.sin(ang+0.5));
-                        } else if(st.shapeType==='triangle') {
-                            ctx.moveTo(x + w/2, y);
-                            ctx.lineTo(x + w, y + h);
-                            ctx.lineTo(x, y + h);
-                            ctx.closePath();
-                        } else if(st.shapeType==='diamond') {
-                            ctx.moveTo(x + w/2, y);
-                            ctx.lineTo(x + w, y + h/2);
-                            ctx.lineTo(x + w/2, y + h);
-                            ctx.lineTo(x, y + h/2);
-                            ctx.closePath();
-                        }
-                        if(st.fill!=='transparent' && !['line','arrow'].includes(st.shapeType)) ctx.fill();
-                        ctx.stroke();
-                        ctx.setLineDash([]);
-                    } else if(st.tool === 'image') {
-                        // Image items - need async handling, skip in sync loop
-                    } else if(st.tool === 'highlighter' && st.pts && st.pts.length > 0) {
-                        ctx.lineCap='round';
-                        ctx.lineJoin='round';
-                        ctx.lineWidth=st.size;
-                        ctx.strokeStyle = st.color;
-                        ctx.globalAlpha = st.opacity !== undefined ? st.opacity : 0.4;
-                        ctx.beginPath();
-                        ctx.moveTo(st.pts[0].x, st.pts[0].y);
-                        for(let j=1; j<st.pts.length; j++) ctx.lineTo(st.pts[j].x, st.pts[j].y);
-                        ctx.stroke();
-                        ctx.globalAlpha = 1;
-                    } else if(st.pts && st.pts.length > 0) {
-                        ctx.lineCap='round';
-                        ctx.lineJoin='round';
-                        ctx.lineWidth=st.size;
-                        ctx.strokeStyle = st.tool==='eraser' ? '#000' : st.color;
-                        if(st.tool==='eraser') ctx.globalCompositeOperation='destination-out';
-                        ctx.beginPath();
-                        ctx.moveTo(st.pts[0].x, st.pts[0].y);
-                        for(let j=1; j<st.pts.length; j++) ctx.lineTo(st.pts[j].x, st.pts[j].y);
-                        ctx.stroke();
-                    }
-                    ctx.restore();
-                };
-
-                item.history.forEach(st => renderItemToCanvas(st, cx));
-            }
+            await this._renderRasterPage(item, cvs, cx);
 
             const u = cvs.toDataURL(imageFormat, imageQuality);
             const props = pdfDoc.getImageProperties(u);
@@ -348,6 +252,151 @@ export const ColorRmExport = {
         this.ui.toggleLoader(false);
     },
 
+    /**
+     * Export pages through the native streaming PDF writer (NativeBridge.exportPdf).
+     * Pages are built one at a time, so only a few are ever held in memory.
+     * @param {function(number): Promise<{spec, history?, image?}>} buildPage - by page index
+     * @returns {Promise<boolean>} false if the shell cannot export natively and jsPDF should be used
+     */
+    async _exportPdfNative(filename, indices, tags, buildPage) {
+        const { doHeader, headTpl, headAlign, headSize, headColor, doFooter, footTpl, footAlign, footSize, footColor, getTagText } = tags;
+        try {
+            const name = await NativeBridge.exportPdf(filename, indices.length, async (i) => {
+                const idx = indices[i];
+                const page = await buildPage(idx);
+                if (doHeader) page.spec.header = { text: headTpl ? getTagText(headTpl, i + 1, idx + 1) : '', align: headAlign, size: headSize, color: headColor };
+                if (doFooter) page.spec.footer = { text: footTpl ? getTagText(footTpl, i + 1, idx + 1) : '', align: footAlign, size: footSize, color: footColor };
+                this.ui.updateProgress((i / indices.length) * 100, `Page ${i + 1}/${indices.length}`);
+                return page;
+            }, {
+                onProgress: (pages, total) => this.ui.updateProgress((pages / total) * 100, `Saved ${pages}/${total}`)
+            });
+            this.ui.showToast(`Saved to Downloads: ${name}`);
+        } catch (e) {
+            if (e.unavailable) return false;
+            console.error("Native PDF export failed:", e);
+            this.ui.showToast(`PDF export failed: ${e.message}`);
+        }
+        this.ui.toggleLoader(false);
+        return true;
+    },
+
+    /**
+     * Draw a page for raster export: its image with color removal applied, then its history
+     */
+    async _renderRasterPage(item, cvs, cx) {
+        const img = new Image(); img.src = URL.createObjectURL(item.blob);
+        await new Promise(r=>img.onload=r);
+
+        cvs.width = img.width; cvs.height = img.height;
+        cx.drawImage(img,0,0);
+
+        // Color Removal
+        let targets = this.state.colors.map(x=>x.lab);
+        if(targets.length > 0) {
+            const imgD = cx.getImageData(0,0,cvs.width,cvs.height); const d = imgD.data; const lab = new Float32Array(cvs.width*cvs.height*3);
+            for(let k=0,j=0; k<d.length; k+=4,j+=3){ const [l,a,b] = this.rgbToLab(d[k],d[k+1],d[k+2]); lab[j]=l; lab[j+1]=a; lab[j+2]=b; }
+            const sq = this.state.strict**2;
+            for(let k=0, j=0; k<d.length; k+=4, j+=3) { if(d[k+3]===0) continue; const l=lab[j], a=lab[j+1], b=lab[j+2]; let keep = false; for(let t of targets) if(((l-t[0])**2 + (a-t[1])**2 + (b-t[2])**2) <= sq) { keep = true; break; } if(!keep) d[k+3] = 0; }
+            cx.putImageData(imgD, 0, 0);
+        }
+
+        // Draw history - filter out deleted items
+        if (item.history) {
+            // Helper function to render item to canvas (handles groups recursively)
+            const renderItemToCanvas = (st, ctx) => {
+                if (st.deleted) return;
+
+                ctx.save();
+                if(st.rotation && st.tool!=='pen' && st.tool!=='highlighter') {
+                    const centerx = st.x + st.w/2;
+                    const centery = st.y + st.h/2;
+                    ctx.translate(centerx, centery);
+                    ctx.rotate(st.rotation);
+                    ctx.translate(-centerx, -centery);
+                }
+
+                if(st.tool === 'group' && st.children) {
+                    // Render group children
+                    st.children.forEach(child => renderItemToCanvas(child, ctx));
+                } else if(st.tool === 'text') {
+                    ctx.fillStyle = st.color;
+                    ctx.font = `${st.size}px sans-serif`;
+                    ctx.textBaseline = 'top';
+                    ctx.fillText(st.text, st.x, st.y);
+                } else if(st.tool === 'shape') {
+                    ctx.strokeStyle = st.border;
+                    ctx.lineWidth = st.width;
+                    if(st.fill!=='transparent') { ctx.fillStyle=st.fill; }
+
+                    // Handle dashed/dotted borders
+                    if (st.borderType === 'dashed') {
+                        ctx.setLineDash([st.width * 4, st.width * 2]);
+                    } else if (st.borderType === 'dotted') {
+                        ctx.setLineDash([st.width, st.width * 2]);
+                    } else {
+                        ctx.setLineDash([]);
+                    }
+
+                    ctx.beginPath();
+                    const {x,y,w,h} = st;
+                    if(st.shapeType==='rectangle') ctx.rect(x,y,w,h);
+                    else if(st.shapeType==='circle') ctx.ellipse(x+w/2, y+h/2, Math.abs(w/2), Math.abs(h/2), 0, 0, 2*Math.PI);
+                    else if(st.shapeType==='line') { ctx.moveTo(x,y); ctx.lineTo(x+w,y+h); }
+                    else if(st.shapeType==='arrow') {
+                        const head=15;
+                        const ang=Math.atan2(h,w);
+                        ctx.moveTo(x,y);
+                        ctx.lineTo(x+w,y+h);
+                        ctx.lineTo(x+w - head*Math.cos(ang-0.5), y+h - head*Math.sin(ang-0.5));
+                        ctx.moveTo(x+w,y+h);
+                        ctx.lineTo(x+w - head*Math.cos(ang+0.5), y+h - head*Math.sin(ang+0.5));
+                    } else if(st.shapeType==='triangle') {
+                        ctx.moveTo(x + w/2, y);
+                        ctx.lineTo(x + w, y + h);
+                        ctx.lineTo(x, y + h);
+                        ctx.closePath();
+                    } else if(st.shapeType==='diamond') {
+                        ctx.moveTo(x + w/2, y);
+                        ctx.lineTo(x + w, y + h/2);
+                        ctx.lineTo(x + w/2, y + h);
+                        ctx.lineTo(x, y + h/2);
+                        ctx.closePath();
+                    }
+                    if(st.fill!=='transparent' && !['line','arrow'].includes(st.shapeType)) ctx.fill();
+                    ctx.stroke();
+                    ctx.setLineDash([]);
+                } else if(st.tool === 'image') {
+                    // Image items - need async handling, skip in sync loop
+                } else if(st.tool === 'highlighter' && st.pts && st.pts.length > 0) {
+                    ctx.lineCap='round';
+                    ctx.lineJoin='round';
+                    ctx.lineWidth=st.size;
+                    ctx.strokeStyle = st.color;
+                    ctx.globalAlpha = st.opacity !== undefined ? st.opacity : 0.4;
+                    ctx.beginPath();
+                    ctx.moveTo(st.pts[0].x, st.pts[0].y);
+                    for(let j=1; j<st.pts.length; j++) ctx.lineTo(st.pts[j].x, st.pts[j].y);
+                    ctx.stroke();
+                    ctx.globalAlpha = 1;
+                } else if(st.pts && st.pts.length > 0) {
+                    ctx.lineCap='round';
+                    ctx.lineJoin='round';
+                    ctx.lineWidth=st.size;
+                    ctx.strokeStyle = st.tool==='eraser' ? '#000' : st.color;
+                    if(st.tool==='eraser') ctx.globalCompositeOperation='destination-out';
+                    ctx.beginPath();
+                    ctx.moveTo(st.pts[0].x, st.pts[0].y);
+                    for(let j=1; j<st.pts.length; j++) ctx.lineTo(st.pts[j].x, st.pts[j].y);
+                    ctx.stroke();
+                }
+                ctx.restore();
+            };
+
+            item.history.forEach(st => renderItemToCanvas(st, cx));
+        }
+    },
+
     /**
      * Export current page as SVG (vector format for highest quality)
      * Converts all strokes to SVG paths for infinite scalability
@@ -614,12 +663,6 @@ export const ColorRmExport = {
 
         this.ui.toggleLoader(true, "Generating Vector PDF...");
 
-        if (!window.jspdf) {
-            this.ui.showToast("jsPDF library not loaded");
-            this.ui.toggleLoader(false);
-            return;
-        }
-
         const now = new Date(), dateStr = now.toLocaleDateString();
         const days = ['Sun','Mon','Tue','Wed','Thu','Fri','Sat'], dayStr = days[now.getDay()];
         const getTagText = (tpl, seq, pg) => tpl.replace('{seq}', seq).replace('{date}', dateStr).replace('{page}', pg).replace('{day}', dayStr).replace('{time}', now.toLocaleTimeString());
@@ -628,6 +671,34 @@ export const ColorRmExport = {
             return r ? [parseInt(r[1], 16), parseInt(r[2], 16), parseInt(r[3], 16)] : [0, 0, 0];
         };
 
+        if (NativeBridge.isAvailable()) {
+            const tags = { doHeader, headTpl, headAlign, headSize, headColor, doFooter, footTpl, footAlign, footSize, footColor, getTagText };
+            const name = `${this.sanitizeFilename(this.state.projectName || "Export")}_vector.pdf`;
+            const done = await this._exportPdfNative(name, indices.filter(idx => this.state.images[idx]), tags, async (idx) => {
+                const item = this.state.images[idx];
+                const history = (item.history || []).filter(st => !st.deleted);
+                const spec = { source: [0, 0, this.state.viewW || 800, this.state.viewH || 600] };
+                if (item.isInfinite && history.length > 0) {
+                    const bounds = this._calculateContentBounds(history);
+                    if (bounds) {
+                        const padding = 50;
+                        spec.source = [bounds.minX - padding, bounds.minY - padding,
+                            bounds.maxX - bounds.minX + padding * 2, bounds.maxY - bounds.minY + padding * 2];
+                    }
+                }
+                if (item.isInfinite && item.vectorGrid && includeBackground) spec.grid = item.vectorGrid;
+                const image = includeBackground && item.blob && !item.isInfinite ? item.blob : null;
+                return { spec, history, image };
+            });
+            if (done) return;
+        }
+
+        if (!window.jspdf) {
+            this.ui.showToast("jsPDF library not loaded");
+            this.ui.toggleLoader(false);
+            return;
+        }
+
         try {
             // Create PDF document
             const pdfDoc = new window.jspdf.jsPDF({ orientation: 'p', unit: 'mm', format: 'a4' });
@@ -1,3 +1,5 @@
+import { NativeBridge } from './NativeBridge.js';
+
 export const ColorRmInput = {
     setTool(t) {
         this.state.tool = t;
@@ -326,7 +328,7 @@ export const ColorRmInput = {
 
     lockSelected() {
         const img = this.state.images[this.state.idx];
-        this.state.selection.forEach(i => img.history[i].locked = true);
+        this.state.selection.forEach(i => { img.history[i].locked = true; img.history[i].lastMod = Date.now(); });
         this.state.selection = [];
         // Hide context toolbar when locking
         const tb = this.getElement('contextToolbar');
@@ -338,7 +340,7 @@ export const ColorRmInput = {
 
     unlockSelected() {
         const img = this.state.images[this.state.idx];
-        this.state.selection.forEach(i => img.history[i].locked = false);
+        this.state.selection.forEach(i => { img.history[i].locked = false; img.history[i].lastMod = Date.now(); });
         this.saveCurrentImg();
         this.render();
     },
@@ -352,11 +354,11 @@ export const ColorRmInput = {
 
         if (anyLocked) {
             // Unlock all
-            this.state.selection.forEach(i => img.history[i].locked = false);
+            this.state.selection.forEach(i => { img.history[i].locked = false; img.history[i].lastMod = Date.now(); });
             this.ui.showToast('Unlocked');
         } else {
             // Lock all
-            this.state.selection.forEach(i => img.history[i].locked = true);
+            this.state.selection.forEach(i => { img.history[i].locked = true; img.history[i].lastMod = Date.now(); });
             this.state.selection = [];
             // Hide context toolbar when locking
             const tb = this.getElement('contextToolbar');
@@ -398,9 +400,45 @@ export const ColorRmInput = {
         if (this._pointerUpCleanup) this._pointerUpCleanup();
         if (this._resizeCleanup) this._resizeCleanup();
         if (this._spenEngineCleanup) this._spenEngineCleanup();
+        if (this._predictionCanvas) { this._predictionCanvas.remove(); this._predictionCanvas = null; }
         console.log('[ColorRmInput] Event listeners cleaned up');
     },
 
+    // Predicted pen tip from the native ink channel. Drawn on a canvas stacked over the
+    // drawing canvas, so the next frame can wipe it without touching the real ink.
+    _drawPrediction(c, from, points) {
+        let overlay = this._predictionCanvas;
+        if (!overlay) {
+            overlay = this._predictionCanvas = document.createElement('canvas');
+            overlay.style.cssText = 'position:fixed; pointer-events:none; z-index:10; background:transparent; box-shadow:none; max-width:none; max-height:none;';
+            document.body.appendChild(overlay);
+        }
+        if (!this._predictionShown) {
+            // Line up with the drawing canvas once per stroke; it does not move while drawing
+            const r = c.getBoundingClientRect();
+            if (overlay.width !== c.width) overlay.width = c.width;
+            if (overlay.height !== c.height) overlay.height = c.height;
+            Object.assign(overlay.style, { left: r.left + 'px', top: r.top + 'px', width: r.width + 'px', height: r.height + 'px' });
+            this._predictionShown = true;
+        }
+        const ctx = overlay.getContext('2d');
+        ctx.clearRect(0, 0, overlay.width, overlay.height);
+        ctx.save();
+        ctx.translate(this.state.pan.x, this.state.pan.y);
+        ctx.scale(this.state.zoom, this.state.zoom);
+        ctx.lineCap='round'; ctx.lineJoin='round'; ctx.lineWidth=this.state.penSize; ctx.strokeStyle=this.state.penColor;
+        ctx.beginPath(); ctx.moveTo(from.x, from.y);
+        for (const pt of points) ctx.lineTo(pt.x, pt.y);
+        ctx.stroke(); ctx.restore();
+    },
+
+    _clearPrediction() {
+        if (!this._predictionShown) return;
+        this._predictionShown = false;
+        const overlay = this._predictionCanvas;
+        overlay.getContext('2d').clearRect(0, 0, overlay.width, overlay.height);
+    },
+
     setupShortcuts() {
         const target = this.container || document;
 
@@ -795,8 +833,20 @@ export const ColorRmInput = {
             }
         };
 
+        // Native ink channel (Android shell): full digitizer rate instead of one pointermove per frame
+        if (this.config.isMain && NativeBridge.isAvailable() && !this._nativeInk) {
+            // About a frame ahead: the latency between a sample and its pixels
+            this._nativeInk = NativeBridge.subscribeInk({ stylusOnly: true, predictMs: 16 });
+            NativeBridge.strokeSimplifyAvailable().then(ok => { this._nativeSimplify = ok; });
+            // Touch draws here, so palms are dropped in the shell for longer after the pen lifts
+            NativeBridge.configurePalmRejection({ enabled: true, graceMs: 500 });
+        }
+
         c.onpointerdown = e => {
             this._eraserSessionState = null; // Start fresh for new stroke/gesture
+            if (this._nativeInk) this._nativeInk.drain(); // Drop samples from before this stroke
+            this._strokeNativeInk = false;
+            this._clearPrediction();
             if (e.pointerType === "touch" && !e.isPrimary) return;
             const pt = getPt(e); startPt = pt;
             this.lastScreenX = e.clientX;
@@ -1332,6 +1382,52 @@ export const ColorRmInput = {
                     return;
                 }
 
+                // Native ink: replay every sample since the last frame instead of the coalesced point
+                if (this._nativeInk && e.pointerType === 'pen') {
+                    const samples = this._nativeInk.drain();
+                    if (samples.length > 0) {
+                        const dpr = window.devicePixelRatio || 1;
+                        // One source per stroke: the shell's samples replace the coalesced points taken before they arrived
+                        if (!this._strokeNativeInk) {
+                            this._strokeNativeInk = true;
+                            this.currentStroke.length = 1;
+                        }
+                        const from = this.currentStroke.length - 1;
+                        // Predicted points stand in until the next frame's real samples arrive
+                        let predicted = [];
+                        for (const s of samples) {
+                            if (s.flags & NativeBridge.INK_FLAGS.PREDICTED) {
+                                predicted.push(getPt({ clientX: s.x / dpr, clientY: s.y / dpr }));
+                                continue;
+                            }
+                            predicted = [];
+                            if (s.flags & NativeBridge.INK_FLAGS.DOWN) continue;
+                            const point = this._applyStabilization(getPt({ clientX: s.x / dpr, clientY: s.y / dpr }));
+                            point.p = s.pressure;
+                            this.currentStroke.push(point);
+                        }
+                        const last = this.currentStroke[this.currentStroke.length - 1];
+                        if (this.expandInfiniteCanvasIfNeeded) this.expandInfiniteCanvasIfNeeded(last.x, last.y);
+
+                        const ctx=c.getContext('2d');
+                        ctx.save();
+                        ctx.translate(this.state.pan.x, this.state.pan.y);
+                        ctx.scale(this.state.zoom, this.state.zoom);
+                        ctx.lineCap='round'; ctx.lineJoin='round'; ctx.lineWidth=this.state.tool==='eraser'?this.state.eraserSize:this.state.penSize;
+                        ctx.strokeStyle=this.state.tool==='eraser'?(this.state.bg==='transparent'?'#000':this.state.bg):this.state.penColor;
+                        if(this.state.tool==='eraser'&&this.state.bg==='transparent') ctx.globalCompositeOperation='destination-out';
+                        ctx.beginPath(); ctx.moveTo(this.currentStroke[Math.max(0, from)].x, this.currentStroke[Math.max(0, from)].y);
+                        for (let i = from + 1; i < this.currentStroke.length; i++) ctx.lineTo(this.currentStroke[i].x, this.currentStroke[i].y);
+                        ctx.stroke(); ctx.restore();
+
+                        if (predicted.length > 0 && this.state.tool === 'pen') this._drawPrediction(c, last, predicted);
+                        else this._clearPrediction();
+                        return;
+                    }
+                    // Already native: this frame's samples were taken with an earlier event
+                    if (this._strokeNativeInk) return;
+                }
+
                 // Apply stabilization to the point
                 const stabilizedPt = this._applyStabilization(pt);
                 this.currentStroke.push(stabilizedPt);
@@ -1531,6 +1627,8 @@ export const ColorRmInput = {
                     this.recordModification(snapshots);
                 }
 
+                const resized = this.state.images[this.state.idx].history;
+                this.state.selection.forEach(idx => { if (resized[idx]) resized[idx].lastMod = Date.now(); });
                 isResizing = false;
                 resizeHandle = null;
                 initialHistoryState = [];
@@ -1552,6 +1650,8 @@ export const ColorRmInput = {
                     this.recordModification(snapshots);
                 }
 
+                const rotated = this.state.images[this.state.idx].history;
+                this.state.selection.forEach(idx => { if (rotated[idx]) rotated[idx].lastMod = Date.now(); });
                 isRotating = false;
                 initialHistoryState = [];
                 startBounds = null;
@@ -1582,6 +1682,7 @@ export const ColorRmInput = {
                 return;
             }
             this.isDragging=false;
+            this._clearPrediction();
 
             // Clear pending shape if we were drawing one
             if (this.pendingShape) {
@@ -1690,13 +1791,39 @@ export const ColorRmInput = {
                 // Normal stroke
                 this._clearRedoStack(); // Clear redo when adding new item
                 const newStroke = {id: Date.now() + Math.random(), lastMod: Date.now(), tool:this.state.tool, pts:this.currentStroke, color:this.state.penColor, size:this.state.tool==='eraser'?this.state.eraserSize:this.state.penSize, deleted: false};
-                this.state.images[this.state.idx].history.push(newStroke);
+                const pageIdx = this.state.idx;
+                const page = this.state.images[pageIdx];
+                page.history.push(newStroke);
                 this.recordCreation(newStroke);
                 this.saveCurrentImg(true);
-                if (this.liveSync && !this.liveSync.isInitializing) {
-                    this.liveSync.addStroke(this.state.idx, newStroke);
-                }
                 this.render();
+                const syncStroke = () => {
+                    if (this.liveSync && !this.liveSync.isInitializing) {
+                        this.liveSync.addStroke(pageIdx, newStroke);
+                    }
+                };
+                // Native smoothing + decimation: the stroke is already in history, its points are swapped
+                // when the reply comes. Peers get it once, with the points it keeps.
+                if (newStroke.tool === 'pen' && this._nativeSimplify && newStroke.pts.length > 2) {
+                    NativeBridge.simplifyStroke(newStroke.pts, { tolerance: 0.5 / this.state.zoom })
+                        .then(result => {
+                            // Undone or erased meanwhile: nothing to replace or send
+                            if (newStroke.deleted || !page.history.includes(newStroke)) return;
+                            newStroke.pts = result.pts;
+                            newStroke.lastMod = Date.now();
+                            if (this.state.sessionId) this.persistPage(page);
+                            if (this.state.idx === pageIdx) {
+                                this.invalidateCache();
+                                this.render();
+                            }
+                            syncStroke();
+                        }, err => {
+                            console.warn('Native stroke simplification failed:', err);
+                            if (!newStroke.deleted && page.history.includes(newStroke)) syncStroke();
+                        });
+                } else {
+                    syncStroke();
+                }
             } else if (this.state.tool === 'eraser' && this.state.eraserType !== 'stroke') {
                 // Regular eraser (area-based) with options
                 const img = this.state.images[this.state.idx];
@@ -10,6 +10,8 @@
  * - Stroke batching for GPU-efficient rendering
  */
 
+import { NativeBridge } from './NativeBridge.js';
+
 // ============================================
 // QUADTREE SPATIAL INDEX
 // ============================================
@@ -217,10 +219,27 @@ class TileRenderer {
     constructor(tileSize = 512) {
         this.tileSize = tileSize;
         this.tileCache = new Map(); // key: "x_y" -> {canvas, lastUsed, version}
-        this.maxCachedTiles = 64;
+        this.defaultMaxCachedTiles = 64;
+        this.maxCachedTiles = this.defaultMaxCachedTiles;
+        this.bytesPerTile = tileSize * tileSize * 4; // RGBA backing store
         this.version = 0;
     }
 
+    sizeBytes() {
+        return this.tileCache.size * this.bytesPerTile;
+    }
+
+    /**
+     * Cap the cache at `bytes` (never above the default tile count) and evict down to it
+     * @returns {number} Tiles evicted
+     */
+    shrinkToBudget(bytes) {
+        this.maxCachedTiles = Math.min(this.defaultMaxCachedTiles, Math.floor(bytes / this.bytesPerTile));
+        const before = this.tileCache.size;
+        this._evictOldTiles();
+        return before - this.tileCache.size;
+    }
+
     /**
      * Get tile key for a position
      */
@@ -337,6 +356,11 @@ class TileRenderer {
     _evictOldTiles() {
         if (this.tileCache.size <= this.maxCachedTiles) return;
 
+        if (this.maxCachedTiles <= 0) {
+            this.tileCache.clear();
+            return;
+        }
+
         // Sort by last used and remove oldest
         const entries = [...this.tileCache.entries()]
             .sort((a, b) => a[1].lastUsed - b[1].lastUsed);
@@ -558,6 +582,9 @@ class PerformanceStats {
 // MAIN PERFORMANCE MANAGER
 // ============================================
 
+// Rough size of one simplified-points entry (~100 points as {x, y} objects)
+const LOD_ENTRY_BYTES = 4096;
+
 export class PerformanceManager {
     constructor() {
         this.quadTree = null;
@@ -570,6 +597,8 @@ export class PerformanceManager {
         // LOD settings
         this.lodEnabled = true;
         this.lodCache = new Map(); // strokeId -> simplified points at various epsilons
+        this.defaultMaxLodEntries = 1000;
+        this.maxLodEntries = this.defaultMaxLodEntries;
 
         // Tile rendering settings
         this.tiledRenderingEnabled = true;
@@ -578,6 +607,9 @@ export class PerformanceManager {
         // Batching settings
         this.batchingEnabled = true;
         this.batchingThreshold = 50;
+
+        // Previous native snapshot, for rates between getStats() calls
+        this._lastNativeMetrics = null;
     }
 
     /**
@@ -651,7 +683,7 @@ export class PerformanceManager {
         this.lodCache.set(cacheKey, simplified);
 
         // Limit cache size
-        if (this.lodCache.size > 1000) {
+        while (this.lodCache.size > this.maxLodEntries) {
             const firstKey = this.lodCache.keys().next().value;
             this.lodCache.delete(firstKey);
         }
@@ -748,11 +780,70 @@ export class PerformanceManager {
         this.lodCache.clear();
     }
 
+    /**
+     * Shrink (or restore) the tile and LOD caches to a memory budget from the native
+     * memory governor: three quarters for tiles, the rest for simplified points
+     * @param {number} budgetBytes
+     * @returns {{tileBytes: number, lodBytes: number, evicted: number}}
+     */
+    applyMemoryBudget(budgetBytes) {
+        let evicted = this.tileRenderer.shrinkToBudget(budgetBytes * 0.75);
+
+        this.maxLodEntries = Math.min(this.defaultMaxLodEntries,
+            Math.floor(budgetBytes * 0.25 / LOD_ENTRY_BYTES));
+        while (this.lodCache.size > this.maxLodEntries) {
+            this.lodCache.delete(this.lodCache.keys().next().value);
+            evicted++;
+        }
+
+        return {
+            tileBytes: this.tileRenderer.sizeBytes(),
+            lodBytes: this.lodCache.size * LOD_ENTRY_BYTES,
+            evicted
+        };
+    }
+
     /**
      * Get performance statistics
      */
     getStats() {
-        return this.stats.getStats();
+        const stats = this.stats.getStats();
+        const native = this.getNativeStats();
+        return stats && native ? { ...stats, native } : stats;
+    }
+
+    /**
+     * Native bridge and touch-path timings (Android app only), with touch rates
+     * computed against the previous call
+     */
+    getNativeStats() {
+        const metrics = NativeBridge.getMetrics();
+        if (!metrics) return null;
+        const prev = this._lastNativeMetrics;
+        this._lastNativeMetrics = metrics;
+
+        const dispatch = metrics.timers['touch.dispatch'];
+        const elapsedS = prev ? (metrics.uptimeMs - prev.uptimeMs) / 1000 : 0;
+        const rate = (name) => elapsedS > 0
+            ? ((metrics.counters[name] || 0) - (prev.counters[name] || 0)) / elapsedS
+            : 0;
+
+        // Slowest bridge methods by p99
+        const bridge = Object.entries(metrics.timers)
+            .filter(([name]) => name.startsWith('bridge.') || name.startsWith('job.'))
+            .sort((a, b) => b[1].p99Us - a[1].p99Us)
+            .slice(0, 5)
+            .map(([name, t]) => ({ name, count: t.count, p50Us: t.p50Us, p99Us: t.p99Us, maxUs: t.maxUs }));
+
+        return {
+            touchDispatchP50Us: dispatch ? dispatch.p50Us : 0,
+            touchDispatchP99Us: dispatch ? dispatch.p99Us : 0,
+            touchEventsPerSec: rate('touch.events').toFixed(1),
+            touchSamplesPerSec: rate('touch.samples').toFixed(1),
+            base64DecodedBytes: metrics.counters['base64.decodedBytes'] || 0,
+            base64EncodedBytes: metrics.counters['base64.encodedBytes'] || 0,
+            bridge
+        };
     }
 
     /**
@@ -1,3 +1,9 @@
+import { NativeBridge } from './NativeBridge.js';
+import { hashBlob } from './Sha256.js';
+
+// Below this crypto.subtle hashes the whole file in one go, which is faster
+const WHOLE_FILE_HASH_BYTES = 16 * 1024 * 1024;
+
 export const ColorRmSession = {
     async retryBaseFetch() {
         if (this.isFetchingBase) return;
@@ -355,10 +361,11 @@ export const ColorRmSession = {
 
             this.ui.toggleLoader(true, 'Loading PDF...');
 
+            let nativePdf = null;
             try {
-                const arrayBuffer = await file.arrayBuffer();
-                const pdf = await pdfjsLib.getDocument(arrayBuffer).promise;
-                const totalPages = pdf.numPages;
+                nativePdf = await this._openNativePdf(file);
+                const pdf = nativePdf ? null : await pdfjsLib.getDocument(await file.arrayBuffer()).promise;
+                const totalPages = nativePdf ? nativePdf.pageCount : pdf.numPages;
 
                 // Show import options dialog
                 const options = await this._showPdfImportOptions(file.name, totalPages);
@@ -378,24 +385,39 @@ export const ColorRmSession = {
                         `Importing page ${pageNum - startPage + 1} of ${pagesToImport}...`
                     );
 
-                    const page = await pdf.getPage(pageNum);
-                    const viewport = page.getViewport({ scale: scale });
-
-                    // Create canvas and render PDF page
-                    const canvas = document.createElement('canvas');
-                    canvas.width = viewport.width;
-                    canvas.height = viewport.height;
-                    const ctx = canvas.getContext('2d');
-
-                    await page.render({
-                        canvasContext: ctx,
-                        viewport: viewport
-                    }).promise;
-
-                    // Convert to blob
-                    const blob = await new Promise(resolve =>
-                        canvas.toBlob(resolve, 'image/jpeg', 0.92)
-                    );
+                    let blob, width, height;
+                    if (nativePdf) {
+                        // The next pages render in the shell while this one is put together
+                        const ahead = [];
+                        for (let p = pageNum; p < Math.min(pageNum + 2, endPage); p++) ahead.push(p);
+                        nativePdf.prefetch(ahead, scale);
+                        blob = await nativePdf.renderPage(pageNum - 1, scale);
+                        // Same rounding as renderPage's canvas
+                        const size = nativePdf.pageSize(pageNum - 1);
+                        width = Math.max(1, Math.round(size.width * scale));
+                        height = Math.max(1, Math.round(size.height * scale));
+                    } else {
+                        const page = await pdf.getPage(pageNum);
+                        const viewport = page.getViewport({ scale: scale });
+
+                        // Create canvas and render PDF page
+                        const canvas = document.createElement('canvas');
+                        canvas.width = viewport.width;
+                        canvas.height = viewport.height;
+                        const ctx = canvas.getContext('2d');
+
+                        await page.render({
+                            canvasContext: ctx,
+                            viewport: viewport
+                        }).promise;
+
+                        // Convert to blob
+                        blob = await new Promise(resolve =>
+                            canvas.toBlob(resolve, 'image/jpeg', 0.92)
+                        );
+                        width = viewport.width;
+                        height = viewport.height;
+                    }
 
                     // Create new page
                     const newPageIndex = this.state.images.length;
@@ -407,8 +429,8 @@ export const ColorRmSession = {
                         pageId: pageId,
                         blob: blob,
                         history: [],
-                        width: viewport.width,
-                        height: viewport.height
+                        width: width,
+                        height: height
                     };
 
                     // Save to IndexedDB
@@ -438,6 +460,8 @@ export const ColorRmSession = {
                 console.error('PDF import error:', e);
                 this.ui.showToast(`PDF import failed: ${e.message}`);
             } finally {
+                // Pages are images from here on; the shell can let the document go
+                nativePdf?.close();
                 this.ui.toggleLoader(false);
             }
         };
@@ -1257,6 +1281,7 @@ export const ColorRmSession = {
 
                 pagesReq.onsuccess = () => {
                     pagesReq.result.forEach(pg => pagesStore.delete(pg.id));
+                    this.dropNativeHistory(id);
 
                     // 2. Delete Session Metadata
                     const sessTx = this.db.transaction('sessions', 'readwrite');
@@ -1301,7 +1326,9 @@ export const ColorRmSession = {
         return new Promise(async (resolve, reject) => {
             const q = this.db.transaction('pages').objectStore('pages').index('sessionId').getAll(id);
             q.onsuccess = async () => {
-                this.state.images = q.result.sort((a, b) => a.pageIndex - b.pageIndex);
+                const pages = q.result.sort((a, b) => a.pageIndex - b.pageIndex);
+                await this.loadNativeHistories(id, pages);
+                this.state.images = pages;
 
                 // Retroactively assign IDs to legacy items (history items)
                 let needsUpdate = false;
@@ -1442,9 +1469,26 @@ export const ColorRmSession = {
         }, true); // Pass true to skip upload
     },
 
+    /**
+     * Open a PDF with the Android shell's native renderer.
+     * Returns null when unavailable so callers fall back to pdf.js.
+     */
+    async _openNativePdf(file, fileHash = null) {
+        if (!NativeBridge.isAvailable()) return null;
+        try {
+            const doc = fileHash || await this.computeFileHash(file);
+            if (!doc) return null;
+            return await NativeBridge.openPdf(file, doc);
+        } catch (e) {
+            console.warn('Native PDF renderer unavailable, using pdf.js:', e);
+            return null;
+        }
+    },
+
     async computeFileHash(file) {
-        if (!window.crypto || !window.crypto.subtle) return null;
         try {
+            // Large files are hashed a slice at a time rather than read into memory whole
+            if (file.size > WHOLE_FILE_HASH_BYTES || !window.crypto?.subtle) return await hashBlob(file);
             const buffer = await file.arrayBuffer();
             const hashBuffer = await crypto.subtle.digest('SHA-256', buffer);
             const hashArray = Array.from(new Uint8Array(hashBuffer));
@@ -1544,7 +1588,22 @@ export const ColorRmSession = {
                 
                 let uploadRes;
                 
-                if (isCapacitorNative && window.Capacitor.Plugins && window.Capacitor.Plugins.CapacitorHttp) {
+                if (files[0].nativeUri && NativeBridge.canUploadAsset()) {
+                    // Shared file: the shell uploads it by content hash (nothing sent if the server has it,
+                    // resumes after a dropped connection), then the server links it as this project's base file
+                    const asset = await NativeBridge.uploadAsset(files[0].nativeUri, {
+                        mimeType: files[0].type,
+                        onProgress: (sent, total) => this.ui.toggleLoader(true, `Uploading to server... ${Math.round(sent * 100 / total)}%`)
+                    });
+                    console.log(`ColorRM Sync: Native upload ${asset.deduplicated ? 'skipped (already on server)' : 'done'}, sha256 ${asset.sha256}`);
+                    uploadRes = await fetch(url, {
+                        method: 'POST',
+                        headers: {
+                            'x-asset-sha256': asset.sha256,
+                            'x-project-name': encodeURIComponent(pName)
+                        }
+                    });
+                } else if (isCapacitorNative && window.Capacitor.Plugins && window.Capacitor.Plugins.CapacitorHttp) {
                     console.log('ColorRM Sync: Using CapacitorHttp for base file upload');
                     console.log(`ColorRM Sync: File size: ${files[0].size} bytes, type: ${files[0].type}`);
 
@@ -1739,28 +1798,41 @@ export const ColorRmSession = {
 
                 const f = processQueue.shift();
                 if (f.type.includes('pdf')) {
+                    let nativePdf = null;
                     try {
-                        const d = await f.arrayBuffer();
-                        const pdf = await pdfjsLib.getDocument(d).promise;
-                        for (let i = 1; i <= pdf.numPages; i += BATCH_SIZE) {
+                        // 3x DPI (216 DPI) for high-quality rasterization
+                        const PDF_RENDER_SCALE = 3.0;
+                        // Android shell renders natively; pdf.js is the fallback everywhere else
+                        nativePdf = await this._openNativePdf(f, f === files[0] ? fileHash : null);
+                        const pdf = nativePdf ? null : await pdfjsLib.getDocument(await f.arrayBuffer()).promise;
+                        const numPages = nativePdf ? nativePdf.pageCount : pdf.numPages;
+                        const renderPageBlob = nativePdf
+                            ? (pNum) => nativePdf.renderPage(pNum - 1, PDF_RENDER_SCALE)
+                            : (pNum) => pdf.getPage(pNum).then(async page => {
+                                const v = page.getViewport({
+                                    scale: PDF_RENDER_SCALE
+                                });
+                                const cvs = document.createElement('canvas');
+                                cvs.width = v.width;
+                                cvs.height = v.height;
+                                await page.render({
+                                    canvasContext: cvs.getContext('2d'),
+                                    viewport: v
+                                }).promise;
+                                // High quality JPEG (0.92) for good compression with minimal artifacts
+                                return new Promise(r => cvs.toBlob(r, 'image/jpeg', 0.92));
+                            });
+                        for (let i = 1; i <= numPages; i += BATCH_SIZE) {
+                            if (nativePdf) {
+                                // Next batch (0-based) renders in the shell while this one is stored
+                                const ahead = [];
+                                for (let p = i + BATCH_SIZE - 1; p < Math.min(i + 2 * BATCH_SIZE - 1, numPages); p++) ahead.push(p);
+                                nativePdf.prefetch(ahead, PDF_RENDER_SCALE);
+                            }
                             const batch = [];
-                            for (let j = 0; j < BATCH_SIZE && (i + j) <= pdf.numPages; j++) {
+                            for (let j = 0; j < BATCH_SIZE && (i + j) <= numPages; j++) {
                                 const pNum = i + j;
-                                batch.push(pdf.getPage(pNum).then(async page => {
-                                    // 3x DPI (216 DPI) for high-quality rasterization
-                                    const PDF_RENDER_SCALE = 3.0;
-                                    const v = page.getViewport({
-                                        scale: PDF_RENDER_SCALE
-                                    });
-                                    const cvs = document.createElement('canvas');
-                                    cvs.width = v.width;
-                                    cvs.height = v.height;
-                                    await page.render({
-                                        canvasContext: cvs.getContext('2d'),
-                                        viewport: v
-                                    }).promise;
-                                    // High quality JPEG (0.92) for good compression with minimal artifacts
-                                    const b = await new Promise(r => cvs.toBlob(r, 'image/jpeg', 0.92));
+                                batch.push(renderPageBlob(pNum).then(async b => {
                                     const pageIdx = idx + j;
                                     const pageId = this._generatePageId('pdf', pNum - 1); // PDF pages are 1-indexed, we want 0-indexed
                                     const pageObj = {
@@ -1796,12 +1868,14 @@ export const ColorRmSession = {
                             if (pt) pt.innerText = '/ ' + this.state.images.length;
 
                             idx += results.length;
-                            this.ui.updateProgress(((i / pdf.numPages) * 100), `Processing Page ${i}/${pdf.numPages}`);
+                            this.ui.updateProgress(((i / numPages) * 100), `Processing Page ${i}/${numPages}`);
                             await new Promise(r => setTimeout(r, 0));
                         }
                     } catch (e) {
                         console.error(e);
                         this.ui.showToast("Failed to load PDF");
+                    } finally {
+                        nativePdf?.close();
                     }
                 } else if (f.type === 'image/svg+xml' || f.name?.toLowerCase().endsWith('.svg')) {
                     // SVG import - show options dialog
@@ -2717,6 +2791,7 @@ export const ColorRmSession = {
             const tx = this.db.transaction('pages', 'readwrite');
             tx.objectStore('pages').delete(pageToDelete.id);
             await new Promise(resolve => tx.oncomplete = resolve);
+            this.dropNativeHistory(this.state.sessionId, pageToDelete);
 
             // Remove from state
             this.state.images.splice(currentPageIndex, 1);
@@ -1,4 +1,6 @@
 import { fetchWithTimeout, TIMEOUT } from './NetworkUtils.js';
+import { NativeBridge } from './NativeBridge.js';
+import { NativeProjectStore } from './NativeProjectStore.js';
 
 export const ColorRmStorage = {
     async dbPut(s, v) {
@@ -106,7 +108,7 @@ export const ColorRmStorage = {
 
         if(this.state.sessionId) {
             const currentPage = this.state.images[this.state.idx];
-            await this.dbPut('pages', currentPage);
+            await this.persistPage(currentPage);
 
             // Check if sync is enabled
             if (!this.state.syncEnabled) {
@@ -178,6 +180,67 @@ export const ColorRmStorage = {
         }
     },
 
+    /**
+     * Save a page locally. In the Android shell the history goes to the native
+     * store as per-element changes and IndexedDB keeps the rest of the record, so
+     * the cost follows the edit rather than the page. Elsewhere, or if the native
+     * write fails, the whole page goes to IndexedDB as before.
+     */
+    async persistPage(page) {
+        if (page.historyStore === 'native') {
+            // History never arrived from the native store; saving now would replace it with what is in memory
+            console.warn('[persistPage] Page history not loaded from native store, not saving:', page.id);
+            return;
+        }
+        if (await NativeProjectStore.isAvailable()) {
+            try {
+                await NativeProjectStore.savePage(this.state.sessionId, page);
+                await this.dbPut('pages', {
+                    ...page,
+                    history: [],
+                    historyStore: 'native',
+                    historyKey: NativeProjectStore.pageKey(page),
+                    historyCount: page.history ? page.history.length : 0
+                });
+                return;
+            } catch (e) {
+                console.warn('[persistPage] Native store save failed, writing the full page:', e);
+            }
+        }
+        await this.dbPut('pages', page);
+    },
+
+    /**
+     * Fill in histories kept by the native store for pages just read from
+     * IndexedDB. Rows stream in z order, a few hundred per message. A page that
+     * cannot be loaded keeps its marker, so later saves leave the stored rows alone.
+     */
+    async loadNativeHistories(sessionId, pages) {
+        let failed = 0;
+        for (const page of pages) {
+            if (page.historyStore !== 'native') continue;
+            try {
+                if (!(await NativeProjectStore.isAvailable())) throw new Error('Native store not available');
+                page.history = await NativeProjectStore.loadHistory(sessionId, NativeProjectStore.pageKey(page));
+                // From here on the in-memory page is the full record again
+                delete page.historyStore;
+                delete page.historyKey;
+                delete page.historyCount;
+            } catch (e) {
+                console.error(`[loadNativeHistories] Could not load history for page ${page.id}:`, e);
+                page.history = [];
+                failed++;
+            }
+        }
+        if (failed > 0 && this.ui) this.ui.showToast(`Could not load drawings for ${failed} page(s)`);
+    },
+
+    // Forget native history rows for a deleted session, or one deleted page
+    dropNativeHistory(sessionId, page = null) {
+        NativeProjectStore.drop(sessionId, page ? NativeProjectStore.pageKey(page) : null)
+            .catch(e => console.warn('[dropNativeHistory] Failed:', e));
+    },
+
     /**
      * Sync large modifications to R2 instead of Liveblocks
      * Used when modification count exceeds threshold
@@ -325,6 +388,11 @@ export const ColorRmStorage = {
     },
 
     saveBlobNative(blob, filename) {
+        if (NativeBridge.isAvailable()) {
+            // Binary frames straight to a native file writer, no Base64
+            this.saveBlobNativeStreamed(blob, filename);
+            return true;
+        }
         if (window.AndroidNative) {
             // For large files, process in chunks to avoid OOM
             const CHUNK_SIZE = 512 * 1024; // 512KB chunks
@@ -352,15 +420,36 @@ export const ColorRmStorage = {
         return false;
     },
 
+    // Streamed saving over AndroidNativePort with progress acks as backpressure
+    async saveBlobNativeStreamed(blob, filename) {
+        try {
+            if (blob.size > 2 * 1024 * 1024) this.ui.showToast("Saving large file...");
+            const actualName = await NativeBridge.exportBlob(blob, filename, {
+                onProgress: (percent) => {
+                    if (blob.size > 2 * 1024 * 1024) this.ui.updateProgress(percent, `Saving ${Math.round(percent)}%`);
+                }
+            });
+            this.ui.showToast("Saved: " + actualName);
+        } catch (e) {
+            console.error("Streamed save failed:", e);
+            this.ui.showToast("Save failed: " + e.message);
+        }
+    },
+
     // Chunked saving for large blobs on Android
     async saveBlobNativeChunked(blob, filename) {
+        let sessionId = null;
         try {
             if (window.AndroidNative.startFile) {
                 // New Method: True Chunked Transfer
-                const sessionId = Date.now().toString();
+                // Unique per call: several exports may be writing at once
+                sessionId = `${Date.now()}-${Math.random().toString(36).slice(2)}`;
                 const actualName = window.AndroidNative.startFile(filename, sessionId);
 
-                if (!actualName) throw new Error("Failed to start file save");
+                if (!actualName) {
+                    sessionId = null;
+                    throw new Error("Failed to start file save");
+                }
 
                 const arrayBuffer = await blob.arrayBuffer();
                 const bytes = new Uint8Array(arrayBuffer);
@@ -376,6 +465,7 @@ export const ColorRmStorage = {
                 }
 
                 window.AndroidNative.finishFile(sessionId, blob.type);
+                sessionId = null;
                 this.ui.showToast("Saved: " + actualName);
 
             } else {
@@ -402,6 +492,8 @@ export const ColorRmStorage = {
             }
         } catch (e) {
             console.error("Chunked save failed:", e);
+            // Drop the half-written pending entry instead of leaving it in Downloads
+            if (sessionId && window.AndroidNative.abortFile) window.AndroidNative.abortFile(sessionId);
             this.ui.showToast("Save failed: " + e.message);
         }
     },
@@ -67,6 +67,7 @@ export const ColorRmUI = {
                     this.state.selection.forEach(idx => {
                         const st = img.history[idx];
                         applyColorToItem(st, mode === 'selectionStroke');
+                        st.lastMod = Date.now();
                     });
                     this.invalidateCache();
                     this.saveCurrentImg();
@@ -202,7 +203,9 @@ export const ColorRmUI = {
                 const mode = this.state.pickerMode;
                 if(mode==='selectionFill') {
                     const img = this.state.images[this.state.idx];
-                    this.state.selection.forEach(i => { if(img.history[i].tool==='shape') img.history[i].fill='transparent'; });
+                    this.state.selection.forEach(i => {
+                        if(img.history[i].tool==='shape') { img.history[i].fill='transparent'; img.history[i].lastMod = Date.now(); }
+                    });
                     this.render(); this.saveCurrentImg();
                 } else if (mode==='shapeFill') this.state.shapeFill = 'transparent';
                 this.getElement('floatingPicker').style.display='none';
@@ -232,6 +235,7 @@ export const ColorRmUI = {
                         if(st.tool === 'pen' || st.tool === 'eraser') st.size = v;
                         else if(st.tool === 'shape') st.width = v;
                         else if(st.tool === 'text') st.size = v;
+                        st.lastMod = Date.now();
                     });
                     this.render();
                 } else {
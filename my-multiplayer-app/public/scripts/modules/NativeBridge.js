@@ -0,0 +1,823 @@
+/**
+ * Native Bridge - helpers for the Android shell's window.AndroidNativePort channel
+ *
+ * String messages are JSON routed by `topic`. Binary messages are frames whose
+ * first 4 bytes (big-endian) carry a stream id, followed by the payload.
+ */
+
+const FRAME_HEADER_BYTES = 4;
+const EXPORT_FRAME_BYTES = 256 * 1024; // 256KB per binary frame
+const INK_STREAM_ID = -1; // Fixed native-originated stream (InkStreamer.STREAM_ID)
+const SIMPLIFY_STREAM_ID = -2; // StrokeSimplifyChannel.STREAM_ID
+const SIMPLIFY_HELLO_TIMEOUT_MS = 3000;
+
+const topicListeners = new Map();
+const binaryListeners = new Map();
+let nextRequestId = 1;
+let attached = false;
+let eventsRelayed = false;
+const pendingJobs = new Map();
+const pendingSimplify = new Map();
+let nextSimplifyId = 1;
+let simplifyReady = null;
+let nextSyncId = 1;
+
+// Single completion callback for AndroidNative.startJob
+function installJobCallback() {
+    if (window.__androidNativeJobDone) return;
+    window.__androidNativeJobDone = (jobId, ok, result) => {
+        const job = pendingJobs.get(jobId);
+        if (!job) return;
+        pendingJobs.delete(jobId);
+        if (ok) job.resolve(result);
+        else job.reject(new Error(result || 'Native job failed'));
+    };
+}
+
+// Native "events" batches (NativeEventDispatcher): same window events and handlers as the
+// script fallback the shell uses for pages that have not subscribed
+function relayNativeEvent(e) {
+    switch (e.type) {
+        case 'spen-button':
+            window.dispatchEvent(new CustomEvent(e.data ? 'spen-button-down' : 'spen-button-up'));
+            break;
+        case 'share-file':
+            window.handleSharedFile?.(e.data);
+            break;
+        case 'share-files':
+            window.handleSharedFiles?.(e.data);
+            break;
+        case 'share-url':
+            window.handleSharedUrl?.(e.data);
+            break;
+        case 'memory-trim':
+            window.dispatchEvent(new CustomEvent('native-memory-trim', { detail: e.data }));
+            break;
+        case 'asset-upload':
+            window.dispatchEvent(new CustomEvent('native-asset-upload', { detail: e.data }));
+            break;
+    }
+}
+
+function getPort() {
+    return window.AndroidNativePort || null;
+}
+
+function attach() {
+    const port = getPort();
+    if (!port || attached) return port;
+    attached = true;
+    port.addEventListener('message', (event) => {
+        const data = event.data;
+        if (typeof data === 'string') {
+            let msg;
+            try { msg = JSON.parse(data); } catch (e) { return; }
+            const listeners = topicListeners.get(msg.topic);
+            if (listeners) listeners.forEach(fn => fn(msg));
+        } else if (data instanceof ArrayBuffer && data.byteLength >= FRAME_HEADER_BYTES) {
+            const streamId = new DataView(data).getInt32(0);
+            const listener = binaryListeners.get(streamId);
+            if (listener) listener(data);
+        }
+    });
+    return port;
+}
+
+export const NativeBridge = {
+    FRAME_HEADER_BYTES,
+
+    isAvailable() {
+        return !!getPort();
+    },
+
+    canCallAsync() {
+        return !!(window.AndroidNative && window.AndroidNative.startJob);
+    },
+
+    /**
+     * Native-side timings: per-method bridge latency histograms, job durations,
+     * touch dispatch cost and Base64 byte counts. Durations are in microseconds.
+     * @returns {object|null} {uptimeMs, timers: {name: {count, p50Us, p99Us, ...}}, counters}
+     */
+    getMetrics() {
+        if (!window.AndroidNative?.getBridgeMetrics) return null;
+        try { return JSON.parse(window.AndroidNative.getBridgeMetrics()); } catch (e) { return null; }
+    },
+
+    /**
+     * The shell's memory governor: device budget, current trim grade and what every
+     * cache (native and page) holds. Budget changes arrive as 'native-memory-trim'
+     * window events with detail {grade, level, fraction, budgetBytes}.
+     * @returns {object|null} {grade, memoryClassMb, jsBudgetBytes, jsBudgetNowBytes, peakFootprintBytes, evictions, trims, lastExit, caches}
+     */
+    getMemoryBudget() {
+        if (!window.AndroidNative?.getMemoryBudget) return null;
+        try { return JSON.parse(window.AndroidNative.getMemoryBudget()); } catch (e) { return null; }
+    },
+
+    /** Tell the governor what one page cache holds now and how many entries it just dropped. */
+    reportMemoryUsage(cache, bytes, evicted = 0) {
+        window.AndroidNative?.reportMemoryUsage?.(cache, Math.round(bytes), evicted);
+    },
+
+    /**
+     * Tune the shell's palm rejection, which drops finger contacts near the S Pen before
+     * they reach the page. Keys left out keep their current value; no argument just reads it.
+     * @param {object} options - { enabled, whileHovering, graceMs, palmSizeMm, cancelWindowMs }
+     * @returns {object|null} the config now in effect
+     */
+    configurePalmRejection(options = null) {
+        if (!window.AndroidNative?.configurePalmRejection) return null;
+        try {
+            return JSON.parse(window.AndroidNative.configurePalmRejection(options ? JSON.stringify(options) : ''));
+        } catch (e) { return null; }
+    },
+
+    canUploadAsset() {
+        return !!window.AndroidNative?.uploadAsset;
+    },
+
+    /**
+     * Upload a shared content:// file from the shell, content-addressed: the shell hashes it
+     * (SHA-256), skips the transfer when the server already has it and otherwise sends it in
+     * resumable parts. Needs the events relay (relayEvents) or the shell's script fallback.
+     * @param {string} uri - a content:// URI the shell received in a share
+     * @param {object} options - { mimeType, endpoint: API URL ending in /api/uploads/sha256/, onProgress(sent, total) }
+     * @returns {Promise<{sha256: string, size: number, deduplicated: boolean, bytesSent: number}>}
+     */
+    uploadAsset(uri, { mimeType = '', endpoint = null, onProgress = null } = {}) {
+        if (!this.canUploadAsset()) return Promise.reject(new Error('AndroidNative.uploadAsset not available'));
+        const url = endpoint || new URL(window.Config?.apiUrl('/api/uploads/sha256/') || '/api/uploads/sha256/', location.href).href;
+        return new Promise((resolve, reject) => {
+            const onStatus = (event) => {
+                const status = event.detail;
+                if (!status || status.id !== id) return;
+                if (status.state === 'progress') {
+                    onProgress?.(status.sent, status.total);
+                    return;
+                }
+                window.removeEventListener('native-asset-upload', onStatus);
+                if (status.state === 'done') resolve(status);
+                else reject(new Error(status.message || 'Upload failed'));
+            };
+            window.addEventListener('native-asset-upload', onStatus);
+            const id = window.AndroidNative.uploadAsset(uri, mimeType, url);
+            if (!id) {
+                window.removeEventListener('native-asset-upload', onStatus);
+                reject(new Error('Upload refused for ' + uri));
+            }
+        });
+    },
+
+    /** @returns {object|null} {uploads, deduplicated, bytesSent, bytesSkipped, resumedParts, retries, failures} */
+    getAssetUploadStats() {
+        if (!window.AndroidNative?.getAssetUploadStats) return null;
+        try { return JSON.parse(window.AndroidNative.getAssetUploadStats()); } catch (e) { return null; }
+    },
+
+    /** Whether a LiveSync WebSocket can be held by the shell instead of the page (openSyncSocket). */
+    canSyncNatively() {
+        return !!getPort() && window.AndroidNative?.getSyncStats?.() != null;
+    },
+
+    /**
+     * A WebSocket to the sync server held by the shell: it stays connected while the app is
+     * in the background, and what arrives meanwhile is merged and delivered as one batch on
+     * resume. Same surface as the WebSocket API for text messages, plus:
+     * - onopen's event has `reconnected: true` after the shell re-established a dropped connection
+     *   (sends made while it was down are delivered then; the page should resend its state);
+     * - onresync(), if set, is called when too much arrived in the background to merge;
+     *   by default the socket then closes (code 4000) so the page reconnects and reloads.
+     * @param {string} url - ws:// or wss://
+     * @returns {NativeSyncSocket}
+     */
+    openSyncSocket(url) {
+        return new NativeSyncSocket(this, url);
+    },
+
+    /** @returns {object|null} {paused, connections: [{url, connected, deflate, messagesIn, wireBytesIn, messagesOut, bytesOut, wireBytesOut, pings, reconnects, held, merged, resyncs}]} */
+    getSyncStats() {
+        if (!window.AndroidNative?.getSyncStats) return null;
+        try { return JSON.parse(window.AndroidNative.getSyncStats()); } catch (e) { return null; }
+    },
+
+    /**
+     * Cold-start timeline from the shell: native phases (trace sections) and milestones,
+     * in ms since process start. Includes page-side milestones sent with markStartup().
+     * @returns {object|null} {cold, info: {appVersion, server, ...}, marks: {name: ms}, phases: [{name, thread, startMs, durationMs}]}
+     */
+    getStartupTimeline() {
+        if (!window.AndroidNative?.getStartupTimeline) return null;
+        try { return JSON.parse(window.AndroidNative.getStartupTimeline()); } catch (e) { return null; }
+    },
+
+    /** Record a page milestone on the native startup timeline; "interactive" also logs the whole timeline. */
+    markStartup(name) {
+        window.AndroidNative?.markStartup?.(name);
+    },
+
+    /**
+     * Run an AndroidNative method on the native job pool without blocking the JS thread.
+     * @param {string} method - e.g. 'readContentUri', 'getFileName', 'getMimeType', 'saveBlob'
+     * @param {Array} args
+     * @param {object} options - { timeoutMs, signal: AbortSignal }
+     * @returns {Promise<string|null>}
+     */
+    call(method, args = [], { timeoutMs = 0, signal = null } = {}) {
+        if (!this.canCallAsync()) return Promise.reject(new Error('AndroidNative.startJob not available'));
+        installJobCallback();
+        return new Promise((resolve, reject) => {
+            const jobId = window.AndroidNative.startJob(method, JSON.stringify(args), timeoutMs);
+            pendingJobs.set(jobId, { resolve, reject });
+            if (signal) signal.addEventListener('abort', () => window.AndroidNative.cancelJob(jobId), { once: true });
+        });
+    },
+
+    /** Subscribe to JSON messages for a topic. Returns an unsubscribe function. */
+    on(topic, fn) {
+        attach();
+        if (!topicListeners.has(topic)) topicListeners.set(topic, new Set());
+        topicListeners.get(topic).add(fn);
+        return () => topicListeners.get(topic).delete(fn);
+    },
+
+    /** Subscribe to binary frames for a stream id. Returns an unsubscribe function. */
+    onBinary(streamId, fn) {
+        attach();
+        binaryListeners.set(streamId, fn);
+        return () => binaryListeners.delete(streamId);
+    },
+
+    send(topic, message) {
+        const port = attach();
+        if (!port) throw new Error('AndroidNativePort not available');
+        port.postMessage(JSON.stringify({ ...message, topic }));
+    },
+
+    sendFrame(streamId, bytes) {
+        const port = attach();
+        if (!port) throw new Error('AndroidNativePort not available');
+        const frame = new Uint8Array(FRAME_HEADER_BYTES + bytes.byteLength);
+        new DataView(frame.buffer).setInt32(0, streamId);
+        frame.set(bytes, FRAME_HEADER_BYTES);
+        port.postMessage(frame.buffer);
+    },
+
+    /**
+     * Take native notifications (S Pen button, shares) over the port, one message per
+     * frame, instead of a script evaluation per event. Idempotent.
+     */
+    relayEvents() {
+        if (!getPort() || eventsRelayed) return;
+        eventsRelayed = true;
+        this.on('events', (msg) => msg.events.forEach(relayNativeEvent));
+        this.send('events', { op: 'subscribe' });
+    },
+
+    /**
+     * Subscribe to the native ink channel: every digitizer sample (historical ones
+     * included), delivered once per frame. Coordinates are window pixels.
+     * With predictMs > 0 each frame also carries provisional points (flags & PREDICTED)
+     * extrapolated that far ahead; the next frame's real samples replace them.
+     * @param {object} options - { stylusOnly: true, predictMs: 0, predictPoints: 2 }
+     * @returns {{ drain(): Array<object>, configure(opts): void, metrics(): Promise<object>, close(): void }}
+     */
+    subscribeInk({ stylusOnly = true, predictMs = 0, predictPoints = 2 } = {}) {
+        const queue = [];
+        let stride = 9;
+        let metricsWaiters = [];
+        const unsubscribeTopic = this.on('ink', (msg) => {
+            if (msg.op === 'subscribed') stride = msg.stride;
+            if (msg.op === 'metrics') {
+                metricsWaiters.forEach(resolve => resolve(msg));
+                metricsWaiters = [];
+            }
+        });
+        const unsubscribeFrames = this.onBinary(INK_STREAM_ID, (buffer) => {
+            const f = new Float32Array(buffer, FRAME_HEADER_BYTES);
+            for (let i = 0; i + stride <= f.length; i += stride) {
+                queue.push({
+                    pointerId: f[i], toolType: f[i + 1], x: f[i + 2], y: f[i + 3],
+                    pressure: f[i + 4], tilt: f[i + 5], orientation: f[i + 6],
+                    time: f[i + 7], flags: f[i + 8]
+                });
+            }
+        });
+        this.send('ink', { op: 'subscribe', stylusOnly, predictMs, predictPoints });
+        return {
+            drain: () => queue.splice(0, queue.length),
+            configure: (opts) => this.send('ink', { op: 'config', ...opts }),
+            // Prediction accuracy: { evaluated, meanError, maxError } in window pixels
+            metrics: () => new Promise(resolve => {
+                metricsWaiters.push(resolve);
+                this.send('ink', { op: 'metrics' });
+            }),
+            close: () => {
+                unsubscribeTopic();
+                unsubscribeFrames();
+                this.send('ink', { op: 'unsubscribe' });
+            }
+        };
+    },
+
+    /**
+     * Whether this shell simplifies strokes. Asked once; shells without
+     * StrokeSimplifyChannel never answer and resolve false.
+     * @returns {Promise<boolean>}
+     */
+    strokeSimplifyAvailable() {
+        if (!this.isAvailable()) return Promise.resolve(false);
+        if (!simplifyReady) {
+            simplifyReady = new Promise((resolve) => {
+                const timer = setTimeout(() => { unsubscribe(); resolve(false); }, SIMPLIFY_HELLO_TIMEOUT_MS);
+                const unsubscribe = this.on('simplify', (msg) => {
+                    if (msg.op !== 'ready') return;
+                    clearTimeout(timer);
+                    unsubscribe();
+                    resolve(true);
+                });
+                this.send('simplify', { op: 'hello' });
+            });
+        }
+        return simplifyReady;
+    },
+
+    /**
+     * Smooth and decimate a committed stroke natively (pressure-aware smoothing + RDP).
+     * Check {@link strokeSimplifyAvailable} first; without it this only times out.
+     * @param {Array<{x:number,y:number,p?:number}>} pts
+     * @param {object} options - { tolerance: 0.5, smoothing: 0.3 } in the points' units
+     * @returns {Promise<{pts: Array<{x:number,y:number,p:number}>, rawCount: number, ratio: number}>}
+     */
+    simplifyStroke(pts, { tolerance = 0.5, smoothing = 0.3 } = {}) {
+        return new Promise((resolve, reject) => {
+            if (!binaryListeners.has(SIMPLIFY_STREAM_ID)) {
+                this.onBinary(SIMPLIFY_STREAM_ID, (buffer) => {
+                    const f = new Float32Array(buffer, FRAME_HEADER_BYTES);
+                    const waiter = pendingSimplify.get(f[0]);
+                    if (!waiter) return;
+                    pendingSimplify.delete(f[0]);
+                    clearTimeout(waiter.timer);
+                    const kept = f[2];
+                    const out = new Array(kept);
+                    for (let i = 0; i < kept; i++) out[i] = { x: f[4 + i * 3], y: f[5 + i * 3], p: f[6 + i * 3] };
+                    waiter.resolve({ pts: out, rawCount: f[1], ratio: f[3] });
+                });
+            }
+            const id = nextSimplifyId++;
+            const payload = new Float32Array(3 + pts.length * 3);
+            payload[0] = id; payload[1] = tolerance; payload[2] = smoothing;
+            for (let i = 0; i < pts.length; i++) {
+                payload[3 + i * 3] = pts[i].x;
+                payload[4 + i * 3] = pts[i].y;
+                payload[5 + i * 3] = pts[i].p ?? 1;
+            }
+            // Never hold a stroke hostage to a reply that may not come
+            const timer = setTimeout(() => {
+                pendingSimplify.delete(id);
+                reject(new Error('simplifyStroke timed out'));
+            }, 1000);
+            pendingSimplify.set(id, { resolve, reject, timer });
+            try {
+                this.sendFrame(SIMPLIFY_STREAM_ID, new Uint8Array(payload.buffer));
+            } catch (e) {
+                pendingSimplify.delete(id);
+                clearTimeout(timer);
+                reject(e);
+            }
+        });
+    },
+
+    // Flags on ink samples (see InkSampleBuffer.java)
+    INK_FLAGS: { HISTORICAL: 1, PREDICTED: 2, DOWN: 4, UP: 8, CANCEL: 16 },
+
+    /**
+     * Stream a Blob into Downloads as binary frames.
+     * Only `window` frames are in flight at once; each progress ack releases one more.
+     * @param {Blob} blob
+     * @param {string} filename
+     * @param {object} options - { onProgress(percent, written, total), signal: AbortSignal }
+     * @returns {Promise<string>} the name the file was saved under
+     */
+    exportBlob(blob, filename, { onProgress = null, signal = null, dest = 'downloads' } = {}) {
+        return new Promise((resolve, reject) => {
+            const req = nextRequestId++;
+            let streamId = null;
+            let windowSize = 1;
+            let inFlight = 0;
+            let offset = 0;
+            let closing = false;
+            let pumping = false;
+
+            const finish = (fn, value) => {
+                unsubscribe();
+                if (signal) signal.removeEventListener('abort', onAbort);
+                fn(value);
+            };
+
+            const onAbort = () => {
+                if (streamId !== null) this.send('export', { op: 'cancel', stream: streamId });
+                else finish(reject, new Error('Export cancelled'));
+            };
+
+            const pump = async () => {
+                if (pumping) return;
+                pumping = true;
+                try {
+                    while (inFlight < windowSize && offset < blob.size) {
+                        const end = Math.min(offset + EXPORT_FRAME_BYTES, blob.size);
+                        const chunk = new Uint8Array(await blob.slice(offset, end).arrayBuffer());
+                        offset = end;
+                        inFlight++;
+                        this.sendFrame(streamId, chunk);
+                    }
+                    if (offset >= blob.size && inFlight === 0 && !closing) {
+                        closing = true;
+                        this.send('export', { op: 'close', stream: streamId });
+                    }
+                } finally {
+                    pumping = false;
+                }
+            };
+
+            const unsubscribe = this.on('export', (msg) => {
+                if (msg.op === 'opened' && msg.req === req) {
+                    streamId = msg.stream;
+                    windowSize = msg.window || 1;
+                    if (signal && signal.aborted) return onAbort();
+                    pump().catch(err => onAbort(err));
+                    return;
+                }
+                if (msg.op === 'error' && msg.req === req) {
+                    return finish(reject, new Error(msg.message));
+                }
+                if (streamId === null || msg.stream !== streamId) return;
+
+                switch (msg.op) {
+                    case 'progress':
+                        inFlight--;
+                        if (onProgress) onProgress((msg.written / (blob.size || 1)) * 100, msg.written, blob.size);
+                        pump().catch(err => onAbort(err));
+                        break;
+                    case 'done':
+                        finish(resolve, msg.name);
+                        break;
+                    case 'cancelled':
+                        finish(reject, new Error('Export cancelled'));
+                        break;
+                    case 'error':
+                        finish(reject, new Error(msg.message));
+                        break;
+                }
+            });
+
+            if (signal) signal.addEventListener('abort', onAbort);
+            this.send('export', { op: 'open', req, dest, name: filename, mime: blob.type || 'application/octet-stream' });
+        });
+    },
+
+    /**
+     * Build a PDF in Downloads natively (PdfExportChannel.java). Pages are fetched
+     * one at a time and only `window` of them are unacknowledged at once, so
+     * memory stays flat however long the document is.
+     * @param {string} filename
+     * @param {number} pageCount
+     * @param {function(number): Promise<{spec: object, history?: Array, image?: Blob}>} getPage
+     *        spec: { source: [x, y, w, h], header?, footer?, grid?, lossless? }
+     * @param {object} options - { onProgress(pages, total, written), signal: AbortSignal, openTimeoutMs }
+     * @returns {Promise<string>} the name the file was saved under. Rejects with
+     *          `unavailable` set when the shell has no native exporter.
+     */
+    exportPdf(filename, pageCount, getPage, { onProgress = null, signal = null, openTimeoutMs = 3000 } = {}) {
+        return new Promise((resolve, reject) => {
+            const req = nextRequestId++;
+            const encoder = new TextEncoder();
+            let job = null;
+            let windowSize = 1;
+            let sent = 0;
+            let acked = 0;
+            let pumping = false;
+            let settled = false;
+
+            const finish = (fn, value) => {
+                if (settled) return;
+                settled = true;
+                clearTimeout(openTimer);
+                unsubscribe();
+                if (signal) signal.removeEventListener('abort', onAbort);
+                fn(value);
+            };
+
+            const onAbort = () => {
+                if (job !== null) this.send('pdf-export', { op: 'cancel', job });
+                else finish(reject, new Error('Export cancelled'));
+            };
+
+            const sendBytes = (bytes) => {
+                for (let offset = 0; offset < bytes.byteLength; offset += EXPORT_FRAME_BYTES) {
+                    this.sendFrame(job, bytes.subarray(offset, Math.min(offset + EXPORT_FRAME_BYTES, bytes.byteLength)));
+                }
+            };
+
+            const pump = async () => {
+                if (pumping) return;
+                pumping = true;
+                try {
+                    while (!settled && sent - acked < windowSize && sent < pageCount) {
+                        const page = await getPage(sent);
+                        if (settled) return;
+                        const history = encoder.encode(JSON.stringify(page.history || []));
+                        const image = page.image ? new Uint8Array(await page.image.arrayBuffer()) : null;
+                        if (settled) return;
+                        this.send('pdf-export', {
+                            ...page.spec, op: 'page', job,
+                            historyBytes: history.byteLength, imageBytes: image ? image.byteLength : 0
+                        });
+                        sendBytes(history);
+                        if (image) sendBytes(image);
+                        sent++;
+                        // Pages are written in order, so the close can follow the last one directly
+                        if (sent === pageCount) this.send('pdf-export', { op: 'close', job });
+                    }
+                } finally {
+                    pumping = false;
+                }
+            };
+
+            const onPumpError = (err) => {
+                if (job !== null) this.send('pdf-export', { op: 'cancel', job });
+                finish(reject, err);
+            };
+
+            const unsubscribe = this.on('pdf-export', (msg) => {
+                if (msg.op === 'opened' && msg.req === req) {
+                    clearTimeout(openTimer);
+                    job = msg.job;
+                    windowSize = msg.window || 1;
+                    if (signal && signal.aborted) return onAbort();
+                    if (pageCount === 0) return this.send('pdf-export', { op: 'close', job });
+                    pump().catch(onPumpError);
+                    return;
+                }
+                if (msg.op === 'error' && msg.req === req) {
+                    return finish(reject, new Error(msg.message));
+                }
+                if (job === null || msg.job !== job) return;
+
+                switch (msg.op) {
+                    case 'progress':
+                        acked = msg.pages;
+                        if (onProgress) onProgress(msg.pages, pageCount, msg.written);
+                        pump().catch(onPumpError);
+                        break;
+                    case 'done':
+                        finish(resolve, msg.name);
+                        break;
+                    case 'cancelled':
+                        finish(reject, new Error('Export cancelled'));
+                        break;
+                    case 'error':
+                        finish(reject, new Error(msg.message));
+                        break;
+                }
+            });
+
+            const unavailable = () => {
+                const err = new Error('Native PDF export unavailable');
+                err.unavailable = true;
+                finish(reject, err);
+            };
+
+            // Shells built before the native exporter never answer the open;
+            // one that answers after we gave up gets its job cancelled
+            const openTimer = setTimeout(() => {
+                unavailable();
+                const late = this.on('pdf-export', (msg) => {
+                    if (msg.req !== req) return;
+                    late();
+                    if (msg.op === 'opened') this.send('pdf-export', { op: 'cancel', job: msg.job });
+                });
+            }, openTimeoutMs);
+
+            if (signal) signal.addEventListener('abort', onAbort);
+            try {
+                this.send('pdf-export', { op: 'open', req, name: filename });
+            } catch (e) {
+                unavailable();
+            }
+        });
+    },
+
+    /**
+     * Open a PDF with the native renderer. The file is uploaded once under `doc`
+     * (its SHA-256) and reused afterwards. Page indices are 0-based. close() the
+     * handle when done with it; the shell also lets go of documents it has not
+     * used in a while.
+     * @param {Blob} blob
+     * @param {string} doc - content id, [A-Za-z0-9_-]
+     * @param {object} options - { openTimeoutMs }
+     * @returns {Promise<NativePdf>} rejects with `unavailable` set when the shell has no PDF renderer
+     */
+    async openPdf(blob, doc, { openTimeoutMs = 3000 } = {}) {
+        let info = await this._pdfOpen(doc, openTimeoutMs);
+        if (info.op === 'missing') {
+            await this.exportBlob(blob, doc, { dest: 'pdf' });
+            info = await this._pdfOpen(doc, openTimeoutMs);
+        }
+        if (info.op !== 'opened') throw new Error(info.message || 'Native PDF open failed');
+        return new NativePdf(this, doc, info);
+    },
+
+    _pdfOpen(doc, timeoutMs) {
+        return new Promise((resolve, reject) => {
+            const req = nextRequestId++;
+            // Shells without the "pdf" topic never answer
+            const timer = setTimeout(() => {
+                unsubscribe();
+                reject(Object.assign(new Error('Native PDF renderer did not answer'), { unavailable: true }));
+            }, timeoutMs);
+            const unsubscribe = this.on('pdf', (msg) => {
+                if (msg.req !== req) return;
+                clearTimeout(timer);
+                unsubscribe();
+                resolve(msg);
+            });
+            try {
+                this.send('pdf', { op: 'open', req, doc });
+            } catch (e) {
+                clearTimeout(timer);
+                unsubscribe();
+                reject(e);
+            }
+        });
+    }
+};
+
+/**
+ * Handle to a natively rendered PDF. The shell renders tiles of at most
+ * `tileSize` pixels square at half-octave zoom buckets; pages are put together
+ * from them here, so the shell never holds more than one tile-sized bitmap.
+ * Tile URLs are plain same-origin URLs, so they can go straight into <img>/fetch().
+ */
+class NativePdf {
+    constructor(bridge, doc, info) {
+        this.bridge = bridge;
+        this.doc = doc;
+        this.pageCount = info.pages.length / 2;
+        this.tileSize = info.tile;
+        this._sizes = info.pages;
+        this._closed = false;
+    }
+
+    /** Smallest zoom bucket (scale 2^(z/2)) at least as sharp as `scale`; the shell takes -6..6. */
+    static zoomBucket(scale) {
+        return Math.max(-6, Math.min(6, Math.ceil(Math.log2(scale) * 2 - 1e-9)));
+    }
+
+    static bucketScale(z) {
+        return Math.pow(2, z / 2);
+    }
+
+    /** Page size in PDF points (1/72 inch). */
+    pageSize(page) {
+        return { width: this._sizes[page * 2], height: this._sizes[page * 2 + 1] };
+    }
+
+    tileUrl(page, z, x, y) {
+        return `/_native/pdf?doc=${this.doc}&page=${page}&z=${z}&x=${x}&y=${y}`;
+    }
+
+    /**
+     * Has the shell render these pages' tiles in the background, for pages about to
+     * be shown. Replaces the previous prefetch for this document.
+     */
+    prefetch(pages, scale) {
+        if (this._closed) return;
+        const valid = pages.filter(p => p >= 0 && p < this.pageCount);
+        if (valid.length === 0) return;
+        try {
+            this.bridge.send('pdf', { op: 'prefetch', doc: this.doc, pages: valid, z: NativePdf.zoomBucket(scale) });
+        } catch (e) {
+            // Prefetch is a hint; the tiles render on request anyway
+        }
+    }
+
+    /** Whole page as a JPEG blob at `scale` pixels per point, drawn from the shell's tiles. */
+    async renderPage(page, scale) {
+        const z = NativePdf.zoomBucket(scale);
+        const tileScale = NativePdf.bucketScale(z);
+        const { width, height } = this.pageSize(page);
+        const tileW = Math.max(1, Math.ceil(width * tileScale));
+        const tileH = Math.max(1, Math.ceil(height * tileScale));
+        const canvas = document.createElement('canvas');
+        canvas.width = Math.max(1, Math.round(width * scale));
+        canvas.height = Math.max(1, Math.round(height * scale));
+        const ctx = canvas.getContext('2d');
+        // Tiles are rendered at the bucket's scale, at least as sharp as asked for
+        const kx = canvas.width / tileW;
+        const ky = canvas.height / tileH;
+        const size = this.tileSize;
+
+        const draws = [];
+        for (let y = 0; y * size < tileH; y++) {
+            for (let x = 0; x * size < tileW; x++) {
+                draws.push(fetch(this.tileUrl(page, z, x, y)).then(async (res) => {
+                    if (!res.ok) throw new Error(`Native PDF render failed (${res.status})`);
+                    const bmp = await createImageBitmap(await res.blob());
+                    // Whole-pixel edges, so neighbouring tiles meet without a seam
+                    const left = Math.round(x * size * kx), top = Math.round(y * size * ky);
+                    ctx.drawImage(bmp, left, top,
+                        Math.round((x * size + bmp.width) * kx) - left, Math.round((y * size + bmp.height) * ky) - top);
+                    bmp.close();
+                }));
+            }
+        }
+        await Promise.all(draws);
+        return new Promise((resolve, reject) => canvas.toBlob(
+            b => b ? resolve(b) : reject(new Error('Native PDF page encode failed')), 'image/jpeg', 0.92));
+    }
+
+    /** Releases the shell's renderer for this document; the stored file stays for next time. */
+    close() {
+        if (this._closed) return;
+        this._closed = true;
+        try {
+            this.bridge.send('pdf', { op: 'close', doc: this.doc });
+        } catch (e) {
+            // Port gone with the page; the shell closes it on its own
+        }
+    }
+}
+
+/**
+ * WebSocket-shaped handle to a connection the shell holds ("sync" topic, SyncChannel).
+ * Messages are text only, as LiveSync's are.
+ */
+class NativeSyncSocket {
+    constructor(bridge, url) {
+        this.bridge = bridge;
+        this.url = url;
+        this.readyState = WebSocket.CONNECTING;
+        this.onopen = null;
+        this.onmessage = null;
+        this.onclose = null;
+        this.onerror = null;
+        this.onresync = null;
+        this._id = String(nextSyncId++);
+        this._unsubscribe = bridge.on('sync', (msg) => {
+            if (msg.id === this._id) this._handle(msg);
+        });
+        bridge.send('sync', { op: 'open', id: this._id, url });
+    }
+
+    _handle(msg) {
+        if (this.readyState === WebSocket.CLOSED) return;
+        switch (msg.op) {
+            case 'open':
+                this.readyState = WebSocket.OPEN;
+                this.deflate = msg.deflate;
+                this.onopen?.({ type: 'open', reconnected: msg.reconnected });
+                break;
+            case 'messages':
+                // Live messages come one at a time; after a pause, the merged backlog in one go
+                for (const data of msg.data) {
+                    if (this.readyState === WebSocket.CLOSED) break;
+                    this.onmessage?.({ type: 'message', data, batched: msg.data.length > 1 });
+                }
+                break;
+            case 'resync':
+                if (this.onresync) this.onresync();
+                else this._close(4000, 'resync');
+                break;
+            case 'closed':
+                // Like a WebSocket, a clean close isn't an error
+                if (msg.code !== 1000) this.onerror?.({ type: 'error', message: msg.reason });
+                this._finish(msg.code, msg.reason);
+                break;
+        }
+    }
+
+    send(data) {
+        if (this.readyState !== WebSocket.OPEN) throw new Error('NativeSyncSocket is not open');
+        this.bridge.send('sync', { op: 'send', id: this._id, data });
+    }
+
+    close(code = 1000, reason = '') {
+        this._close(code, reason);
+    }
+
+    _close(code, reason) {
+        if (this.readyState >= WebSocket.CLOSING) return;
+        this.bridge.send('sync', { op: 'close', id: this._id });
+        this._finish(code, reason);
+    }
+
+    _finish(code, reason) {
+        this.readyState = WebSocket.CLOSED;
+        this._unsubscribe();
+        this.onclose?.({ type: 'close', code, reason, wasClean: code === 1000 });
+    }
+}
+
+// Every page that loads the bridge gets its native events over the port
+NativeBridge.relayEvents();
@@ -0,0 +1,205 @@
+/**
+ * Native Project Store - ColorRM page histories in the Android shell's SQLite store
+ * ("store" topic on window.AndroidNativePort, see ProjectStoreChannel.java)
+ *
+ * The store keeps one row per history element. For every page saved this session
+ * we remember which object, lastMod and z the store holds for each element, so a
+ * save only serializes and sends the elements that changed or disappeared. Every
+ * edit bumps lastMod (in-place ones such as resize, rotate, recolor and stroke size
+ * included) or replaces the object (undo, redo, remote merges).
+ * z values are kept strictly increasing along the history array; reordering an
+ * element (bring to front, send to back) rewrites that element only, not its
+ * neighbours.
+ *
+ * Appends go out as a binary frame (UTF-8 JSON) when the shell offers a stream for
+ * them, so a whole page is parsed on the store thread rather than the UI thread.
+ */
+import { NativeBridge } from './NativeBridge.js';
+
+const HELLO_TIMEOUT_MS = 1500;
+const REQUEST_TIMEOUT_MS = 15000;
+
+// `${sessionId}\u0000${pageKey}` -> Map(elementId -> { item, lastMod, z })
+const savedPages = new Map();
+const encoder = new TextEncoder();
+let nextReq = 1;
+let ready = null;
+// ProjectStoreChannel.STREAM_ID, from the hello reply; null on shells that only take JSON
+let appendStream = null;
+
+function trackerKey(sessionId, pageKey) {
+    return `${sessionId}\u0000${pageKey}`;
+}
+
+/**
+ * Sends one request and settles on its reply. Streamed replies (`partial` op) are
+ * handed to onPartial and keep the request open; each one restarts the timeout.
+ * With `stream` the request goes out as a binary frame on that stream.
+ */
+function request(op, fields, { partial = null, onPartial = null, timeoutMs = REQUEST_TIMEOUT_MS, stream = null } = {}) {
+    return new Promise((resolve, reject) => {
+        const req = nextReq++;
+        let timer = null;
+        let unsubscribe = () => {};
+        const finish = (settle, value) => {
+            clearTimeout(timer);
+            unsubscribe();
+            settle(value);
+        };
+        const arm = () => {
+            clearTimeout(timer);
+            timer = setTimeout(() => finish(reject, new Error(`Native store ${op} timed out`)), timeoutMs);
+        };
+        unsubscribe = NativeBridge.on('store', (msg) => {
+            if (msg.req !== req) return;
+            if (msg.op === 'error') {
+                finish(reject, new Error(msg.message || `Native store ${op} failed`));
+            } else if (partial && msg.op === partial) {
+                try {
+                    onPartial(msg);
+                    arm();
+                } catch (e) {
+                    finish(reject, e);
+                }
+            } else {
+                finish(resolve, msg);
+            }
+        });
+        arm();
+        try {
+            if (stream !== null) {
+                NativeBridge.sendFrame(stream, encoder.encode(JSON.stringify({ ...fields, op, req })));
+            } else {
+                NativeBridge.send('store', { ...fields, op, req });
+            }
+        } catch (e) {
+            finish(reject, e);
+        }
+    });
+}
+
+/**
+ * Elements to write and ids to delete so the store matches `history`; updates
+ * `saved` to the state after the write. Exported for tests.
+ */
+export function diff(saved, history) {
+    const put = [];
+    const seen = new Set();
+    let prev = -Infinity;
+    for (let i = 0; i < history.length; i++) {
+        const item = history[i];
+        const id = String(item.id);
+        if (seen.has(id)) {
+            console.warn('[NativeProjectStore] Duplicate element id, not stored twice:', id);
+            continue;
+        }
+        seen.add(id);
+        const entry = saved.get(id);
+        const nextEntry = i + 1 < history.length ? saved.get(String(history[i + 1].id)) : null;
+        const nextZ = nextEntry && nextEntry.z > prev ? nextEntry.z : Infinity;
+
+        let z;
+        if (entry && entry.z > prev && entry.z < nextZ) {
+            z = entry.z;
+        } else if (nextZ !== Infinity) {
+            // Fit between the neighbours; once doubles run out the rest of the page shifts up
+            z = prev === -Infinity ? nextZ - 1 : (prev + nextZ) / 2;
+            if (!(z > prev && z < nextZ)) z = prev + 1;
+        } else {
+            z = prev === -Infinity ? 0 : Math.floor(prev) + 1;
+        }
+        prev = z;
+
+        if (entry && entry.item === item && entry.lastMod === item.lastMod && entry.z === z) continue;
+        put.push([id, z, item.deleted ? 1 : 0, JSON.stringify(item)]);
+        saved.set(id, { item, lastMod: item.lastMod, z });
+    }
+
+    const remove = [];
+    if (seen.size !== saved.size) {
+        for (const id of saved.keys()) {
+            if (!seen.has(id)) {
+                remove.push(id);
+                saved.delete(id);
+            }
+        }
+    }
+    return { put, remove };
+}
+
+export const NativeProjectStore = {
+    /** Resolves true once the shell has answered on the store topic; cached. */
+    isAvailable() {
+        if (!NativeBridge.isAvailable()) return Promise.resolve(false);
+        if (!ready) {
+            ready = request('hello', {}, { timeoutMs: HELLO_TIMEOUT_MS }).then((msg) => {
+                appendStream = typeof msg.stream === 'number' ? msg.stream : null;
+                return true;
+            }, () => false);
+        }
+        return ready;
+    },
+
+    /** Row key for a page: pageId survives page reordering, the IndexedDB id does not. */
+    pageKey(page) {
+        return page.historyKey || page.pageId || page.id;
+    },
+
+    /**
+     * Writes the page's changes since its last save. The first save of a page this
+     * session replaces whatever the store held for it.
+     */
+    async savePage(sessionId, page) {
+        const pageKey = this.pageKey(page);
+        const key = trackerKey(sessionId, pageKey);
+        let saved = savedPages.get(key);
+        const replace = !saved;
+        if (replace) {
+            saved = new Map();
+            savedPages.set(key, saved);
+        }
+        const { put, remove } = diff(saved, page.history || []);
+        if (!replace && put.length === 0 && remove.length === 0) return;
+        try {
+            await request('append', { session: sessionId, page: pageKey, replace, put, remove }, { stream: appendStream });
+        } catch (e) {
+            // The store may or may not have the write; the next save rewrites the page
+            savedPages.delete(key);
+            throw e;
+        }
+    },
+
+    /** Streams a page's history back in z order. */
+    async loadHistory(sessionId, pageKey) {
+        const saved = new Map();
+        const history = [];
+        await request('load', { session: sessionId, page: pageKey }, {
+            partial: 'rows',
+            onPartial: (msg) => {
+                for (let i = 0; i < msg.rows.length; i++) {
+                    const item = msg.rows[i];
+                    history.push(item);
+                    saved.set(String(item.id), { item, lastMod: item.lastMod, z: msg.z[i] });
+                }
+            }
+        });
+        savedPages.set(trackerKey(sessionId, pageKey), saved);
+        return history;
+    },
+
+    /** Deletes stored rows for a session, or one page of it. Fire-and-forget. */
+    async drop(sessionId, pageKey = null) {
+        if (pageKey) {
+            savedPages.delete(trackerKey(sessionId, pageKey));
+        } else {
+            const prefix = trackerKey(sessionId, '');
+            for (const key of savedPages.keys()) {
+                if (key.startsWith(prefix)) savedPages.delete(key);
+            }
+        }
+        if (!(await this.isAvailable())) return;
+        const message = { op: 'drop', session: sessionId };
+        if (pageKey) message.page = pageKey;
+        NativeBridge.send('store', message);
+    }
+};
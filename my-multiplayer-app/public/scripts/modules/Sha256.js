@@ -0,0 +1,103 @@
+/**
+ * SHA-256 - incremental hashing for inputs too large to hold in memory at once
+ *
+ * crypto.subtle.digest only takes a whole buffer; this takes the input in
+ * pieces, so a Blob can be hashed a slice at a time. Same output as subtle.
+ */
+
+const K = new Uint32Array([
+    0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+    0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+    0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+    0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+    0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+    0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+    0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+    0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+]);
+
+// Blob slices read per step by hashBlob
+const BLOB_CHUNK_BYTES = 4 * 1024 * 1024;
+
+export class Sha256 {
+    constructor() {
+        this._h = new Uint32Array([
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+        ]);
+        this._w = new Uint32Array(64);
+        this._block = new Uint8Array(64);
+        this._blockLength = 0;
+        this._bytes = 0;
+    }
+
+    /** @param {Uint8Array} data */
+    update(data) {
+        let i = 0;
+        this._bytes += data.length;
+        if (this._blockLength > 0) {
+            const take = Math.min(64 - this._blockLength, data.length);
+            this._block.set(data.subarray(0, take), this._blockLength);
+            this._blockLength += take;
+            i = take;
+            if (this._blockLength < 64) return this;
+            this._compress(this._block, 0);
+            this._blockLength = 0;
+        }
+        for (; i + 64 <= data.length; i += 64) this._compress(data, i);
+        if (i < data.length) {
+            this._block.set(data.subarray(i));
+            this._blockLength = data.length - i;
+        }
+        return this;
+    }
+
+    /** Lowercase hex, like the hashes stored with sessions. */
+    digestHex() {
+        const bits = this._bytes * 8;
+        const tail = new Uint8Array(this._blockLength < 56 ? 64 : 128);
+        tail.set(this._block.subarray(0, this._blockLength));
+        tail[this._blockLength] = 0x80;
+        const view = new DataView(tail.buffer);
+        view.setUint32(tail.length - 8, Math.floor(bits / 0x100000000));
+        view.setUint32(tail.length - 4, bits >>> 0);
+        for (let i = 0; i < tail.length; i += 64) this._compress(tail, i);
+        let hex = '';
+        for (const word of this._h) hex += word.toString(16).padStart(8, '0');
+        return hex;
+    }
+
+    _compress(bytes, offset) {
+        const w = this._w;
+        for (let t = 0; t < 16; t++) {
+            const j = offset + t * 4;
+            w[t] = (bytes[j] << 24) | (bytes[j + 1] << 16) | (bytes[j + 2] << 8) | bytes[j + 3];
+        }
+        for (let t = 16; t < 64; t++) {
+            const a = w[t - 15], b = w[t - 2];
+            const s0 = ((a >>> 7) | (a << 25)) ^ ((a >>> 18) | (a << 14)) ^ (a >>> 3);
+            const s1 = ((b >>> 17) | (b << 15)) ^ ((b >>> 19) | (b << 13)) ^ (b >>> 10);
+            w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+        }
+        const h = this._h;
+        let a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], k = h[7];
+        for (let t = 0; t < 64; t++) {
+            const s1 = ((e >>> 6) | (e << 26)) ^ ((e >>> 11) | (e << 21)) ^ ((e >>> 25) | (e << 7));
+            const t1 = (k + s1 + ((e & f) ^ (~e & g)) + K[t] + w[t]) | 0;
+            const s0 = ((a >>> 2) | (a << 30)) ^ ((a >>> 13) | (a << 19)) ^ ((a >>> 22) | (a << 10));
+            const t2 = (s0 + ((a & b) ^ (a & c) ^ (b & c))) | 0;
+            k = g; g = f; f = e; e = (d + t1) | 0;
+            d = c; c = b; b = a; a = (t1 + t2) | 0;
+        }
+        h[0] += a; h[1] += b; h[2] += c; h[3] += d;
+        h[4] += e; h[5] += f; h[6] += g; h[7] += k;
+    }
+}
+
+/** SHA-256 of a Blob, read one slice at a time; memory stays at one slice. */
+export async function hashBlob(blob) {
+    const sha = new Sha256();
+    for (let offset = 0; offset < blob.size; offset += BLOB_CHUNK_BYTES) {
+        sha.update(new Uint8Array(await blob.slice(offset, offset + BLOB_CHUNK_BYTES).arrayBuffer()));
+    }
+    return sha.digestHex();
+}
@@ -0,0 +1,76 @@
+import { test } from 'node:test';
+import assert from 'node:assert/strict';
+
+// NativeBridge looks for the shell's port on window when it loads; there is none here
+globalThis.window = {};
+const { diff } = await import('../public/scripts/modules/NativeProjectStore.js');
+
+test('first save writes every element in increasing z', () => {
+    const saved = new Map();
+    const { put, remove } = diff(saved, [{ id: 'a', lastMod: 1 }, { id: 'b', lastMod: 1 }]);
+    assert.deepEqual(put.map(([id, z]) => [id, z]), [['a', 0], ['b', 1]]);
+    assert.deepEqual(remove, []);
+});
+
+test('unchanged elements are not written again', () => {
+    const saved = new Map();
+    const history = [{ id: 'a', lastMod: 1 }, { id: 'b', lastMod: 1 }];
+    diff(saved, history);
+    const { put, remove } = diff(saved, history);
+    assert.deepEqual(put, []);
+    assert.deepEqual(remove, []);
+});
+
+test('an element edited in place is written once its lastMod moves', () => {
+    const saved = new Map();
+    const stroke = { id: 's', lastMod: 5, type: 'pen', color: '#000', size: 2, pts: [{ x: 0, y: 0 }] };
+    const shape = { id: 'r', lastMod: 5, type: 'rect', x: 10, y: 10, w: 20, h: 20, rotation: 0 };
+    diff(saved, [stroke, shape]);
+
+    // What recolor, stroke size, resize and rotate do
+    stroke.color = '#f00';
+    stroke.size = 6;
+    stroke.lastMod = 6;
+    shape.w = 40;
+    shape.rotation = 90;
+    shape.lastMod = 6;
+
+    const { put } = diff(saved, [stroke, shape]);
+    assert.deepEqual(put.map(([id]) => id), ['s', 'r']);
+    assert.equal(JSON.parse(put[0][3]).color, '#f00');
+    assert.equal(JSON.parse(put[1][3]).rotation, 90);
+    assert.deepEqual(diff(saved, [stroke, shape]).put, []);
+});
+
+test('an element replaced by another object with the same lastMod is written', () => {
+    const saved = new Map();
+    const before = { id: 'a', lastMod: 3, color: '#000' };
+    diff(saved, [before]);
+    // Undo restores a snapshot copy
+    const { put } = diff(saved, [{ ...before, color: '#0f0' }]);
+    assert.deepEqual(put.map(([id]) => id), ['a']);
+    assert.equal(JSON.parse(put[0][3]).color, '#0f0');
+});
+
+test('unchanged elements are not serialized', () => {
+    const saved = new Map();
+    let serialized = 0;
+    const history = [];
+    for (let i = 0; i < 100; i++) history.push({ id: i, lastMod: 1, toJSON() { serialized++; return { id: i }; } });
+    diff(saved, history);
+    assert.equal(serialized, 100);
+    history.push({ id: 'new', lastMod: 2, toJSON() { serialized++; return { id: 'new' }; } });
+    const { put } = diff(saved, history);
+    assert.deepEqual(put.map(([id]) => id), ['new']);
+    assert.equal(serialized, 101);
+});
+
+test('removed elements are deleted and a reorder rewrites only the moved element', () => {
+    const saved = new Map();
+    const a = { id: 'a' }, b = { id: 'b' }, c = { id: 'c' }, d = { id: 'd' };
+    diff(saved, [a, b, c, d]);
+    const { put, remove } = diff(saved, [a, c, b]);
+    assert.deepEqual(remove, ['d']);
+    assert.deepEqual(put.map(([id]) => id), ['c']);
+    assert.ok(saved.get('a').z < saved.get('c').z && saved.get('c').z < saved.get('b').z);
+});
@@ -0,0 +1,29 @@
+import { test } from 'node:test';
+import assert from 'node:assert/strict';
+import { createHash, randomBytes } from 'node:crypto';
+import { Sha256, hashBlob } from '../public/scripts/modules/Sha256.js';
+
+const reference = (bytes) => createHash('sha256').update(bytes).digest('hex');
+
+test('matches the reference at every padding boundary', () => {
+    for (const length of [0, 1, 55, 56, 63, 64, 65, 119, 120, 1000]) {
+        const bytes = randomBytes(length);
+        assert.equal(new Sha256().update(bytes).digestHex(), reference(bytes), `length ${length}`);
+    }
+});
+
+test('input split into arbitrary pieces hashes the same', () => {
+    const bytes = randomBytes(5000);
+    const sha = new Sha256();
+    for (let i = 0; i < bytes.length;) {
+        const n = 1 + (i * 7) % 97;
+        sha.update(bytes.subarray(i, i + n));
+        i += n;
+    }
+    assert.equal(sha.digestHex(), reference(bytes));
+});
+
+test('a blob is hashed slice by slice', async () => {
+    const bytes = randomBytes(9 * 1024 * 1024 + 13);
+    assert.equal(await hashBlob(new Blob([bytes])), reference(bytes));
+});
@@ -31,10 +31,98 @@ export async function handleAssetUpload(request: IRequest, env: Env) {
 	return { ok: true }
 }
 
+// content-addressed assets live under uploads/sha256/<hex digest of the bytes>
+const SHA256_HEX = /^[0-9a-f]{64}$/
+// R2 needs every part but the last to be at least 5 MiB
+const PART_SIZE = 8 * 1024 * 1024
+
+function getHashedObjectName(hash: string) {
+	return `uploads/sha256/${hash}`
+}
+
+function isHashedContentType(contentType: string) {
+	return contentType.startsWith('image/') || contentType.startsWith('video/') || contentType === 'application/pdf'
+}
+
+// starts (or resumes) a resumable upload of the content with this hash, unless we already have it.
+// the Android shell hashes shared files before sending them, so re-sharing a file costs one request.
+export async function handleHashedUploadBegin(request: IRequest, env: Env) {
+	const hash = request.params.hash
+	if (!SHA256_HEX.test(hash)) return error(400, 'Invalid hash')
+
+	const objectName = getHashedObjectName(hash)
+	const existing = await env.TLDRAW_BUCKET.head(objectName)
+	if (existing) return { exists: true, size: existing.size }
+
+	const contentType = request.headers.get('content-type') ?? ''
+	if (!isHashedContentType(contentType)) return error(400, 'Invalid content type')
+
+	// R2 doesn't check a multipart id until a part arrives; an expired one then answers 404
+	const resumeId = request.headers.get('x-resume-upload-id')
+	if (resumeId) return { exists: false, uploadId: resumeId, partSize: PART_SIZE }
+
+	const upload = await env.TLDRAW_BUCKET.createMultipartUpload(objectName, {
+		httpMetadata: { contentType },
+		customMetadata: { sha256: hash },
+	})
+	return { exists: false, uploadId: upload.uploadId, partSize: PART_SIZE }
+}
+
+export async function handleHashedUploadPart(request: IRequest, env: Env) {
+	const { hash, uploadId } = request.params
+	const partNumber = Number(request.params.partNumber)
+	if (!SHA256_HEX.test(hash) || !Number.isInteger(partNumber) || partNumber < 1) return error(400, 'Invalid part')
+	if (!request.body) return error(400, 'Missing body')
+
+	const upload = env.TLDRAW_BUCKET.resumeMultipartUpload(getHashedObjectName(hash), uploadId)
+	try {
+		const part = await upload.uploadPart(partNumber, request.body)
+		return { partNumber: part.partNumber, etag: part.etag }
+	} catch (e: any) {
+		// most likely the upload expired or was already completed: the client starts over
+		return error(404, `Unknown upload: ${e?.message ?? e}`)
+	}
+}
+
+// assembles the parts, then checks the stored bytes really hash to the name they were uploaded under
+export async function handleHashedUploadComplete(request: IRequest, env: Env) {
+	const { hash, uploadId } = request.params
+	if (!SHA256_HEX.test(hash)) return error(400, 'Invalid hash')
+	const { parts } = (await request.json()) as { parts: R2UploadedPart[] }
+	if (!Array.isArray(parts) || parts.length === 0) return error(400, 'Missing parts')
+
+	const objectName = getHashedObjectName(hash)
+	const upload = env.TLDRAW_BUCKET.resumeMultipartUpload(objectName, uploadId)
+	let object: R2Object
+	try {
+		object = await upload.complete(parts)
+	} catch (e: any) {
+		return error(404, `Unknown upload: ${e?.message ?? e}`)
+	}
+
+	const stored = await env.TLDRAW_BUCKET.get(objectName)
+	if (!stored) return error(500, 'Upload vanished')
+	const digest = new crypto.DigestStream('SHA-256')
+	await stored.body.pipeTo(digest)
+	const actual = [...new Uint8Array(await digest.digest)].map((b) => b.toString(16).padStart(2, '0')).join('')
+	if (actual !== hash) {
+		await env.TLDRAW_BUCKET.delete(objectName)
+		return error(422, 'Content does not match its hash')
+	}
+	return { ok: true, size: object.size }
+}
+
+export async function handleHashedAssetDownload(request: IRequest, env: Env, ctx: ExecutionContext) {
+	if (!SHA256_HEX.test(request.params.hash)) return error(400, 'Invalid hash')
+	return serveAsset(request, env, ctx, getHashedObjectName(request.params.hash))
+}
+
 // when a user downloads an asset, we retrieve it from the bucket. we also cache the response for performance.
 export async function handleAssetDownload(request: IRequest, env: Env, ctx: ExecutionContext) {
-	const objectName = getAssetObjectName(request.params.uploadId)
+	return serveAsset(request, env, ctx, getAssetObjectName(request.params.uploadId))
+}
 
+async function serveAsset(request: IRequest, env: Env, ctx: ExecutionContext, objectName: string) {
 	// if we have a cached response for this request (automatically handling ranges etc.), return it
 	const cacheKey = new Request(request.url, { headers: request.headers })
 	const cachedResponse = await caches.default.match(cacheKey)
@@ -7,14 +7,33 @@ export async function handleColorRmUpload(request: IRequest, env: Env) {
         return new Response('Missing roomId', { status: 400 })
     }
 
+    const objectKey = `color_rm/base_files/${roomId}`
+    const projectName = request.headers.get('x-project-name') ? decodeURIComponent(request.headers.get('x-project-name')!) : 'ColorRM Project'
+
+    // The Android shell has already uploaded the file content-addressed (see assetUploads.ts); copy it over
+    const assetHash = request.headers.get('x-asset-sha256')
+    if (assetHash) {
+        const asset = /^[0-9a-f]{64}$/.test(assetHash) ? await env.TLDRAW_BUCKET.get(`uploads/sha256/${assetHash}`) : null
+        if (!asset) {
+            return new Response('Unknown asset', { status: 404 })
+        }
+        console.log(`[handleColorRmUpload] Linking asset ${assetHash} as base file: ${objectKey}, size: ${asset.size} bytes`);
+        // R2 only takes streams of known length
+        const copy = new FixedLengthStream(asset.size)
+        const piped = asset.body.pipeTo(copy.writable)
+        await env.TLDRAW_BUCKET.put(objectKey, copy.readable, {
+            httpMetadata: asset.httpMetadata,
+            customMetadata: { name: projectName }
+        })
+        await piped
+        return new Response('Upload successful', { status: 200 })
+    }
+
     if (!request.body) {
         console.error(`[handleColorRmUpload] Missing request body for roomId: ${roomId}`);
         return new Response('Missing request body', { status: 400 })
     }
 
-    const objectKey = `color_rm/base_files/${roomId}`
-    const projectName = request.headers.get('x-project-name') ? decodeURIComponent(request.headers.get('x-project-name')!) : 'ColorRM Project'
-
     try {
         // Get the raw body data
         let bodyData = await request.arrayBuffer();
@@ -1,6 +1,13 @@
 import { handleUnfurlRequest } from 'cloudflare-workers-unfurl'
 import { AutoRouter, error, IRequest } from 'itty-router'
-import { handleAssetDownload, handleAssetUpload } from './assetUploads'
+import {
+	handleAssetDownload,
+	handleAssetUpload,
+	handleHashedAssetDownload,
+	handleHashedUploadBegin,
+	handleHashedUploadComplete,
+	handleHashedUploadPart,
+} from './assetUploads'
 import { handleColorRmDownload, handleColorRmUpload, handleColorRmDelete, handleColorRmPageUpload, handleColorRmPageDownload, handleColorRmPageDelete, handleGetPageStructure, handleSetPageStructure, handleListPages, handleColorRmHistoryUpload, handleColorRmHistoryDownload, handleColorRmHistoryDelete, handleColorRmModificationsUpload, handleColorRmModificationsDownload, handleColorRmModificationsDelete } from './colorRmAssets'
 import { handlePdfUpload, handlePdfJobStatus, handlePdfPageDownload, handlePdfJobDelete } from './pdfToSvg'
 import { Liveblocks } from '@liveblocks/node'
@@ -522,6 +529,12 @@ const router = AutoRouter<IRequest, [env: Env, ctx: ExecutionContext]>({
         }
     })
 
+	// content-addressed, resumable uploads (see AssetUploader.java in the Android shell):
+	.post('/api/uploads/sha256/:hash', handleHashedUploadBegin)
+	.put('/api/uploads/sha256/:hash/parts/:uploadId/:partNumber', handleHashedUploadPart)
+	.post('/api/uploads/sha256/:hash/complete/:uploadId', handleHashedUploadComplete)
+	.get('/api/uploads/sha256/:hash', handleHashedAssetDownload)
+
 	// assets can be uploaded to the bucket under /uploads:
 	.post('/api/uploads/:uploadId', handleAssetUpload)
 